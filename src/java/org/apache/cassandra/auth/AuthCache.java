@@ -125,6 +125,19 @@ public class AuthCache<K, V> implements AuthCacheMBean
         return cache.get(k);
     }
 
+    /**
+     * Retrieve a value from the cache, without loading it if it is not present.
+     * @param k
+     * @return The current value of {@code K} if cached, or null if it is not or caching is disabled.
+     */
+    public V getIfPresent(K k)
+    {
+        if (cache == null)
+            return null;
+
+        return cache.getIfPresent(k);
+    }
+
     /**
      * Invalidate the entire cache.
      */
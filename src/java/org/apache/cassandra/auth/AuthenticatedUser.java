@@ -23,6 +23,7 @@ import com.google.common.base.Objects;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.dht.Datacenters;
+import org.apache.cassandra.utils.Pair;
 
 /**
  * Returned from IAuthenticator#authenticate(), represents an authenticated user everywhere internally.
@@ -116,6 +117,15 @@ public class AuthenticatedUser
         return permissionsCache.getPermissions(this, resource);
     }
 
+    /**
+     * @return the permissions of the user on the resource if the permissions cache holds them, or null if getting
+     * them would need a lookup
+     */
+    public Set<Permission> getCachedPermissions(IResource resource)
+    {
+        return permissionsCache.getIfPresent(Pair.create(this, resource));
+    }
+
     /**
      * Check whether this user has login privileges.
      * LOGIN is not inherited from granted roles, so must be directly granted to the primary role for this user
@@ -139,6 +149,20 @@ public class AuthenticatedUser
         return networkAuthCache.get(this.getPrimaryRole()).canAccess(Datacenters.thisDatacenter());
     }
 
+    /**
+     * Like {@link #hasLocalAccess()}, but only answers from the network auth cache.
+     * @return true if the user is known to be permitted to access nodes in this node's datacenter without a lookup,
+     * false if it isn't or checking it would need a lookup
+     */
+    public boolean hasCachedLocalAccess()
+    {
+        if (!DatabaseDescriptor.getNetworkAuthorizer().requireAuthorization())
+            return true;
+
+        DCPermissions permissions = networkAuthCache.getIfPresent(this.getPrimaryRole());
+        return permissions != null && permissions.canAccess(Datacenters.thisDatacenter());
+    }
+
     @Override
     public String toString()
     {
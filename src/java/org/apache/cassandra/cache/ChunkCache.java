@@ -20,22 +20,39 @@
  */
 package org.apache.cassandra.cache;
 
+import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import com.github.benmanes.caffeine.cache.*;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.sstable.CorruptSSTableException;
+import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.util.*;
 import org.apache.cassandra.metrics.ChunkCacheMetrics;
 import org.apache.cassandra.utils.memory.BufferPool;
 import org.apache.cassandra.utils.memory.BufferPools;
 
+/**
+ * A cache of chunks of sstable files, uncompressed, shared by all tables.
+ *
+ * Keyspaces and tables can be given a quota ({@code file_cache_quotas_in_mb}), in which case their chunks are kept in
+ * a separate cache of that capacity, so that they neither evict, nor are evicted by, the chunks of other tables. The
+ * remaining capacity is shared by the other tables.
+ *
+ * Readers that scan through a large part of a file once, such as range reads, compactions and repair validations,
+ * use the cached chunks but do not add the chunks they read to the cache (see
+ * {@link RebuffererFactory#instantiateScanRebufferer()}).
+ */
 public class ChunkCache
         implements CacheLoader<ChunkCache.Key, ChunkCache.Buffer>, RemovalListener<ChunkCache.Key, ChunkCache.Buffer>, CacheSize
 {
@@ -44,11 +61,15 @@ public class ChunkCache
     public static final boolean roundUp = DatabaseDescriptor.getFileCacheRoundUp();
 
     private static boolean enabled = DatabaseDescriptor.getFileCacheEnabled() && cacheSize > 0;
-    public static final ChunkCache instance = enabled ? new ChunkCache(BufferPools.forChunkCache()) : null;
+    public static final ChunkCache instance = enabled ? new ChunkCache(BufferPools.forChunkCache(), DatabaseDescriptor.getFileCacheQuotas()) : null;
 
     private final BufferPool bufferPool;
 
+    // the cache of the tables without a quota
     private final LoadingCache<Key, Buffer> cache;
+    // the caches of the keyspaces and tables with a quota, by keyspace name or <keyspace>.<table>
+    private final Map<String, LoadingCache<Key, Buffer>> quotaCaches;
+    private final Collection<LoadingCache<Key, Buffer>> allCaches;
     public final ChunkCacheMetrics metrics;
 
     static class Key
@@ -56,13 +77,21 @@ public class ChunkCache
         final ChunkReader file;
         final String path;
         final long position;
+        // null if the file is not an sstable component
+        final ChunkCacheMetrics.TableMetrics tableMetrics;
 
         public Key(ChunkReader file, long position)
+        {
+            this(file, position, null);
+        }
+
+        Key(ChunkReader file, long position, ChunkCacheMetrics.TableMetrics tableMetrics)
         {
             super();
             this.file = file;
             this.position = position;
             this.path = file.channel().filePath();
+            this.tableMetrics = tableMetrics;
         }
 
         public int hashCode()
@@ -137,17 +166,38 @@ public class ChunkCache
         }
     }
 
-    private ChunkCache(BufferPool pool)
+    /**
+     * @param quotas the capacities in bytes of the keyspaces and tables with a quota, by keyspace name or
+     *               {@code <keyspace>.<table>}; their total must be less than {@link #cacheSize}
+     */
+    private ChunkCache(BufferPool pool, Map<String, Long> quotas)
     {
         bufferPool = pool;
         metrics = new ChunkCacheMetrics(this);
-        cache = Caffeine.newBuilder()
-                        .maximumWeight(cacheSize)
-                        .executor(MoreExecutors.directExecutor())
-                        .weigher((key, buffer) -> ((Buffer) buffer).buffer.capacity())
-                        .removalListener(this)
-                        .recordStats(() -> metrics)
-                        .build(this);
+
+        long sharedCapacity = cacheSize;
+        Map<String, LoadingCache<Key, Buffer>> caches = new HashMap<>();
+        for (Map.Entry<String, Long> quota : quotas.entrySet())
+        {
+            caches.put(quota.getKey(), buildCache(quota.getValue()));
+            sharedCapacity -= quota.getValue();
+        }
+        assert sharedCapacity > 0 : "The chunk cache quotas exceed the chunk cache size";
+
+        cache = buildCache(sharedCapacity);
+        quotaCaches = caches;
+        allCaches = ImmutableList.<LoadingCache<Key, Buffer>>builder().add(cache).addAll(caches.values()).build();
+    }
+
+    private LoadingCache<Key, Buffer> buildCache(long capacity)
+    {
+        return Caffeine.newBuilder()
+                       .maximumWeight(capacity)
+                       .executor(MoreExecutors.directExecutor())
+                       .weigher((key, buffer) -> ((Buffer) buffer).buffer.capacity())
+                       .removalListener(this)
+                       .recordStats(() -> metrics)
+                       .build(this);
     }
 
     @Override
@@ -156,18 +206,29 @@ public class ChunkCache
         ByteBuffer buffer = bufferPool.get(key.file.chunkSize(), key.file.preferredBufferType());
         assert buffer != null;
         key.file.readChunk(key.position, buffer);
+        if (key.tableMetrics != null)
+        {
+            key.tableMetrics.misses.mark();
+            key.tableMetrics.addCachedBytes(buffer.capacity());
+        }
         return new Buffer(buffer, key.position);
     }
 
     @Override
     public void onRemoval(Key key, Buffer buffer, RemovalCause cause)
     {
+        if (key.tableMetrics != null)
+        {
+            key.tableMetrics.addCachedBytes(-buffer.buffer.capacity());
+            if (cause.wasEvicted())
+                key.tableMetrics.evictions.mark();
+        }
         buffer.release();
     }
 
     public void close()
     {
-        cache.invalidateAll();
+        allCaches.forEach(Cache::invalidateAll);
     }
 
     private RebuffererFactory wrap(ChunkReader file)
@@ -191,19 +252,42 @@ public class ChunkCache
         ((CachingRebufferer) dfile.rebuffererFactory()).invalidate(position);
     }
 
+    /**
+     * @return whether the chunk of the file holding the given position is cached, without loading it if it isn't
+     */
+    public boolean isCached(FileHandle dfile, long position)
+    {
+        if (!(dfile.rebuffererFactory() instanceof CachingRebufferer))
+            return false;
+
+        return ((CachingRebufferer) dfile.rebuffererFactory()).isCached(position);
+    }
+
     public void invalidateFile(String fileName)
     {
-        cache.invalidateAll(Iterables.filter(cache.asMap().keySet(), x -> x.path.equals(fileName)));
+        for (LoadingCache<Key, Buffer> cache : allCaches)
+            cache.invalidateAll(Iterables.filter(cache.asMap().keySet(), x -> x.path.equals(fileName)));
     }
 
     @VisibleForTesting
     public void enable(boolean enabled)
     {
         ChunkCache.enabled = enabled;
-        cache.invalidateAll();
+        allCaches.forEach(Cache::invalidateAll);
         metrics.reset();
     }
 
+    /**
+     * @return the cache holding the chunks of the given table
+     */
+    private LoadingCache<Key, Buffer> cacheFor(String keyspace, String table)
+    {
+        LoadingCache<Key, Buffer> tableCache = quotaCaches.get(keyspace + '.' + table);
+        if (tableCache == null)
+            tableCache = quotaCaches.get(keyspace);
+        return tableCache == null ? cache : tableCache;
+    }
+
     // TODO: Invalidate caches for obsoleted/MOVED_START tables?
 
     /**
@@ -214,6 +298,9 @@ public class ChunkCache
     {
         private final ChunkReader source;
         final long alignmentMask;
+        private final LoadingCache<Key, Buffer> cache;
+        // null if the file is not an sstable component
+        private final ChunkCacheMetrics.TableMetrics tableMetrics;
 
         public CachingRebufferer(ChunkReader file)
         {
@@ -221,6 +308,23 @@ public class ChunkCache
             int chunkSize = file.chunkSize();
             assert Integer.bitCount(chunkSize) == 1 : String.format("%d must be a power of two", chunkSize);
             alignmentMask = -chunkSize;
+
+            Descriptor descriptor = sstableDescriptor(file.channel().filePath());
+            if (descriptor != null)
+            {
+                cache = cacheFor(descriptor.ksname, descriptor.cfname);
+                tableMetrics = metrics.forTable(descriptor.ksname, descriptor.cfname);
+            }
+            else
+            {
+                cache = ChunkCache.this.cache;
+                tableMetrics = null;
+            }
+        }
+
+        private Key key(long position)
+        {
+            return new Key(source, position & alignmentMask, tableMetrics);
         }
 
         @Override
@@ -228,10 +332,13 @@ public class ChunkCache
         {
             try
             {
-                long pageAlignedPos = position & alignmentMask;
+                if (tableMetrics != null)
+                    tableMetrics.requests.mark();
+
+                Key key = key(position);
                 Buffer buf;
                 do
-                    buf = cache.get(new Key(source, pageAlignedPos)).reference();
+                    buf = cache.get(key).reference();
                 while (buf == null);
 
                 return buf;
@@ -243,10 +350,29 @@ public class ChunkCache
             }
         }
 
+        /**
+         * @return the cached chunk containing the given position, or null if it is not cached
+         */
+        Buffer getIfPresent(long position)
+        {
+            if (tableMetrics != null)
+                tableMetrics.requests.mark();
+
+            Buffer buf = cache.getIfPresent(key(position));
+            buf = buf == null ? null : buf.reference();
+            if (buf == null && tableMetrics != null)
+                tableMetrics.misses.mark();
+            return buf;
+        }
+
+        boolean isCached(long position)
+        {
+            return cache.getIfPresent(key(position)) != null;
+        }
+
         public void invalidate(long position)
         {
-            long pageAlignedPos = position & alignmentMask;
-            cache.invalidate(new Key(source, pageAlignedPos));
+            cache.invalidate(key(position));
         }
 
         @Override
@@ -255,6 +381,12 @@ public class ChunkCache
             return this;
         }
 
+        @Override
+        public Rebufferer instantiateScanRebufferer()
+        {
+            return new ScanRebufferer(this, source.instantiateRebufferer());
+        }
+
         @Override
         public void close()
         {
@@ -292,6 +424,78 @@ public class ChunkCache
         }
     }
 
+    /**
+     * Rebufferer of a single scanning reader, which uses the chunks that are already cached, but reads the others
+     * without adding them to the cache. Not thread-safe, like the reader using it.
+     */
+    static class ScanRebufferer implements Rebufferer
+    {
+        private final CachingRebufferer cached;
+        private final Rebufferer uncached;
+
+        ScanRebufferer(CachingRebufferer cached, Rebufferer uncached)
+        {
+            this.cached = cached;
+            this.uncached = uncached;
+        }
+
+        @Override
+        public BufferHolder rebuffer(long position)
+        {
+            Buffer buf = cached.getIfPresent(position);
+            return buf != null ? buf : uncached.rebuffer(position);
+        }
+
+        @Override
+        public void closeReader()
+        {
+            uncached.closeReader();
+        }
+
+        @Override
+        public void close()
+        {
+            // the source is closed with the caching rebufferer
+        }
+
+        @Override
+        public ChannelProxy channel()
+        {
+            return cached.channel();
+        }
+
+        @Override
+        public long fileLength()
+        {
+            return cached.fileLength();
+        }
+
+        @Override
+        public double getCrcCheckChance()
+        {
+            return cached.getCrcCheckChance();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "ScanRebufferer:" + cached.source;
+        }
+    }
+
+    private static Descriptor sstableDescriptor(String path)
+    {
+        try
+        {
+            return Descriptor.fromFilename(new File(path));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // not an sstable component
+            return null;
+        }
+    }
+
     @Override
     public long capacity()
     {
@@ -307,14 +511,22 @@ public class ChunkCache
     @Override
     public int size()
     {
-        return cache.asMap().size();
+        int size = 0;
+        for (LoadingCache<Key, Buffer> cache : allCaches)
+            size += cache.asMap().size();
+        return size;
     }
 
     @Override
     public long weightedSize()
     {
-        return cache.policy().eviction()
-                .map(policy -> policy.weightedSize().orElseGet(cache::estimatedSize))
-                .orElseGet(cache::estimatedSize);
+        long size = 0;
+        for (LoadingCache<Key, Buffer> cache : allCaches)
+        {
+            size += cache.policy().eviction()
+                         .map(policy -> policy.weightedSize().orElseGet(cache::estimatedSize))
+                         .orElseGet(cache::estimatedSize);
+        }
+        return size;
     }
 }
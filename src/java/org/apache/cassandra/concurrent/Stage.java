@@ -38,6 +38,7 @@ import java.util.stream.Stream;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.net.Verb;
@@ -49,8 +50,8 @@ import static java.util.stream.Collectors.toMap;
 
 public enum Stage
 {
-    READ              ("ReadStage",             "request",  DatabaseDescriptor::getConcurrentReaders,        DatabaseDescriptor::setConcurrentReaders,        Stage::multiThreadedLowSignalStage),
-    MUTATION          ("MutationStage",         "request",  DatabaseDescriptor::getConcurrentWriters,        DatabaseDescriptor::setConcurrentWriters,        Stage::multiThreadedLowSignalStage),
+    READ              ("ReadStage",             "request",  DatabaseDescriptor::getConcurrentReaders,        DatabaseDescriptor::setConcurrentReaders,        Stage::multiThreadedLowSignalStage, true),
+    MUTATION          ("MutationStage",         "request",  DatabaseDescriptor::getConcurrentWriters,        DatabaseDescriptor::setConcurrentWriters,        Stage::multiThreadedLowSignalStage, true),
     COUNTER_MUTATION  ("CounterMutationStage",  "request",  DatabaseDescriptor::getConcurrentCounterWriters, DatabaseDescriptor::setConcurrentCounterWriters, Stage::multiThreadedLowSignalStage),
     VIEW_MUTATION     ("ViewMutationStage",     "request",  DatabaseDescriptor::getConcurrentViewWriters,    DatabaseDescriptor::setConcurrentViewWriters,    Stage::multiThreadedLowSignalStage),
     GOSSIP            ("GossipStage",           "internal", () -> 1,                                         null,                                            Stage::singleThreadedStage),
@@ -67,11 +68,20 @@ public enum Stage
     public final String jmxName;
     private final Supplier<LocalAwareExecutorService> initialiser;
     private volatile LocalAwareExecutorService executor = null;
+    // the workers of the stage when its single partition requests are scheduled by token, if supported
+    private final Supplier<TokenAffinityExecutor> affinityInitialiser;
+    private volatile TokenAffinityExecutor affinityExecutor = null;
 
     Stage(String jmxName, String jmxType, IntSupplier numThreads, LocalAwareExecutorService.MaximumPoolSizeListener onSetMaximumPoolSize, ExecutorServiceInitialiser initialiser)
+    {
+        this(jmxName, jmxType, numThreads, onSetMaximumPoolSize, initialiser, false);
+    }
+
+    Stage(String jmxName, String jmxType, IntSupplier numThreads, LocalAwareExecutorService.MaximumPoolSizeListener onSetMaximumPoolSize, ExecutorServiceInitialiser initialiser, boolean tokenAffinity)
     {
         this.jmxName = jmxName;
         this.initialiser = () -> initialiser.init(jmxName, jmxType, numThreads.getAsInt(), onSetMaximumPoolSize);
+        this.affinityInitialiser = tokenAffinity ? () -> new TokenAffinityExecutor(jmxName, jmxType, numThreads.getAsInt(), this::executor) : null;
     }
 
     private static String normalizeName(String stageName)
@@ -144,11 +154,40 @@ public enum Stage
         return executor;
     }
 
+    /**
+     * @return the executor for the given mutation or read command, which is the worker of its partition if local
+     * requests are scheduled by token and it is for a single partition, or the executor of the stage otherwise.
+     */
+    public LocalAwareExecutorService executor(Object request)
+    {
+        if (affinityInitialiser == null || DatabaseDescriptor.getLocalRequestScheduling() != Config.LocalRequestScheduling.token_affinity)
+            return executor();
+
+        if (affinityExecutor == null)
+        {
+            synchronized (this)
+            {
+                if (affinityExecutor == null)
+                {
+                    affinityExecutor = affinityInitialiser.get();
+                }
+            }
+        }
+        LocalAwareExecutorService worker = affinityExecutor.worker(request);
+        return worker == null ? executor() : worker;
+    }
+
     private static List<ExecutorService> executors()
     {
-        return Stream.of(Stage.values())
-                     .map(Stage::executor)
-                     .collect(Collectors.toList());
+        List<ExecutorService> executors = Stream.of(Stage.values())
+                                                .map(Stage::executor)
+                                                .collect(Collectors.toList());
+        for (Stage stage : Stage.values())
+        {
+            if (stage.affinityExecutor != null)
+                executors.addAll(stage.affinityExecutor.workers());
+        }
+        return executors;
     }
 
     /**
@@ -191,6 +230,8 @@ public enum Stage
 
     static LocalAwareExecutorService multiThreadedLowSignalStage(String jmxName, String jmxType, int numThreads, LocalAwareExecutorService.MaximumPoolSizeListener onSetMaximumPoolSize)
     {
+        if (DatabaseDescriptor.useVirtualThreads(jmxName))
+            return new VirtualThreadExecutor(numThreads, onSetMaximumPoolSize, jmxType, jmxName);
         return SharedExecutorPool.SHARED.newExecutor(numThreads, onSetMaximumPoolSize, jmxType, jmxName);
     }
 
@@ -235,11 +276,14 @@ public enum Stage
     }
 
     /**
-     * Allows user to resize maximum size of the thread pool.
+     * Allows user to resize maximum size of the thread pool, and the number of workers when scheduling by token.
      */
     public void setMaximumPoolSize(int newMaximumPoolSize)
     {
         executor().setMaximumPoolSize(newMaximumPoolSize);
+        TokenAffinityExecutor affinityExecutor = this.affinityExecutor;
+        if (affinityExecutor != null)
+            affinityExecutor.setWorkers(newMaximumPoolSize);
     }
 
     /**
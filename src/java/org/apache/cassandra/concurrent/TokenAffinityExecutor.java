@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.concurrent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.IMutation;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.SinglePartitionReadCommand;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.TableId;
+
+/**
+ * The dedicated threads of a stage when local requests are scheduled by token, see
+ * {@link org.apache.cassandra.config.Config.LocalRequestScheduling#token_affinity}.
+ *
+ * The requests for a partition are always run by the same worker, so that its memtable and cached data stay in the
+ * caches of that worker's core, and its concurrent updates don't contend with each other. When the memtable of the
+ * table is sharded, the workers are assigned contiguous shards, so that each shard is written by a single worker if
+ * there are as many shards as workers; otherwise the partitions are spread over the workers by the hash of their
+ * token.
+ *
+ * Each worker is a single threaded pool with the metrics and MBean of the stage's pools, named after the stage, e.g.
+ * ReadStageWorker_0. Its queue is bounded by {@link #MAX_QUEUED_TASKS}: the requests submitted to a full worker are
+ * run by the stage's executor instead, and counted as blocked tasks of the worker. There are as many workers as the
+ * stage has threads, and resizing the stage resizes them.
+ */
+public class TokenAffinityExecutor
+{
+    static final int MAX_QUEUED_TASKS = Integer.getInteger("cassandra.token_affinity_max_queued_tasks", 1024);
+
+    private final String name;
+    private final String jmxType;
+    // runs the requests of the workers whose queue is full
+    private final Supplier<LocalAwareExecutorService> overflow;
+    private volatile JMXEnabledThreadPoolExecutor[] workers;
+
+    TokenAffinityExecutor(String name, String jmxType, int workers, Supplier<LocalAwareExecutorService> overflow)
+    {
+        this.name = name;
+        this.jmxType = jmxType;
+        this.overflow = overflow;
+        JMXEnabledThreadPoolExecutor[] executors = new JMXEnabledThreadPoolExecutor[Math.max(1, workers)];
+        for (int i = 0; i < executors.length; i++)
+            executors[i] = newWorker(i);
+        this.workers = executors;
+    }
+
+    private JMXEnabledThreadPoolExecutor newWorker(int index)
+    {
+        return new JMXEnabledThreadPoolExecutor(1,
+                                                1,
+                                                Stage.KEEP_ALIVE_SECONDS,
+                                                TimeUnit.SECONDS,
+                                                new LinkedBlockingQueue<>(MAX_QUEUED_TASKS),
+                                                new NamedThreadFactory(name + "Worker_" + index),
+                                                jmxType,
+                                                (task, executor) -> {
+                                                    JMXEnabledThreadPoolExecutor worker = (JMXEnabledThreadPoolExecutor) executor;
+                                                    worker.onInitialRejection(task);
+                                                    worker.onFinalAccept(task);
+                                                    overflow.get().execute(task);
+                                                });
+    }
+
+    /**
+     * Sets the number of workers, creating the missing ones or shutting down those in excess once they have run the
+     * requests already queued for them. The partitions are spread over the new set of workers from then on.
+     */
+    synchronized void setWorkers(int count)
+    {
+        JMXEnabledThreadPoolExecutor[] current = workers;
+        count = Math.max(1, count);
+        if (count == current.length)
+            return;
+
+        JMXEnabledThreadPoolExecutor[] resized = Arrays.copyOf(current, count);
+        for (int i = current.length; i < count; i++)
+            resized[i] = newWorker(i);
+        workers = resized;
+
+        for (int i = count; i < current.length; i++)
+            current[i].shutdown();
+    }
+
+    /**
+     * @return the worker running the given request, or null if it is not for a single partition.
+     */
+    public LocalAwareExecutorService worker(Object request)
+    {
+        JMXEnabledThreadPoolExecutor[] workers = this.workers;
+        if (request instanceof IMutation)
+        {
+            IMutation mutation = (IMutation) request;
+            return workers[index(workers.length, mutation.getTableIds().iterator().next(), mutation.key())];
+        }
+        if (request instanceof SinglePartitionReadCommand)
+        {
+            SinglePartitionReadCommand command = (SinglePartitionReadCommand) request;
+            return workers[index(workers.length, command.metadata().id, command.partitionKey())];
+        }
+        return null;
+    }
+
+    private static int index(int workers, TableId table, DecoratedKey key)
+    {
+        ColumnFamilyStore cfs = Schema.instance.getColumnFamilyStoreInstance(table);
+        if (cfs != null)
+        {
+            Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+            int shards = memtable.shardCount();
+            if (shards > 1)
+                return (int) ((long) memtable.shardIndex(key) * workers / shards);
+        }
+        return Math.floorMod(key.getToken().hashCode(), workers);
+    }
+
+    List<ExecutorService> workers()
+    {
+        return Arrays.asList(workers.clone());
+    }
+}
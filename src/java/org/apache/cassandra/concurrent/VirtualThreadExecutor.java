@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.metrics.ThreadPoolMetrics;
+import org.apache.cassandra.utils.MBeanWrapper;
+import org.apache.cassandra.utils.concurrent.SimpleCondition;
+
+/**
+ * Runs each task on a thread of its own, up to a maximum number of tasks at once, queuing the others.
+ *
+ * The threads are virtual where the JVM supports them, so that tasks blocking on disk or on other nodes only cost a
+ * parked virtual thread, and the maximum pool size can be raised far beyond the number of threads a pool could afford.
+ * Elsewhere they are platform threads from a pool of the maximum size, resized along with it: as a task only reaches the
+ * threads once it holds one of the permits, there are never more tasks than platform threads, and the pool's idle
+ * threads stop after a minute.
+ *
+ * The {@link ExecutorLocals} of the submitting thread are carried over to the tasks, and the pool reports the same
+ * {@link ThreadPoolMetrics} as the other pools, counting running tasks as active. Once shut down, it rejects new tasks
+ * but still runs these already queued, and only terminates when they have all completed.
+ */
+public class VirtualThreadExecutor extends AbstractLocalAwareExecutorService implements VirtualThreadExecutorMBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+    private final ExecutorService threads;
+
+    private final AtomicInteger maximumPoolSize;
+    private final MaximumPoolSizeListener maximumPoolSizeListener;
+    public final String name;
+    private final String mbeanName;
+    @VisibleForTesting
+    public final ThreadPoolMetrics metrics;
+
+    private final ConcurrentLinkedQueue<FutureTask<?>> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicLong completedTasks = new AtomicLong();
+    // the submitters between their check for shutdown and the start of their task, which can't terminate before them
+    private final AtomicInteger submitting = new AtomicInteger();
+
+    private volatile boolean shuttingDown = false;
+    private final AtomicBoolean terminating = new AtomicBoolean();
+    private final SimpleCondition terminated = new SimpleCondition();
+
+    public VirtualThreadExecutor(int maximumPoolSize, MaximumPoolSizeListener maximumPoolSizeListener, String jmxPath, String name)
+    {
+        this.threads = newThreadPerTaskExecutor(name, maximumPoolSize);
+        this.name = name;
+        this.mbeanName = "org.apache.cassandra." + jmxPath + ":type=" + name;
+        this.maximumPoolSize = new AtomicInteger(maximumPoolSize);
+        this.maximumPoolSizeListener = maximumPoolSizeListener;
+        this.metrics = new ThreadPoolMetrics(this, jmxPath, name).register();
+        MBeanWrapper.instance.registerMBean(this, mbeanName);
+    }
+
+    /**
+     * @return an executor starting each task on a new virtual thread if the JVM supports them, or on one of at most
+     * {@code maximumPoolSize} platform threads otherwise.
+     */
+    private static ExecutorService newThreadPerTaskExecutor(String name, int maximumPoolSize)
+    {
+        try
+        {
+            // Thread.ofVirtual().name(name + ':', 0).factory(), looked up so that this builds with older JDKs
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            virtual = builder.getMethod("name", String.class, long.class).invoke(virtual, name + ':', 0L);
+            ThreadFactory factory = (ThreadFactory) builder.getMethod("factory").invoke(virtual);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            logger.info("Virtual threads are not supported by this JVM, {} will use up to {} platform threads", name, maximumPoolSize);
+            int size = Math.max(1, maximumPoolSize);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, Stage.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(), new NamedThreadFactory(name));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    // keeps as many platform threads as permits, if the JVM has no virtual threads
+    private void resizeThreads(int maximumPoolSize)
+    {
+        if (!(threads instanceof ThreadPoolExecutor))
+            return;
+
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) threads;
+        int size = Math.max(1, maximumPoolSize);
+        if (size > pool.getMaximumPoolSize())
+        {
+            pool.setMaximumPoolSize(size);
+            pool.setCorePoolSize(size);
+        }
+        else
+        {
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }
+    }
+
+    protected void addTask(FutureTask<?> task)
+    {
+        submitting.incrementAndGet();
+        try
+        {
+            if (shuttingDown)
+                throw new RejectedExecutionException(name + " has shut down");
+
+            tasks.add(task);
+            pendingTasks.incrementAndGet();
+            maybeStart();
+        }
+        finally
+        {
+            submitting.decrementAndGet();
+            maybeTerminate();
+        }
+    }
+
+    protected void onCompletion()
+    {
+        completedTasks.incrementAndGet();
+    }
+
+    // starts the queued tasks while there are fewer than the maximum running
+    private void maybeStart()
+    {
+        // a task is queued before its submitter checks for a permit, and a permit returned before its task checks the
+        // queue, so that one of the two always sees the other
+        while (!tasks.isEmpty() && takePermit())
+        {
+            FutureTask<?> task = tasks.poll();
+            if (task == null)
+            {
+                activeTasks.decrementAndGet();
+                continue;
+            }
+
+            pendingTasks.decrementAndGet();
+            try
+            {
+                threads.execute(() -> run(task));
+            }
+            catch (RejectedExecutionException e)
+            {
+                // shut down now while starting it, like the tasks still queued
+                activeTasks.decrementAndGet();
+                maybeTerminate();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Terminates once shut down, if no task is queued, running, or being submitted. The checks are made in the
+     * reverse order of a task's progress: a submitter queues its task before it leaves, and a task is queued until
+     * it holds a permit, so none can be missed.
+     */
+    private void maybeTerminate()
+    {
+        if (shuttingDown && submitting.get() == 0 && tasks.isEmpty() && activeTasks.get() == 0 && terminating.compareAndSet(false, true))
+        {
+            threads.shutdown();
+            terminated.signalAll();
+        }
+    }
+
+    private void run(FutureTask<?> task)
+    {
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            activeTasks.decrementAndGet();
+            maybeStart();
+            maybeTerminate();
+        }
+    }
+
+    private boolean takePermit()
+    {
+        while (true)
+        {
+            int active = activeTasks.get();
+            if (active >= maximumPoolSize.get())
+                return false;
+            if (activeTasks.compareAndSet(active, active + 1))
+                return true;
+        }
+    }
+
+    public void maybeExecuteImmediately(Runnable command)
+    {
+        FutureTask<?> task = newTaskFor(command, null);
+        submitting.incrementAndGet();
+        boolean permitted;
+        try
+        {
+            permitted = !shuttingDown && takePermit();
+        }
+        finally
+        {
+            submitting.decrementAndGet();
+        }
+
+        if (permitted)
+            run(task);
+        else
+            addTask(task);
+    }
+
+    public synchronized void shutdown()
+    {
+        if (shuttingDown)
+            return;
+        shuttingDown = true;
+        maybeTerminate();
+
+        metrics.release();
+        MBeanWrapper.instance.unregisterMBean(mbeanName);
+    }
+
+    public synchronized List<Runnable> shutdownNow()
+    {
+        shutdown();
+        List<Runnable> aborted = new ArrayList<>();
+        FutureTask<?> task;
+        while ((task = tasks.poll()) != null)
+        {
+            pendingTasks.decrementAndGet();
+            aborted.add(task);
+        }
+        threads.shutdownNow();
+        maybeTerminate();
+        return aborted;
+    }
+
+    public boolean isShutdown()
+    {
+        return shuttingDown;
+    }
+
+    public boolean isTerminated()
+    {
+        return terminated.isSignaled() && threads.isTerminated();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return terminated.await(timeout, unit) && threads.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int getPendingTaskCount()
+    {
+        return pendingTasks.get();
+    }
+
+    @Override
+    public long getCompletedTaskCount()
+    {
+        return completedTasks.get();
+    }
+
+    public int getActiveTaskCount()
+    {
+        return activeTasks.get();
+    }
+
+    public int getCorePoolSize()
+    {
+        return 0;
+    }
+
+    public void setCorePoolSize(int newCorePoolSize)
+    {
+        throw new IllegalArgumentException("Cannot resize core pool size of VirtualThreadExecutor");
+    }
+
+    @Override
+    public int getMaximumPoolSize()
+    {
+        return maximumPoolSize.get();
+    }
+
+    @Override
+    public synchronized void setMaximumPoolSize(int newMaximumPoolSize)
+    {
+        if (newMaximumPoolSize < 0)
+            throw new IllegalArgumentException("Maximum number of tasks must not be negative");
+
+        int oldMaximumPoolSize = maximumPoolSize.getAndSet(newMaximumPoolSize);
+        if (oldMaximumPoolSize == newMaximumPoolSize)
+            return;
+
+        logger.info("Resized {} maximum pool size from {} to {}", name, oldMaximumPoolSize, newMaximumPoolSize);
+        resizeThreads(newMaximumPoolSize);
+        if (maximumPoolSizeListener != null)
+            maximumPoolSizeListener.onUpdateMaximumPoolSize(newMaximumPoolSize);
+        maybeStart();
+    }
+
+    @Override
+    public int getMaxTasksQueued()
+    {
+        return Integer.MAX_VALUE;
+    }
+}
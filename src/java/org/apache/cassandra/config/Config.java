@@ -20,6 +20,8 @@ package org.apache.cassandra.config;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -77,6 +79,10 @@ public class Config
 
     public ParameterizedClass seed_provider;
     public DiskAccessMode disk_access_mode = DiskAccessMode.auto;
+    public String sstable_format = "big";
+    public boolean use_blocked_bloom_filters = false;
+    public Set<String> clustering_filter_tables = new HashSet<>();
+    public Set<String> partition_hashes_tables = new HashSet<>();
 
     public DiskFailurePolicy disk_failure_policy = DiskFailurePolicy.ignore;
     public CommitFailurePolicy commit_failure_policy = CommitFailurePolicy.stop;
@@ -118,6 +124,8 @@ public class Config
     public int concurrent_writes = 32;
     public int concurrent_counter_writes = 32;
     public int concurrent_materialized_view_writes = 32;
+    public LocalRequestScheduling local_request_scheduling = LocalRequestScheduling.shared;
+    public Set<String> virtual_thread_pools = new HashSet<>();
 
     @Deprecated
     public Integer concurrent_replicates = null;
@@ -190,6 +198,7 @@ public class Config
     public volatile long native_transport_max_concurrent_connections = -1L;
     public volatile long native_transport_max_concurrent_connections_per_ip = -1L;
     public boolean native_transport_flush_in_batches_legacy = false;
+    public volatile boolean native_transport_inline_reads_enabled = false;
     public volatile boolean native_transport_allow_older_protocols = true;
     public volatile long native_transport_max_concurrent_requests_in_bytes_per_ip = -1L;
     public volatile long native_transport_max_concurrent_requests_in_bytes = -1L;
@@ -218,6 +227,7 @@ public class Config
     public volatile Integer concurrent_compactors;
     public volatile int compaction_throughput_mb_per_sec = 16;
     public volatile int compaction_large_partition_warning_threshold_mb = 100;
+    public volatile int parallel_compaction_min_range_size_in_mb = 1024;
     public int min_free_space_per_drive_in_mb = 50;
 
     public volatile int concurrent_materialized_view_builders = 1;
@@ -244,6 +254,7 @@ public class Config
 
     // Commit Log
     public String commitlog_directory;
+    public String[] commitlog_stripe_directories = new String[0];
     public Integer commitlog_total_space_in_mb;
     public CommitLogSync commitlog_sync;
 
@@ -252,11 +263,14 @@ public class Config
      */
     public double commitlog_sync_batch_window_in_ms = Double.NaN;
     public double commitlog_sync_group_window_in_ms = Double.NaN;
+    public double commitlog_sync_target_latency_in_ms = Double.NaN;
     public int commitlog_sync_period_in_ms;
     public int commitlog_segment_size_in_mb = 32;
     public ParameterizedClass commitlog_compression;
     public FlushCompression flush_compression = FlushCompression.fast;
     public int commitlog_max_compression_buffers_in_pool = 3;
+    public CommitLogDiskAccessMode commitlog_disk_access_mode = CommitLogDiskAccessMode.mmap;
+    public int commitlog_max_recycled_segments = 3;
     public Integer periodic_commitlog_sync_lag_block_in_ms;
     public TransparentDataEncryptionOptions transparent_data_encryption_options = new TransparentDataEncryptionOptions();
 
@@ -285,6 +299,8 @@ public class Config
     public int hinted_handoff_throttle_in_kb = 1024;
     public int batchlog_replay_throttle_in_kb = 1024;
     public int max_hints_delivery_threads = 2;
+    public int max_hints_dispatch_pages_in_flight = 4;
+    public boolean hints_dispatch_coalescing_enabled = false;
     public int hints_flush_period_in_ms = 10000;
     public int max_hints_file_size_in_mb = 128;
     public ParameterizedClass hints_compression;
@@ -318,6 +334,13 @@ public class Config
 
     public boolean file_cache_enabled = Boolean.getBoolean("cassandra.file_cache_enabled");
 
+    /**
+     * Capacities of the file cache reserved to keyspaces (by keyspace name) or tables (by {@code <keyspace>.<table>}),
+     * in megabytes. The chunks of such keyspaces and tables are cached separately, within their quota, and the rest
+     * of the file cache is shared by the other tables.
+     */
+    public Map<String, Integer> file_cache_quotas_in_mb = new HashMap<>();
+
     /**
      * Because of the current {@link org.apache.cassandra.utils.memory.BufferPool} slab sizes of 64 kb, we
      * store in the file cache buffers that divide 64 kb, so we need to round the buffer sizes to powers of two.
@@ -435,6 +458,8 @@ public class Config
     public volatile ParameterizedClass back_pressure_strategy;
 
     public volatile int concurrent_validations;
+    public int concurrent_validation_subranges = 0;
+    public volatile int repair_row_level_sync_threshold_in_kb = 0;
     public RepairCommandPoolFullStrategy repair_command_pool_full_strategy = RepairCommandPoolFullStrategy.queue;
     public int repair_command_pool_size = concurrent_validations;
 
@@ -463,6 +488,7 @@ public class Config
     public volatile boolean automatic_sstable_upgrade = false;
     public volatile int max_concurrent_automatic_sstable_upgrades = 1;
     public boolean stream_entire_sstables = true;
+    public boolean stream_range_sliced_sstables = false;
 
     public volatile AuditLogOptions audit_logging_options = new AuditLogOptions();
     public volatile FullQueryLoggerOptions full_query_logging_options = new FullQueryLoggerOptions();
@@ -576,7 +602,16 @@ public class Config
     {
         periodic,
         batch,
-        group
+        group,
+        adaptive
+    }
+
+    public enum LocalRequestScheduling
+    {
+        /** Local reads and writes are run by whichever thread of the shared pool is free */
+        shared,
+        /** Local single partition reads and writes are run by a fixed thread of their stage, picked by their token */
+        token_affinity
     }
 
     public enum FlushCompression
@@ -597,6 +632,16 @@ public class Config
         mmap,
         mmap_index_only,
         standard,
+        /** Data files are read with direct I/O, bypassing the page cache; index files are accessed as with auto */
+        direct,
+    }
+
+    public enum CommitLogDiskAccessMode
+    {
+        /** Uncompressed segments are memory-mapped */
+        mmap,
+        /** Uncompressed segments are written with direct I/O from aligned buffers, and their files are recycled */
+        direct
     }
 
     public enum MemtableAllocationType
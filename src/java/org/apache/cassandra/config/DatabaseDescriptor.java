@@ -40,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.audit.AuditLogOptions;
+import org.apache.cassandra.cache.ChunkCache;
 import org.apache.cassandra.fql.FullQueryLoggerOptions;
 import org.apache.cassandra.auth.AllowAllInternodeAuthenticator;
 import org.apache.cassandra.auth.AuthConfig;
@@ -54,9 +55,11 @@ import org.apache.cassandra.db.commitlog.AbstractCommitLogSegmentManager;
 import org.apache.cassandra.db.commitlog.CommitLog;
 import org.apache.cassandra.db.commitlog.CommitLogSegmentManagerCDC;
 import org.apache.cassandra.db.commitlog.CommitLogSegmentManagerStandard;
+import org.apache.cassandra.db.commitlog.CommitLogSegmentManagerStriped;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
 import org.apache.cassandra.io.util.DiskOptimizationStrategy;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.SpinningDiskOptimizationStrategy;
@@ -118,6 +121,8 @@ public class DatabaseDescriptor
     private static String paritionerName;
 
     private static Config.DiskAccessMode indexAccessMode;
+    // null until the configuration is applied, not initialized here to keep the sstable classes out of client mode
+    private static SSTableFormat.Type sstableFormat;
 
     private static IAuthenticator authenticator;
     private static IAuthorizer authorizer;
@@ -155,7 +160,9 @@ public class DatabaseDescriptor
 
     private static Function<CommitLog, AbstractCommitLogSegmentManager> commitLogSegmentMgrProvider = c -> DatabaseDescriptor.isCDCEnabled()
                                        ? new CommitLogSegmentManagerCDC(c, DatabaseDescriptor.getCommitLogLocation())
-                                       : new CommitLogSegmentManagerStandard(c, DatabaseDescriptor.getCommitLogLocation());
+                                       : DatabaseDescriptor.getCommitLogStripeLocations().length > 0
+                                         ? new CommitLogSegmentManagerStriped(c, DatabaseDescriptor.getCommitLogLocations())
+                                         : new CommitLogSegmentManagerStandard(c, DatabaseDescriptor.getCommitLogLocation());
 
     public static void daemonInitialization() throws ConfigurationException
     {
@@ -395,6 +402,18 @@ public class DatabaseDescriptor
             }
             logger.debug("Syncing log with a group window of {}", conf.commitlog_sync_period_in_ms);
         }
+        else if (conf.commitlog_sync == CommitLogSync.adaptive)
+        {
+            if (Double.isNaN(conf.commitlog_sync_target_latency_in_ms) || conf.commitlog_sync_target_latency_in_ms <= 0d)
+            {
+                throw new ConfigurationException("Missing value for commitlog_sync_target_latency_in_ms: positive double value expected.", false);
+            }
+            else if (conf.commitlog_sync_period_in_ms != 0)
+            {
+                throw new ConfigurationException("Adaptive sync specified, but commitlog_sync_period_in_ms found. Only specify commitlog_sync_target_latency_in_ms when using adaptive sync", false);
+            }
+            logger.debug("Syncing log with a target latency of {}ms", conf.commitlog_sync_target_latency_in_ms);
+        }
         else
         {
             if (conf.commitlog_sync_period_in_ms <= 0)
@@ -415,6 +434,11 @@ public class DatabaseDescriptor
             indexAccessMode = conf.disk_access_mode;
             logger.info("DiskAccessMode 'auto' determined to be {}, indexAccessMode is {}", conf.disk_access_mode, indexAccessMode);
         }
+        else if (conf.disk_access_mode == Config.DiskAccessMode.direct)
+        {
+            indexAccessMode = hasLargeAddressSpace() ? Config.DiskAccessMode.mmap : Config.DiskAccessMode.standard;
+            logger.info("DiskAccessMode is {}, indexAccessMode is {}", conf.disk_access_mode, indexAccessMode);
+        }
         else if (conf.disk_access_mode == Config.DiskAccessMode.mmap_index_only)
         {
             conf.disk_access_mode = Config.DiskAccessMode.standard;
@@ -427,6 +451,15 @@ public class DatabaseDescriptor
             logger.info("DiskAccessMode is {}, indexAccessMode is {}", conf.disk_access_mode, indexAccessMode);
         }
 
+        try
+        {
+            sstableFormat = SSTableFormat.Type.validate(conf.sstable_format);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ConfigurationException("Unknown sstable_format " + conf.sstable_format, false);
+        }
+
         if (conf.gc_warn_threshold_in_ms < 0)
         {
             throw new ConfigurationException("gc_warn_threshold_in_ms must be a positive integer");
@@ -461,6 +494,10 @@ public class DatabaseDescriptor
         if (conf.file_cache_size_in_mb == null)
             conf.file_cache_size_in_mb = Math.min(512, (int) (Runtime.getRuntime().maxMemory() / (4 * 1048576)));
 
+        applyFileCacheQuotas(conf);
+        applyClusteringFilterTables(conf);
+        applyPartitionHashesTables(conf);
+
         // round down for SSDs and round up for spinning disks
         if (conf.file_cache_round_up == null)
             conf.file_cache_round_up = conf.disk_optimization_strategy == Config.DiskOptimizationStrategy.spinning;
@@ -563,6 +600,15 @@ public class DatabaseDescriptor
             }
         }
 
+        if (conf.commitlog_disk_access_mode == Config.CommitLogDiskAccessMode.direct)
+        {
+            // compressed and encrypted segments are written from buffers of their own, see FileDirectSegment
+            if (conf.commitlog_compression != null)
+                throw new ConfigurationException("commitlog_disk_access_mode: direct cannot be used with commitlog_compression", false);
+            if (conf.transparent_data_encryption_options.enabled)
+                throw new ConfigurationException("commitlog_disk_access_mode: direct cannot be used with an encrypted commit log", false);
+        }
+
         if (conf.cdc_enabled)
         {
             // Windows memory-mapped CommitLog files is incompatible with CDC as we hard-link files in cdc_raw. Confirm we don't have both enabled.
@@ -651,6 +697,8 @@ public class DatabaseDescriptor
         if (conf.hints_directory.equals(conf.saved_caches_directory))
             throw new ConfigurationException("saved_caches_directory must not be the same as the hints_directory", false);
 
+        applyCommitLogStripeDirectories(conf);
+
         if (conf.memtable_flush_writers == 0)
         {
             conf.memtable_flush_writers = conf.data_file_directories.length == 1 ? 2 : 1;
@@ -805,6 +853,9 @@ public class DatabaseDescriptor
         if (conf.otc_coalescing_enough_coalesced_messages <= 0)
             throw new ConfigurationException("otc_coalescing_enough_coalesced_messages must be positive", false);
 
+        if (conf.max_hints_dispatch_pages_in_flight <= 0)
+            throw new ConfigurationException("max_hints_dispatch_pages_in_flight must be positive, but was " + conf.max_hints_dispatch_pages_in_flight, false);
+
         if (conf.server_encryption_options != null)
         {
             conf.server_encryption_options.applyConfig();
@@ -852,6 +903,85 @@ public class DatabaseDescriptor
             throw new ConfigurationException("To set concurrent_validations > concurrent_compactors, " +
                                              "set the system property cassandra.allow_unlimited_concurrent_validations=true");
         }
+
+        if (config.concurrent_validation_subranges < 0)
+            throw new ConfigurationException("concurrent_validation_subranges must not be negative, but was " + config.concurrent_validation_subranges, false);
+
+        if (config.repair_row_level_sync_threshold_in_kb < 0)
+            throw new ConfigurationException("repair_row_level_sync_threshold_in_kb must not be negative, but was " + config.repair_row_level_sync_threshold_in_kb, false);
+    }
+
+    @VisibleForTesting
+    static void applyFileCacheQuotas(Config config)
+    {
+        if (config.file_cache_quotas_in_mb == null)
+            config.file_cache_quotas_in_mb = new HashMap<>();
+        long fileCacheQuotas = 0;
+        for (Map.Entry<String, Integer> quota : config.file_cache_quotas_in_mb.entrySet())
+        {
+            if (quota.getValue() == null || quota.getValue() <= 0)
+                throw new ConfigurationException("file_cache_quotas_in_mb must be positive, but was " + quota.getValue() + " for " + quota.getKey(), false);
+            if (quota.getKey().split("\\.", -1).length > 2)
+                throw new ConfigurationException("file_cache_quotas_in_mb keys must be <keyspace> or <keyspace>.<table>, but was " + quota.getKey(), false);
+            fileCacheQuotas += quota.getValue();
+        }
+        if (fileCacheQuotas > 0 && fileCacheQuotas >= config.file_cache_size_in_mb - ChunkCache.RESERVED_POOL_SPACE_IN_MB)
+            throw new ConfigurationException(String.format("The total of file_cache_quotas_in_mb (%d) must be less than file_cache_size_in_mb (%d) minus the %dMB reserved for buffer pooling",
+                                                           fileCacheQuotas, config.file_cache_size_in_mb, ChunkCache.RESERVED_POOL_SPACE_IN_MB), false);
+    }
+
+    @VisibleForTesting
+    static void applyClusteringFilterTables(Config config)
+    {
+        if (config.clustering_filter_tables == null)
+            config.clustering_filter_tables = new HashSet<>();
+        validateTableNames("clustering_filter_tables", config.clustering_filter_tables);
+    }
+
+    @VisibleForTesting
+    static void applyPartitionHashesTables(Config config)
+    {
+        if (config.partition_hashes_tables == null)
+            config.partition_hashes_tables = new HashSet<>();
+        validateTableNames("partition_hashes_tables", config.partition_hashes_tables);
+    }
+
+    private static void validateTableNames(String option, Set<String> names)
+    {
+        for (String name : names)
+        {
+            if (name == null || name.isEmpty() || name.split("\\.", -1).length > 2)
+                throw new ConfigurationException(option + " entries must be <keyspace> or <keyspace>.<table>, but was " + name, false);
+        }
+    }
+
+    @VisibleForTesting
+    static void applyCommitLogStripeDirectories(Config config)
+    {
+        if (config.commitlog_stripe_directories == null)
+            config.commitlog_stripe_directories = new String[0];
+        if (config.commitlog_stripe_directories.length == 0)
+            return;
+
+        if (config.cdc_enabled)
+            throw new ConfigurationException("commitlog_stripe_directories cannot be used with cdc_enabled", false);
+
+        Set<String> stripeDirectories = new HashSet<>();
+        for (String stripeDirectory : config.commitlog_stripe_directories)
+        {
+            if (stripeDirectory == null)
+                throw new ConfigurationException("commitlog_stripe_directories must not contain empty entry", false);
+            if (!stripeDirectories.add(stripeDirectory))
+                throw new ConfigurationException("commitlog_stripe_directories must not contain the same directory twice, but " + stripeDirectory + " was", false);
+            if (stripeDirectory.equals(config.commitlog_directory))
+                throw new ConfigurationException("commitlog_directory must not be the same as any commitlog_stripe_directories", false);
+            if (Arrays.asList(config.data_file_directories).contains(stripeDirectory) || stripeDirectory.equals(config.local_system_data_file_directory))
+                throw new ConfigurationException("data_file_directories must not be the same as any commitlog_stripe_directories", false);
+            if (stripeDirectory.equals(config.hints_directory))
+                throw new ConfigurationException("hints_directory must not be the same as any commitlog_stripe_directories", false);
+            if (stripeDirectory.equals(config.saved_caches_directory))
+                throw new ConfigurationException("saved_caches_directory must not be the same as any commitlog_stripe_directories", false);
+        }
     }
 
     @VisibleForTesting
@@ -1397,6 +1527,8 @@ public class DatabaseDescriptor
             if (conf.commitlog_directory == null)
                 throw new ConfigurationException("commitlog_directory must be specified", false);
             FileUtils.createDirectory(conf.commitlog_directory);
+            for (String stripeDirectory : conf.commitlog_stripe_directories)
+                FileUtils.createDirectory(stripeDirectory);
 
             if (conf.hints_directory == null)
                 throw new ConfigurationException("hints_directory must be specified", false);
@@ -1732,6 +1864,25 @@ public class DatabaseDescriptor
         conf.concurrent_reads = concurrent_reads;
     }
 
+    public static Config.LocalRequestScheduling getLocalRequestScheduling()
+    {
+        return conf.local_request_scheduling;
+    }
+
+    @VisibleForTesting
+    public static void setLocalRequestScheduling(Config.LocalRequestScheduling scheduling)
+    {
+        conf.local_request_scheduling = scheduling;
+    }
+
+    /**
+     * @return whether the tasks of the given pool run on virtual threads, because it is listed in virtual_thread_pools
+     */
+    public static boolean useVirtualThreads(String pool)
+    {
+        return conf.virtual_thread_pools != null && conf.virtual_thread_pools.contains(pool);
+    }
+
     public static int getConcurrentWriters()
     {
         return conf.concurrent_writes;
@@ -1799,6 +1950,16 @@ public class DatabaseDescriptor
         conf.compaction_throughput_mb_per_sec = value;
     }
 
+    public static long getParallelCompactionMinRangeSize()
+    {
+        return ByteUnit.MEBI_BYTES.toBytes(conf.parallel_compaction_min_range_size_in_mb);
+    }
+
+    public static void setParallelCompactionMinRangeSizeInMB(int value)
+    {
+        conf.parallel_compaction_min_range_size_in_mb = value;
+    }
+
     public static long getCompactionLargePartitionWarningThreshold() { return ByteUnit.MEBI_BYTES.toBytes(conf.compaction_large_partition_warning_threshold_mb); }
 
     public static int getConcurrentValidations()
@@ -1812,6 +1973,23 @@ public class DatabaseDescriptor
         conf.concurrent_validations = value;
     }
 
+    public static int getConcurrentValidationSubranges()
+    {
+        return conf.concurrent_validation_subranges;
+    }
+
+    public static long getRepairRowLevelSyncThreshold()
+    {
+        return conf.repair_row_level_sync_threshold_in_kb * 1024L;
+    }
+
+    public static void setRepairRowLevelSyncThresholdInKb(int threshold)
+    {
+        if (threshold < 0)
+            throw new IllegalArgumentException("repair_row_level_sync_threshold_in_kb must not be negative, but was " + threshold);
+        conf.repair_row_level_sync_threshold_in_kb = threshold;
+    }
+
     public static int getConcurrentViewBuilders()
     {
         return conf.concurrent_materialized_view_builders;
@@ -1913,6 +2091,28 @@ public class DatabaseDescriptor
         return conf.commitlog_directory;
     }
 
+    /**
+     * @return the directories the commit log is striped across, besides the commitlog_directory
+     */
+    public static String[] getCommitLogStripeLocations()
+    {
+        return conf.commitlog_stripe_directories;
+    }
+
+    /**
+     * @return the commitlog_directory followed by the directories the commit log is striped across, if any
+     */
+    public static String[] getCommitLogLocations()
+    {
+        return ArrayUtils.addFirst(conf.commitlog_stripe_directories, conf.commitlog_directory);
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogStripeLocations(String... values)
+    {
+        conf.commitlog_stripe_directories = values;
+    }
+
     @VisibleForTesting
     public static void setCommitLogLocation(String value)
     {
@@ -1929,6 +2129,17 @@ public class DatabaseDescriptor
         conf.commitlog_compression = compressor;
     }
 
+    public static Config.CommitLogDiskAccessMode getCommitLogDiskAccessMode()
+    {
+        return conf.commitlog_disk_access_mode;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogDiskAccessMode(Config.CommitLogDiskAccessMode mode)
+    {
+        conf.commitlog_disk_access_mode = mode;
+    }
+
     public static Config.FlushCompression getFlushCompression()
     {
         return conf.flush_compression;
@@ -1954,6 +2165,20 @@ public class DatabaseDescriptor
         conf.commitlog_max_compression_buffers_in_pool = buffers;
     }
 
+    /**
+     * Maximum number of discarded direct I/O segment files kept, in each commit log directory, for new segments to be
+     * written to.
+     */
+    public static int getCommitLogMaxRecycledSegments()
+    {
+        return conf.commitlog_max_recycled_segments;
+    }
+
+    public static void setCommitLogMaxRecycledSegments(int segments)
+    {
+        conf.commitlog_max_recycled_segments = segments;
+    }
+
     public static int getMaxMutationSize()
     {
         return (int) ByteUnit.KIBI_BYTES.toBytes(conf.max_mutation_size_in_kb);
@@ -2284,6 +2509,26 @@ public class DatabaseDescriptor
         conf.commitlog_sync_group_window_in_ms = windowMillis;
     }
 
+    public static double getCommitLogSyncTargetLatency()
+    {
+        return conf.commitlog_sync_target_latency_in_ms;
+    }
+
+    public static void setCommitLogSyncTargetLatency(double latencyMillis)
+    {
+        conf.commitlog_sync_target_latency_in_ms = latencyMillis;
+    }
+
+    public static boolean isNativeTransportInlineReadsEnabled()
+    {
+        return conf.native_transport_inline_reads_enabled;
+    }
+
+    public static void setNativeTransportInlineReadsEnabled(boolean enabled)
+    {
+        conf.native_transport_inline_reads_enabled = enabled;
+    }
+
     public static int getNativeTransportReceiveQueueCapacityInBytes()
     {
         return conf.native_transport_receive_queue_capacity_in_bytes;
@@ -2366,6 +2611,47 @@ public class DatabaseDescriptor
         indexAccessMode = mode;
     }
 
+    public static SSTableFormat.Type getSSTableFormat()
+    {
+        return sstableFormat == null ? SSTableFormat.Type.BIG : sstableFormat;
+    }
+
+    // Do not use outside unit tests.
+    @VisibleForTesting
+    public static void setSSTableFormat(SSTableFormat.Type format)
+    {
+        sstableFormat = format;
+    }
+
+    public static boolean useBlockedBloomFilters()
+    {
+        return conf.use_blocked_bloom_filters;
+    }
+
+    /**
+     * @return whether new sstables of the given table get a clustering range filter, because either the table or its
+     * keyspace is listed in clustering_filter_tables
+     */
+    public static boolean isClusteringFilterEnabled(String keyspace, String table)
+    {
+        return isListed(conf.clustering_filter_tables, keyspace, table);
+    }
+
+    /**
+     * @return whether new sstables of the given table record the validation hashes of their partitions, because
+     * either the table or its keyspace is listed in partition_hashes_tables
+     */
+    public static boolean isPartitionHashesEnabled(String keyspace, String table)
+    {
+        return isListed(conf.partition_hashes_tables, keyspace, table);
+    }
+
+    private static boolean isListed(Set<String> tables, String keyspace, String table)
+    {
+        return tables != null && !tables.isEmpty()
+               && (tables.contains(keyspace) || tables.contains(keyspace + '.' + table));
+    }
+
     public static void setDiskFailurePolicy(Config.DiskFailurePolicy policy)
     {
         conf.disk_failure_policy = policy;
@@ -2551,6 +2837,26 @@ public class DatabaseDescriptor
         return conf.max_hints_delivery_threads;
     }
 
+    public static int getMaxHintsDispatchPagesInFlight()
+    {
+        return conf.max_hints_dispatch_pages_in_flight;
+    }
+
+    public static void setMaxHintsDispatchPagesInFlight(int pages)
+    {
+        conf.max_hints_dispatch_pages_in_flight = pages;
+    }
+
+    public static boolean isHintsDispatchCoalescingEnabled()
+    {
+        return conf.hints_dispatch_coalescing_enabled;
+    }
+
+    public static void setHintsDispatchCoalescingEnabled(boolean enabled)
+    {
+        conf.hints_dispatch_coalescing_enabled = enabled;
+    }
+
     public static int getHintsFlushPeriodInMS()
     {
         return conf.hints_flush_period_in_ms;
@@ -2598,6 +2904,17 @@ public class DatabaseDescriptor
         return conf.file_cache_size_in_mb;
     }
 
+    /**
+     * @return the capacities in bytes of the file cache quotas, by keyspace name or {@code <keyspace>.<table>}
+     */
+    public static Map<String, Long> getFileCacheQuotas()
+    {
+        Map<String, Long> quotas = new HashMap<>();
+        if (conf.file_cache_quotas_in_mb != null)
+            conf.file_cache_quotas_in_mb.forEach((name, quota) -> quotas.put(name, quota * 1024L * 1024L));
+        return quotas;
+    }
+
     public static int getNetworkingCacheSizeInMB()
     {
         if (conf.networking_cache_size_in_mb == null)
@@ -2771,6 +3088,11 @@ public class DatabaseDescriptor
         return conf.stream_entire_sstables;
     }
 
+    public static boolean streamRangeSlicedSSTables()
+    {
+        return conf.stream_range_sliced_sstables;
+    }
+
     public static String getLocalDataCenter()
     {
         return localDC;
@@ -29,6 +29,8 @@ import org.apache.cassandra.db.marshal.ValueAccessor;
 import org.apache.cassandra.db.rows.Row;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.serializers.MarshalException;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import org.apache.cassandra.io.sstable.IndexInfo;
 
@@ -186,6 +188,52 @@ public class ClusteringComparator implements Comparator<Clusterable>
         return compareComponent(i, v1.get(i), v1.accessor(), v2.get(i), v2.accessor());
     }
 
+    /**
+     * Returns a byte-comparable representation of the given prefix, whose unsigned lexicographic order is the
+     * same as the order defined by {@link #compare(ClusteringPrefix, ClusteringPrefix)}.
+     */
+    public <V> ByteComparable asByteComparable(ClusteringPrefix<V> clustering)
+    {
+        return () -> asComparableBytes(clustering);
+    }
+
+    public <V> ByteSource asComparableBytes(ClusteringPrefix<V> clustering)
+    {
+        ValueAccessor<V> accessor = clustering.accessor();
+        ByteSource[] components = new ByteSource[clustering.size()];
+        for (int i = 0; i < components.length; i++)
+        {
+            V value = clustering.get(i);
+            components[i] = value == null ? null : subtype(i).asComparableBytes(accessor, value);
+        }
+        return ByteSource.withTerminator(terminator(clustering.kind()), components);
+    }
+
+    /**
+     * The terminator of a prefix encodes its kind: bounds that sort before the clusterings they prefix use a
+     * terminator lower than any component separator, and the ones that sort after them a higher one.
+     */
+    private static int terminator(ClusteringPrefix.Kind kind)
+    {
+        switch (kind)
+        {
+            case EXCL_END_BOUND:
+            case INCL_START_BOUND:
+            case EXCL_END_INCL_START_BOUNDARY:
+                return ByteSource.LT_NEXT_COMPONENT;
+            case STATIC_CLUSTERING:
+                return ByteSource.STATIC_TERMINATOR;
+            case CLUSTERING:
+                return ByteSource.TERMINATOR;
+            case INCL_END_EXCL_START_BOUNDARY:
+            case INCL_END_BOUND:
+            case EXCL_START_BOUND:
+                return ByteSource.GT_NEXT_COMPONENT;
+            default:
+                throw new AssertionError();
+        }
+    }
+
     /**
      * Returns whether this clustering comparator is compatible with the provided one,
      * that is if the provided one can be safely replaced by this new one.
@@ -103,7 +103,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     /*
     We keep a pool of threads for each data directory, size of each pool is memtable_flush_writers.
     When flushing we start a Flush runnable in the flushExecutor. Flush calculates how to split the
-    memtable ranges over the existing data directories and creates a FlushRunnable for each of the directories.
+    memtable ranges over the existing data directories and creates a FlushRunnable for each of the directories
+    (or several per directory if the memtable asks for its content to be split further, see Memtable.flushSplitPoints).
     The FlushRunnables are executed in the perDiskflushExecutors and the Flush will block until all FlushRunnables
     are finished. By having flushExecutor size the same size as each of the perDiskflushExecutors we make sure we can
     have that many flushes going at the same time.
@@ -249,11 +250,22 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         indexManager.reload();
 
         // If the CF comparator has changed, we need to change the memtable,
-        // because the old one still aliases the previous comparator.
-        if (data.getView().getCurrentMemtable().initialComparator != metadata().comparator)
+        // because the old one still aliases the previous comparator. The same applies if the memtable
+        // implementation or its options have changed.
+        Memtable currentMemtable = data.getView().getCurrentMemtable();
+        if (currentMemtable.initialComparator != metadata().comparator
+            || !currentMemtable.initialParams.equals(metadata().params.memtable))
             switchMemtable();
     }
 
+    /**
+     * Creates a new memtable for this table, using the implementation configured by the table's memtable options.
+     */
+    public Memtable createMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound)
+    {
+        return metadata().params.memtable.factory().create(commitLogLowerBound, this);
+    }
+
     void scheduleFlush()
     {
         int period = metadata().params.memtableFlushPeriodInMs;
@@ -387,7 +399,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         // Create Memtable only on online
         Memtable initialMemtable = null;
         if (DatabaseDescriptor.isDaemonInitialized())
-            initialMemtable = new Memtable(new AtomicReference<>(CommitLog.instance.getCurrentPosition()), this);
+            initialMemtable = createMemtable(new AtomicReference<>(CommitLog.instance.getCurrentPosition()));
         data = new Tracker(initialMemtable, loadSSTables);
 
         // Note that this needs to happen before we load the first sstables, or the global sstable tracker will not
@@ -581,6 +593,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         // unregister metrics
         metric.release();
+        if (ChunkCache.instance != null)
+            ChunkCache.instance.metrics.releaseTable(keyspace.getName(), name);
     }
 
 
@@ -1030,7 +1044,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 // switch all memtables, regardless of their dirty status, setting the barrier
                 // so that we can reach a coordinated decision about cleanliness once they
                 // are no longer possible to be modified
-                Memtable newMemtable = new Memtable(commitLogUpperBound, cfs);
+                Memtable newMemtable = cfs.createMemtable(commitLogUpperBound);
                 Memtable oldMemtable = cfs.data.switchMemtable(truncate, newMemtable);
                 oldMemtable.setDiscarding(writeBarrier, commitLogUpperBound);
                 memtables.add(oldMemtable);
@@ -1121,7 +1135,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                     ExecutorService[] executors = perDiskflushExecutors.getExecutorsFor(keyspace.getName(), name);
 
                     for (int i = 0; i < flushRunnables.size(); i++)
-                        futures.add(executors[i].submit(flushRunnables.get(i)));
+                        futures.add(executors[flushRunnables.get(i).diskIndex].submit(flushRunnables.get(i)));
 
                     /**
                      * we can flush 2is as soon as the barrier completes, as they will be consistent with (or ahead of) the
@@ -1228,7 +1242,10 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         CommitLogPosition lastReplayPosition;
         while (true)
         {
-            lastReplayPosition = new Memtable.LastCommitLogPosition((CommitLog.instance.getCurrentPosition()));
+            CommitLogPosition[] stripePositions = CommitLog.instance.getStripePositions();
+            lastReplayPosition = stripePositions == null
+                                 ? new Memtable.LastCommitLogPosition((CommitLog.instance.getCurrentPosition()))
+                                 : new Memtable.LastCommitLogPosition(stripePositions);
             CommitLogPosition currentLast = commitLogUpperBound.get();
             if ((currentLast == null || currentLast.compareTo(lastReplayPosition) <= 0)
                 && commitLogUpperBound.compareAndSet(currentLast, lastReplayPosition))
@@ -2216,7 +2233,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         for (final ColumnFamilyStore cfs : concatWithIndexes())
         {
             cfs.runWithCompactionsDisabled((Callable<Void>) () -> {
-                cfs.data.reset(new Memtable(new AtomicReference<>(CommitLogPosition.NONE), cfs));
+                cfs.data.reset(cfs.createMemtable(new AtomicReference<>(CommitLogPosition.NONE)));
                 return null;
             }, true, false);
         }
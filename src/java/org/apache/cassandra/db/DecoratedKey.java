@@ -26,6 +26,7 @@ import org.apache.cassandra.dht.Token.KeyBound;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.MurmurHash;
 import org.apache.cassandra.utils.IFilter.FilterKey;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * Represents a decorated key, handy for certain operations
@@ -118,6 +119,15 @@ public abstract class DecoratedKey implements PartitionPosition, FilterKey
         return PartitionPosition.Kind.ROW_KEY;
     }
 
+    public ByteSource asComparableBytes()
+    {
+        // The token is followed by the key, which compares as unsigned bytes; token bounds use a separator
+        // that sorts before or after the key's (see Token.KeyBound.asComparableBytes).
+        return ByteSource.withTerminator(ByteSource.TERMINATOR,
+                                         getToken().asComparableBytes(),
+                                         ByteSource.of(getKey()));
+    }
+
     @Override
     public String toString()
     {
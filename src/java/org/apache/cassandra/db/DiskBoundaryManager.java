@@ -19,6 +19,7 @@
 package org.apache.cassandra.db;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -36,6 +37,7 @@ import org.apache.cassandra.locator.TokenMetadata;
 import org.apache.cassandra.service.PendingRangeCalculatorService;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Pair;
 
 public class DiskBoundaryManager
 {
@@ -69,6 +71,33 @@ public class DiskBoundaryManager
     }
 
     private static DiskBoundaries getDiskBoundaryValue(ColumnFamilyStore cfs)
+    {
+        Pair<RangesAtEndpoint, Long> ranges = getLocalRanges(cfs);
+        RangesAtEndpoint localRanges = ranges.left;
+        long ringVersion = ranges.right;
+
+        int directoriesVersion;
+        Directories.DataDirectory[] dirs;
+        do
+        {
+            directoriesVersion = DisallowedDirectories.getDirectoriesVersion();
+            dirs = cfs.getDirectories().getWriteableLocations();
+        }
+        while (directoriesVersion != DisallowedDirectories.getDirectoriesVersion()); // if directoriesVersion has changed we need to recalculate
+
+        if (localRanges == null || localRanges.isEmpty())
+            return new DiskBoundaries(cfs, dirs, null, ringVersion, directoriesVersion);
+
+        List<PartitionPosition> positions = getDiskBoundaries(localRanges, cfs.getPartitioner(), dirs);
+
+        return new DiskBoundaries(cfs, dirs, positions, ringVersion, directoriesVersion);
+    }
+
+    /**
+     * Returns the ranges owned by this node for the keyspace of the table, together with the ring version they
+     * were computed for.
+     */
+    private static Pair<RangesAtEndpoint, Long> getLocalRanges(ColumnFamilyStore cfs)
     {
         RangesAtEndpoint localRanges;
 
@@ -96,21 +125,32 @@ public class DiskBoundaryManager
         while (ringVersion != tmd.getRingVersion()); // if ringVersion is different here it means that
                                                      // it might have changed before we calculated localRanges - recalculate
 
-        int directoriesVersion;
-        Directories.DataDirectory[] dirs;
-        do
-        {
-            directoriesVersion = DisallowedDirectories.getDirectoriesVersion();
-            dirs = cfs.getDirectories().getWriteableLocations();
-        }
-        while (directoriesVersion != DisallowedDirectories.getDirectoriesVersion()); // if directoriesVersion has changed we need to recalculate
+        return Pair.create(localRanges, ringVersion);
+    }
 
-        if (localRanges == null || localRanges.isEmpty())
-            return new DiskBoundaries(cfs, dirs, null, ringVersion, directoriesVersion);
+    /**
+     * Splits the ranges owned by this node for the table into the given number of parts of roughly equal size.
+     *
+     * As with the disk boundaries, what is returned are upper bounds for the parts, the last of which is always the
+     * partitioner maximum token's upper key bound. If the local ranges are not known yet, the whole token ring is
+     * split instead. Returns null if the partitioner does not support splitting.
+     */
+    public static List<PartitionPosition> getLocalRangeBoundaries(ColumnFamilyStore cfs, int parts)
+    {
+        IPartitioner partitioner = cfs.getPartitioner();
+        if (!partitioner.splitter().isPresent())
+            return null;
 
-        List<PartitionPosition> positions = getDiskBoundaries(localRanges, cfs.getPartitioner(), dirs);
+        Splitter splitter = partitioner.splitter().get();
+        RangesAtEndpoint localRanges = getLocalRanges(cfs).left;
+        List<Splitter.WeightedRange> weightedRanges;
+        if (localRanges == null || localRanges.isEmpty())
+            weightedRanges = Collections.singletonList(new Splitter.WeightedRange(1.0, new Range<>(partitioner.getMinimumToken(),
+                                                                                                   partitioner.getMaximumToken())));
+        else
+            weightedRanges = getWeightedRanges(localRanges);
 
-        return new DiskBoundaries(cfs, dirs, positions, ringVersion, directoriesVersion);
+        return toBoundaries(splitter.splitOwnedRanges(parts, weightedRanges, false), partitioner);
     }
 
     /**
@@ -129,6 +169,18 @@ public class DiskBoundaryManager
         Splitter splitter = partitioner.splitter().get();
         boolean dontSplitRanges = DatabaseDescriptor.getNumTokens() > 1;
 
+        List<Splitter.WeightedRange> weightedRanges = getWeightedRanges(replicas);
+
+        List<Token> boundaries = splitter.splitOwnedRanges(dataDirectories.length, weightedRanges, dontSplitRanges);
+        // If we can't split by ranges, split evenly to ensure utilisation of all disks
+        if (dontSplitRanges && boundaries.size() < dataDirectories.length)
+            boundaries = splitter.splitOwnedRanges(dataDirectories.length, weightedRanges, false);
+
+        return toBoundaries(boundaries, partitioner);
+    }
+
+    private static List<Splitter.WeightedRange> getWeightedRanges(RangesAtEndpoint replicas)
+    {
         List<Splitter.WeightedRange> weightedRanges = new ArrayList<>(replicas.size());
         // note that Range.sort unwraps any wraparound ranges, so we need to sort them here
         for (Range<Token> r : Range.sort(replicas.onlyFull().ranges()))
@@ -138,16 +190,15 @@ public class DiskBoundaryManager
             weightedRanges.add(new Splitter.WeightedRange(0.1, r));
 
         weightedRanges.sort(Comparator.comparing(Splitter.WeightedRange::left));
+        return weightedRanges;
+    }
 
-        List<Token> boundaries = splitter.splitOwnedRanges(dataDirectories.length, weightedRanges, dontSplitRanges);
-        // If we can't split by ranges, split evenly to ensure utilisation of all disks
-        if (dontSplitRanges && boundaries.size() < dataDirectories.length)
-            boundaries = splitter.splitOwnedRanges(dataDirectories.length, weightedRanges, false);
-
-        List<PartitionPosition> diskBoundaries = new ArrayList<>();
+    private static List<PartitionPosition> toBoundaries(List<Token> boundaries, IPartitioner partitioner)
+    {
+        List<PartitionPosition> positions = new ArrayList<>();
         for (int i = 0; i < boundaries.size() - 1; i++)
-            diskBoundaries.add(boundaries.get(i).maxKeyBound());
-        diskBoundaries.add(partitioner.getMaximumToken().maxKeyBound());
-        return diskBoundaries;
+            positions.add(boundaries.get(i).maxKeyBound());
+        positions.add(partitioner.getMaximumToken().maxKeyBound());
+        return positions;
     }
 }
@@ -18,14 +18,13 @@
 package org.apache.cassandra.db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -44,7 +43,6 @@ import org.apache.cassandra.db.commitlog.IntervalSet;
 import org.apache.cassandra.db.filter.ClusteringIndexFilter;
 import org.apache.cassandra.db.filter.ColumnFilter;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
-import org.apache.cassandra.db.partitions.AbstractBTreePartition;
 import org.apache.cassandra.db.partitions.AbstractUnfilteredPartitionIterator;
 import org.apache.cassandra.db.partitions.AtomicBTreePartition;
 import org.apache.cassandra.db.partitions.Partition;
@@ -54,19 +52,17 @@ import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.dht.AbstractBounds;
 import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.IncludingExcludingBounds;
-import org.apache.cassandra.dht.Murmur3Partitioner.LongToken;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.index.transactions.UpdateTransaction;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.schema.ColumnMetadata;
+import org.apache.cassandra.schema.MemtableParams;
 import org.apache.cassandra.schema.SchemaConstants;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.service.ActiveRepairService;
-import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
-import org.apache.cassandra.utils.ObjectSizes;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 import org.apache.cassandra.utils.memory.HeapPool;
 import org.apache.cassandra.utils.memory.MemtableAllocator;
@@ -75,7 +71,14 @@ import org.apache.cassandra.utils.memory.MemtablePool;
 import org.apache.cassandra.utils.memory.NativePool;
 import org.apache.cassandra.utils.memory.SlabPool;
 
-public class Memtable implements Comparable<Memtable>
+/**
+ * The in-memory part of a table, where writes are applied until it is flushed to an sstable.
+ *
+ * This class handles the lifecycle of a memtable (commit log bounds, write barriers, memory accounting and
+ * flushing); how partitions are indexed is left to the implementations, which are selected per table with the
+ * {@code memtable} option (see {@link org.apache.cassandra.schema.MemtableParams}).
+ */
+public abstract class Memtable implements Comparable<Memtable>
 {
     private static final Logger logger = LoggerFactory.getLogger(Memtable.class);
 
@@ -102,9 +105,17 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static final int ROW_OVERHEAD_HEAP_SIZE = estimateRowOverhead(Integer.parseInt(System.getProperty("cassandra.memtable_row_overhead_computation_step", "100000")));
+    /**
+     * Creates memtables of a given implementation. Implementations must provide a
+     * {@code public static Factory factory(Map<String, String> options)} method that validates the options
+     * and returns the factory to use for a table.
+     */
+    public interface Factory
+    {
+        Memtable create(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs);
+    }
 
-    private final MemtableAllocator allocator;
+    protected final MemtableAllocator allocator;
     private final AtomicLong liveDataSize = new AtomicLong(0);
     private final AtomicLong currentOperations = new AtomicLong(0);
 
@@ -126,16 +137,68 @@ public class Memtable implements Comparable<Memtable>
 
     public static final class LastCommitLogPosition extends CommitLogPosition
     {
+        /**
+         * The positions of the stripes when the bound was chosen, if the commit log is striped across several
+         * directories, or null. Their positions do not follow the order of allocation, so the bound is then the
+         * latest of them, which the memtable uses to direct writes, and the memtable only owns all the records up to
+         * the earliest, its floor. The records of each stripe are owned up to the position of the stripe.
+         */
+        public final CommitLogPosition[] stripePositions;
+        public final CommitLogPosition floor;
+
         public LastCommitLogPosition(CommitLogPosition copy)
         {
             super(copy.segmentId, copy.position);
+            this.stripePositions = null;
+            this.floor = copy;
         }
+
+        public LastCommitLogPosition(CommitLogPosition[] stripePositions)
+        {
+            this(Collections.max(Arrays.asList(stripePositions)), stripePositions);
+        }
+
+        private LastCommitLogPosition(CommitLogPosition latest, CommitLogPosition[] stripePositions)
+        {
+            super(latest.segmentId, latest.position);
+            this.stripePositions = stripePositions;
+            this.floor = Collections.min(Arrays.asList(stripePositions));
+        }
+    }
+
+    /**
+     * @return the position up to which the memtable bounded by the given position, and its predecessors, own all the
+     * commit log records
+     */
+    public static CommitLogPosition floorOf(CommitLogPosition bound)
+    {
+        return bound instanceof LastCommitLogPosition ? ((LastCommitLogPosition) bound).floor : bound;
+    }
+
+    /**
+     * @return the positions of the stripes of a striped commit log up to which the memtable bounded by the given
+     * position, and its predecessors, own the commit log records of each stripe, or null if the bound was not chosen
+     * from the positions of stripes
+     */
+    public static CommitLogPosition[] stripePositionsOf(CommitLogPosition bound)
+    {
+        return bound instanceof LastCommitLogPosition ? ((LastCommitLogPosition) bound).stripePositions : null;
+    }
+
+    /**
+     * @return the positions of each of the given number of stripes up to which the memtable bounded by the given
+     * position, and its predecessors, own the commit log records of the stripe
+     */
+    public static CommitLogPosition[] stripePositionsOf(CommitLogPosition bound, int stripes)
+    {
+        if (bound instanceof LastCommitLogPosition && ((LastCommitLogPosition) bound).stripePositions != null)
+            return ((LastCommitLogPosition) bound).stripePositions;
+
+        CommitLogPosition[] positions = new CommitLogPosition[stripes];
+        Arrays.fill(positions, floorOf(bound));
+        return positions;
     }
 
-    // We index the memtable by PartitionPosition only for the purpose of being able
-    // to select key range using Token.KeyBound. However put() ensures that we
-    // actually only store DecoratedKey.
-    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentSkipListMap<>();
     public final ColumnFamilyStore cfs;
     private final long creationNano = System.nanoTime();
 
@@ -147,25 +210,29 @@ public class Memtable implements Comparable<Memtable>
     // memtable was created with the new or old comparator.
     public final ClusteringComparator initialComparator;
 
+    // Likewise, record the memtable options, so that a change of implementation takes effect on the next switch.
+    public final MemtableParams initialParams;
+
     private final ColumnsCollector columnsCollector;
     private final StatsCollector statsCollector = new StatsCollector();
 
-    // only to be used by init(), to setup the very first memtable for the cfs
-    public Memtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    protected Memtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
     {
         this.cfs = cfs;
         this.commitLogLowerBound = commitLogLowerBound;
         this.allocator = MEMORY_POOL.newAllocator();
         this.initialComparator = cfs.metadata().comparator;
+        this.initialParams = cfs.metadata().params.memtable;
         this.cfs.scheduleFlush();
         this.columnsCollector = new ColumnsCollector(cfs.metadata().regularAndStaticColumns());
     }
 
     // ONLY to be used for testing, to create a mock Memtable
     @VisibleForTesting
-    public Memtable(TableMetadata metadata)
+    protected Memtable(TableMetadata metadata)
     {
         this.initialComparator = metadata.comparator;
+        this.initialParams = metadata.params.memtable;
         this.cfs = null;
         this.allocator = null;
         this.columnsCollector = new ColumnsCollector(metadata.regularAndStaticColumns());
@@ -240,16 +307,24 @@ public class Memtable implements Comparable<Memtable>
         return commitLogUpperBound.get();
     }
 
-    public boolean isLive()
+    /**
+     * @return the commit log positions that all belong to this memtable, i.e. those after the bound of its
+     * predecessor and not after the floor of its own bound, which is the bound itself unless the commit log is striped
+     */
+    private IntervalSet<CommitLogPosition> commitLogIntervals()
     {
-        return allocator.isLive();
+        CommitLogPosition lower = commitLogLowerBound.get();
+        CommitLogPosition upper = floorOf(commitLogUpperBound.get());
+        return upper.compareTo(lower) >= 0 ? new IntervalSet<>(lower, upper) : IntervalSet.empty();
     }
 
-    public boolean isClean()
+    public boolean isLive()
     {
-        return partitions.isEmpty();
+        return allocator.isLive();
     }
 
+    public abstract boolean isClean();
+
     public boolean mayContainDataBefore(CommitLogPosition position)
     {
         return approximateCommitLogLowerBound.compareTo(position) < 0;
@@ -272,40 +347,60 @@ public class Memtable implements Comparable<Memtable>
      */
     long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup)
     {
-        AtomicBTreePartition previous = partitions.get(update.partitionKey());
+        AtomicBTreePartition partition = getOrCreatePartition(update.partitionKey(), opGroup);
 
-        long initialSize = 0;
-        if (previous == null)
-        {
-            final DecoratedKey cloneKey = allocator.clone(update.partitionKey(), opGroup);
-            AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
-            // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
-            previous = partitions.putIfAbsent(cloneKey, empty);
-            if (previous == null)
-            {
-                previous = empty;
-                // allocate the row overhead after the fact; this saves over allocating and having to free after, but
-                // means we can overshoot our declared limit.
-                int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
-                allocator.onHeap().allocate(overhead, opGroup);
-                initialSize = 8;
-            }
-        }
-
-        long[] pair = previous.addAllWithSizeDelta(update, opGroup, indexer);
-        minTimestamp = Math.min(minTimestamp, previous.stats().minTimestamp);
-        liveDataSize.addAndGet(initialSize + pair[0]);
+        long[] pair = partition.addAllWithSizeDelta(update, opGroup, indexer);
+        minTimestamp = Math.min(minTimestamp, partition.stats().minTimestamp);
+        liveDataSize.addAndGet(pair[0]);
         columnsCollector.update(update.columns());
         statsCollector.update(update.stats());
         currentOperations.addAndGet(update.operationCount());
         return pair[1];
     }
 
-    public int partitionCount()
+    /**
+     * Returns the partition for the given key, creating an empty one (with a key cloned through the allocator)
+     * if it does not exist yet. Implementations must call {@link #onPartitionCreated} for any partition they create.
+     */
+    protected abstract AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup);
+
+    /**
+     * Accounts for a newly created partition, whose indexing costs the given amount of heap.
+     */
+    protected void onPartitionCreated(long heapOverhead, OpOrder.Group opGroup)
+    {
+        // allocate the overhead after the fact; this saves over allocating and having to free after, but
+        // means we can overshoot our declared limit.
+        allocator.onHeap().allocate(heapOverhead, opGroup);
+        liveDataSize.addAndGet(8);
+    }
+
+    public abstract int partitionCount();
+
+    /**
+     * The number of parts the memtable indexes its partitions in, which are written to without contending with each
+     * other.
+     */
+    public int shardCount()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the index of the part holding the given key, from 0 to {@link #shardCount()} excluded.
+     */
+    public int shardIndex(DecoratedKey key)
     {
-        return partitions.size();
+        return 0;
     }
 
+    /**
+     * Returns the partitions whose keys lie between the given positions, in order. A null position means
+     * the corresponding side of the range is unbounded.
+     */
+    protected abstract Iterable<AtomicBTreePartition> partitions(PartitionPosition left, boolean includeLeft,
+                                                                 PartitionPosition right, boolean includeRight);
+
     public List<FlushRunnable> flushRunnables(LifecycleTransaction txn)
     {
         return createFlushRunnables(txn);
@@ -316,17 +411,29 @@ public class Memtable implements Comparable<Memtable>
         DiskBoundaries diskBoundaries = cfs.getDiskBoundaries();
         List<PartitionPosition> boundaries = diskBoundaries.positions;
         List<Directories.DataDirectory> locations = diskBoundaries.directories;
-        if (boundaries == null)
+        List<PartitionPosition> splitPoints = flushSplitPoints();
+        if (boundaries == null && splitPoints.isEmpty())
             return Collections.singletonList(new FlushRunnable(txn));
 
-        List<FlushRunnable> runnables = new ArrayList<>(boundaries.size());
+        int diskCount = boundaries == null ? 1 : boundaries.size();
+        List<FlushRunnable> runnables = new ArrayList<>(diskCount + splitPoints.size());
         PartitionPosition rangeStart = cfs.getPartitioner().getMinimumToken().minKeyBound();
         try
         {
-            for (int i = 0; i < boundaries.size(); i++)
+            for (int i = 0; i < diskCount; i++)
             {
-                PartitionPosition t = boundaries.get(i);
-                runnables.add(new FlushRunnable(rangeStart, t, locations.get(i), txn));
+                // without disk boundaries, the single range is unbounded and the writer picks its own location
+                PartitionPosition t = boundaries == null ? null : boundaries.get(i);
+                Directories.DataDirectory location = boundaries == null ? null : locations.get(i);
+                for (PartitionPosition split : splitPoints)
+                {
+                    if (split.compareTo(rangeStart) > 0 && (t == null || split.compareTo(t) < 0))
+                    {
+                        runnables.add(new FlushRunnable(rangeStart, split, location, i, txn));
+                        rangeStart = split;
+                    }
+                }
+                runnables.add(new FlushRunnable(rangeStart, t, location, i, txn));
                 rangeStart = t;
             }
             return runnables;
@@ -337,6 +444,15 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
+    /**
+     * The positions, in addition to the disk boundaries, at which the content of the memtable should be split when
+     * flushing, so that the parts can be written in parallel. Each part is written to a separate sstable.
+     */
+    protected List<PartitionPosition> flushSplitPoints()
+    {
+        return Collections.emptyList();
+    }
+
     public Throwable abortRunnables(List<FlushRunnable> runnables, Throwable t)
     {
         if (runnables != null)
@@ -362,40 +478,27 @@ public class Memtable implements Comparable<Memtable>
         boolean isBound = keyRange instanceof Bounds;
         boolean includeStart = isBound || keyRange instanceof IncludingExcludingBounds;
         boolean includeStop = isBound || keyRange instanceof Range;
-        Map<PartitionPosition, AtomicBTreePartition> subMap;
-        if (startIsMin)
-            subMap = stopIsMin ? partitions : partitions.headMap(keyRange.right, includeStop);
-        else
-            subMap = stopIsMin
-                   ? partitions.tailMap(keyRange.left, includeStart)
-                   : partitions.subMap(keyRange.left, includeStart, keyRange.right, includeStop);
+        Iterable<AtomicBTreePartition> toIterate = partitions(startIsMin ? null : keyRange.left, includeStart,
+                                                              stopIsMin ? null : keyRange.right, includeStop);
 
         int minLocalDeletionTime = Integer.MAX_VALUE;
 
         // avoid iterating over the memtable if we purge all tombstones
         if (cfs.getCompactionStrategyManager().onlyPurgeRepairedTombstones())
-            minLocalDeletionTime = findMinLocalDeletionTime(subMap.entrySet().iterator());
-
-        final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter = subMap.entrySet().iterator();
+            minLocalDeletionTime = findMinLocalDeletionTime(toIterate.iterator());
 
-        return new MemtableUnfilteredPartitionIterator(cfs, iter, minLocalDeletionTime, columnFilter, dataRange);
+        return new MemtableUnfilteredPartitionIterator(cfs, toIterate.iterator(), minLocalDeletionTime, columnFilter, dataRange);
     }
 
-    private int findMinLocalDeletionTime(Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iterator)
+    private int findMinLocalDeletionTime(Iterator<AtomicBTreePartition> iterator)
     {
         int minLocalDeletionTime = Integer.MAX_VALUE;
         while (iterator.hasNext())
-        {
-            Map.Entry<PartitionPosition, AtomicBTreePartition> entry = iterator.next();
-            minLocalDeletionTime = Math.min(minLocalDeletionTime, entry.getValue().stats().minLocalDeletionTime);
-        }
+            minLocalDeletionTime = Math.min(minLocalDeletionTime, iterator.next().stats().minLocalDeletionTime);
         return minLocalDeletionTime;
     }
 
-    public Partition getPartition(DecoratedKey key)
-    {
-        return partitions.get(key);
-    }
+    public abstract Partition getPartition(DecoratedKey key);
 
     public long getMinTimestamp()
     {
@@ -414,37 +517,43 @@ public class Memtable implements Comparable<Memtable>
     class FlushRunnable implements Callable<SSTableMultiWriter>
     {
         private final long estimatedSize;
-        private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> toFlush;
+        private final Iterable<AtomicBTreePartition> toFlush;
+        private final int partitionCount;
 
         private final boolean isBatchLogTable;
         private final SSTableMultiWriter writer;
 
+        // the index of the disk this is flushed to, used to pick the flush executor
+        final int diskIndex;
+
         // keeping these to be able to log what we are actually flushing
         private final PartitionPosition from;
         private final PartitionPosition to;
 
-        FlushRunnable(PartitionPosition from, PartitionPosition to, Directories.DataDirectory flushLocation, LifecycleTransaction txn)
+        FlushRunnable(PartitionPosition from, PartitionPosition to, Directories.DataDirectory flushLocation, int diskIndex, LifecycleTransaction txn)
         {
-            this(partitions.subMap(from, to), flushLocation, from, to, txn);
+            this(partitions(from, true, to, false), flushLocation, diskIndex, from, to, txn);
         }
 
         FlushRunnable(LifecycleTransaction txn)
         {
-            this(partitions, null, null, null, txn);
+            this(partitions(null, false, null, false), null, 0, null, null, txn);
         }
 
-        FlushRunnable(ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> toFlush, Directories.DataDirectory flushLocation, PartitionPosition from, PartitionPosition to, LifecycleTransaction txn)
+        FlushRunnable(Iterable<AtomicBTreePartition> toFlush, Directories.DataDirectory flushLocation, int diskIndex, PartitionPosition from, PartitionPosition to, LifecycleTransaction txn)
         {
             this.toFlush = toFlush;
+            this.diskIndex = diskIndex;
             this.from = from;
             this.to = to;
             long keySize = 0;
-            for (PartitionPosition key : toFlush.keySet())
+            int partitionCount = 0;
+            for (AtomicBTreePartition partition : toFlush)
             {
-                //  make sure we don't write non-sensical keys
-                assert key instanceof DecoratedKey;
-                keySize += ((DecoratedKey) key).getKey().remaining();
+                keySize += partition.partitionKey().getKey().remaining();
+                ++partitionCount;
             }
+            this.partitionCount = partitionCount;
             estimatedSize = (long) ((keySize // index entries
                                     + keySize // keys in data file
                                     + liveDataSize.get()) // data
@@ -472,7 +581,7 @@ public class Memtable implements Comparable<Memtable>
             int heavilyContendedRowCount = 0;
             // (we can't clear out the map as-we-go to free up memory,
             //  since the memtable is being used for queries in the "pending flush" category)
-            for (AtomicBTreePartition partition : toFlush.values())
+            for (AtomicBTreePartition partition : toFlush)
             {
                 // Each batchlog partition is a separate entry in the log. And for an entry, we only do 2
                 // operations: 1) we insert the entry and 2) we delete it. Further, BL data is strictly local,
@@ -503,7 +612,7 @@ public class Memtable implements Comparable<Memtable>
             cfs.metric.bytesFlushed.inc(bytesFlushed);
 
             if (heavilyContendedRowCount > 0)
-                logger.trace("High update contention in {}/{} partitions of {} ", heavilyContendedRowCount, toFlush.size(), Memtable.this);
+                logger.trace("High update contention in {}/{} partitions of {} ", heavilyContendedRowCount, partitionCount, Memtable.this);
         }
 
         public SSTableMultiWriter createFlushWriter(LifecycleTransaction txn,
@@ -512,10 +621,10 @@ public class Memtable implements Comparable<Memtable>
                                                     EncodingStats stats)
         {
             MetadataCollector sstableMetadataCollector = new MetadataCollector(cfs.metadata().comparator)
-                    .commitLogIntervals(new IntervalSet<>(commitLogLowerBound.get(), commitLogUpperBound.get()));
+                    .commitLogIntervals(commitLogIntervals());
 
             return cfs.createSSTableMultiWriter(descriptor,
-                                                toFlush.size(),
+                                                partitionCount,
                                                 ActiveRepairService.UNREPAIRED_SSTABLE,
                                                 ActiveRepairService.NO_PENDING_REPAIR,
                                                 false,
@@ -531,37 +640,15 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static int estimateRowOverhead(final int count)
-    {
-        // calculate row overhead
-        try (final OpOrder.Group group = new OpOrder().start())
-        {
-            int rowOverhead;
-            MemtableAllocator allocator = MEMORY_POOL.newAllocator();
-            ConcurrentNavigableMap<PartitionPosition, Object> partitions = new ConcurrentSkipListMap<>();
-            final Object val = new Object();
-            for (int i = 0 ; i < count ; i++)
-                partitions.put(allocator.clone(new BufferDecoratedKey(new LongToken(i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
-            double avgSize = ObjectSizes.measureDeep(partitions) / (double) count;
-            rowOverhead = (int) ((avgSize - Math.floor(avgSize)) < 0.05 ? Math.floor(avgSize) : Math.ceil(avgSize));
-            rowOverhead -= ObjectSizes.measureDeep(new LongToken(0));
-            rowOverhead += AtomicBTreePartition.EMPTY_SIZE;
-            rowOverhead += AbstractBTreePartition.HOLDER_UNSHARED_HEAP_SIZE;
-            allocator.setDiscarding();
-            allocator.setDiscarded();
-            return rowOverhead;
-        }
-    }
-
     public static class MemtableUnfilteredPartitionIterator extends AbstractUnfilteredPartitionIterator
     {
         private final ColumnFamilyStore cfs;
-        private final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter;
+        private final Iterator<AtomicBTreePartition> iter;
         private final int minLocalDeletionTime;
         private final ColumnFilter columnFilter;
         private final DataRange dataRange;
 
-        public MemtableUnfilteredPartitionIterator(ColumnFamilyStore cfs, Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter, int minLocalDeletionTime, ColumnFilter columnFilter, DataRange dataRange)
+        public MemtableUnfilteredPartitionIterator(ColumnFamilyStore cfs, Iterator<AtomicBTreePartition> iter, int minLocalDeletionTime, ColumnFilter columnFilter, DataRange dataRange)
         {
             this.cfs = cfs;
             this.iter = iter;
@@ -587,13 +674,10 @@ public class Memtable implements Comparable<Memtable>
 
         public UnfilteredRowIterator next()
         {
-            Map.Entry<PartitionPosition, AtomicBTreePartition> entry = iter.next();
-            // Actual stored key should be true DecoratedKey
-            assert entry.getKey() instanceof DecoratedKey;
-            DecoratedKey key = (DecoratedKey)entry.getKey();
-            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(key);
+            AtomicBTreePartition partition = iter.next();
+            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(partition.partitionKey());
 
-            return filter.getUnfilteredRowIterator(columnFilter, entry.getValue());
+            return filter.getUnfilteredRowIterator(columnFilter, partition);
         }
     }
 
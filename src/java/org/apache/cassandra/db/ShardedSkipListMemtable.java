@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * A memtable that splits the locally owned token ranges into a number of shards of roughly equal size, each indexing
+ * its partitions in a separate {@link ConcurrentSkipListMap}. This spreads concurrent writes over several smaller
+ * maps, and lets flushes write the shards in parallel.
+ *
+ * The number of shards is set with the {@code shards} option and defaults to the number of available processors.
+ * Partitioners that cannot split token ranges, like the byte-ordered ones, always use a single shard.
+ */
+public class ShardedSkipListMemtable extends Memtable
+{
+    public static final String SHARDS_OPTION = "shards";
+
+    // Upper bounds of all shards but the last, which extends to the end of the ring.
+    private final PartitionPosition[] boundaries;
+    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition>[] shards;
+
+    ShardedSkipListMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs, int shardCount)
+    {
+        super(commitLogLowerBound, cfs);
+        List<PartitionPosition> shardBoundaries = shardCount > 1 ? DiskBoundaryManager.getLocalRangeBoundaries(cfs, shardCount) : null;
+        this.boundaries = shardBoundaries == null
+                          ? new PartitionPosition[0]
+                          : shardBoundaries.subList(0, shardBoundaries.size() - 1).toArray(new PartitionPosition[0]);
+        this.shards = createShards(boundaries.length + 1);
+    }
+
+    // ONLY to be used for testing, to create a mock Memtable
+    @VisibleForTesting
+    public ShardedSkipListMemtable(TableMetadata metadata)
+    {
+        super(metadata);
+        this.boundaries = new PartitionPosition[0];
+        this.shards = createShards(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition>[] createShards(int count)
+    {
+        ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition>[] shards = new ConcurrentNavigableMap[count];
+        for (int i = 0; i < count; i++)
+            shards[i] = new ConcurrentSkipListMap<>();
+        return shards;
+    }
+
+    public static Factory factory(Map<String, String> options)
+    {
+        Map<String, String> unknown = new HashMap<>(options);
+        String shardsOption = unknown.remove(SHARDS_OPTION);
+        if (!unknown.isEmpty())
+            throw new ConfigurationException(String.format("Memtable options %s are not understood by %s",
+                                                           unknown.keySet(), ShardedSkipListMemtable.class.getSimpleName()));
+
+        int shardCount = FBUtilities.getAvailableProcessors();
+        if (shardsOption != null)
+        {
+            try
+            {
+                shardCount = Integer.parseInt(shardsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                shardCount = 0;
+            }
+            if (shardCount <= 0)
+                throw new ConfigurationException(String.format("Invalid value '%s' for memtable option '%s': must be a positive integer",
+                                                               shardsOption, SHARDS_OPTION));
+        }
+
+        final int shards = shardCount;
+        return (commitLogLowerBound, cfs) -> new ShardedSkipListMemtable(commitLogLowerBound, cfs, shards);
+    }
+
+    @Override
+    public int shardCount()
+    {
+        return shards.length;
+    }
+
+    @Override
+    public int shardIndex(DecoratedKey key)
+    {
+        return shardIndex(key, false);
+    }
+
+    /**
+     * Returns the index of the shard that contains the given position. Positions that are equal to a shard boundary
+     * are placed in the shard they end if {@code asUpperBound} is true, and in the following one otherwise; as
+     * boundaries are key bounds, no partition key can be equal to them.
+     */
+    private int shardIndex(PartitionPosition position, boolean asUpperBound)
+    {
+        int low = 0;
+        int high = boundaries.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = position.compareTo(boundaries[mid]);
+            if (cmp > 0)
+                low = mid + 1;
+            else if (cmp < 0)
+                high = mid - 1;
+            else
+                return asUpperBound ? mid : mid + 1;
+        }
+        return low;
+    }
+
+    public boolean isClean()
+    {
+        for (ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> shard : shards)
+            if (!shard.isEmpty())
+                return false;
+        return true;
+    }
+
+    protected AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> shard = shards[shardIndex(key, false)];
+        AtomicBTreePartition previous = shard.get(key);
+        if (previous != null)
+            return previous;
+
+        final DecoratedKey cloneKey = allocator.clone(key, opGroup);
+        AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+        // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
+        previous = shard.putIfAbsent(cloneKey, empty);
+        if (previous != null)
+            return previous;
+
+        onPartitionCreated(cloneKey.getToken().getHeapSize() + SkipListMemtable.ROW_OVERHEAD_HEAP_SIZE, opGroup);
+        return empty;
+    }
+
+    public int partitionCount()
+    {
+        int count = 0;
+        for (ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> shard : shards)
+            count += shard.size();
+        return count;
+    }
+
+    protected Iterable<AtomicBTreePartition> partitions(PartitionPosition left, boolean includeLeft,
+                                                        PartitionPosition right, boolean includeRight)
+    {
+        int first = left == null ? 0 : shardIndex(left, false);
+        int last = right == null ? shards.length - 1 : shardIndex(right, true);
+
+        List<Iterable<AtomicBTreePartition>> parts = new ArrayList<>(Math.max(last - first + 1, 0));
+        for (int i = first; i <= last; i++)
+        {
+            ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> shard = shards[i];
+            Map<PartitionPosition, AtomicBTreePartition> subMap;
+            if (left == null || i > first)
+                subMap = right == null || i < last ? shard : shard.headMap(right, includeRight);
+            else
+                subMap = right == null || i < last
+                       ? shard.tailMap(left, includeLeft)
+                       : shard.subMap(left, includeLeft, right, includeRight);
+            parts.add(subMap.values());
+        }
+        return Iterables.concat(parts);
+    }
+
+    public Partition getPartition(DecoratedKey key)
+    {
+        return shards[shardIndex(key, false)].get(key);
+    }
+
+    /**
+     * Splits the flush at shard boundaries, grouping adjacent shards so that there are no more parts than flush
+     * writers per disk: writing more sstables than can be written in parallel would only add compaction work.
+     */
+    protected List<PartitionPosition> flushSplitPoints()
+    {
+        int parts = Math.min(shards.length, DatabaseDescriptor.getFlushWriters());
+        if (parts <= 1)
+            return Collections.emptyList();
+
+        List<PartitionPosition> splitPoints = new ArrayList<>(parts - 1);
+        for (int i = 1; i < parts; i++)
+            splitPoints.add(boundaries[i * shards.length / parts - 1]);
+        return splitPoints;
+    }
+}
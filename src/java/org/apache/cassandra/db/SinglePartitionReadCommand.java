@@ -36,6 +36,7 @@ import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.transform.RTBoundValidator;
 import org.apache.cassandra.db.transform.Transformation;
 import org.apache.cassandra.exceptions.RequestExecutionException;
+import org.apache.cassandra.io.sstable.ClusteringRangeFilter;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.SSTableReadsListener;
 import org.apache.cassandra.io.util.DataInputPlus;
@@ -404,6 +405,27 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         return new SingletonUnfilteredPartitionIterator(partition);
     }
 
+    /**
+     * @return whether the data this command reads is all held in memory, so that it would be answered without reading
+     * from disk: in the memtables of the table or, for each sstable that may contain the partition, with the position
+     * of the partition in the key cache and the chunk of the data file it starts in in the chunk cache
+     */
+    public boolean isResidentInMemory()
+    {
+        ColumnFamilyStore cfs = Keyspace.openAndGetStore(metadata());
+        ColumnFamilyStore.ViewFragment view = cfs.select(View.select(SSTableSet.LIVE, partitionKey()));
+        for (SSTableReader sstable : view.sstables)
+        {
+            if (!sstable.getBloomFilter().isPresent(partitionKey()))
+                continue;
+
+            RowIndexEntry<?> entry = sstable.getCachedPosition(partitionKey(), false);
+            if (entry == null || !sstable.isDataChunkCached(entry.position))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Fetch the rows requested if in cache; if not, read it from disk and cache it.
      * <p>
@@ -632,6 +654,7 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
             int includedDueToTombstones = 0;
 
             SSTableReadMetricsCollector metricsCollector = new SSTableReadMetricsCollector();
+            ClusteringRangeFilter.Bounds bounds = clusteringRangeFilterBounds(filter);
 
             if (isTrackingRepairedStatus())
                 Tracing.trace("Collecting data from sstables and tracking repaired status");
@@ -649,6 +672,13 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
                     break;
                 }
 
+                // the clustering range filter also records partition deletions, so there is no tombstone to look for
+                if (!sstable.mayContain(partitionKey(), bounds))
+                {
+                    nonIntersectingSSTables++;
+                    continue;
+                }
+
                 if (shouldInclude(sstable))
                 {
                     if (!sstable.isRepaired())
@@ -714,6 +744,11 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         }
     }
 
+    private ClusteringRangeFilter.Bounds clusteringRangeFilterBounds(ClusteringIndexFilter filter)
+    {
+        return new ClusteringRangeFilter.Bounds(metadata(), filter, !columnFilter().fetchedColumns().statics.isEmpty());
+    }
+
     private boolean shouldInclude(SSTableReader sstable)
     {
         // If some static columns are queried, we should always include the sstable: the clustering values stats of the sstable
@@ -833,6 +868,9 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
             if (filter == null)
                 break;
 
+            if (!sstable.mayContain(partitionKey(), clusteringRangeFilterBounds(filter)))
+                continue;
+
             if (!shouldInclude(sstable))
             {
                 // This mean that nothing queried by the filter can be in the sstable. One exception is the top-level partition deletion
@@ -644,12 +644,30 @@ public final class SystemKeyspace
     }
 
     private static Map<UUID, ByteBuffer> truncationAsMapEntry(ColumnFamilyStore cfs, long truncatedAt, CommitLogPosition position)
+    {
+        return singletonMap(cfs.metadata.id.asUUID(), truncationRecordToBlob(truncatedAt, position));
+    }
+
+    /**
+     * Serializes a truncation record as the position, the time of the truncation and, if the commit log is striped,
+     * the number of stripes followed by the position of each. Versions that predate the striped commit log ignore the
+     * stripe positions, and those before 3.0 the time.
+     */
+    @VisibleForTesting
+    static ByteBuffer truncationRecordToBlob(long truncatedAt, CommitLogPosition position)
     {
         try (DataOutputBuffer out = DataOutputBuffer.scratchBuffer.get())
         {
             CommitLogPosition.serializer.serialize(position, out);
             out.writeLong(truncatedAt);
-            return singletonMap(cfs.metadata.id.asUUID(), out.asNewBuffer());
+            CommitLogPosition[] stripePositions = Memtable.stripePositionsOf(position);
+            if (stripePositions != null)
+            {
+                out.writeInt(stripePositions.length);
+                for (CommitLogPosition stripePosition : stripePositions)
+                    CommitLogPosition.serializer.serialize(stripePosition, out);
+            }
+            return out.asNewBuffer();
         }
         catch (IOException e)
         {
@@ -692,11 +710,26 @@ public final class SystemKeyspace
         return records;
     }
 
-    private static Pair<CommitLogPosition, Long> truncationRecordFromBlob(ByteBuffer bytes)
+    /**
+     * Deserializes a truncation record written by {@link #truncationRecordToBlob}, or by an earlier version. The
+     * position of records without stripe positions, such as those written before the commit log could be striped,
+     * bounds the truncated records of every stripe.
+     */
+    @VisibleForTesting
+    static Pair<CommitLogPosition, Long> truncationRecordFromBlob(ByteBuffer bytes)
     {
         try (RebufferingInputStream in = new DataInputBuffer(bytes, true))
         {
-            return Pair.create(CommitLogPosition.serializer.deserialize(in), in.available() > 0 ? in.readLong() : Long.MIN_VALUE);
+            CommitLogPosition position = CommitLogPosition.serializer.deserialize(in);
+            long truncatedAt = in.available() > 0 ? in.readLong() : Long.MIN_VALUE;
+            if (in.available() > 0)
+            {
+                CommitLogPosition[] stripePositions = new CommitLogPosition[in.readInt()];
+                for (int i = 0; i < stripePositions.length; i++)
+                    stripePositions[i] = CommitLogPosition.serializer.deserialize(in);
+                position = new Memtable.LastCommitLogPosition(stripePositions);
+            }
+            return Pair.create(position, truncatedAt);
         }
         catch (IOException e)
         {
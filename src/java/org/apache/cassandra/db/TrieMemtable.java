@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.AbstractBTreePartition;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.db.tries.InMemoryTrie;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+
+/**
+ * A memtable that indexes its partitions in an {@link InMemoryTrie} keyed by the byte-comparable representation
+ * of the partition key. The trie's nodes live in off-heap memory, which removes the skip-list's per-partition
+ * node objects from the heap; the rows themselves are stored as in {@link SkipListMemtable}, with their data
+ * allocated by the memtable pool (off-heap with {@code memtable_allocation_type: offheap_objects}).
+ *
+ * Writes of new partitions are serialized on the trie, which only supports a single writer; lookups,
+ * updates of existing partitions and reads do not take any lock.
+ */
+public class TrieMemtable extends Memtable
+{
+    public static final Factory FACTORY = TrieMemtable::new;
+
+    // heap used per partition, besides the partition itself: the token and the reference in the trie's value array
+    private static final long PARTITION_OVERHEAD_HEAP_SIZE = AtomicBTreePartition.EMPTY_SIZE
+                                                             + AbstractBTreePartition.HOLDER_UNSHARED_HEAP_SIZE
+                                                             + 8;
+
+    private final InMemoryTrie<AtomicBTreePartition> partitions = new InMemoryTrie<>();
+
+    /**
+     * The allocator the trie's memory is accounted against. The heap pools do not have an off-heap limit, so
+     * with them the trie is counted towards the heap limit to keep its growth triggering flushes.
+     */
+    private final MemtableAllocator.SubAllocator trieAllocator;
+
+    @VisibleForTesting
+    public TrieMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    {
+        super(commitLogLowerBound, cfs);
+        this.trieAllocator = isOffHeapAllocation() ? allocator.offHeap() : allocator.onHeap();
+    }
+
+    private static boolean isOffHeapAllocation()
+    {
+        Config.MemtableAllocationType type = DatabaseDescriptor.getMemtableAllocationType();
+        return type == Config.MemtableAllocationType.offheap_buffers || type == Config.MemtableAllocationType.offheap_objects;
+    }
+
+    public static Factory factory(Map<String, String> options)
+    {
+        if (!options.isEmpty())
+            throw new ConfigurationException(String.format("Memtable options %s are not understood by %s",
+                                                           options.keySet(), TrieMemtable.class.getSimpleName()));
+        return FACTORY;
+    }
+
+    public boolean isClean()
+    {
+        return partitions.isEmpty();
+    }
+
+    protected AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        AtomicBTreePartition partition = partitions.get(key);
+        if (partition != null)
+            return partition;
+
+        long trieGrowth;
+        synchronized (partitions)
+        {
+            partition = partitions.get(key);
+            if (partition != null)
+                return partition;
+
+            DecoratedKey cloneKey = allocator.clone(key, opGroup);
+            partition = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+            long sizeBefore = partitions.sizeOffHeap();
+            partitions.put(cloneKey, partition);
+            trieGrowth = partitions.sizeOffHeap() - sizeBefore;
+        }
+
+        // account outside of the lock, as allocating may block until memory is reclaimed
+        if (trieGrowth > 0)
+            trieAllocator.allocate(trieGrowth, opGroup);
+        onPartitionCreated(partition.partitionKey().getToken().getHeapSize() + PARTITION_OVERHEAD_HEAP_SIZE, opGroup);
+        return partition;
+    }
+
+    public int partitionCount()
+    {
+        return partitions.valuesCount();
+    }
+
+    protected Iterable<AtomicBTreePartition> partitions(PartitionPosition left, boolean includeLeft,
+                                                        PartitionPosition right, boolean includeRight)
+    {
+        if (left == null && right == null)
+            return partitions.values();
+        return partitions.subtrieValues(left, includeLeft, right, includeRight);
+    }
+
+    public Partition getPartition(DecoratedKey key)
+    {
+        return partitions.get(key);
+    }
+
+    @Override
+    void setDiscarded()
+    {
+        super.setDiscarded();
+        // reads have been completed by the time the memtable is discarded, see ColumnFamilyStore.Flush.reclaim
+        partitions.discardBuffers();
+    }
+}
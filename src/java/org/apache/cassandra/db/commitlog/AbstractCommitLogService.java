@@ -168,7 +168,8 @@ public abstract class AbstractCommitLogService
             {
                 // sync and signal
                 long pollStarted = clock.now();
-                boolean flushToDisk = lastSyncedAt + syncIntervalNanos <= pollStarted || shutdownRequested || syncRequested;
+                long syncWindowNanos = getSyncWindowNanos();
+                boolean flushToDisk = lastSyncedAt + syncWindowNanos <= pollStarted || shutdownRequested || syncRequested;
                 if (flushToDisk)
                 {
                     // in this branch, we want to flush the commit log to disk
@@ -186,12 +187,15 @@ public abstract class AbstractCommitLogService
 
                 long now = clock.now();
                 if (flushToDisk)
+                {
                     maybeLogFlushLag(pollStarted, now);
+                    syncCompleted(pollStarted, now);
+                }
 
                 if (shutdownRequested)
                     return false;
 
-                long wakeUpAt = pollStarted + markerIntervalNanos;
+                long wakeUpAt = pollStarted + Math.min(markerIntervalNanos, syncWindowNanos);
                 if (wakeUpAt > now)
                     LockSupport.parkNanos(wakeUpAt - now);
             }
@@ -258,6 +262,25 @@ public abstract class AbstractCommitLogService
         }
     }
 
+    /**
+     * @return the duration from the start of a sync to disk to the start of the next one, unless a sync is requested
+     * earlier
+     */
+    public long getSyncWindowNanos()
+    {
+        return syncIntervalNanos;
+    }
+
+    /**
+     * Called by the sync thread after each sync to disk.
+     *
+     * @param startedAt the time the sync started at, as reported by the clock of the sync thread
+     * @param finishedAt the time the sync finished at
+     */
+    void syncCompleted(long startedAt, long finishedAt)
+    {
+    }
+
     /**
      * Block for @param alloc to be sync'd as necessary, and handle bookkeeping
      */
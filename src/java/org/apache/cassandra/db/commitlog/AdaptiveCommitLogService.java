@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+/**
+ * A commitlog service that, like {@link GroupCommitLogService}, will block returning an ACK until the commit log
+ * segment is flushed, but chooses the time between flushes from the observed sync duration and write rate, so that
+ * writes are acknowledged within commitlog_sync_target_latency_in_ms.
+ *
+ * A write waits at most for the rest of the current window and for the next sync, so the window is the target latency
+ * less the average sync duration. If fewer than one other write is expected within the target latency, nothing is
+ * gained by waiting, and each write requests a sync as soon as it is written, as in batch mode.
+ */
+public class AdaptiveCommitLogService extends AbstractCommitLogService
+{
+    // weight of the latest sample in the moving averages of the sync duration and write rate
+    private static final double SMOOTHING = 0.2;
+
+    private final long targetLatencyNanos;
+    private final AtomicLong writesSinceSync = new AtomicLong();
+
+    // only accessed by the sync thread
+    private double averageSyncNanos = Double.NaN;
+    private double averageWritesPerNano = Double.NaN;
+    private long lastSyncStartedAt;
+    private boolean synced;
+
+    // 0 when each write requests a sync
+    private volatile long windowNanos;
+
+    public AdaptiveCommitLogService(CommitLog commitLog)
+    {
+        this(commitLog, DatabaseDescriptor.getCommitLogSyncTargetLatency());
+    }
+
+    @VisibleForTesting
+    AdaptiveCommitLogService(CommitLog commitLog, double targetLatencyMillis)
+    {
+        // without writes, the log is still flushed every target latency
+        super(commitLog, "ADAPTIVE-COMMIT-LOG-WRITER", Math.max(1, (long) Math.ceil(targetLatencyMillis)));
+        this.targetLatencyNanos = (long) (targetLatencyMillis * 1e6);
+    }
+
+    protected void maybeWaitForSync(CommitLogSegment.Allocation alloc)
+    {
+        // wait until record has been safely persisted to disk
+        pending.incrementAndGet();
+        writesSinceSync.incrementAndGet();
+        if (windowNanos == 0)
+            requestExtraSync();
+        alloc.awaitDiskSync(commitLog.metrics.waitingOnCommit);
+        pending.decrementAndGet();
+    }
+
+    @Override
+    public long getSyncWindowNanos()
+    {
+        long window = windowNanos;
+        return window > 0 ? window : syncIntervalNanos;
+    }
+
+    @Override
+    void syncCompleted(long startedAt, long finishedAt)
+    {
+        long writes = writesSinceSync.getAndSet(0);
+        commitLog.metrics.syncBatchSize.update(writes);
+
+        averageSyncNanos = average(averageSyncNanos, finishedAt - startedAt);
+        if (synced && startedAt > lastSyncStartedAt)
+            averageWritesPerNano = average(averageWritesPerNano, (double) writes / (startedAt - lastSyncStartedAt));
+        lastSyncStartedAt = startedAt;
+        synced = true;
+
+        windowNanos = window(targetLatencyNanos, averageSyncNanos, averageWritesPerNano);
+    }
+
+    private static double average(double average, double sample)
+    {
+        return Double.isNaN(average) ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    /**
+     * @return the time between syncs that acknowledges writes within the target latency, or 0 if writes should request
+     * a sync each, because no other write is expected to join them within the target latency
+     */
+    @VisibleForTesting
+    static long window(long targetLatencyNanos, double syncNanos, double writesPerNano)
+    {
+        if (Double.isNaN(writesPerNano) || writesPerNano * targetLatencyNanos < 1)
+            return 0;
+        return Math.max(0, targetLatencyNanos - (long) syncNanos);
+    }
+}
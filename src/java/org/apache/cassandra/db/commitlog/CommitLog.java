@@ -23,11 +23,13 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.zip.CRC32;
 
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.ParameterizedClass;
 import org.apache.cassandra.db.*;
@@ -108,6 +110,9 @@ public class CommitLog implements CommitLogMBean
             case group:
                 executor = new GroupCommitLogService(this);
                 break;
+            case adaptive:
+                executor = new AdaptiveCommitLogService(this);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown commitlog service type: " + DatabaseDescriptor.getCommitLogSync());
         }
@@ -152,7 +157,7 @@ public class CommitLog implements CommitLogMBean
         // submit all files for this segment manager for archiving prior to recovery - CASSANDRA-6904
         // The files may have already been archived by normal CommitLog operation. This may cause errors in this
         // archiving pass, which we should not treat as serious.
-        for (File file : new File(segmentManager.storageDirectory).listFiles(unmanagedFilesFilter))
+        for (File file : listSegmentFiles(unmanagedFilesFilter))
         {
             archiver.maybeArchive(file.getPath(), file.getName());
             archiver.maybeWaitForArchiving(file.getName());
@@ -162,7 +167,7 @@ public class CommitLog implements CommitLogMBean
         archiver.maybeRestoreArchive();
 
         // List the files again as archiver may have added segments.
-        File[] files = new File(segmentManager.storageDirectory).listFiles(unmanagedFilesFilter);
+        File[] files = listSegmentFiles(unmanagedFilesFilter);
         int replayed = 0;
         if (files.length == 0)
         {
@@ -182,6 +187,18 @@ public class CommitLog implements CommitLogMBean
         return replayed;
     }
 
+    /**
+     * @return the files of all the storage directories of the segment manager accepted by the given filter; sorting
+     * them by segment id merges the segments of a commit log striped across several directories
+     */
+    private File[] listSegmentFiles(FilenameFilter filter)
+    {
+        List<File> files = new ArrayList<>();
+        for (String directory : segmentManager.getStorageDirectories())
+            files.addAll(Arrays.asList(new File(directory).listFiles(filter)));
+        return files.toArray(new File[0]);
+    }
+
     /**
      * Perform recovery on a list of commit log files.
      *
@@ -191,8 +208,16 @@ public class CommitLog implements CommitLogMBean
     public int recoverFiles(File... clogs) throws IOException
     {
         CommitLogReplayer replayer = CommitLogReplayer.construct(this);
-        replayer.replayFiles(clogs);
-        return replayer.blockForWrites();
+        Timer.Context ctx = metrics.replayTime.time();
+        try
+        {
+            replayer.replayFiles(clogs);
+            return replayer.blockForWrites();
+        }
+        finally
+        {
+            ctx.stop();
+        }
     }
 
     public void recoverPath(String path) throws IOException
@@ -219,6 +244,15 @@ public class CommitLog implements CommitLogMBean
         return segmentManager.getCurrentPosition();
     }
 
+    /**
+     * @return the current CommitLogPosition of each stripe if the commit log is striped across several directories,
+     * null otherwise
+     */
+    public CommitLogPosition[] getStripePositions()
+    {
+        return segmentManager.getStripePositions();
+    }
+
     /**
      * Flushes all dirty CFs, waiting for them to free and recycle any segments they were retaining
      */
@@ -314,6 +348,13 @@ public class CommitLog implements CommitLogMBean
     {
         logger.trace("discard completed log segments for {}-{}, table {}", lowerBound, upperBound, id);
 
+        if (upperBound instanceof Memtable.LastCommitLogPosition && ((Memtable.LastCommitLogPosition) upperBound).stripePositions != null)
+        {
+            CommitLogPosition[] upperBounds = ((Memtable.LastCommitLogPosition) upperBound).stripePositions;
+            discardCompletedSegments(id, Memtable.stripePositionsOf(lowerBound, upperBounds.length), upperBounds);
+            return;
+        }
+
         // Go thru the active segment files, which are ordered oldest to newest, marking the
         // flushed CF as clean, until we reach the segment file containing the CommitLogPosition passed
         // in the arguments. Any segments that become unused after they are marked clean will be
@@ -342,6 +383,26 @@ public class CommitLog implements CommitLogMBean
         }
     }
 
+    /**
+     * Marks the flushed CF as clean in the segments of each stripe of a striped commit log, between the positions
+     * of the stripe.
+     */
+    private void discardCompletedSegments(TableId id, CommitLogPosition[] lowerBounds, CommitLogPosition[] upperBounds)
+    {
+        // the positions of different stripes are not ordered, so we go thru all the active segments
+        for (CommitLogSegment segment : segmentManager.getActiveSegments())
+        {
+            int stripe = segmentManager.stripeOf(segment);
+            segment.markClean(id, lowerBounds[stripe], upperBounds[stripe]);
+
+            if (segment.isUnused())
+            {
+                logger.debug("Commit log segment {} is unused", segment);
+                segmentManager.archiveAndDiscard(segment);
+            }
+        }
+    }
+
     @Override
     public String getArchiveCommand()
     {
@@ -523,11 +584,17 @@ public class CommitLog implements CommitLogMBean
          */
         private EncryptionContext encryptionContext;
 
+        /**
+         * The way the uncompressed, unencrypted segments are written.
+         */
+        private final Config.CommitLogDiskAccessMode diskAccessMode;
+
         public Configuration(ParameterizedClass compressorClass, EncryptionContext encryptionContext)
         {
             this.compressorClass = compressorClass;
             this.compressor = compressorClass != null ? CompressionParams.createCompressor(compressorClass) : null;
             this.encryptionContext = encryptionContext;
+            this.diskAccessMode = DatabaseDescriptor.getCommitLogDiskAccessMode();
         }
 
         /**
@@ -548,6 +615,15 @@ public class CommitLog implements CommitLogMBean
             return encryptionContext.isEnabled();
         }
 
+        /**
+         * Checks if the segments must be written with direct I/O.
+         * @return <code>true</code> if the segments must be written with direct I/O, <code>false</code> otherwise.
+         */
+        public boolean useDirectIO()
+        {
+            return diskAccessMode == Config.CommitLogDiskAccessMode.direct && !useCompression() && !useEncryption();
+        }
+
         /**
          * Returns the compressor used to compress the segments.
          * @return the compressor used to compress the segments
@@ -56,6 +56,7 @@ public class CommitLogDescriptor
 
     static final String COMPRESSION_PARAMETERS_KEY = "compressionParameters";
     static final String COMPRESSION_CLASS_KEY = "compressionClass";
+    static final String RECYCLED_KEY = "recycled";
 
     // We don't support anything pre-3.0
     public static final int VERSION_30 = 6;
@@ -72,13 +73,24 @@ public class CommitLogDescriptor
     public final long id;
     public final ParameterizedClass compression;
     private final EncryptionContext encryptionContext;
+    /**
+     * Whether the segment was written to the file of an earlier segment, whose content may follow the last sync
+     * marker of the segment.
+     */
+    public final boolean recycled;
 
     public CommitLogDescriptor(int version, long id, ParameterizedClass compression, EncryptionContext encryptionContext)
+    {
+        this(version, id, compression, encryptionContext, false);
+    }
+
+    public CommitLogDescriptor(int version, long id, ParameterizedClass compression, EncryptionContext encryptionContext, boolean recycled)
     {
         this.version = version;
         this.id = id;
         this.compression = compression;
         this.encryptionContext = encryptionContext;
+        this.recycled = recycled;
     }
 
     public CommitLogDescriptor(long id, ParameterizedClass compression, EncryptionContext encryptionContext)
@@ -102,7 +114,7 @@ public class CommitLogDescriptor
         out.putLong(descriptor.id);
         updateChecksumInt(crc, (int) (descriptor.id & 0xFFFFFFFFL));
         updateChecksumInt(crc, (int) (descriptor.id >>> 32));
-        String parametersString = constructParametersString(descriptor.compression, descriptor.encryptionContext, additionalHeaders);
+        String parametersString = constructParametersString(descriptor.compression, descriptor.encryptionContext, descriptor.recycled, additionalHeaders);
         byte[] parametersBytes = parametersString.getBytes(StandardCharsets.UTF_8);
         if (parametersBytes.length != (((short) parametersBytes.length) & 0xFFFF))
             throw new ConfigurationException(String.format("Compression parameters too long, length %d cannot be above 65535.",
@@ -116,6 +128,11 @@ public class CommitLogDescriptor
 
     @VisibleForTesting
     static String constructParametersString(ParameterizedClass compression, EncryptionContext encryptionContext, Map<String, String> additionalHeaders)
+    {
+        return constructParametersString(compression, encryptionContext, false, additionalHeaders);
+    }
+
+    private static String constructParametersString(ParameterizedClass compression, EncryptionContext encryptionContext, boolean recycled, Map<String, String> additionalHeaders)
     {
         Map<String, Object> params = new TreeMap<>();
         if (compression != null)
@@ -125,6 +142,8 @@ public class CommitLogDescriptor
         }
         if (encryptionContext != null)
             params.putAll(encryptionContext.toHeaderParameters());
+        if (recycled)
+            params.put(RECYCLED_KEY, true);
         params.putAll(additionalHeaders);
         return JSONValue.toJSONString(params);
     }
@@ -169,7 +188,8 @@ public class CommitLogDescriptor
         if (crc == (int) checkcrc.getValue())
         {
             Map<?, ?> map = (Map<?, ?>) JSONValue.parse(new String(parametersBytes, StandardCharsets.UTF_8));
-            return new CommitLogDescriptor(version, id, parseCompression(map), EncryptionContext.createFromMap(map, encryptionContext));
+            return new CommitLogDescriptor(version, id, parseCompression(map), EncryptionContext.createFromMap(map, encryptionContext),
+                                           map != null && Boolean.TRUE.equals(map.get(RECYCLED_KEY)));
         }
         return null;
     }
@@ -256,6 +276,6 @@ public class CommitLogDescriptor
     public boolean equals(CommitLogDescriptor that)
     {
         return equalsIgnoringCompression(that) && Objects.equal(this.compression, that.compression)
-                && Objects.equal(encryptionContext, that.encryptionContext);
+                && Objects.equal(encryptionContext, that.encryptionContext) && recycled == that.recycled;
     }
 }
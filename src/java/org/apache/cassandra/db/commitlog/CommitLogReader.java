@@ -71,6 +71,15 @@ public class CommitLogReader
         return invalidMutations.entrySet();
     }
 
+    /**
+     * Adds the invalid mutations counted by another reader, which read some of the segments of the same replay.
+     */
+    void addInvalidMutations(Set<Map.Entry<TableId, AtomicInteger>> counts)
+    {
+        for (Map.Entry<TableId, AtomicInteger> entry : counts)
+            invalidMutations.computeIfAbsent(entry.getKey(), id -> new AtomicInteger()).addAndGet(entry.getValue().get());
+    }
+
     /**
      * Reads all passed in files with no minimum, no start, and no mutation limit.
      */
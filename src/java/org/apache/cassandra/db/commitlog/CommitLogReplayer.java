@@ -20,33 +20,41 @@ package org.apache.cassandra.db.commitlog;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.apache.commons.lang3.StringUtils;
 import org.cliffc.high_scale_lib.NonBlockingHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.apache.cassandra.concurrent.Stage;
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Memtable;
 import org.apache.cassandra.db.Mutation;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.metrics.CommitLogMetrics;
 import org.apache.cassandra.schema.Schema;
 import org.apache.cassandra.schema.SchemaConstants;
 import org.apache.cassandra.schema.TableId;
@@ -63,6 +71,9 @@ public class CommitLogReplayer implements CommitLogReadHandler
     static final String IGNORE_REPLAY_ERRORS_PROPERTY = Config.PROPERTY_PREFIX + "commitlog.ignorereplayerrors";
     private static final Logger logger = LoggerFactory.getLogger(CommitLogReplayer.class);
     private static final int MAX_OUTSTANDING_REPLAY_COUNT = Integer.getInteger(Config.PROPERTY_PREFIX + "commitlog_max_outstanding_replay_count", 1024);
+    // the number of segments read in parallel, each of which is held in memory until its mutations are replayed
+    private static final int REPLAY_READER_THREADS = Integer.getInteger(Config.PROPERTY_PREFIX + "commitlog_replay_reader_threads",
+                                                                        Math.min(4, FBUtilities.getAvailableProcessors()));
 
     private final Set<Keyspace> keyspacesReplayed;
     private final Queue<Future<Integer>> futures;
@@ -70,12 +81,23 @@ public class CommitLogReplayer implements CommitLogReadHandler
     private final AtomicInteger replayedCount;
     private final Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted;
     private final CommitLogPosition globalPosition;
+    // the position of each stripe a table was truncated at, if the commit log was striped when it was truncated
+    private final Map<TableId, CommitLogPosition[]> cfTruncatedStripes;
+    // the stripe of each segment replayed, that is the index of its directory in those of the commit log
+    private final Map<Long, Integer> segmentStripes = new HashMap<>();
+    private final List<String> commitLogDirectories;
 
     // Used to throttle speed of replay of mutations if we pass the max outstanding count
     private long pendingMutationBytes = 0;
 
     private final ReplayFilter replayFilter;
     private final CommitLogArchiver archiver;
+    private final CommitLogMetrics metrics;
+
+    private final int readerThreads;
+    // the mutations of a partition are always applied by the same executor, in the order of the commit log; these are
+    // created with the first mutation replayed and shut down once its writes are waited for
+    private ExecutorService[] applyExecutors;
 
     @VisibleForTesting
     protected boolean sawCDCMutation;
@@ -87,22 +109,46 @@ public class CommitLogReplayer implements CommitLogReadHandler
                       CommitLogPosition globalPosition,
                       Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted,
                       ReplayFilter replayFilter)
+    {
+        this(commitLog, globalPosition, cfPersisted, replayFilter, 1);
+    }
+
+    CommitLogReplayer(CommitLog commitLog,
+                      CommitLogPosition globalPosition,
+                      Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted,
+                      ReplayFilter replayFilter,
+                      int readerThreads)
+    {
+        this(commitLog, globalPosition, cfPersisted, Collections.emptyMap(), replayFilter, readerThreads);
+    }
+
+    CommitLogReplayer(CommitLog commitLog,
+                      CommitLogPosition globalPosition,
+                      Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted,
+                      Map<TableId, CommitLogPosition[]> cfTruncatedStripes,
+                      ReplayFilter replayFilter,
+                      int readerThreads)
     {
         this.keyspacesReplayed = new NonBlockingHashSet<>();
         this.futures = new ArrayDeque<>();
         // count the number of replayed mutation. We don't really care about atomicity, but we need it to be a reference.
         this.replayedCount = new AtomicInteger();
         this.cfPersisted = cfPersisted;
+        this.cfTruncatedStripes = cfTruncatedStripes;
         this.globalPosition = globalPosition;
         this.replayFilter = replayFilter;
         this.archiver = commitLog.archiver;
+        this.metrics = commitLog.metrics;
         this.commitLogReader = new CommitLogReader();
+        this.commitLogDirectories = commitLog.segmentManager.getStorageDirectories();
+        this.readerThreads = readerThreads;
     }
 
     public static CommitLogReplayer construct(CommitLog commitLog)
     {
         // compute per-CF and global replay intervals
         Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted = new HashMap<>();
+        Map<TableId, CommitLogPosition[]> cfTruncatedStripes = new HashMap<>();
         ReplayFilter replayFilter = ReplayFilter.create();
 
         for (ColumnFamilyStore cfs : ColumnFamilyStore.all())
@@ -131,14 +177,36 @@ public class CommitLogReplayer implements CommitLogReadHandler
 
             IntervalSet<CommitLogPosition> filter = persistedIntervals(cfs.getLiveSSTables(), truncatedAt);
             cfPersisted.put(cfs.metadata.id, filter);
+            CommitLogPosition[] truncatedStripes = Memtable.stripePositionsOf(truncatedAt);
+            if (truncatedStripes != null)
+                cfTruncatedStripes.put(cfs.metadata.id, truncatedStripes);
         }
         CommitLogPosition globalPosition = firstNotCovered(cfPersisted.values());
         logger.debug("Global replay position is {} from columnfamilies {}", globalPosition, FBUtilities.toString(cfPersisted));
-        return new CommitLogReplayer(commitLog, globalPosition, cfPersisted, replayFilter);
+        return new CommitLogReplayer(commitLog, globalPosition, cfPersisted, cfTruncatedStripes, replayFilter, REPLAY_READER_THREADS);
+    }
+
+    /**
+     * Records the stripe of each of the given segment files, from the directory of the commit log it is in.
+     */
+    private void recordStripes(Iterable<File> files)
+    {
+        for (File file : files)
+        {
+            if (!CommitLogDescriptor.isValid(file.getName()))
+                continue;
+            Path directory = file.getAbsoluteFile().toPath().normalize().getParent();
+            for (int i = 0; i < commitLogDirectories.size(); i++)
+            {
+                if (new File(commitLogDirectories.get(i)).getAbsoluteFile().toPath().normalize().equals(directory))
+                    segmentStripes.put(CommitLogDescriptor.fromFileName(file.getName()).id, i);
+            }
+        }
     }
 
     public void replayPath(File file, boolean tolerateTruncation) throws IOException
     {
+        recordStripes(Collections.singletonList(file));
         sawCDCMutation = false;
         commitLogReader.readCommitLogSegment(this, file, globalPosition, CommitLogReader.ALL_MUTATIONS, tolerateTruncation);
         if (sawCDCMutation)
@@ -148,6 +216,13 @@ public class CommitLogReplayer implements CommitLogReadHandler
     public void replayFiles(File[] clogs) throws IOException
     {
         List<File> filteredLogs = CommitLogReader.filterCommitLogFiles(clogs);
+        recordStripes(filteredLogs);
+        if (readerThreads > 1 && filteredLogs.size() > 1)
+        {
+            replayFilesInParallel(filteredLogs);
+            return;
+        }
+
         int i = 0;
         for (File file: filteredLogs)
         {
@@ -160,6 +235,120 @@ public class CommitLogReplayer implements CommitLogReadHandler
     }
 
 
+    /**
+     * Reads up to {@link #readerThreads} segments in parallel, including their decompression or decryption, while the
+     * mutations of the segments read are replayed in the order of the segments.
+     */
+    private void replayFilesInParallel(List<File> filteredLogs) throws IOException
+    {
+        logger.info("Reading {} commit log segments with {} threads", filteredLogs.size(), readerThreads);
+        ExecutorService readers = DebuggableThreadPoolExecutor.createWithMaximumPoolSize("CommitLogReplayReader", readerThreads, 60, TimeUnit.SECONDS);
+        try
+        {
+            Deque<Future<ReadSegment>> reads = new ArrayDeque<>();
+            int next = 0;
+            while (next < filteredLogs.size() || !reads.isEmpty())
+            {
+                while (next < filteredLogs.size() && reads.size() < readerThreads)
+                {
+                    ReadSegment segment = new ReadSegment(filteredLogs.get(next), ++next == filteredLogs.size());
+                    reads.add(readers.submit(segment::read));
+                }
+
+                ReadSegment segment;
+                try
+                {
+                    segment = Uninterruptibles.getUninterruptibly(reads.poll());
+                }
+                catch (ExecutionException e)
+                {
+                    Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                    throw new RuntimeException(e.getCause());
+                }
+                segment.replay();
+            }
+        }
+        finally
+        {
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * The mutations of a segment read ahead of their replay. Errors are handled by the replayer while reading, and
+     * an error that stops the replay is only thrown once the mutations read before it are replayed.
+     */
+    private class ReadSegment implements CommitLogReadHandler
+    {
+        private final File file;
+        private final boolean tolerateTruncation;
+        private final CommitLogReader reader = new CommitLogReader();
+        private final List<ReadMutation> mutations = new ArrayList<>();
+        private IOException error;
+
+        ReadSegment(File file, boolean tolerateTruncation)
+        {
+            this.file = file;
+            this.tolerateTruncation = tolerateTruncation;
+        }
+
+        ReadSegment read()
+        {
+            try
+            {
+                reader.readCommitLogSegment(this, file, globalPosition, tolerateTruncation);
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+            return this;
+        }
+
+        void replay() throws IOException
+        {
+            sawCDCMutation = false;
+            for (ReadMutation mutation : mutations)
+                handleMutation(mutation.mutation, mutation.size, mutation.entryLocation, mutation.desc);
+            commitLogReader.addInvalidMutations(reader.getInvalidMutations());
+            if (error != null)
+                throw error;
+            if (sawCDCMutation)
+                handleCDCReplayCompletion(file);
+        }
+
+        public boolean shouldSkipSegmentOnError(CommitLogReadException exception) throws IOException
+        {
+            return CommitLogReplayer.this.shouldSkipSegmentOnError(exception);
+        }
+
+        public void handleUnrecoverableError(CommitLogReadException exception) throws IOException
+        {
+            CommitLogReplayer.this.handleUnrecoverableError(exception);
+        }
+
+        public void handleMutation(Mutation m, int size, int entryLocation, CommitLogDescriptor desc)
+        {
+            mutations.add(new ReadMutation(m, size, entryLocation, desc));
+        }
+    }
+
+    private static class ReadMutation
+    {
+        final Mutation mutation;
+        final int size;
+        final int entryLocation;
+        final CommitLogDescriptor desc;
+
+        ReadMutation(Mutation mutation, int size, int entryLocation, CommitLogDescriptor desc)
+        {
+            this.mutation = mutation;
+            this.size = size;
+            this.entryLocation = entryLocation;
+            this.desc = desc;
+        }
+    }
+
     /**
      * Upon replay completion, CDC needs to hard-link files in the CDC folder and calculate index files so consumers can
      * begin their work.
@@ -197,8 +386,14 @@ public class CommitLogReplayer implements CommitLogReadHandler
         for (Map.Entry<TableId, AtomicInteger> entry : commitLogReader.getInvalidMutations())
             logger.warn("Skipped {} mutations from unknown (probably removed) CF with id {}", entry.getValue(), entry.getKey());
 
-        // wait for all the writes to finish on the mutation stage
+        // wait for all the writes to finish on the apply executors
         FBUtilities.waitOnFutures(futures);
+        if (applyExecutors != null)
+        {
+            for (ExecutorService executor : applyExecutors)
+                executor.shutdown();
+            applyExecutors = null;
+        }
         logger.trace("Finished waiting on mutations from recovery");
 
         // flush replayed keyspaces
@@ -274,10 +469,11 @@ public class CommitLogReplayer implements CommitLogReadHandler
 
                         Keyspace.open(newPUCollector.getKeyspaceName()).apply(newPUCollector.build(), false, true, false);
                         commitLogReplayer.keyspacesReplayed.add(keyspace);
+                        commitLogReplayer.metrics.replayedMutations.mark();
                     }
                 }
             };
-            return Stage.MUTATION.submit(runnable, serializedSize);
+            return commitLogReplayer.applyExecutor(mutation).submit(runnable, serializedSize);
         }
     }
 
@@ -291,8 +487,10 @@ public class CommitLogReplayer implements CommitLogReadHandler
         for (SSTableReader reader : onDisk)
             builder.addAll(reader.getSSTableMetadata().commitLogIntervals);
 
+        // all the records up to the floor of a truncation of a striped commit log are truncated, and those past it
+        // depending on the position of their stripe
         if (truncatedAt != null)
-            builder.add(CommitLogPosition.NONE, truncatedAt);
+            builder.add(CommitLogPosition.NONE, Memtable.floorOf(truncatedAt));
         return builder.build();
     }
 
@@ -399,7 +597,28 @@ public class CommitLogReplayer implements CommitLogReadHandler
      */
     private boolean shouldReplay(TableId tableId, CommitLogPosition position)
     {
-        return !cfPersisted.get(tableId).contains(position);
+        if (cfPersisted.get(tableId).contains(position))
+            return false;
+
+        // the table was truncated up to a different position in each stripe; the records of segments whose stripe is
+        // unknown, because they are not in a directory of the commit log or the stripes changed since, are replayed
+        // past the floor of the truncation
+        CommitLogPosition[] truncatedStripes = cfTruncatedStripes.get(tableId);
+        if (truncatedStripes == null || truncatedStripes.length != commitLogDirectories.size())
+            return true;
+        Integer stripe = segmentStripes.get(position.segmentId);
+        return stripe == null || position.compareTo(truncatedStripes[stripe]) > 0;
+    }
+
+    private ExecutorService applyExecutor(Mutation mutation)
+    {
+        if (applyExecutors == null)
+        {
+            applyExecutors = new ExecutorService[DatabaseDescriptor.getConcurrentWriters()];
+            for (int i = 0; i < applyExecutors.length; i++)
+                applyExecutors[i] = DebuggableThreadPoolExecutor.createWithMaximumPoolSize("CommitLogReplay:" + i, 1, 60, TimeUnit.SECONDS);
+        }
+        return applyExecutors[Math.floorMod(mutation.key().getToken().hashCode(), applyExecutors.length)];
     }
 
     protected boolean pointInTimeExceeded(Mutation fm)
@@ -420,6 +639,7 @@ public class CommitLogReplayer implements CommitLogReadHandler
             sawCDCMutation = true;
 
         pendingMutationBytes += size;
+        metrics.replayedBytes.mark(size);
         futures.offer(mutationInitiator.initiateMutation(m,
                                                          desc.id,
                                                          size,
@@ -72,10 +72,16 @@ public abstract class CommitLogSegment
     static
     {
         long maxId = Long.MIN_VALUE;
-        for (File file : new File(DatabaseDescriptor.getCommitLogLocation()).listFiles())
+        for (String directory : DatabaseDescriptor.getCommitLogLocations())
         {
-            if (CommitLogDescriptor.isValid(file.getName()))
-                maxId = Math.max(CommitLogDescriptor.fromFileName(file.getName()).id, maxId);
+            File[] files = new File(directory).listFiles();
+            if (files == null)
+                continue;
+            for (File file : files)
+            {
+                if (CommitLogDescriptor.isValid(file.getName()))
+                    maxId = Math.max(CommitLogDescriptor.fromFileName(file.getName()).id, maxId);
+            }
         }
         replayLimitId = idBase = Math.max(System.currentTimeMillis(), maxId + 1);
     }
@@ -123,19 +129,25 @@ public abstract class CommitLogSegment
     final FileChannel channel;
     final int fd;
 
-    protected final AbstractCommitLogSegmentManager manager;
+    protected final AbstractDirectoryCommitLogSegmentManager manager;
 
     ByteBuffer buffer;
     private volatile boolean headerWritten;
 
     public final CommitLogDescriptor descriptor;
 
-    static CommitLogSegment createSegment(CommitLog commitLog, AbstractCommitLogSegmentManager manager)
+    static CommitLogSegment createSegment(CommitLog commitLog, AbstractDirectoryCommitLogSegmentManager manager)
     {
         Configuration config = commitLog.configuration;
-        CommitLogSegment segment = config.useEncryption() ? new EncryptedSegment(commitLog, manager)
-                                                          : config.useCompression() ? new CompressedSegment(commitLog, manager)
-                                                                                    : new MemoryMappedSegment(commitLog, manager);
+        CommitLogSegment segment;
+        if (config.useEncryption())
+            segment = new EncryptedSegment(commitLog, manager);
+        else if (config.useCompression())
+            segment = new CompressedSegment(commitLog, manager);
+        else if (config.useDirectIO())
+            segment = new DirectIOSegment(commitLog, manager);
+        else
+            segment = new MemoryMappedSegment(commitLog, manager);
         segment.writeLogHeader();
         return segment;
     }
@@ -149,7 +161,7 @@ public abstract class CommitLogSegment
     static boolean usesBufferPool(CommitLog commitLog)
     {
         Configuration config = commitLog.configuration;
-        return config.useEncryption() || config.useCompression();
+        return config.useEncryption() || config.useCompression() || config.useDirectIO();
     }
 
     static long getNextId()
@@ -160,15 +172,21 @@ public abstract class CommitLogSegment
     /**
      * Constructs a new segment file.
      */
-    CommitLogSegment(CommitLog commitLog, AbstractCommitLogSegmentManager manager)
+    CommitLogSegment(CommitLog commitLog, AbstractDirectoryCommitLogSegmentManager manager)
     {
         this.manager = manager;
 
         id = getNextId();
-        descriptor = new CommitLogDescriptor(id,
+        // only direct I/O segments are written over the files of earlier segments
+        File recycledFile = commitLog.configuration.useDirectIO() ? manager.takeRecycledFile() : null;
+        descriptor = new CommitLogDescriptor(CommitLogDescriptor.current_version,
+                                             id,
                                              commitLog.configuration.getCompressorClass(),
-                                             commitLog.configuration.getEncryptionContext());
+                                             commitLog.configuration.getEncryptionContext(),
+                                             recycledFile != null);
         logFile = new File(manager.storageDirectory, descriptor.fileName());
+        if (recycledFile != null)
+            FileUtils.renameWithConfirm(recycledFile, logFile);
 
         try
         {
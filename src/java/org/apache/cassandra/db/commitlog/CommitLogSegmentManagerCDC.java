@@ -39,7 +39,7 @@ import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.utils.DirectorySizeCalculator;
 import org.apache.cassandra.utils.NoSpamLogger;
 
-public class CommitLogSegmentManagerCDC extends AbstractCommitLogSegmentManager
+public class CommitLogSegmentManagerCDC extends AbstractDirectoryCommitLogSegmentManager
 {
     static final Logger logger = LoggerFactory.getLogger(CommitLogSegmentManagerCDC.class);
     private final CDCSizeTracker cdcSizeTracker;
@@ -19,25 +19,94 @@
 package org.apache.cassandra.db.commitlog;
 
 import java.io.File;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import com.google.common.base.Strings;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.Mutation;
 import org.apache.cassandra.io.util.FileUtils;
 
-public class CommitLogSegmentManagerStandard extends AbstractCommitLogSegmentManager
+public class CommitLogSegmentManagerStandard extends AbstractDirectoryCommitLogSegmentManager
 {
+    static final String RECYCLED_FILE_SUFFIX = ".recycled";
+
+    // files of discarded direct I/O segments, renamed so that they are not replayed, for new segments to be written to
+    private final Queue<File> recycledFiles = new ConcurrentLinkedQueue<>();
+
     public CommitLogSegmentManagerStandard(final CommitLog commitLog, String storageDirectory)
     {
         super(commitLog, storageDirectory);
     }
 
+    @Override
+    void start()
+    {
+        // pick up the files recycled before a restart
+        recycledFiles.clear();
+        File[] files = new File(storageDirectory).listFiles((dir, name) -> name.endsWith(RECYCLED_FILE_SUFFIX));
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (!canRecycle() || !recycledFiles.offer(file))
+                    FileUtils.deleteWithConfirm(file);
+            }
+        }
+        super.start();
+    }
+
     public void discard(CommitLogSegment segment, boolean delete)
     {
         segment.close();
-        if (delete)
+        if (delete && !recycle(segment))
             FileUtils.deleteWithConfirm(segment.logFile);
         addSize(-segment.onDiskSize());
     }
 
+    /**
+     * Keeps the file of a discarded direct I/O segment for a new segment, unless commitlog_max_recycled_segments files
+     * are kept already. The files are not recycled if an archive command is set, as it may link them.
+     *
+     * @return true if the file was recycled, false if it must be deleted
+     */
+    private boolean recycle(CommitLogSegment segment)
+    {
+        if (!(segment instanceof DirectIOSegment) || !canRecycle())
+            return false;
+
+        File recycledFile = new File(segment.logFile.getPath() + RECYCLED_FILE_SUFFIX);
+        FileUtils.renameWithConfirm(segment.logFile, recycledFile);
+        recycledFiles.offer(recycledFile);
+        return true;
+    }
+
+    private boolean canRecycle()
+    {
+        return commitLog.configuration.useDirectIO()
+               && Strings.isNullOrEmpty(commitLog.archiver.archiveCommand)
+               && recycledFiles.size() < DatabaseDescriptor.getCommitLogMaxRecycledSegments();
+    }
+
+    @Override
+    File takeRecycledFile()
+    {
+        return recycledFiles.poll();
+    }
+
+    @Override
+    public void stopUnsafe(boolean deleteSegments)
+    {
+        super.stopUnsafe(deleteSegments);
+        if (deleteSegments)
+        {
+            File file;
+            while ((file = recycledFiles.poll()) != null)
+                FileUtils.deleteWithConfirm(file);
+        }
+    }
+
     /**
      * Reserve space in the current segment for the provided mutation or, if there isn't space available,
      * create a new segment. allocate() is blocking until allocation succeeds as it waits on a signal in advanceAllocatingFrom
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.schema.TableId;
+
+/**
+ * Stripes the commit log across several directories, usually on different devices, so that its write and sync
+ * throughput scale with their number. Each directory is managed by its own {@link CommitLogSegmentManagerStandard},
+ * with its own management thread, and synced by its own thread. Writing threads always allocate from the same
+ * stripe.
+ *
+ * Segment ids are shared by all the stripes, so replay merges them by sorting the segments of all the directories by
+ * id, like those of a single directory. The positions of different stripes do not follow the order of allocation
+ * however: a write to a stripe may get an earlier position than a write to another stripe that completed before it
+ * started. So {@link #getCurrentPosition()} returns the earliest current position of any stripe, before which all the
+ * records have been allocated, and the bounds of the memtables keep the current position of each stripe, up to which
+ * the segments of the stripe are marked clean when they are flushed, see
+ * {@link org.apache.cassandra.db.Memtable.LastCommitLogPosition}.
+ */
+public class CommitLogSegmentManagerStriped extends AbstractCommitLogSegmentManager
+{
+    private final String[] storageDirectories;
+    private final Stripe[] stripes;
+    // syncs all the stripes but the first, which is synced by the commit log service thread; started with the stripes
+    private final ExecutorService[] syncExecutors;
+
+    public CommitLogSegmentManagerStriped(final CommitLog commitLog, String... storageDirectories)
+    {
+        super(commitLog, storageDirectories[0]);
+        this.storageDirectories = storageDirectories;
+        this.stripes = new Stripe[storageDirectories.length];
+        this.syncExecutors = new ExecutorService[storageDirectories.length];
+        for (int i = 0; i < storageDirectories.length; i++)
+            stripes[i] = new Stripe(commitLog, storageDirectories[i]);
+    }
+
+    private class Stripe extends CommitLogSegmentManagerStandard
+    {
+        Stripe(CommitLog commitLog, String storageDirectory)
+        {
+            super(commitLog, storageDirectory);
+        }
+
+        @Override
+        long totalSpaceInBytes()
+        {
+            return super.totalSpaceInBytes() / stripes.length;
+        }
+    }
+
+    private Stripe stripe()
+    {
+        return stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+    }
+
+    @Override
+    void start()
+    {
+        for (Stripe stripe : stripes)
+            stripe.start();
+        for (int i = 1; i < stripes.length; i++)
+            syncExecutors[i] = Executors.newSingleThreadExecutor(new NamedThreadFactory("COMMIT-LOG-SYNC-" + i));
+    }
+
+    public CommitLogSegment.Allocation allocate(Mutation mutation, int size)
+    {
+        return stripe().allocate(mutation, size);
+    }
+
+    @Override
+    void archiveAndDiscard(CommitLogSegment segment)
+    {
+        segment.manager.archiveAndDiscard(segment);
+    }
+
+    @Override
+    void forceRecycleAll(Iterable<TableId> droppedTables)
+    {
+        List<CommitLogSegment> segmentsToRecycle = new ArrayList<>();
+        CommitLogSegment[] last = new CommitLogSegment[stripes.length];
+        for (int i = 0; i < stripes.length; i++)
+        {
+            List<CommitLogSegment> segments = new ArrayList<>(stripes[i].getActiveSegments());
+            last[i] = segments.get(segments.size() - 1);
+            stripes[i].advanceAllocatingFrom(last[i]);
+            segmentsToRecycle.addAll(segments);
+        }
+
+        // wait for the commit log modifications
+        for (CommitLogSegment segment : last)
+            segment.waitForModifications();
+
+        // make sure the writes have materialized inside of the memtables by waiting for all outstanding writes
+        // to complete
+        Keyspace.writeOrder.awaitNewBarrier();
+
+        // flush and wait for all CFs that are dirty in the segments of all the stripes up-to and including 'last'
+        Future<?> future = flushDataFrom(segmentsToRecycle, true);
+        try
+        {
+            future.get();
+            for (int i = 0; i < stripes.length; i++)
+                stripes[i].discardRecycledSegments(droppedTables, last[i]);
+        }
+        catch (Throwable t)
+        {
+            // for now just log the error
+            logger.error("Failed waiting for a forced recycle of in-use commit log segments", t);
+        }
+    }
+
+    @Override
+    public long onDiskSize()
+    {
+        long size = 0;
+        for (Stripe stripe : stripes)
+            size += stripe.onDiskSize();
+        return size;
+    }
+
+    @Override
+    public void stopUnsafe(boolean deleteSegments)
+    {
+        for (Stripe stripe : stripes)
+            stripe.stopUnsafe(deleteSegments);
+        shutdownSyncExecutors();
+        try
+        {
+            awaitSyncExecutors();
+        }
+        catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    void awaitManagementTasksCompletion()
+    {
+        for (Stripe stripe : stripes)
+            stripe.awaitManagementTasksCompletion();
+    }
+
+    @Override
+    public void shutdown()
+    {
+        for (Stripe stripe : stripes)
+            stripe.shutdown();
+        shutdownSyncExecutors();
+    }
+
+    @Override
+    public void awaitTermination() throws InterruptedException
+    {
+        for (Stripe stripe : stripes)
+            stripe.awaitTermination();
+        awaitSyncExecutors();
+    }
+
+    private void shutdownSyncExecutors()
+    {
+        for (int i = 1; i < stripes.length; i++)
+        {
+            if (syncExecutors[i] != null)
+                syncExecutors[i].shutdown();
+        }
+    }
+
+    private void awaitSyncExecutors() throws InterruptedException
+    {
+        for (int i = 1; i < stripes.length; i++)
+        {
+            if (syncExecutors[i] != null)
+            {
+                syncExecutors[i].awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                syncExecutors[i] = null;
+            }
+        }
+    }
+
+    /**
+     * @return a read-only collection of the active commit log segments of all the stripes, ordered by id
+     */
+    @Override
+    public Collection<CommitLogSegment> getActiveSegments()
+    {
+        List<CommitLogSegment> segments = new ArrayList<>();
+        for (Stripe stripe : stripes)
+            segments.addAll(stripe.getActiveSegments());
+        segments.sort(Comparator.comparingLong(segment -> segment.id));
+        return Collections.unmodifiableCollection(segments);
+    }
+
+    /**
+     * @return the earliest current CommitLogPosition of the stripes
+     */
+    @Override
+    CommitLogPosition getCurrentPosition()
+    {
+        CommitLogPosition current = stripes[0].getCurrentPosition();
+        for (int i = 1; i < stripes.length; i++)
+        {
+            CommitLogPosition position = stripes[i].getCurrentPosition();
+            if (position.compareTo(current) < 0)
+                current = position;
+        }
+        return current;
+    }
+
+    @Override
+    CommitLogPosition[] getStripePositions()
+    {
+        CommitLogPosition[] positions = new CommitLogPosition[stripes.length];
+        for (int i = 0; i < stripes.length; i++)
+            positions[i] = stripes[i].getCurrentPosition();
+        return positions;
+    }
+
+    @Override
+    int stripeOf(CommitLogSegment segment)
+    {
+        for (int i = 0; i < stripes.length; i++)
+        {
+            if (segment.manager == stripes[i])
+                return i;
+        }
+        throw new IllegalArgumentException(segment + " does not belong to any stripe");
+    }
+
+    @Override
+    List<String> getStorageDirectories()
+    {
+        return Arrays.asList(storageDirectories);
+    }
+
+    /**
+     * Syncs the stripes in parallel.
+     */
+    @Override
+    public void sync(boolean flush) throws IOException
+    {
+        List<Future<?>> futures = new ArrayList<>(stripes.length - 1);
+        for (int i = 1; i < stripes.length; i++)
+        {
+            Stripe stripe = stripes[i];
+            futures.add(syncExecutors[i].submit(() -> {
+                stripe.sync(flush);
+                return null;
+            }));
+        }
+
+        stripes[0].sync(flush);
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                Uninterruptibles.getUninterruptibly(future);
+            }
+            catch (ExecutionException e)
+            {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return the segment the calling thread allocates from
+     */
+    @Override
+    CommitLogSegment allocatingFrom()
+    {
+        return stripe().allocatingFrom();
+    }
+}
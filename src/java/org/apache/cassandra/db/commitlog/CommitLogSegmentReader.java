@@ -25,6 +25,8 @@ import javax.crypto.Cipher;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.db.commitlog.EncryptedFileSegmentInputStream.ChunkProvider;
 import org.apache.cassandra.db.commitlog.CommitLogReadHandler.*;
@@ -46,6 +48,8 @@ import static org.apache.cassandra.utils.FBUtilities.updateChecksumInt;
  */
 public class CommitLogSegmentReader implements Iterable<CommitLogSegmentReader.SyncSegment>
 {
+    private static final Logger logger = LoggerFactory.getLogger(CommitLogSegmentReader.class);
+
     private final CommitLogReadHandler handler;
     private final CommitLogDescriptor descriptor;
     private final RandomAccessReader reader;
@@ -155,9 +159,18 @@ public class CommitLogSegmentReader implements Iterable<CommitLogSegmentReader.S
         {
             if (end != 0 || filecrc != 0)
             {
-                String msg = String.format("Encountered bad header at position %d of commit log %s, with invalid CRC. " +
-                             "The end of segment marker should be zero.", offset, reader.getPath());
-                throw new SegmentReadException(msg, true);
+                if (!descriptor.recycled)
+                {
+                    String msg = String.format("Encountered bad header at position %d of commit log %s, with invalid CRC. " +
+                                 "The end of segment marker should be zero.", offset, reader.getPath());
+                    throw new SegmentReadException(msg, true);
+                }
+
+                // in a recycled file, the content of an earlier segment follows the data of this one, but the marker
+                // after the last synced section is zeroed with it: finding the earlier content there instead means
+                // that the last sync was torn, or the file corrupted, and the mutations past it are lost
+                logger.warn("Encountered bad header at position {} of recycled commit log {}, with invalid CRC instead " +
+                            "of the zeroed end of segment marker; ignoring the rest of the segment", offset, reader.getPath());
             }
             return -1;
         }
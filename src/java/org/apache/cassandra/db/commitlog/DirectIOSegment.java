@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.util.ChannelProxy;
+import org.apache.cassandra.utils.NativeLibrary;
+import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.SyncUtil;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * Direct I/O segment. The mutation threads write in an aligned off-heap buffer from the manager's pool, and on sync
+ * the newly marked section is written to the file with O_DIRECT, bypassing the page cache, before the file data is
+ * forced to disk.
+ *
+ * A new file is written in full when the segment is created, off the write path, so that syncs never have to allocate
+ * blocks or grow the file. Once discarded, the file is recycled for a later segment by
+ * {@link CommitLogSegmentManagerStandard}, which saves writing it again; the content of the earlier segment that
+ * follows the last sync marker is then told apart by the CRC of its markers, see {@link CommitLogDescriptor#recycled}.
+ *
+ * Where direct I/O is not supported, the sections are written through the page cache instead.
+ */
+public class DirectIOSegment extends CommitLogSegment
+{
+    private static final Logger logger = LoggerFactory.getLogger(DirectIOSegment.class);
+
+    private static final int ALIGNMENT = ChannelProxy.DIRECT_IO_ALIGNMENT;
+
+    // the O_DIRECT descriptor of the file, or -1 if it is written through the page cache
+    private final int directFd;
+
+    /**
+     * Constructs a new segment file, or reuses the file of a discarded one.
+     *
+     * @param commitLog the commit log it will be used with.
+     */
+    DirectIOSegment(CommitLog commitLog, AbstractDirectoryCommitLogSegmentManager manager)
+    {
+        super(commitLog, manager);
+        directFd = NativeLibrary.tryOpenDirectForWriting(logFile.getPath());
+        if (directFd < 0)
+            NoSpamLogger.log(logger, NoSpamLogger.Level.WARN, 1, TimeUnit.HOURS,
+                             "Unable to open {} for direct I/O, writing the commit log through the page cache instead", logFile);
+
+        if (!descriptor.recycled)
+        {
+            MemoryUtil.setByte(MemoryUtil.getAddress(buffer), buffer.capacity(), (byte) 0);
+            writeAligned(0, buffer.capacity());
+        }
+    }
+
+    ByteBuffer createBuffer(CommitLog commitLog)
+    {
+        assert DatabaseDescriptor.getCommitLogSegmentSize() % ALIGNMENT == 0;
+        manager.addSize(DatabaseDescriptor.getCommitLogSegmentSize());
+        return manager.getBufferPool().createBuffer();
+    }
+
+    @Override
+    void writeLogHeader()
+    {
+        super.writeLogHeader();
+
+        // mark the initial sync marker as uninitialised, and persist the header before the segment is used, as a
+        // recycled file still starts with the header of the earlier segment
+        int firstSync = buffer.position();
+        buffer.putInt(firstSync, 0);
+        buffer.putInt(firstSync + 4, 0);
+        writeAligned(0, firstSync + SYNC_MARKER_SIZE);
+        force();
+        SyncUtil.trySyncDir(logFile.getParentFile());
+    }
+
+    @Override
+    void write(int startMarker, int nextMarker)
+    {
+        // if there's room in the discard section to write an empty header,
+        // zero out the next sync marker so replayer can cleanly exit
+        if (nextMarker <= buffer.capacity() - SYNC_MARKER_SIZE)
+        {
+            buffer.putInt(nextMarker, 0);
+            buffer.putInt(nextMarker + 4, 0);
+        }
+
+        // write previous sync marker to point to next sync marker
+        // we don't chain the crcs here to ensure this method is idempotent if it fails
+        writeSyncMarker(id, buffer, startMarker, startMarker, nextMarker);
+    }
+
+    @Override
+    protected void flush(int startMarker, int nextMarker)
+    {
+        // the sections marked since the last flush start at the last synced marker, and are followed by the zeroed
+        // marker the next sync will point to, if there is room for it
+        writeAligned(lastSyncedOffset, Math.min(nextMarker + SYNC_MARKER_SIZE, buffer.capacity()));
+        force();
+    }
+
+    /**
+     * Writes the blocks of the buffer that overlap the given range to the same position of the file.
+     */
+    private void writeAligned(int start, int end)
+    {
+        ByteBuffer blocks = buffer.duplicate();
+        blocks.limit((end + ALIGNMENT - 1) & -ALIGNMENT).position(start & -ALIGNMENT);
+        try
+        {
+            while (blocks.hasRemaining())
+            {
+                if (directFd >= 0)
+                    NativeLibrary.pwrite(directFd, blocks, blocks.position());
+                else
+                    channel.write(blocks, blocks.position());
+            }
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+    }
+
+    private void force()
+    {
+        try
+        {
+            // the file never changes size, so only its data needs to be forced
+            SyncUtil.force(channel, false);
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+    }
+
+    @Override
+    public long onDiskSize()
+    {
+        return DatabaseDescriptor.getCommitLogSegmentSize();
+    }
+
+    @Override
+    protected void internalClose()
+    {
+        try
+        {
+            NativeLibrary.tryCloseFD(directFd);
+            manager.getBufferPool().releaseBuffer(buffer);
+            super.internalClose();
+        }
+        finally
+        {
+            manager.notifyBufferFreed();
+        }
+    }
+}
@@ -127,6 +127,8 @@ public class CompactionManager implements CompactionManagerMBean
     private final ValidationExecutor validationExecutor = new ValidationExecutor();
     private final CompactionExecutor cacheCleanupExecutor = new CacheCleanupExecutor();
     private final CompactionExecutor viewBuildExecutor = new ViewBuildExecutor();
+    private final CompactionExecutor subRangeExecutor = new SubRangeCompactionExecutor();
+    private final CompactionExecutor subRangeValidationExecutor = new SubRangeValidationExecutor();
 
     private final CompactionMetrics metrics = new CompactionMetrics(executor, validationExecutor, viewBuildExecutor);
     @VisibleForTesting
@@ -231,6 +233,8 @@ public class CompactionManager implements CompactionManagerMBean
         validationExecutor.shutdown();
         viewBuildExecutor.shutdown();
         cacheCleanupExecutor.shutdown();
+        subRangeExecutor.shutdown();
+        subRangeValidationExecutor.shutdown();
 
         // interrupt compactions and validations
         for (Holder compactionHolder : active.getCompactions())
@@ -241,7 +245,7 @@ public class CompactionManager implements CompactionManagerMBean
         // wait for tasks to terminate
         // compaction tasks are interrupted above, so it shuold be fairy quick
         // until not interrupted tasks to complete.
-        for (ExecutorService exec : Arrays.asList(executor, validationExecutor, viewBuildExecutor, cacheCleanupExecutor))
+        for (ExecutorService exec : Arrays.asList(executor, validationExecutor, viewBuildExecutor, cacheCleanupExecutor, subRangeExecutor, subRangeValidationExecutor))
         {
             try
             {
@@ -1090,6 +1094,16 @@ public class CompactionManager implements CompactionManagerMBean
         return validationExecutor.submitIfRunning(validation, "validation");
     }
 
+    /**
+     * Hashes a token range of a validation split into ranges, see concurrent_validation_subranges. Ranges run on
+     * their own executor, as the validation they belong to occupies a validation executor thread while it waits for
+     * them.
+     */
+    public <T> ListenableFuture<T> submitSubRangeValidation(Callable<T> task)
+    {
+        return subRangeValidationExecutor.submitIfRunning(task, "sub-range validation");
+    }
+
     /* Used in tests. */
     public void disableAutoCompaction()
     {
@@ -1290,6 +1304,15 @@ public class CompactionManager implements CompactionManagerMBean
 
     }
 
+    /**
+     * Runs a token range of a compaction split into ranges. Ranges run on their own executor, as the compaction they
+     * belong to occupies a compaction executor thread while it waits for them.
+     */
+    <T> ListenableFuture<T> submitSubRangeCompaction(Callable<T> task)
+    {
+        return subRangeExecutor.submitIfRunning(task, "sub-range compaction");
+    }
+
     static void compactionRateLimiterAcquire(RateLimiter limiter, long bytesScanned, long lastBytesScanned, double compressionRatio)
     {
         long lengthRead = (long) ((bytesScanned - lastBytesScanned) * compressionRatio) + 1;
@@ -1930,6 +1953,46 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    private static class SubRangeValidationExecutor extends CompactionExecutor
+    {
+        public SubRangeValidationExecutor()
+        {
+            super(Math.max(1, DatabaseDescriptor.getConcurrentValidationSubranges()),
+                  Math.max(1, DatabaseDescriptor.getConcurrentValidationSubranges()),
+                  "SubRangeValidationExecutor",
+                  new LinkedBlockingQueue<>());
+
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void afterExecute(Runnable r, Throwable t)
+        {
+            // failures are rethrown, and logged, by the validation the range belongs to
+            DebuggableThreadPoolExecutor.maybeResetTraceSessionWrapper(r);
+        }
+    }
+
+    private static class SubRangeCompactionExecutor extends CompactionExecutor
+    {
+        public SubRangeCompactionExecutor()
+        {
+            super(Math.max(1, DatabaseDescriptor.getConcurrentCompactors()),
+                  Math.max(1, DatabaseDescriptor.getConcurrentCompactors()),
+                  "SubRangeCompactionExecutor",
+                  new LinkedBlockingQueue<>());
+
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void afterExecute(Runnable r, Throwable t)
+        {
+            // failures are rethrown, and logged, by the compaction the range belongs to
+            DebuggableThreadPoolExecutor.maybeResetTraceSessionWrapper(r);
+        }
+    }
+
     private static class CacheCleanupExecutor extends CompactionExecutor
     {
         public CacheCleanupExecutor()
@@ -2038,6 +2101,17 @@ public class CompactionManager implements CompactionManagerMBean
             executor.setCorePoolSize(value);
             executor.setMaximumPoolSize(value);
         }
+
+        if (value > subRangeExecutor.getCorePoolSize())
+        {
+            subRangeExecutor.setMaximumPoolSize(value);
+            subRangeExecutor.setCorePoolSize(value);
+        }
+        else if (value < subRangeExecutor.getCorePoolSize())
+        {
+            subRangeExecutor.setCorePoolSize(value);
+            subRangeExecutor.setMaximumPoolSize(value);
+        }
     }
 
     public void setConcurrentValidations()
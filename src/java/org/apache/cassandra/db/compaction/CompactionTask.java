@@ -17,18 +17,27 @@
  */
 package org.apache.cassandra.db.compaction;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,14 +45,21 @@ import org.slf4j.LoggerFactory;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.DiskBoundaryManager;
+import org.apache.cassandra.db.PartitionPosition;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
 import org.apache.cassandra.db.compaction.writers.DefaultCompactionWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.PartialLifecycleTransaction;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Throwables;
 import org.apache.cassandra.utils.concurrent.Refs;
 
 public class CompactionTask extends AbstractCompactionTask
@@ -149,7 +165,6 @@ public class CompactionTask extends AbstractCompactionTask
 
             logger.info("Compacting ({}) {}", taskId, ssTableLoggerMsg);
 
-            RateLimiter limiter = CompactionManager.instance.getRateLimiter();
             long start = System.nanoTime();
             long startTime = System.currentTimeMillis();
             long totalKeysWritten = 0;
@@ -162,60 +177,68 @@ public class CompactionTask extends AbstractCompactionTask
             long[] mergedRowCounts;
             long totalSourceCQLRows;
 
-            // SSTableScanners need to be closed before markCompactedSSTablesReplaced call as scanners contain references
-            // to both ifile and dfile and SSTR will throw deletion errors on Windows if it tries to delete before scanner is closed.
-            // See CASSANDRA-8019 and CASSANDRA-8399
             int nowInSec = FBUtilities.nowInSeconds();
-            try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
-                 AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
-                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            List<Range<Token>> ranges = parallelRanges(actuallyCompact);
+            if (ranges != null)
             {
-                long lastCheckObsoletion = start;
-                inputSizeBytes = scanners.getTotalCompressedSize();
-                double compressionRatio = scanners.getCompressionRatio();
-                if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
-                    compressionRatio = 1.0;
-
-                long lastBytesScanned = 0;
-
-                activeCompactions.beginCompaction(ci);
-                try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
+                logger.debug("Compacting ({}) in {} token ranges concurrently: {}", taskId, ranges.size(), ranges);
+                // the ranges are compacted from scanners of their own, which only need the sstables referenced meanwhile
+                @SuppressWarnings("resource")
+                Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
+                try
                 {
-                    // Note that we need to re-check this flag after calling beginCompaction above to avoid a window
-                    // where the compaction does not exist in activeCompactions but the CSM gets paused.
-                    // We already have the sstables marked compacting here so CompactionManager#waitForCessation will
-                    // block until the below exception is thrown and the transaction is cancelled.
-                    if (!controller.cfs.getCompactionStrategyManager().isActive())
-                        throw new CompactionInterruptedException(ci.getCompactionInfo());
-                    estimatedKeys = writer.estimatedKeys();
-                    while (ci.hasNext())
+                    List<RangeCompaction> parts = compactRanges(ranges, actuallyCompact, nowInSec, taskId);
+                    inputSizeBytes = SSTableReader.getTotalBytes(actuallyCompact);
+                    mergedRowCounts = new long[0];
+                    totalSourceCQLRows = 0;
+                    for (RangeCompaction part : parts)
                     {
-                        if (writer.append(ci.next()))
-                            totalKeysWritten++;
-
-
-                        long bytesScanned = scanners.getTotalBytesScanned();
-
-                        //Rate limit the scanners, and account for compression
-                        CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
-
-                        lastBytesScanned = bytesScanned;
-
-                        if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
-                        {
-                            controller.maybeRefreshOverlaps();
-                            lastCheckObsoletion = System.nanoTime();
-                        }
+                        totalKeysWritten += part.keysWritten;
+                        estimatedKeys += part.estimatedKeys;
+                        totalSourceCQLRows += part.totalSourceCQLRows;
+                        mergedRowCounts = addCounts(mergedRowCounts, part.mergedRowCounts);
                     }
 
                     // point of no return
-                    newSStables = writer.finish();
+                    newSStables = commitRanges(parts);
                 }
                 finally
                 {
-                    activeCompactions.finishCompaction(ci);
-                    mergedRowCounts = ci.getMergedRowCounts();
-                    totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                    refs.release();
+                }
+            }
+            else
+            {
+                // SSTableScanners need to be closed before markCompactedSSTablesReplaced call as scanners contain references
+                // to both ifile and dfile and SSTR will throw deletion errors on Windows if it tries to delete before scanner is closed.
+                // See CASSANDRA-8019 and CASSANDRA-8399
+                try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
+                     AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
+                     CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+                {
+                    inputSizeBytes = scanners.getTotalCompressedSize();
+
+                    activeCompactions.beginCompaction(ci);
+                    try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
+                    {
+                        // Note that we need to re-check this flag after calling beginCompaction above to avoid a window
+                        // where the compaction does not exist in activeCompactions but the CSM gets paused.
+                        // We already have the sstables marked compacting here so CompactionManager#waitForCessation will
+                        // block until the below exception is thrown and the transaction is cancelled.
+                        if (!controller.cfs.getCompactionStrategyManager().isActive())
+                            throw new CompactionInterruptedException(ci.getCompactionInfo());
+                        estimatedKeys = writer.estimatedKeys();
+                        totalKeysWritten = append(ci, scanners, controller, writer, () -> false);
+
+                        // point of no return
+                        newSStables = writer.finish();
+                    }
+                    finally
+                    {
+                        activeCompactions.finishCompaction(ci);
+                        mergedRowCounts = ci.getMergedRowCounts();
+                        totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                    }
                 }
             }
 
@@ -270,10 +293,243 @@ public class CompactionTask extends AbstractCompactionTask
         }
     }
 
+    /**
+     * Appends the output of the compaction iterator to the writer, until it is exhausted or the given condition
+     * requests to stop. Returns the number of partitions written.
+     */
+    private long append(CompactionIterator ci,
+                        AbstractCompactionStrategy.ScannerList scanners,
+                        CompactionController controller,
+                        CompactionAwareWriter writer,
+                        BooleanSupplier stopRequested)
+    {
+        RateLimiter limiter = CompactionManager.instance.getRateLimiter();
+        double compressionRatio = scanners.getCompressionRatio();
+        if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
+            compressionRatio = 1.0;
+
+        long keysWritten = 0;
+        long lastBytesScanned = 0;
+        long lastCheckObsoletion = System.nanoTime();
+        while (ci.hasNext())
+        {
+            if (stopRequested.getAsBoolean())
+                throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+            if (writer.append(ci.next()))
+                keysWritten++;
+
+
+            long bytesScanned = scanners.getTotalBytesScanned();
+
+            //Rate limit the scanners, and account for compression
+            CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
+
+            lastBytesScanned = bytesScanned;
+
+            if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
+            {
+                controller.maybeRefreshOverlaps();
+                lastCheckObsoletion = System.nanoTime();
+            }
+        }
+        return keysWritten;
+    }
+
+    /**
+     * Whether the output of this task may be split at arbitrary token boundaries, i.e. whether the strategy that
+     * created it copes with its output being spread over several non-overlapping sstables.
+     */
+    protected boolean supportsParallelRanges()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the token ranges to compact concurrently, or null if the compaction is not split: splitting must be
+     * supported by the task and the partitioner, and each range must hold at least
+     * parallel_compaction_min_range_size_in_mb of input.
+     */
+    private List<Range<Token>> parallelRanges(Set<SSTableReader> sstables)
+    {
+        long minRangeSize = DatabaseDescriptor.getParallelCompactionMinRangeSize();
+        if (minRangeSize <= 0 || transaction.isOffline() || !supportsParallelRanges())
+            return null;
+
+        long parts = Math.min(DatabaseDescriptor.getConcurrentCompactors(), SSTableReader.getTotalBytes(sstables) / minRangeSize);
+        if (parts < 2)
+            return null;
+
+        List<PartitionPosition> boundaries = DiskBoundaryManager.getLocalRangeBoundaries(cfs, (int) parts);
+        if (boundaries == null)
+            return null;
+
+        // the boundaries are upper bounds, the last of which covers the maximum token: together the ranges cover the
+        // whole ring, including any data outside of the local ranges
+        List<Range<Token>> ranges = new ArrayList<>(boundaries.size());
+        Token left = cfs.getPartitioner().getMinimumToken();
+        for (PartitionPosition boundary : boundaries)
+        {
+            Token right = boundary.getToken();
+            if (right.equals(left))
+                continue;
+            ranges.add(new Range<>(left, right));
+            left = right;
+        }
+        return ranges.size() > 1 ? ranges : null;
+    }
+
+    /**
+     * Compacts the given token ranges concurrently, the first one in the calling thread, and waits for all of them.
+     * If any range fails, the others are stopped and the output of all ranges is aborted.
+     */
+    private List<RangeCompaction> compactRanges(List<Range<Token>> ranges, Set<SSTableReader> actuallyCompact, int nowInSec, UUID taskId)
+    {
+        AtomicBoolean failed = new AtomicBoolean();
+        double share = 1.0 / ranges.size();
+        List<ListenableFuture<RangeCompaction>> futures = new ArrayList<>(ranges.size() - 1);
+        for (Range<Token> range : ranges.subList(1, ranges.size()))
+            futures.add(CompactionManager.instance.submitSubRangeCompaction(() -> compactRange(range, share, actuallyCompact, nowInSec, taskId, failed)));
+
+        List<RangeCompaction> parts = new ArrayList<>(ranges.size());
+        Throwable failure = null;
+        try
+        {
+            parts.add(compactRange(ranges.get(0), share, actuallyCompact, nowInSec, taskId, failed));
+        }
+        catch (Throwable t)
+        {
+            failure = t;
+            failed.set(true);
+        }
+
+        // wait for all ranges even after a failure, so that none still writes when the transaction is aborted
+        for (ListenableFuture<RangeCompaction> future : futures)
+        {
+            try
+            {
+                parts.add(Uninterruptibles.getUninterruptibly(future));
+            }
+            catch (ExecutionException e)
+            {
+                failure = Throwables.merge(failure, e.getCause());
+                failed.set(true);
+            }
+            catch (Throwable t)
+            {
+                failure = Throwables.merge(failure, t);
+                failed.set(true);
+            }
+        }
+
+        if (failure != null)
+        {
+            for (RangeCompaction part : parts)
+                failure = part.writer.abort(failure);
+            Throwables.maybeFail(failure);
+        }
+        return parts;
+    }
+
+    /**
+     * Compacts one token range into its own writer, which is prepared but not committed.
+     */
+    private RangeCompaction compactRange(Range<Token> range, double share, Set<SSTableReader> actuallyCompact, int nowInSec, UUID taskId, AtomicBoolean failed)
+    {
+        PartialLifecycleTransaction partialTransaction = new PartialLifecycleTransaction(transaction, share);
+        CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), partialTransaction, actuallyCompact);
+        try (CompactionController controller = getCompactionController(transaction.originals());
+             AbstractCompactionStrategy.ScannerList scanners = cfs.getCompactionStrategyManager().getScanners(actuallyCompact, Collections.singleton(range));
+             CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+        {
+            activeCompactions.beginCompaction(ci);
+            try
+            {
+                if (!controller.cfs.getCompactionStrategyManager().isActive())
+                    throw new CompactionInterruptedException(ci.getCompactionInfo());
+                long keysWritten = append(ci, scanners, controller, writer, failed::get);
+                writer.prepareToCommit();
+                return new RangeCompaction(writer, partialTransaction, keysWritten, writer.estimatedKeys(), ci.getMergedRowCounts(), ci.getTotalSourceCQLRows());
+            }
+            finally
+            {
+                activeCompactions.finishCompaction(ci);
+            }
+        }
+        catch (Throwable t)
+        {
+            Throwables.maybeFail(writer.abort(t));
+            throw t;
+        }
+    }
+
+    /**
+     * Adds the output of all ranges to the transaction of the task and commits it, with the writers of the ranges.
+     */
+    private Collection<SSTableReader> commitRanges(List<RangeCompaction> parts)
+    {
+        List<SSTableReader> newSSTables = new ArrayList<>();
+        Throwable accumulate = null;
+        try
+        {
+            for (RangeCompaction part : parts)
+                newSSTables.addAll(part.transaction.updated());
+            transaction.update(newSSTables, false);
+            transaction.checkpoint();
+            if (!keepOriginals)
+                transaction.obsoleteOriginals();
+            transaction.prepareToCommit();
+        }
+        catch (Throwable t)
+        {
+            // the transaction of the task is aborted when the task completes
+            for (RangeCompaction part : parts)
+                t = part.writer.abort(t);
+            Throwables.maybeFail(t);
+        }
+
+        for (RangeCompaction part : parts)
+            accumulate = part.writer.commit(accumulate);
+        accumulate = transaction.commit(accumulate);
+        Throwables.maybeFail(accumulate);
+        return newSSTables;
+    }
+
+    private static long[] addCounts(long[] counts, long[] added)
+    {
+        long[] sum = Arrays.copyOf(counts, Math.max(counts.length, added.length));
+        for (int i = 0; i < added.length; i++)
+            sum[i] += added[i];
+        return sum;
+    }
+
+    /**
+     * The prepared output and the statistics of the compaction of one token range.
+     */
+    private static class RangeCompaction
+    {
+        final CompactionAwareWriter writer;
+        final PartialLifecycleTransaction transaction;
+        final long keysWritten;
+        final long estimatedKeys;
+        final long[] mergedRowCounts;
+        final long totalSourceCQLRows;
+
+        RangeCompaction(CompactionAwareWriter writer, PartialLifecycleTransaction transaction, long keysWritten, long estimatedKeys, long[] mergedRowCounts, long totalSourceCQLRows)
+        {
+            this.writer = writer;
+            this.transaction = transaction;
+            this.keysWritten = keysWritten;
+            this.estimatedKeys = estimatedKeys;
+            this.mergedRowCounts = mergedRowCounts;
+            this.totalSourceCQLRows = totalSourceCQLRows;
+        }
+    }
+
     @Override
     public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
                                                           Directories directories,
-                                                          LifecycleTransaction transaction,
+                                                          ILifecycleTransaction transaction,
                                                           Set<SSTableReader> nonExpiredSSTables)
     {
         return new DefaultCompactionWriter(cfs, directories, transaction, nonExpiredSSTables, keepOriginals, getLevel());
@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.*;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.DiskBoundaryManager;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
+import org.apache.cassandra.db.compaction.writers.ShardedCompactionWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.schema.CompactionParams;
+
+import static com.google.common.collect.Iterables.filter;
+
+/**
+ * A compaction strategy that moves between tiered and leveled compaction with a single scaling parameter per level
+ * (see {@link UnifiedCompactionStrategyOptions}).
+ *
+ * SSTables are assigned to levels by density, their size divided by the fraction of the token ring they cover, so
+ * that the sstables produced by splitting an output into shards stay in the level of the whole output. Level i holds
+ * the densities between m * F^i and m * F^(i+1), where m is the minimum sstable size and F the fanout. Once T
+ * sstables of a level overlap at some point of the token space, the overlapping sstables of that level are
+ * compacted together, T being the threshold of the level. With T = F this is size-tiered compaction, and with T = 2
+ * every sstable entering a level is merged with the sstables it overlaps, as in leveled compaction.
+ *
+ * Compaction output is split into shards of the local token ranges. The number of shards grows with the density of
+ * the output, so that output sstables stay close to the target size. Compactions of sstables that do not overlap are
+ * independent and are picked up concurrently by the compaction executor. As levels are derived from the sstables
+ * alone, changing the scaling parameters only changes which compactions are picked next.
+ */
+public class UnifiedCompactionStrategy extends AbstractCompactionStrategy
+{
+    private static final Logger logger = LoggerFactory.getLogger(UnifiedCompactionStrategy.class);
+
+    static final int MAX_SHARD_COUNT = 1 << 12;
+    private static final int MAX_LEVELS = 32;
+    /** SSTables spanning less than this fraction of the token ring are treated as spanning all of it. */
+    private static final double MIN_SPAN = Math.scalb(1.0, -40);
+
+    protected UnifiedCompactionStrategyOptions unifiedOptions;
+    protected volatile int estimatedRemainingTasks;
+    @VisibleForTesting
+    protected final Set<SSTableReader> sstables = new HashSet<>();
+
+    public UnifiedCompactionStrategy(ColumnFamilyStore cfs, Map<String, String> options)
+    {
+        super(cfs, options);
+        this.estimatedRemainingTasks = 0;
+        this.unifiedOptions = new UnifiedCompactionStrategyOptions(options);
+    }
+
+    /**
+     * Returns the fraction of the token ring between the first and last key of the sstable. Partitioners that cannot
+     * measure token ranges, and sstables covering too few tokens to measure, are taken to cover the whole ring.
+     */
+    @VisibleForTesting
+    static double tokenSpan(DecoratedKey first, DecoratedKey last)
+    {
+        Token left = first.getToken();
+        Token right = last.getToken();
+        if (left.equals(right))
+            return 1.0;
+        try
+        {
+            double span = left.size(right);
+            return span < MIN_SPAN ? 1.0 : span;
+        }
+        catch (UnsupportedOperationException e)
+        {
+            return 1.0;
+        }
+    }
+
+    /**
+     * @return the size the sstable would have if its data were spread over the whole token ring
+     */
+    @VisibleForTesting
+    static double density(SSTableReader sstable)
+    {
+        return sstable.onDiskLength() / tokenSpan(sstable.first, sstable.last);
+    }
+
+    @VisibleForTesting
+    int level(double density)
+    {
+        double limit = unifiedOptions.minSSTableSize;
+        int level = 0;
+        while (level < MAX_LEVELS - 1)
+        {
+            limit *= unifiedOptions.fanout(level);
+            if (density < limit)
+                break;
+            ++level;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the number of shards to split the output of a compaction of the given sstables into: 1 if the output
+     * is smaller than the target size, otherwise the base shard count multiplied by the power of two that brings
+     * the size of each output sstable closest to the target.
+     */
+    @VisibleForTesting
+    int shardCount(Collection<SSTableReader> sstables)
+    {
+        if (sstables.isEmpty())
+            return 1;
+
+        long size = 0;
+        DecoratedKey first = null;
+        DecoratedKey last = null;
+        for (SSTableReader sstable : sstables)
+        {
+            size += sstable.onDiskLength();
+            if (first == null || sstable.first.compareTo(first) < 0)
+                first = sstable.first;
+            if (last == null || sstable.last.compareTo(last) > 0)
+                last = sstable.last;
+        }
+
+        double density = size / tokenSpan(first, last);
+        if (density < unifiedOptions.targetSSTableSize)
+            return 1;
+
+        int shards = unifiedOptions.baseShardCount;
+        double perShard = density / shards;
+        while (perShard > unifiedOptions.targetSSTableSize * Math.sqrt(2) && shards * 2 <= MAX_SHARD_COUNT)
+        {
+            shards *= 2;
+            perShard /= 2;
+        }
+        return shards;
+    }
+
+    private List<PartitionPosition> shardBoundaries(Collection<SSTableReader> sstables)
+    {
+        int shards = shardCount(sstables);
+        return shards > 1 ? DiskBoundaryManager.getLocalRangeBoundaries(cfs, shards) : null;
+    }
+
+    /**
+     * Groups the sstables of a level into buckets of sstables that must be compacted together: each set of sstables
+     * overlapping at some point of the token space with at least threshold members is part of a bucket, and sets
+     * sharing sstables are part of the same bucket. Each bucket lists the members of its largest overlapping set
+     * first.
+     */
+    @VisibleForTesting
+    static List<List<SSTableReader>> getBuckets(Collection<SSTableReader> sstables, int threshold)
+    {
+        List<SSTableReader> byFirst = new ArrayList<>(sstables);
+        byFirst.sort(SSTableReader.sstableComparator);
+        List<SSTableReader> byLast = new ArrayList<>(sstables);
+        byLast.sort(Comparator.comparing(s -> s.last));
+
+        List<List<SSTableReader>> buckets = new ArrayList<>();
+        Set<SSTableReader> active = new LinkedHashSet<>();
+        Set<SSTableReader> bucket = null;
+        List<SSTableReader> largestOverlap = null;
+        boolean added = false;
+        int nextStart = 0;
+        int nextEnd = 0;
+        while (nextEnd < byLast.size())
+        {
+            // intervals are closed, so starts at the same position as an end are processed first
+            if (nextStart < byFirst.size() && byFirst.get(nextStart).first.compareTo(byLast.get(nextEnd).last) <= 0)
+            {
+                active.add(byFirst.get(nextStart++));
+                added = true;
+                continue;
+            }
+
+            if (added && active.size() >= threshold)
+            {
+                // a maximal set of overlapping sstables; it joins the current bucket if they share sstables
+                if (bucket == null || Collections.disjoint(bucket, active))
+                {
+                    if (bucket != null)
+                        buckets.add(toBucket(bucket, largestOverlap));
+                    bucket = new LinkedHashSet<>();
+                    largestOverlap = null;
+                }
+                bucket.addAll(active);
+                if (largestOverlap == null || active.size() > largestOverlap.size())
+                    largestOverlap = new ArrayList<>(active);
+            }
+            added = false;
+            active.remove(byLast.get(nextEnd++));
+        }
+        if (bucket != null)
+            buckets.add(toBucket(bucket, largestOverlap));
+        return buckets;
+    }
+
+    private static List<SSTableReader> toBucket(Set<SSTableReader> sstables, List<SSTableReader> largestOverlap)
+    {
+        List<SSTableReader> bucket = new ArrayList<>(sstables.size());
+        bucket.addAll(largestOverlap);
+        for (SSTableReader sstable : sstables)
+        {
+            if (!largestOverlap.contains(sstable))
+                bucket.add(sstable);
+        }
+        return bucket;
+    }
+
+    private synchronized List<SSTableReader> getNextBackgroundSSTables(final int gcBefore)
+    {
+        Iterable<SSTableReader> candidates = filterSuspectSSTables(filter(cfs.getUncompactingSSTables(), sstables::contains));
+
+        List<List<SSTableReader>> levels = new ArrayList<>();
+        for (SSTableReader sstable : candidates)
+        {
+            int level = level(density(sstable));
+            while (levels.size() <= level)
+                levels.add(new ArrayList<>());
+            levels.get(level).add(sstable);
+        }
+
+        // compact the bucket with the most overlapping sstables first, as it costs the most on reads
+        List<SSTableReader> selected = Collections.emptyList();
+        int selectedOverlap = 0;
+        int estimatedTasks = 0;
+        for (int level = 0; level < levels.size(); ++level)
+        {
+            int threshold = unifiedOptions.threshold(level);
+            for (List<SSTableReader> bucket : getBuckets(levels.get(level), threshold))
+            {
+                estimatedTasks += Math.ceil((double) bucket.size() / unifiedOptions.maxSSTablesToCompact);
+                int overlap = maxOverlap(bucket);
+                if (overlap > selectedOverlap)
+                {
+                    selected = bucket;
+                    selectedOverlap = overlap;
+                }
+            }
+        }
+        estimatedRemainingTasks = estimatedTasks;
+        cfs.getCompactionStrategyManager().compactionLogger.pending(this, estimatedRemainingTasks);
+        if (!selected.isEmpty())
+            return selected.size() > unifiedOptions.maxSSTablesToCompact
+                   ? new ArrayList<>(selected.subList(0, unifiedOptions.maxSSTablesToCompact))
+                   : selected;
+
+        // if there is no sstable to compact in standard way, try compacting single sstable whose droppable tombstone
+        // ratio is greater than threshold.
+        List<SSTableReader> sstablesWithTombstones = new ArrayList<>();
+        for (SSTableReader sstable : candidates)
+        {
+            if (worthDroppingTombstones(sstable, gcBefore))
+                sstablesWithTombstones.add(sstable);
+        }
+        if (sstablesWithTombstones.isEmpty())
+            return Collections.emptyList();
+
+        return Collections.singletonList(Collections.max(sstablesWithTombstones, SSTableReader.sizeComparator));
+    }
+
+    /**
+     * @return the largest number of sstables of the bucket that overlap at a single point
+     */
+    private static int maxOverlap(List<SSTableReader> bucket)
+    {
+        int max = 0;
+        for (SSTableReader sstable : bucket)
+        {
+            int overlap = 0;
+            for (SSTableReader other : bucket)
+            {
+                if (other.first.compareTo(sstable.first) <= 0 && other.last.compareTo(sstable.first) >= 0)
+                    ++overlap;
+            }
+            max = Math.max(max, overlap);
+        }
+        return max;
+    }
+
+    @SuppressWarnings("resource")
+    public AbstractCompactionTask getNextBackgroundTask(int gcBefore)
+    {
+        List<SSTableReader> previousCandidate = null;
+        while (true)
+        {
+            List<SSTableReader> bucket = getNextBackgroundSSTables(gcBefore);
+
+            if (bucket.isEmpty())
+                return null;
+
+            // Already tried acquiring references without success. It means there is a race with
+            // the tracker but candidate SSTables were not yet replaced in the compaction strategy manager
+            if (bucket.equals(previousCandidate))
+            {
+                logger.warn("Could not acquire references for compacting SSTables {} which is not a problem per se," +
+                            "unless it happens frequently, in which case it must be reported. Will retry later.",
+                            bucket);
+                return null;
+            }
+
+            LifecycleTransaction transaction = cfs.getTracker().tryModify(bucket, OperationType.COMPACTION);
+            if (transaction != null)
+                return new UnifiedCompactionTask(cfs, transaction, gcBefore, shardBoundaries(bucket));
+            previousCandidate = bucket;
+        }
+    }
+
+    @SuppressWarnings("resource")
+    public synchronized Collection<AbstractCompactionTask> getMaximalTask(final int gcBefore, boolean splitOutput)
+    {
+        Iterable<SSTableReader> filteredSSTables = filterSuspectSSTables(sstables);
+        if (Iterables.isEmpty(filteredSSTables))
+            return null;
+        LifecycleTransaction txn = cfs.getTracker().tryModify(filteredSSTables, OperationType.COMPACTION);
+        if (txn == null)
+            return null;
+        return Collections.singletonList(new UnifiedCompactionTask(cfs, txn, gcBefore, shardBoundaries(txn.originals())));
+    }
+
+    @SuppressWarnings("resource")
+    public AbstractCompactionTask getUserDefinedTask(Collection<SSTableReader> sstables, final int gcBefore)
+    {
+        assert !sstables.isEmpty(); // checked for by CM.submitUserDefined
+
+        LifecycleTransaction transaction = cfs.getTracker().tryModify(sstables, OperationType.COMPACTION);
+        if (transaction == null)
+        {
+            logger.trace("Unable to mark {} for compaction; probably a background compaction got to it first.  You can disable background compactions temporarily if this is a problem", sstables);
+            return null;
+        }
+
+        return new UnifiedCompactionTask(cfs, transaction, gcBefore, shardBoundaries(sstables)).setUserDefined(true);
+    }
+
+    @Override
+    public AbstractCompactionTask getCompactionTask(LifecycleTransaction txn, final int gcBefore, long maxSSTableBytes)
+    {
+        return new UnifiedCompactionTask(cfs, txn, gcBefore, shardBoundaries(txn.originals()));
+    }
+
+    public int getEstimatedRemainingTasks()
+    {
+        return estimatedRemainingTasks;
+    }
+
+    public long getMaxSSTableBytes()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options) throws ConfigurationException
+    {
+        Map<String, String> uncheckedOptions = AbstractCompactionStrategy.validateOptions(options);
+        uncheckedOptions = UnifiedCompactionStrategyOptions.validateOptions(options, uncheckedOptions);
+
+        uncheckedOptions.remove(CompactionParams.Option.MIN_THRESHOLD.toString());
+        uncheckedOptions.remove(CompactionParams.Option.MAX_THRESHOLD.toString());
+
+        return uncheckedOptions;
+    }
+
+    @Override
+    public synchronized void addSSTable(SSTableReader added)
+    {
+        sstables.add(added);
+    }
+
+    @Override
+    public synchronized void removeSSTable(SSTableReader sstable)
+    {
+        sstables.remove(sstable);
+    }
+
+    @Override
+    protected Set<SSTableReader> getSSTables()
+    {
+        return ImmutableSet.copyOf(sstables);
+    }
+
+    public String toString()
+    {
+        return String.format("UnifiedCompactionStrategy[%s]", unifiedOptions);
+    }
+
+    private static class UnifiedCompactionTask extends CompactionTask
+    {
+        private final List<PartitionPosition> shardBoundaries;
+
+        public UnifiedCompactionTask(ColumnFamilyStore cfs, LifecycleTransaction txn, int gcBefore, List<PartitionPosition> shardBoundaries)
+        {
+            super(cfs, txn, gcBefore);
+            this.shardBoundaries = shardBoundaries;
+        }
+
+        @Override
+        public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                              Directories directories,
+                                                              ILifecycleTransaction txn,
+                                                              Set<SSTableReader> nonExpiredSSTables)
+        {
+            return new ShardedCompactionWriter(cfs, directories, txn, nonExpiredSSTables, shardBoundaries, keepOriginals);
+        }
+
+        @Override
+        protected boolean supportsParallelRanges()
+        {
+            return true;
+        }
+    }
+}
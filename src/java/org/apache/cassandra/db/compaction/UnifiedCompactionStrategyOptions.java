@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+/**
+ * Options of the {@link UnifiedCompactionStrategy}.
+ *
+ * The scaling parameter W of a level determines its fanout F (the factor between the densities of consecutive levels)
+ * and its threshold T (the number of overlapping sstables that triggers a compaction):
+ * - W < 0 is leveled, with F = 2 - W and T = 2, written "L" followed by F;
+ * - W = 0 is the middle ground, with F = T = 2, written "N";
+ * - W > 0 is tiered, with F = T = 2 + W, written "T" followed by F.
+ * The "scaling_parameters" option takes a comma-separated list of values for the successive levels, the last of
+ * which applies to all remaining levels.
+ */
+public final class UnifiedCompactionStrategyOptions
+{
+    protected static final String DEFAULT_SCALING_PARAMETERS = "T4";
+    protected static final long DEFAULT_MIN_SSTABLE_SIZE_IN_MB = 100;
+    protected static final long DEFAULT_TARGET_SSTABLE_SIZE_IN_MB = 1024;
+    protected static final int DEFAULT_BASE_SHARD_COUNT = 4;
+    protected static final int DEFAULT_MAX_SSTABLES_TO_COMPACT = 32;
+    protected static final String SCALING_PARAMETERS_KEY = "scaling_parameters";
+    protected static final String MIN_SSTABLE_SIZE_KEY = "min_sstable_size_in_mb";
+    protected static final String TARGET_SSTABLE_SIZE_KEY = "target_sstable_size_in_mb";
+    protected static final String BASE_SHARD_COUNT_KEY = "base_shard_count";
+    protected static final String MAX_SSTABLES_TO_COMPACT_KEY = "max_sstables_to_compact";
+
+    protected final int[] scalingParameters;
+    protected final long minSSTableSize;
+    protected final long targetSSTableSize;
+    protected final int baseShardCount;
+    protected final int maxSSTablesToCompact;
+
+    public UnifiedCompactionStrategyOptions(Map<String, String> options)
+    {
+        String optionValue = options.get(SCALING_PARAMETERS_KEY);
+        scalingParameters = parseScalingParameters(optionValue == null ? DEFAULT_SCALING_PARAMETERS : optionValue);
+        optionValue = options.get(MIN_SSTABLE_SIZE_KEY);
+        minSSTableSize = (optionValue == null ? DEFAULT_MIN_SSTABLE_SIZE_IN_MB : Long.parseLong(optionValue)) * 1024L * 1024L;
+        optionValue = options.get(TARGET_SSTABLE_SIZE_KEY);
+        targetSSTableSize = (optionValue == null ? DEFAULT_TARGET_SSTABLE_SIZE_IN_MB : Long.parseLong(optionValue)) * 1024L * 1024L;
+        optionValue = options.get(BASE_SHARD_COUNT_KEY);
+        baseShardCount = optionValue == null ? DEFAULT_BASE_SHARD_COUNT : Integer.parseInt(optionValue);
+        optionValue = options.get(MAX_SSTABLES_TO_COMPACT_KEY);
+        int maxSSTables = optionValue == null ? DEFAULT_MAX_SSTABLES_TO_COMPACT : Integer.parseInt(optionValue);
+        maxSSTablesToCompact = maxSSTables == 0 ? Integer.MAX_VALUE : maxSSTables;
+    }
+
+    public UnifiedCompactionStrategyOptions()
+    {
+        scalingParameters = parseScalingParameters(DEFAULT_SCALING_PARAMETERS);
+        minSSTableSize = DEFAULT_MIN_SSTABLE_SIZE_IN_MB * 1024L * 1024L;
+        targetSSTableSize = DEFAULT_TARGET_SSTABLE_SIZE_IN_MB * 1024L * 1024L;
+        baseShardCount = DEFAULT_BASE_SHARD_COUNT;
+        maxSSTablesToCompact = DEFAULT_MAX_SSTABLES_TO_COMPACT;
+    }
+
+    /**
+     * @return the scaling parameter W of the given level
+     */
+    public int scalingParameter(int level)
+    {
+        return scalingParameters[Math.min(level, scalingParameters.length - 1)];
+    }
+
+    /**
+     * @return the factor between the minimum densities of the given level and the next one
+     */
+    public int fanout(int level)
+    {
+        int w = scalingParameter(level);
+        return w < 0 ? 2 - w : 2 + w;
+    }
+
+    /**
+     * @return the number of overlapping sstables in the given level that makes them eligible for compaction
+     */
+    public int threshold(int level)
+    {
+        int w = scalingParameter(level);
+        return w <= 0 ? 2 : 2 + w;
+    }
+
+    static int[] parseScalingParameters(String value) throws ConfigurationException
+    {
+        String[] parts = value.split(",", -1);
+        int[] parameters = new int[parts.length];
+        for (int i = 0; i < parts.length; ++i)
+            parameters[i] = parseScalingParameter(parts[i].trim());
+        return parameters;
+    }
+
+    private static int parseScalingParameter(String value) throws ConfigurationException
+    {
+        if (value.isEmpty())
+            throw new ConfigurationException(String.format("Empty value in %s", SCALING_PARAMETERS_KEY));
+
+        char type = Character.toUpperCase(value.charAt(0));
+        if (type == 'N' && value.length() == 1)
+            return 0;
+
+        try
+        {
+            if (type == 'T' || type == 'L')
+            {
+                int fanout = Integer.parseInt(value.substring(1));
+                if (fanout < 2)
+                    throw new ConfigurationException(String.format("%s must be at least 2 in %s: %s", type, SCALING_PARAMETERS_KEY, value));
+                return type == 'T' ? fanout - 2 : 2 - fanout;
+            }
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a valid value for %s; expected an integer, T<n>, L<n> or N",
+                                                           value, SCALING_PARAMETERS_KEY), e);
+        }
+    }
+
+    private static long parseLong(Map<String, String> options, String key, long defaultValue, long minValue) throws ConfigurationException
+    {
+        String optionValue = options.get(key);
+        try
+        {
+            long value = optionValue == null ? defaultValue : Long.parseLong(optionValue);
+            if (value < minValue)
+                throw new ConfigurationException(String.format("%s must be at least %d: %d", key, minValue, value));
+            return value;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a parsable int (base10) for %s", optionValue, key), e);
+        }
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options, Map<String, String> uncheckedOptions) throws ConfigurationException
+    {
+        String optionValue = options.get(SCALING_PARAMETERS_KEY);
+        if (optionValue != null)
+            parseScalingParameters(optionValue);
+
+        parseLong(options, MIN_SSTABLE_SIZE_KEY, DEFAULT_MIN_SSTABLE_SIZE_IN_MB, 0);
+        parseLong(options, TARGET_SSTABLE_SIZE_KEY, DEFAULT_TARGET_SSTABLE_SIZE_IN_MB, 1);
+        long shards = parseLong(options, BASE_SHARD_COUNT_KEY, DEFAULT_BASE_SHARD_COUNT, 1);
+        if (shards > UnifiedCompactionStrategy.MAX_SHARD_COUNT)
+            throw new ConfigurationException(String.format("%s must be at most %d: %d", BASE_SHARD_COUNT_KEY, UnifiedCompactionStrategy.MAX_SHARD_COUNT, shards));
+        long maxSSTables = parseLong(options, MAX_SSTABLES_TO_COMPACT_KEY, DEFAULT_MAX_SSTABLES_TO_COMPACT, 0);
+        if (maxSSTables == 1 || maxSSTables > Integer.MAX_VALUE)
+            throw new ConfigurationException(String.format("%s must be 0 (no limit) or between 2 and %d: %d", MAX_SSTABLES_TO_COMPACT_KEY, Integer.MAX_VALUE, maxSSTables));
+
+        uncheckedOptions.remove(SCALING_PARAMETERS_KEY);
+        uncheckedOptions.remove(MIN_SSTABLE_SIZE_KEY);
+        uncheckedOptions.remove(TARGET_SSTABLE_SIZE_KEY);
+        uncheckedOptions.remove(BASE_SHARD_COUNT_KEY);
+        uncheckedOptions.remove(MAX_SSTABLES_TO_COMPACT_KEY);
+
+        return uncheckedOptions;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Scaling parameters: %s, min sstable size: %d, target sstable size: %d, base shard count: %d, max sstables to compact: %d",
+                             Arrays.toString(scalingParameters), minSSTableSize, targetSSTableSize, baseShardCount, maxSSTablesToCompact);
+    }
+}
@@ -34,7 +34,8 @@ import org.apache.cassandra.db.DiskBoundaries;
 import org.apache.cassandra.db.PartitionPosition;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.db.compaction.CompactionTask;
-import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.PartialLifecycleTransaction;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.SSTableRewriter;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
@@ -61,14 +62,14 @@ public abstract class CompactionAwareWriter extends Transactional.AbstractTransa
     protected final boolean isTransient;
 
     protected final SSTableRewriter sstableWriter;
-    protected final LifecycleTransaction txn;
+    protected final ILifecycleTransaction txn;
     private final List<Directories.DataDirectory> locations;
     private final List<PartitionPosition> diskBoundaries;
     private int locationIndex;
 
     public CompactionAwareWriter(ColumnFamilyStore cfs,
                                  Directories directories,
-                                 LifecycleTransaction txn,
+                                 ILifecycleTransaction txn,
                                  Set<SSTableReader> nonExpiredSSTables,
                                  boolean keepOriginals)
     {
@@ -77,9 +78,20 @@ public abstract class CompactionAwareWriter extends Transactional.AbstractTransa
         this.nonExpiredSSTables = nonExpiredSSTables;
         this.txn = txn;
 
-        estimatedTotalKeys = SSTableReader.getApproximateKeyCount(nonExpiredSSTables);
+        long estimatedKeys = SSTableReader.getApproximateKeyCount(nonExpiredSSTables);
         maxAge = CompactionTask.getMaxDataAge(nonExpiredSSTables);
-        sstableWriter = SSTableRewriter.construct(cfs, txn, keepOriginals, maxAge);
+        if (txn instanceof PartialLifecycleTransaction)
+        {
+            // a part of a compaction split into token ranges only writes its share of the keys, and cannot open
+            // its sstables early as it cannot modify the shared transaction
+            estimatedTotalKeys = Math.max(1, (long) (estimatedKeys * ((PartialLifecycleTransaction) txn).share()));
+            sstableWriter = SSTableRewriter.constructWithoutEarlyOpening(txn, keepOriginals, maxAge);
+        }
+        else
+        {
+            estimatedTotalKeys = estimatedKeys;
+            sstableWriter = SSTableRewriter.construct(cfs, txn, keepOriginals, maxAge);
+        }
         minRepairedAt = CompactionTask.getMinRepairedAt(nonExpiredSSTables);
         pendingRepair = CompactionTask.getPendingRepair(nonExpiredSSTables);
         isTransient = CompactionTask.getIsTransient(nonExpiredSSTables);
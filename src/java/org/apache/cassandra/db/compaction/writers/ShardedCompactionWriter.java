@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction.writers;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+
+/**
+ * Splits the compaction output at the given shard boundaries, so that every output sstable covers at most one shard
+ * of the token space.
+ */
+public class ShardedCompactionWriter extends CompactionAwareWriter
+{
+    private final List<PartitionPosition> shardBoundaries;
+    private final Set<SSTableReader> allSSTables;
+    private final long estimatedSSTables;
+    private Directories.DataDirectory sstableDirectory;
+    private int shardIndex = 0;
+
+    /**
+     * @param shardBoundaries the upper bounds of the shards, the last of which must cover all keys; null to write a
+     *                        single sstable per data directory
+     */
+    public ShardedCompactionWriter(ColumnFamilyStore cfs,
+                                   Directories directories,
+                                   ILifecycleTransaction txn,
+                                   Set<SSTableReader> nonExpiredSSTables,
+                                   List<PartitionPosition> shardBoundaries,
+                                   boolean keepOriginals)
+    {
+        super(cfs, directories, txn, nonExpiredSSTables, keepOriginals);
+        this.allSSTables = txn.originals();
+        this.shardBoundaries = shardBoundaries;
+        this.estimatedSSTables = shardBoundaries == null ? 1 : shardsSpanned(shardBoundaries, nonExpiredSSTables);
+    }
+
+    /**
+     * Counts the shards between the smallest and the largest key of the given sstables.
+     */
+    private static long shardsSpanned(List<PartitionPosition> shardBoundaries, Set<SSTableReader> sstables)
+    {
+        if (sstables.isEmpty())
+            return 1;
+
+        DecoratedKey first = null;
+        DecoratedKey last = null;
+        for (SSTableReader sstable : sstables)
+        {
+            if (first == null || sstable.first.compareTo(first) < 0)
+                first = sstable.first;
+            if (last == null || sstable.last.compareTo(last) > 0)
+                last = sstable.last;
+        }
+
+        long count = 1;
+        for (PartitionPosition boundary : shardBoundaries)
+        {
+            if (boundary.compareTo(first) >= 0 && boundary.compareTo(last) < 0)
+                ++count;
+        }
+        return count;
+    }
+
+    @Override
+    protected boolean realAppend(UnfilteredRowIterator partition)
+    {
+        return sstableWriter.append(partition) != null;
+    }
+
+    @Override
+    protected void maybeSwitchWriter(DecoratedKey key)
+    {
+        super.maybeSwitchWriter(key);
+        if (shardBoundaries == null || key.compareTo(shardBoundaries.get(shardIndex)) <= 0)
+            return;
+
+        while (shardIndex < shardBoundaries.size() - 1 && key.compareTo(shardBoundaries.get(shardIndex)) > 0)
+            ++shardIndex;
+        // a writer that is still empty, e.g. because the data directory changed at the same key, is discarded
+        switchCompactionLocation(sstableDirectory);
+    }
+
+    @Override
+    public void switchCompactionLocation(Directories.DataDirectory location)
+    {
+        sstableDirectory = location;
+        @SuppressWarnings("resource")
+        SSTableWriter writer = SSTableWriter.create(cfs.newSSTableDescriptor(getDirectories().getLocationForDisk(sstableDirectory)),
+                                                    Math.max(1, estimatedTotalKeys / estimatedSSTables),
+                                                    minRepairedAt,
+                                                    pendingRepair,
+                                                    isTransient,
+                                                    cfs.metadata,
+                                                    new MetadataCollector(allSSTables, cfs.metadata().comparator, 0),
+                                                    SerializationHeader.make(cfs.metadata(), nonExpiredSSTables),
+                                                    cfs.indexManager.listIndexes(),
+                                                    txn);
+
+        sstableWriter.switchWriter(writer);
+    }
+}
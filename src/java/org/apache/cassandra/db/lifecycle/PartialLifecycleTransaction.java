@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.lifecycle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+/**
+ * The view of a {@link LifecycleTransaction} given to one of several parts of an operation that run concurrently,
+ * e.g. the compaction of one token range of a compaction split into ranges.
+ *
+ * New sstables are tracked by the shared transaction, so that they are cleaned up if the operation fails, but the
+ * readers of a part are only collected: it is up to the owner of the shared transaction to add the readers of all
+ * parts to it, and to prepare and commit it, once all parts have been prepared. Committing or aborting a part has
+ * no effect on the shared transaction. As the shared transaction cannot be modified by a part, readers cannot be
+ * opened early.
+ */
+public class PartialLifecycleTransaction implements ILifecycleTransaction
+{
+    private final LifecycleTransaction shared;
+    private final double share;
+    private final List<SSTableReader> updated = new ArrayList<>();
+
+    /**
+     * @param share the expected fraction of the data of the operation handled by this part
+     */
+    public PartialLifecycleTransaction(LifecycleTransaction shared, double share)
+    {
+        this.shared = shared;
+        this.share = share;
+    }
+
+    /**
+     * @return the expected fraction of the data of the operation handled by this part
+     */
+    public double share()
+    {
+        return share;
+    }
+
+    /**
+     * @return the new readers added by this part
+     */
+    public List<SSTableReader> updated()
+    {
+        return updated;
+    }
+
+    public void checkpoint()
+    {
+    }
+
+    public void update(SSTableReader reader, boolean original)
+    {
+        if (original)
+            throw new UnsupportedOperationException("Originals cannot be updated by a part of an operation");
+        updated.add(reader);
+    }
+
+    public void update(Collection<SSTableReader> readers, boolean original)
+    {
+        for (SSTableReader reader : readers)
+            update(reader, original);
+    }
+
+    public SSTableReader current(SSTableReader reader)
+    {
+        throw new UnsupportedOperationException("Originals cannot be updated by a part of an operation");
+    }
+
+    public void obsolete(SSTableReader reader)
+    {
+        throw new UnsupportedOperationException("Originals cannot be obsoleted by a part of an operation");
+    }
+
+    public void obsoleteOriginals()
+    {
+        // done by the owner of the shared transaction
+    }
+
+    public Set<SSTableReader> originals()
+    {
+        return shared.originals();
+    }
+
+    public boolean isObsolete(SSTableReader reader)
+    {
+        return false;
+    }
+
+    public Throwable commit(Throwable accumulate)
+    {
+        return accumulate;
+    }
+
+    public Throwable abort(Throwable accumulate)
+    {
+        return accumulate;
+    }
+
+    public void prepareToCommit()
+    {
+    }
+
+    public void close()
+    {
+    }
+
+    public void trackNew(SSTable table)
+    {
+        synchronized (shared)
+        {
+            shared.trackNew(table);
+        }
+    }
+
+    public void untrackNew(SSTable table)
+    {
+        synchronized (shared)
+        {
+            shared.untrackNew(table);
+        }
+    }
+
+    public OperationType opType()
+    {
+        return shared.opType();
+    }
+
+    public boolean isOffline()
+    {
+        return shared.isOffline();
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.cassandra.serializers.BytesSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * A class avoiding class duplication between CompositeType and
@@ -91,6 +92,46 @@ public abstract class AbstractCompositeType extends AbstractType<ByteBuffer>
         return 1;
     }
 
+    /**
+     * Encodes the composite as a multi-component key made of a static flag, followed by the value and the
+     * end-of-component byte of every component, in this order.
+     */
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        boolean isStatic = readIsStatic(value, accessor);
+        int offset = startingOffset(isStatic);
+
+        List<ByteSource> components = new ArrayList<>();
+        components.add(ByteSource.oneByte(isStatic ? 0 : 1));
+        int i = 0;
+        while (!accessor.isEmptyFromOffset(value, offset))
+        {
+            AbstractType<?> comparator = getComparator(i, value, accessor, offset);
+            ByteSource comparatorBytes = comparatorAsComparableBytes(comparator);
+            if (comparatorBytes != null)
+                components.add(comparatorBytes);
+            offset += getComparatorSize(i, value, accessor, offset);
+
+            V component = accessor.sliceWithShortLength(value, offset);
+            offset += accessor.sizeWithShortLength(component);
+            components.add(comparator.asComparableBytes(accessor, component));
+            // end-of-component bytes compare as signed
+            components.add(ByteSource.oneByte((accessor.getByte(value, offset++) ^ 0x80) & 0xFF));
+            ++i;
+        }
+        return ByteSource.withTerminator(ByteSource.TERMINATOR, components.toArray(new ByteSource[0]));
+    }
+
+    /**
+     * @return the byte-comparable representation of the type information of a component that is part of the
+     * value, or null if there is none.
+     */
+    protected ByteSource comparatorAsComparableBytes(AbstractType<?> comparator)
+    {
+        return null;
+    }
+
     // Check if the provided BB represents a static name and advance the
     // buffer to the real beginning if so.
     protected abstract <V> boolean readIsStatic(V value, ValueAccessor<V> accessor);
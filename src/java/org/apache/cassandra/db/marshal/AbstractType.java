@@ -39,6 +39,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 import org.github.jamm.Unmetered;
 
 import static org.apache.cassandra.db.marshal.AbstractType.ComparisonType.CUSTOM;
@@ -215,6 +216,39 @@ public abstract class AbstractType<T> implements Comparator<ByteBuffer>, Assignm
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Produces a byte-comparable representation of the given value, i.e. a sequence of bytes whose unsigned
+     * lexicographic order is the same as the order this type defines with {@link #compare}. The encoding is
+     * prefix-free, so that it can be used as a component of a multi-component key
+     * (see {@link ByteSource#withTerminator}).
+     *
+     * Empty values, which all types must accept and which sort before all others, are encoded as
+     * {@link ByteSource#EMPTY_VALUE} (or {@link ByteSource#EMPTY_VALUE_REVERSED} for reversed types).
+     */
+    public final <V> ByteSource asComparableBytes(ValueAccessor<V> accessor, V value)
+    {
+        if (accessor.isEmpty(value))
+            return isReversed() ? ByteSource.EMPTY_VALUE_REVERSED : ByteSource.EMPTY_VALUE;
+        return asComparableBytesNonEmpty(accessor, value);
+    }
+
+    public final ByteSource asComparableBytes(ByteBuffer value)
+    {
+        return asComparableBytes(ByteBufferAccessor.instance, value);
+    }
+
+    /**
+     * Implement IFF ComparisonType is CUSTOM
+     *
+     * Produces the byte-comparable representation of a non-empty value, see {@link #asComparableBytes}.
+     */
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        if (comparisonType != ComparisonType.BYTE_ORDER)
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support byte-comparable encoding");
+        return ByteSource.of(accessor.toBuffer(value));
+    }
+
     /**
      * Validate cell value. Unlike {@linkplain #validate(java.nio.ByteBuffer)},
      * cell value is passed to validate its content.
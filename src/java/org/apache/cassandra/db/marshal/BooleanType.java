@@ -26,6 +26,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.BooleanSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +55,12 @@ public class BooleanType extends AbstractType<Boolean>
         return v1 - v2;
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.oneByte(accessor.getByte(value, 0) == 0 ? 0 : 1);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
 
@@ -27,6 +27,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class ByteType extends NumberType<Byte>
 {
@@ -42,6 +43,12 @@ public class ByteType extends NumberType<Byte>
         return accessorL.getByte(left, 0) - accessorR.getByte(right, 0);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.signedFixedLength(accessor.toBuffer(value));
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
@@ -32,6 +32,7 @@ import org.apache.cassandra.serializers.DecimalSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class DecimalType extends NumberType<BigDecimal>
 {
@@ -59,6 +60,46 @@ public class DecimalType extends NumberType<BigDecimal>
         return compareComposed(left, accessorL, right, accessorR, this);
     }
 
+    /**
+     * Decimals are encoded as a sign byte (0x40 for negative values, 0x80 for zero and 0xC0 for positive ones),
+     * followed by the base-100 exponent as a signed 8-byte integer and the base-100 digits of the normalized
+     * mantissa, each stored as digit + 1, with a 0 byte as terminator. For negative values all bytes after the
+     * sign byte are inverted. Trailing zeros are stripped first, so that values that compare equal with different
+     * scales (e.g. 1.0 and 1.00) have the same encoding.
+     */
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        BigDecimal decimal = compose(value, accessor);
+        int signum = decimal.signum();
+        if (signum == 0)
+            return ByteSource.oneByte(0x80);
+
+        decimal = decimal.stripTrailingZeros();
+        String digits = decimal.unscaledValue().abs().toString();
+        // value = 0.digits * 10^exponent; make the exponent even so that it can be expressed in base 100
+        long exponent = (long) digits.length() - decimal.scale();
+        if ((exponent & 1) != 0)
+        {
+            digits = '0' + digits;
+            ++exponent;
+        }
+        if ((digits.length() & 1) != 0)
+            digits = digits + '0';
+
+        int flip = signum < 0 ? 0xFF : 0;
+        byte[] bytes = new byte[1 + Long.BYTES + digits.length() / 2 + 1];
+        bytes[0] = (byte) (signum < 0 ? 0x40 : 0xC0);
+        long encodedExponent = (exponent / 2) ^ Long.MIN_VALUE;
+        for (int i = 0; i < Long.BYTES; ++i)
+            bytes[1 + i] = (byte) ((encodedExponent >>> (Long.SIZE - Byte.SIZE * (i + 1))) ^ flip);
+        int pos = 1 + Long.BYTES;
+        for (int i = 0; i < digits.length(); i += 2)
+            bytes[pos++] = (byte) ((((digits.charAt(i) - '0') * 10 + digits.charAt(i + 1) - '0') + 1) ^ flip);
+        bytes[pos] = (byte) flip;
+        return ByteSource.fixedLength(bytes);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
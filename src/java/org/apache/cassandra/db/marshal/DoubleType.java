@@ -27,6 +27,7 @@ import org.apache.cassandra.serializers.DoubleSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class DoubleType extends NumberType<Double>
 {
@@ -50,6 +51,19 @@ public class DoubleType extends NumberType<Double>
         return compareComposed(left, accessorL, right, accessorR, this);
     }
 
+    /**
+     * Doubles are encoded as their IEEE 754 bits (with NaNs collapsed to the canonical NaN, as
+     * {@link Double#compare} does), with all bits inverted for negative values and only the sign bit flipped for
+     * positive ones.
+     */
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        long bits = Double.doubleToLongBits(accessor.toDouble(value));
+        // ByteSource.of(long) flips the sign bit again; negative values end up fully inverted
+        return ByteSource.of(bits ^ (bits >> (Long.SIZE - 1) & Long.MAX_VALUE));
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
       // Return an empty ByteBuffer for an empty string.
@@ -34,6 +34,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import static com.google.common.collect.Iterables.any;
 
@@ -174,6 +175,18 @@ public class DynamicCompositeType extends AbstractCompositeType
         return rawComp;
     }
 
+    /**
+     * Components of different types are ordered by the simple, then full class name of their comparator. Note that
+     * components of two different reversed types are ordered by their reversed values here, whereas compareCustom
+     * orders them by the names of their base types.
+     */
+    @Override
+    protected ByteSource comparatorAsComparableBytes(AbstractType<?> comparator)
+    {
+        return ByteSource.withoutTerminator(ByteSource.of(ByteBufferUtil.bytes(comparator.getClass().getSimpleName())),
+                                            ByteSource.of(ByteBufferUtil.bytes(comparator.getClass().getName())));
+    }
+
     protected <V> AbstractType<?> getAndAppendComparator(int i, V value, ValueAccessor<V> accessor, StringBuilder sb, int offset)
     {
         try
@@ -34,6 +34,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * A type that only accept empty data.
@@ -73,6 +74,12 @@ public class EmptyType extends AbstractType<Void>
         return 0;
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.EMPTY;
+    }
+
     public <V> String getString(V value, ValueAccessor<V> accessor)
     {
         return "";
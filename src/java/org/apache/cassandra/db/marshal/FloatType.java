@@ -27,6 +27,7 @@ import org.apache.cassandra.serializers.FloatSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 
 public class FloatType extends NumberType<Float>
@@ -51,6 +52,18 @@ public class FloatType extends NumberType<Float>
         return compareComposed(left, accessorL, right, accessorR, this);
     }
 
+    /**
+     * Floats are encoded as their IEEE 754 bits (with NaNs collapsed to the canonical NaN, as {@link Float#compare}
+     * does), with all bits inverted for negative values and only the sign bit flipped for positive ones.
+     */
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        int bits = Float.floatToIntBits(accessor.toFloat(value));
+        bits ^= (bits >> (Integer.SIZE - 1)) | Integer.MIN_VALUE;
+        return ByteSource.fixedLength(ByteBufferUtil.bytes(bits));
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
       // Return an empty ByteBuffer for an empty string.
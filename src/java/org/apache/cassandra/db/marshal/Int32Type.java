@@ -28,6 +28,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class Int32Type extends NumberType<Integer>
 {
@@ -55,6 +56,12 @@ public class Int32Type extends NumberType<Integer>
         return ValueAccessor.compare(left, accessorL, right, accessorR);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.signedFixedLength(accessor.toBuffer(value));
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
@@ -30,6 +30,7 @@ import org.apache.cassandra.serializers.IntegerSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public final class IntegerType extends NumberType<BigInteger>
 {
@@ -73,6 +74,12 @@ public final class IntegerType extends NumberType<BigInteger>
         return IntegerType.compareIntegers(left, accessorL, right, accessorR);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.of(new BigInteger(accessor.toArray(value)));
+    }
+
     public static <VL, VR> int compareIntegers(VL lhs, ValueAccessor<VL> accessorL, VR rhs, ValueAccessor<VR> accessorR)
     {
         int lhsLen = accessorL.size(lhs);
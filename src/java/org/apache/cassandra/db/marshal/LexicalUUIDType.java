@@ -26,6 +26,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.UUIDSerializer;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class LexicalUUIDType extends AbstractType<UUID>
 {
@@ -48,6 +49,17 @@ public class LexicalUUIDType extends AbstractType<UUID>
         return accessorL.toUUID(left).compareTo(accessorR.toUUID(right));
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        // UUID.compareTo compares both halves as signed longs
+        ByteBuffer bytes = ByteBuffer.allocate(2 * Long.BYTES);
+        bytes.putLong(accessor.getLong(value, 0) ^ Long.MIN_VALUE);
+        bytes.putLong(accessor.getLong(value, 8) ^ Long.MIN_VALUE);
+        bytes.flip();
+        return ByteSource.fixedLength(bytes);
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
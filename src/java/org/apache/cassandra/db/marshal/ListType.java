@@ -32,6 +32,7 @@ import org.apache.cassandra.serializers.CollectionSerializer;
 import org.apache.cassandra.serializers.ListSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class ListType<T> extends CollectionType<List<T>>
 {
@@ -195,6 +196,30 @@ public class ListType<T> extends CollectionType<List<T>>
         return sizeL == sizeR ? 0 : (sizeL < sizeR ? -1 : 1);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return asComparableBytesListOrSet(elements, accessor, value);
+    }
+
+    /**
+     * Encodes the elements of a frozen list or set as the components of a multi-component key, so that the
+     * collections compare element by element, with a prefix sorting before the longer collection.
+     */
+    static <V> ByteSource asComparableBytesListOrSet(AbstractType<?> elementsComparator, ValueAccessor<V> accessor, V value)
+    {
+        int size = CollectionSerializer.readCollectionSize(value, accessor, ProtocolVersion.V3);
+        int offset = CollectionSerializer.sizeOfCollectionSize(size, ProtocolVersion.V3);
+        ByteSource[] components = new ByteSource[size];
+        for (int i = 0; i < size; i++)
+        {
+            V element = CollectionSerializer.readValue(value, accessor, offset, ProtocolVersion.V3);
+            offset += CollectionSerializer.sizeOfValue(element, accessor, ProtocolVersion.V3);
+            components[i] = elementsComparator.asComparableBytes(accessor, element);
+        }
+        return ByteSource.withTerminator(ByteSource.TERMINATOR, components);
+    }
+
     @Override
     public String toString(boolean ignoreFreezing)
     {
@@ -28,6 +28,7 @@ import org.apache.cassandra.serializers.LongSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class LongType extends NumberType<Long>
 {
@@ -45,6 +46,12 @@ public class LongType extends NumberType<Long>
         return compareLongs(left, accessorL, right, accessorR);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.of(accessor.getLong(value, 0));
+    }
+
     public static <VL, VR> int compareLongs(VL left, ValueAccessor<VL> accessorL, VR right, ValueAccessor<VR> accessorR)
     {
         if (accessorL.isEmpty(left)|| accessorR.isEmpty(right))
@@ -32,6 +32,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.MapSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class MapType<K, V> extends CollectionType<Map<K, V>>
 {
@@ -218,6 +219,26 @@ public class MapType<K, V> extends CollectionType<Map<K, V>>
         return sizeL == sizeR ? 0 : (sizeL < sizeR ? -1 : 1);
     }
 
+    @Override
+    protected <T> ByteSource asComparableBytesNonEmpty(ValueAccessor<T> accessor, T value)
+    {
+        // keys and values alternate as components, which gives the same order as compareMaps
+        ProtocolVersion protocolVersion = ProtocolVersion.V3;
+        int size = CollectionSerializer.readCollectionSize(value, accessor, protocolVersion);
+        int offset = CollectionSerializer.sizeOfCollectionSize(size, protocolVersion);
+        ByteSource[] components = new ByteSource[size * 2];
+        for (int i = 0; i < size; i++)
+        {
+            T k = CollectionSerializer.readValue(value, accessor, offset, protocolVersion);
+            offset += CollectionSerializer.sizeOfValue(k, accessor, protocolVersion);
+            T v = CollectionSerializer.readValue(value, accessor, offset, protocolVersion);
+            offset += CollectionSerializer.sizeOfValue(v, accessor, protocolVersion);
+            components[2 * i] = keys.asComparableBytes(accessor, k);
+            components[2 * i + 1] = values.asComparableBytes(accessor, v);
+        }
+        return ByteSource.withTerminator(ByteSource.TERMINATOR, components);
+    }
+
     @Override
     public MapSerializer<K, V> getSerializer()
     {
@@ -28,6 +28,7 @@ import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class ReversedType<T> extends AbstractType<T>
 {
@@ -68,6 +69,12 @@ public class ReversedType<T> extends AbstractType<T>
         return baseType.compare(right, accessorR, left, accessorL);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ByteSource.invert(baseType.asComparableBytes(accessor, value));
+    }
+
     @Override
     public int compareForCQL(ByteBuffer v1, ByteBuffer v2)
     {
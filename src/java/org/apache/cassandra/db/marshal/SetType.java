@@ -30,6 +30,7 @@ import org.apache.cassandra.exceptions.SyntaxException;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.SetSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class SetType<T> extends CollectionType<Set<T>>
 {
@@ -157,6 +158,12 @@ public class SetType<T> extends CollectionType<Set<T>>
         return ListType.compareListOrSet(elements, left, accessorL, right, accessorR);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        return ListType.asComparableBytesListOrSet(elements, accessor, value);
+    }
+
     public SetSerializer<T> getSerializer()
     {
         return serializer;
@@ -28,6 +28,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.utils.UUIDGen;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TimeUUIDSerializer;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class TimeUUIDType extends TemporalType<UUID>
 {
@@ -74,6 +75,18 @@ public class TimeUUIDType extends TemporalType<UUID>
         return Long.compare(lsb1, lsb2);
     }
 
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        long msb = reorderTimestampBytes(accessor.getLong(value, 0));
+        long lsb = signedBytesToNativeLong(accessor.getLong(value, 8));
+        ByteBuffer bytes = ByteBuffer.allocate(2 * Long.BYTES);
+        bytes.putLong(msb ^ Long.MIN_VALUE);
+        bytes.putLong(lsb ^ Long.MIN_VALUE);
+        bytes.flip();
+        return ByteSource.fixedLength(bytes);
+    }
+
     // takes as input 8 signed bytes in native machine order
     // returns the first byte unchanged, and the following 7 bytes converted to an unsigned representation
     // which is the same as a 2's complement long in native format
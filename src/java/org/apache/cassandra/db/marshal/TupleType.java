@@ -35,6 +35,7 @@ import org.apache.cassandra.exceptions.SyntaxException;
 import org.apache.cassandra.serializers.*;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Iterables.transform;
@@ -188,6 +189,30 @@ public class TupleType extends AbstractType<ByteBuffer>
         return allRemainingComponentsAreNull(left, accessorL, offsetL) ? 0 : 1;
     }
 
+    /**
+     * Encodes the fields of the tuple as the components of a multi-component key, with null fields encoded as
+     * null components. Trailing null fields are dropped, as {@link #compareCustom} treats them as missing.
+     */
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        ByteSource[] components = new ByteSource[types.size()];
+        int offset = 0;
+        int length = 0;
+        for (int i = 0; i < types.size() && !accessor.isEmptyFromOffset(value, offset); i++)
+        {
+            int size = accessor.getInt(value, offset);
+            offset += TypeSizes.INT_SIZE;
+            if (size < 0)
+                continue;
+
+            components[i] = types.get(i).asComparableBytes(accessor, accessor.slice(value, offset, size));
+            offset += size;
+            length = i + 1;
+        }
+        return ByteSource.withTerminator(ByteSource.TERMINATOR, length == components.length ? components : Arrays.copyOf(components, length));
+    }
+
     private <T> boolean allRemainingComponentsAreNull(T v, ValueAccessor<T> accessor, int offset)
     {
         while (!accessor.isEmptyFromOffset(v, offset))
@@ -31,6 +31,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.UUIDSerializer;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * Compares UUIDs using the following criteria:<br>
@@ -99,6 +100,25 @@ public class UUIDType extends AbstractType<UUID>
         return UnsignedLongs.compare(accessorL.getLong(left, 8), accessorR.getLong(right, 8));
     }
 
+    /**
+     * UUIDs are encoded as their version, followed by the most significant bits (with the timestamp bytes moved
+     * first for time-based UUIDs) and the least significant bits, matching the order of {@link #compareCustom}.
+     */
+    @Override
+    protected <V> ByteSource asComparableBytesNonEmpty(ValueAccessor<V> accessor, V value)
+    {
+        long msb = accessor.getLong(value, 0);
+        long lsb = accessor.getLong(value, 8);
+        int version = (int) ((msb >>> 12) & 0xf);
+        // the reordered timestamp of time-based UUIDs has its top bits clear, so all longs here compare unsigned
+        ByteBuffer bytes = ByteBuffer.allocate(1 + 2 * Long.BYTES);
+        bytes.put((byte) version);
+        bytes.putLong(version == 1 ? TimeUUIDType.reorderTimestampBytes(msb) : msb);
+        bytes.putLong(lsb);
+        bytes.flip();
+        return ByteSource.fixedLength(bytes);
+    }
+
     @Override
     public boolean isValueCompatibleWithInternal(AbstractType<?> otherType)
     {
@@ -57,6 +57,12 @@ public class CassandraTableRepairManager implements TableRepairManager
         return CompactionManager.instance.submitValidation(validation);
     }
 
+    @Override
+    public <T> Future<T> submitValidationSubRange(Callable<T> task)
+    {
+        return CompactionManager.instance.submitSubRangeValidation(task);
+    }
+
     @Override
     public void incrementalSessionCompleted(UUID sessionID)
     {
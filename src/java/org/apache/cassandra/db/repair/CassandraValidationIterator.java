@@ -19,17 +19,20 @@
 package org.apache.cassandra.db.repair;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.LongPredicate;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import org.slf4j.Logger;
@@ -50,6 +53,7 @@ import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.PartitionHashes;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.repair.ValidationPartitionIterator;
 import org.apache.cassandra.schema.TableMetadata;
@@ -162,14 +166,21 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
 
     private final ColumnFamilyStore cfs;
     private final Refs<SSTableReader> sstables;
-    private final String snapshotName;
-    private final boolean isGlobalSnapshotValidation;
-
-    private final boolean isSnapshotValidation;
-    private final AbstractCompactionStrategy.ScannerList scanners;
-    private final ValidationCompactionController controller;
-
-    private final CompactionIterator ci;
+    private final Collection<Range<Token>> ranges;
+    private final int nowInSec;
+    private final int gcBefore;
+    // the snapshot validated, to clear once done unless it is the snapshot of the whole repair
+    private final String snapshotToClear;
+
+    // opened when first iterated, so that an iterator split into sub-ranges doesn't read anything itself
+    private AbstractCompactionStrategy.ScannerList scanners;
+    private ValidationCompactionController controller;
+    private CompactionIterator ci;
+
+    // with partition hashes, the partitions whose hashes are used, and the next ones of both kinds
+    private PartitionHashValidation hashes;
+    private PartitionHashes.Entry nextHash;
+    private UnfilteredRowIterator nextPartition;
 
     private final long estimatedBytes;
     private final long estimatedPartitions;
@@ -178,13 +189,12 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
     public CassandraValidationIterator(ColumnFamilyStore cfs, Collection<Range<Token>> ranges, UUID parentId, UUID sessionID, boolean isIncremental, int nowInSec) throws IOException
     {
         this.cfs = cfs;
+        this.ranges = ranges;
+        this.nowInSec = nowInSec;
 
-        isGlobalSnapshotValidation = cfs.snapshotExists(parentId.toString());
-        if (isGlobalSnapshotValidation)
-            snapshotName = parentId.toString();
-        else
-            snapshotName = sessionID.toString();
-        isSnapshotValidation = cfs.snapshotExists(snapshotName);
+        boolean isGlobalSnapshotValidation = cfs.snapshotExists(parentId.toString());
+        String snapshotName = isGlobalSnapshotValidation ? parentId.toString() : sessionID.toString();
+        boolean isSnapshotValidation = cfs.snapshotExists(snapshotName);
 
         if (isSnapshotValidation)
         {
@@ -202,6 +212,9 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
             }
             sstables = getSSTablesToValidate(cfs, ranges, parentId, isIncremental);
         }
+        // we can only clear the snapshot if we are not doing a global snapshot validation (we then clear it once
+        // anticompaction is done).
+        snapshotToClear = isSnapshotValidation && !isGlobalSnapshotValidation ? snapshotName : null;
 
         Preconditions.checkArgument(sstables != null);
         ActiveRepairService.ParentRepairSession prs = ActiveRepairService.instance.getParentRepairSession(parentId);
@@ -215,29 +228,81 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
                         cfs.getTableName());
         }
 
-        controller = new ValidationCompactionController(cfs, getDefaultGcBefore(cfs, nowInSec));
-        scanners = cfs.getCompactionStrategyManager().getScanners(sstables, ranges);
-        ci = new ValidationCompactionIterator(scanners.scanners, controller, nowInSec, CompactionManager.instance.active);
+        gcBefore = getDefaultGcBefore(cfs, nowInSec);
+        rangePartitionCounts = rangePartitionCounts(sstables, ranges);
+        estimatedPartitions = rangePartitionCounts.values().stream().mapToLong(Long::longValue).sum();
+        estimatedBytes = estimatedBytes(sstables, ranges);
+    }
+
+    /**
+     * Iterates over a part of the ranges of the given iterator, from its sstables.
+     */
+    private CassandraValidationIterator(CassandraValidationIterator parent, Range<Token> range)
+    {
+        this.cfs = parent.cfs;
+        this.ranges = Collections.singleton(range);
+        this.nowInSec = parent.nowInSec;
+        this.gcBefore = parent.gcBefore;
+        this.snapshotToClear = null;
+
+        List<SSTableReader> intersecting = new ArrayList<>();
+        for (SSTableReader sstable : parent.sstables)
+        {
+            if (new Bounds<>(sstable.first.getToken(), sstable.last.getToken()).intersects(ranges))
+                intersecting.add(sstable);
+        }
+        sstables = Refs.ref(intersecting);
+
+        rangePartitionCounts = rangePartitionCounts(sstables, ranges);
+        estimatedPartitions = rangePartitionCounts.get(range);
+        estimatedBytes = estimatedBytes(sstables, ranges);
+    }
 
-        long allPartitions = 0;
-        rangePartitionCounts = Maps.newHashMapWithExpectedSize(ranges.size());
+    private static Map<Range<Token>, Long> rangePartitionCounts(Collection<SSTableReader> sstables, Collection<Range<Token>> ranges)
+    {
+        Map<Range<Token>, Long> rangePartitionCounts = Maps.newHashMapWithExpectedSize(ranges.size());
         for (Range<Token> range : ranges)
         {
             long numPartitions = 0;
             for (SSTableReader sstable : sstables)
                 numPartitions += sstable.estimatedKeysForRanges(Collections.singleton(range));
             rangePartitionCounts.put(range, numPartitions);
-            allPartitions += numPartitions;
         }
-        estimatedPartitions = allPartitions;
+        return rangePartitionCounts;
+    }
 
+    private static long estimatedBytes(Collection<SSTableReader> sstables, Collection<Range<Token>> ranges)
+    {
         long estimatedTotalBytes = 0;
         for (SSTableReader sstable : sstables)
         {
             for (SSTableReader.PartitionPositionBounds positionsForRanges : sstable.getPositionsForRanges(ranges))
                 estimatedTotalBytes += positionsForRanges.upperPosition - positionsForRanges.lowerPosition;
         }
-        estimatedBytes = estimatedTotalBytes;
+        return estimatedTotalBytes;
+    }
+
+    private void open()
+    {
+        controller = new ValidationCompactionController(cfs, gcBefore);
+        hashes = PartitionHashValidation.create(cfs, Lists.newArrayList(sstables), ranges, gcBefore, nowInSec);
+        scanners = hashes == null
+                   ? cfs.getCompactionStrategyManager().getScanners(sstables, ranges)
+                   : new AbstractCompactionStrategy.ScannerList(hashes.scanners);
+        ci = new ValidationCompactionIterator(scanners.scanners, controller, nowInSec, CompactionManager.instance.active);
+    }
+
+    @Override
+    public boolean supportsSubRanges()
+    {
+        return true;
+    }
+
+    @Override
+    public ValidationPartitionIterator subRange(Range<Token> range)
+    {
+        Preconditions.checkState(ci == null, "Cannot split an iterator already iterated");
+        return new CassandraValidationIterator(this, range);
     }
 
     @Override
@@ -246,26 +311,29 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
         // TODO: can any of this fail and leave stuff unreleased?
         super.close();
 
+        if (nextPartition != null)
+            nextPartition.close();
+
         if (ci != null)
             ci.close();
 
+        if (hashes != null)
+            hashes.close();
+
         if (scanners != null)
             scanners.close();
 
         if (controller != null)
             controller.close();
 
-        if (isSnapshotValidation && !isGlobalSnapshotValidation)
-        {
-            // we can only clear the snapshot if we are not doing a global snapshot validation (we then clear it once anticompaction
-            // is done).
-            cfs.clearSnapshot(snapshotName);
-        }
+        if (snapshotToClear != null)
+            cfs.clearSnapshot(snapshotToClear);
 
         if (sstables != null)
             sstables.release();
     }
 
+
     @Override
     public TableMetadata metadata()
     {
@@ -275,13 +343,53 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
     @Override
     public boolean hasNext()
     {
-        return ci.hasNext();
+        if (ci == null)
+            open();
+
+        if (hashes == null)
+            return ci.hasNext();
+
+        // the partition read last has been consumed, so the next one can be read
+        if (nextPartition == null && ci.hasNext())
+            nextPartition = ci.next();
+        if (nextHash == null && hashes.hasNext())
+            nextHash = hashes.next();
+        return nextPartition != null || nextHash != null;
     }
 
     @Override
     public UnfilteredRowIterator next()
     {
-        return ci.next();
+        if (ci == null)
+            open();
+
+        if (hashes == null)
+            return ci.next();
+
+        if (!hasNext() || hasNextHash())
+            throw new NoSuchElementException();
+        UnfilteredRowIterator partition = nextPartition;
+        nextPartition = null;
+        return partition;
+    }
+
+    @Override
+    public boolean hasNextHash()
+    {
+        return hashes != null
+               && hasNext()
+               && nextHash != null
+               && (nextPartition == null || nextHash.key.compareTo(nextPartition.partitionKey()) < 0);
+    }
+
+    @Override
+    public PartitionHashes.Entry nextHash()
+    {
+        if (!hasNextHash())
+            throw new NoSuchElementException();
+        PartitionHashes.Entry hash = nextHash;
+        nextHash = null;
+        return hash;
     }
 
     @Override
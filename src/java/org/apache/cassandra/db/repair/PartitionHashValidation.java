@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.db.repair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.PartitionHashes;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.schema.CompactionParams.TombstoneOption;
+import org.apache.cassandra.utils.AbstractIterator;
+import org.apache.cassandra.utils.MergeIterator;
+import org.apache.cassandra.utils.Throwables;
+
+/**
+ * Validates sstables from the hashes of their partitions they persisted in their {@link Component#PARTITION_HASHES}
+ * component, and only reads the partitions whose hashes cannot be used.
+ *
+ * The hash of a partition can be used when it is found in a single sstable, and the validation neither purges its
+ * tombstones nor expires any of its data. The others are read, and merged and purged as usual, by scanners restricted
+ * to the runs of consecutive keys of each sstable that need to be; these never include a key whose hash is used, so
+ * the validation is the union of the hashes this iterates over, in partition order, and of the partitions read by
+ * the {@link #scanners}.
+ */
+final class PartitionHashValidation extends AbstractIterator<PartitionHashes.Entry>
+{
+    private static final Logger logger = LoggerFactory.getLogger(PartitionHashValidation.class);
+
+    // reading all the data is cheaper than seeking to that many runs of keys
+    private static final int MAX_SCANNED_BOUNDS = Integer.getInteger("cassandra.repair.partition_hashes_max_scanned_bounds", 1 << 16);
+
+    final List<ISSTableScanner> scanners;
+    private final MergedEntries entries;
+    private final int gcBefore;
+    private final int nowInSec;
+
+    private PartitionHashValidation(List<ISSTableScanner> scanners, MergedEntries entries, int gcBefore, int nowInSec)
+    {
+        this.scanners = scanners;
+        this.entries = entries;
+        this.gcBefore = gcBefore;
+        this.nowInSec = nowInSec;
+    }
+
+    /**
+     * @return the validation of the given sstables over the given ranges, or null if they must all be read because
+     * some lack partition hashes, or have hashes computed for other columns, or too many of their partitions must be
+     * read anyway
+     */
+    @SuppressWarnings("resource")
+    static PartitionHashValidation create(ColumnFamilyStore cfs, List<SSTableReader> sstables, Collection<Range<Token>> ranges, int gcBefore, int nowInSec)
+    {
+        // tombstones provided by the other sstables of the table can remove data from the validated ones
+        if (sstables.isEmpty() || cfs.getCompactionStrategyManager().getCompactionParams().tombstoneOption() != TombstoneOption.NONE)
+            return null;
+        for (SSTableReader sstable : sstables)
+        {
+            if (!PartitionHashes.isPresent(sstable))
+                return null;
+        }
+
+        byte[] fingerprint = PartitionHashes.fingerprint(cfs.metadata());
+        List<Range<Token>> normalized = Range.normalize(ranges);
+        List<List<AbstractBounds<PartitionPosition>>> scanned;
+        try (MergedEntries entries = MergedEntries.open(sstables, normalized, fingerprint))
+        {
+            if (entries == null)
+                return null;
+            scanned = boundsToScan(entries, sstables.size(), gcBefore, nowInSec);
+            if (scanned == null)
+                return null;
+        }
+        catch (IOException | FSReadError e)
+        {
+            logger.warn("Could not read the partition hashes of {}.{}, validating from the data", cfs.keyspace.getName(), cfs.name, e);
+            return null;
+        }
+
+        MergedEntries entries;
+        try
+        {
+            entries = MergedEntries.open(sstables, normalized, fingerprint);
+        }
+        catch (IOException e)
+        {
+            throw new FSReadError(e, sstables.get(0).descriptor.filenameFor(Component.PARTITION_HASHES));
+        }
+        // the columns of the table changed since
+        if (entries == null)
+            return null;
+
+        List<ISSTableScanner> scanners = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < sstables.size(); i++)
+            {
+                if (!scanned.get(i).isEmpty())
+                    scanners.add(sstables.get(i).getScanner(scanned.get(i).iterator()));
+            }
+            return new PartitionHashValidation(scanners, entries, gcBefore, nowInSec);
+        }
+        catch (Throwable t)
+        {
+            Throwables.close(t, scanners);
+            entries.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return for every sstable, the bounds of the runs of its partitions that must be read, or null if there are too
+     * many of them
+     */
+    private static List<List<AbstractBounds<PartitionPosition>>> boundsToScan(MergedEntries entries, int sstables, int gcBefore, int nowInSec)
+    {
+        List<List<AbstractBounds<PartitionPosition>>> scanned = new ArrayList<>(sstables);
+        for (int i = 0; i < sstables; i++)
+            scanned.add(new ArrayList<>());
+
+        // the current run of keys to read of every sstable, which must not span several ranges, as the keys between
+        // them are not validated
+        DecoratedKey[] runStarts = new DecoratedKey[sstables];
+        DecoratedKey[] runEnds = new DecoratedKey[sstables];
+        int[] runRanges = new int[sstables];
+        int bounds = 0;
+        long hashed = 0;
+        long read = 0;
+        while (entries.hasNext())
+        {
+            Merged merged = entries.next();
+            if (merged.isHashed(gcBefore, nowInSec))
+            {
+                int sstable = merged.sources[0];
+                if (runStarts[sstable] != null)
+                {
+                    scanned.get(sstable).add(new Bounds<>(runStarts[sstable], runEnds[sstable]));
+                    runStarts[sstable] = null;
+                    bounds++;
+                }
+                hashed++;
+                continue;
+            }
+
+            for (int sstable : merged.sources)
+            {
+                if (runStarts[sstable] != null && runRanges[sstable] != merged.range)
+                {
+                    scanned.get(sstable).add(new Bounds<>(runStarts[sstable], runEnds[sstable]));
+                    runStarts[sstable] = null;
+                    bounds++;
+                }
+                if (runStarts[sstable] == null)
+                {
+                    runStarts[sstable] = merged.key;
+                    runRanges[sstable] = merged.range;
+                }
+                runEnds[sstable] = merged.key;
+            }
+            read++;
+
+            if (bounds > MAX_SCANNED_BOUNDS)
+                return null;
+        }
+
+        for (int sstable = 0; sstable < sstables; sstable++)
+        {
+            if (runStarts[sstable] != null)
+                scanned.get(sstable).add(new Bounds<>(runStarts[sstable], runEnds[sstable]));
+        }
+        logger.debug("Validating {} partitions from their persisted hashes and reading {} others", hashed, read);
+        return scanned;
+    }
+
+    protected PartitionHashes.Entry computeNext()
+    {
+        while (entries.hasNext())
+        {
+            Merged merged = entries.next();
+            if (merged.isHashed(gcBefore, nowInSec))
+                return merged.entry;
+        }
+        return endOfData();
+    }
+
+    public void close()
+    {
+        entries.close();
+    }
+
+    /**
+     * The entries of a partition in all the validated sstables.
+     */
+    private static class Merged
+    {
+        private final DecoratedKey key;
+        // the index of the normalized range of the key
+        private int range;
+        // the indexes of the sstables holding the partition
+        private final int[] sources;
+        // the entry of the partition if it is held by a single sstable
+        private final PartitionHashes.Entry entry;
+
+        private Merged(DecoratedKey key, int[] sources, PartitionHashes.Entry entry)
+        {
+            this.key = key;
+            this.sources = sources;
+            this.entry = entry;
+        }
+
+        private boolean isHashed(int gcBefore, int nowInSec)
+        {
+            return entry != null && entry.isUnchangedByValidation(gcBefore, nowInSec);
+        }
+    }
+
+    /**
+     * Merges the entries of the sstables within the validated ranges, in partition order.
+     */
+    private static class MergedEntries extends AbstractIterator<Merged>
+    {
+        private final MergeIterator<PartitionHashes.Entry, Merged> merged;
+        private final List<Range<Token>> ranges;
+        private int range;
+
+        private MergedEntries(List<PartitionHashes.Reader> readers, List<Range<Token>> ranges)
+        {
+            this.ranges = ranges;
+            this.merged = MergeIterator.get(readers, (e1, e2) -> e1.key.compareTo(e2.key), new MergeIterator.Reducer<PartitionHashes.Entry, Merged>()
+            {
+                private final List<PartitionHashes.Entry> entries = new ArrayList<>();
+                private final List<Integer> sources = new ArrayList<>();
+
+                public void reduce(int idx, PartitionHashes.Entry current)
+                {
+                    entries.add(current);
+                    sources.add(idx);
+                }
+
+                protected Merged getReduced()
+                {
+                    int[] indexes = new int[sources.size()];
+                    for (int i = 0; i < indexes.length; i++)
+                        indexes[i] = sources.get(i);
+                    PartitionHashes.Entry entry = entries.get(0);
+                    return new Merged(entry.key, indexes, entries.size() == 1 ? entry : null);
+                }
+
+                protected void onKeyChange()
+                {
+                    entries.clear();
+                    sources.clear();
+                }
+            });
+        }
+
+        /**
+         * @return the merged entries of the given sstables, or null if any of them were computed with other columns
+         * than the given fingerprint
+         */
+        @SuppressWarnings("resource")
+        static MergedEntries open(List<SSTableReader> sstables, List<Range<Token>> ranges, byte[] fingerprint) throws IOException
+        {
+            List<PartitionHashes.Reader> readers = new ArrayList<>(sstables.size());
+            try
+            {
+                for (SSTableReader sstable : sstables)
+                {
+                    PartitionHashes.Reader reader = PartitionHashes.Reader.open(sstable, fingerprint);
+                    if (reader == null)
+                    {
+                        Throwables.maybeFail(Throwables.close(null, readers), IOException.class);
+                        return null;
+                    }
+                    readers.add(reader);
+                }
+                return new MergedEntries(readers, ranges);
+            }
+            catch (Throwable t)
+            {
+                Throwables.close(t, readers);
+                throw t;
+            }
+        }
+
+        protected Merged computeNext()
+        {
+            while (merged.hasNext())
+            {
+                Merged next = merged.next();
+                next.range = rangeIndex(next.key.getToken());
+                if (next.range >= 0)
+                    return next;
+                // the remaining keys are all after the last range
+                if (range == ranges.size())
+                    break;
+            }
+            return endOfData();
+        }
+
+        // the index of the normalized range holding the token, or -1 if none does, given tokens in order
+        private int rangeIndex(Token token)
+        {
+            while (range < ranges.size())
+            {
+                Range<Token> current = ranges.get(range);
+                if (current.contains(token))
+                    return range;
+                if (token.compareTo(current.left) <= 0)
+                    return -1;
+                range++;
+            }
+            return -1;
+        }
+
+        public void close()
+        {
+            merged.close();
+        }
+    }
+}
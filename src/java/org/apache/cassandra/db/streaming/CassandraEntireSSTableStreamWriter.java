@@ -19,6 +19,7 @@
 package org.apache.cassandra.db.streaming;
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 
 import org.slf4j.Logger;
@@ -35,7 +36,7 @@ import static org.apache.cassandra.streaming.StreamManager.StreamRateLimiter;
 import static org.apache.cassandra.utils.FBUtilities.prettyPrintMemory;
 
 /**
- * CassandraEntireSSTableStreamWriter streams the entire SSTable to given channel.
+ * CassandraEntireSSTableStreamWriter streams the entire SSTable, or a {@link SSTableSlice} of it, to given channel.
  */
 public class CassandraEntireSSTableStreamWriter
 {
@@ -88,9 +89,17 @@ public class CassandraEntireSSTableStreamWriter
                          component,
                          prettyPrintMemory(length));
 
-            @SuppressWarnings("resource") // this is closed after the file is transferred by AsyncChannelOutputPlus
-            FileChannel channel = context.channel(sstable.descriptor, component, length);
-            long bytesWritten = out.writeFileToChannel(channel, limiter);
+            long bytesWritten;
+            if (component.equals(Component.DATA) && context.slice() != null)
+            {
+                bytesWritten = writeSections(out);
+            }
+            else
+            {
+                @SuppressWarnings("resource") // this is closed after the file is transferred by AsyncChannelOutputPlus
+                FileChannel channel = context.channel(sstable.descriptor, component, length);
+                bytesWritten = out.writeFileToChannel(channel, limiter);
+            }
             progress += bytesWritten;
 
             session.progress(sstable.descriptor.filenameFor(component), ProgressInfo.Direction.OUT, bytesWritten, length);
@@ -117,4 +126,19 @@ public class CassandraEntireSSTableStreamWriter
                      prettyPrintMemory(totalSize));
 
     }
+
+    /**
+     * Streams the sections of the data file making the data file of the slice.
+     */
+    @SuppressWarnings("resource") // the channels are closed after the sections are transferred by AsyncChannelOutputPlus
+    private long writeSections(AsyncStreamingOutputPlus out) throws IOException
+    {
+        long bytesWritten = 0;
+        for (SSTableReader.PartitionPositionBounds section : context.sections())
+        {
+            FileChannel channel = new RandomAccessFile(sstable.descriptor.filenameFor(Component.DATA), "r").getChannel();
+            bytesWritten += out.writeFileToChannel(channel, section.lowerPosition, section.upperPosition - section.lowerPosition, limiter);
+        }
+        return bytesWritten;
+    }
 }
@@ -18,8 +18,11 @@
 
 package org.apache.cassandra.db.streaming;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -27,11 +30,14 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
 import org.apache.cassandra.net.AsyncStreamingOutputPlus;
+import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.schema.TableId;
 import org.apache.cassandra.streaming.OutgoingStream;
 import org.apache.cassandra.streaming.StreamOperation;
@@ -48,6 +54,7 @@ public class CassandraOutgoingFile implements OutgoingStream
     private final List<SSTableReader.PartitionPositionBounds> sections;
     private final String filename;
     private final boolean shouldStreamEntireSSTable;
+    private final boolean shouldStreamSlicedSSTable;
     private final StreamOperation operation;
     private final CassandraStreamHeader header;
 
@@ -66,8 +73,32 @@ public class CassandraOutgoingFile implements OutgoingStream
 
         this.filename = sstable.getFilename();
         this.shouldStreamEntireSSTable = computeShouldStreamEntireSSTables();
-        ComponentManifest manifest = ComponentManifest.create(sstable.descriptor);
-        this.header = makeHeader(sstable, operation, sections, estimatedKeys, shouldStreamEntireSSTable, manifest);
+        this.shouldStreamSlicedSSTable = !shouldStreamEntireSSTable && computeShouldStreamSlicedSSTables();
+        ComponentManifest manifest = shouldStreamSlicedSSTable
+                                     ? estimateSlicedManifest(sstable, sections)
+                                     : ComponentManifest.create(sstable.descriptor);
+        this.header = makeHeader(sstable, operation, sections, estimatedKeys, shouldStreamEntireSSTable || shouldStreamSlicedSSTable, manifest, sstable.first);
+    }
+
+    /**
+     * @return the manifest of the slice of the given sstable made of the given sections, assuming its index, summary
+     * and filter are as much smaller than these of the sstable as its data file is
+     */
+    private static ComponentManifest estimateSlicedManifest(SSTableReader sstable, List<SSTableReader.PartitionPositionBounds> sections)
+    {
+        long length = sections.stream().mapToLong(p -> p.upperPosition - p.lowerPosition).sum();
+        double ratio = (double) length / sstable.uncompressedLength();
+
+        Map<Component, Long> sizes = new HashMap<>();
+        sizes.put(Component.DATA, length);
+        for (Component component : ComponentManifest.create(sstable.descriptor))
+        {
+            if (component.equals(Component.PRIMARY_INDEX) || component.equals(Component.SUMMARY) || component.equals(Component.FILTER))
+                sizes.put(component, (long) Math.ceil(new File(sstable.descriptor.filenameFor(component)).length() * ratio));
+            else if (component.equals(Component.STATS))
+                sizes.put(component, new File(sstable.descriptor.filenameFor(component)).length());
+        }
+        return ComponentManifest.create(sizes);
     }
 
     private static CassandraStreamHeader makeHeader(SSTableReader sstable,
@@ -75,7 +106,8 @@ public class CassandraOutgoingFile implements OutgoingStream
                                                     List<SSTableReader.PartitionPositionBounds> sections,
                                                     long estimatedKeys,
                                                     boolean shouldStreamEntireSSTable,
-                                                    ComponentManifest manifest)
+                                                    ComponentManifest manifest,
+                                                    DecoratedKey firstKey)
     {
         boolean keepSSTableLevel = operation == StreamOperation.BOOTSTRAP || operation == StreamOperation.REBUILD;
 
@@ -93,7 +125,7 @@ public class CassandraOutgoingFile implements OutgoingStream
                                     .withSerializationHeader(sstable.header.toComponent())
                                     .isEntireSSTable(shouldStreamEntireSSTable)
                                     .withComponentManifest(manifest)
-                                    .withFirstKey(sstable.first)
+                                    .withFirstKey(firstKey)
                                     .withTableId(sstable.metadata().id)
                                     .build();
     }
@@ -132,7 +164,7 @@ public class CassandraOutgoingFile implements OutgoingStream
     @Override
     public int getNumFiles()
     {
-        return shouldStreamEntireSSTable ? header.componentManifest.components().size() : 1;
+        return shouldStreamEntireSSTable || shouldStreamSlicedSSTable ? header.componentManifest.components().size() : 1;
     }
 
     @Override
@@ -162,9 +194,23 @@ public class CassandraOutgoingFile implements OutgoingStream
             // file sizes. (Note: Windows doesn't support atomic replace and index summary redistribution deletes
             // existing file first)
             // Recreate the latest manifest and hard links for mutatable components in case they are modified.
-            try (ComponentContext context = sstable.runWithLock(ignored -> ComponentContext.create(sstable.descriptor)))
+            try (ComponentContext context = sstable.runWithLock(ignored -> ComponentContext.create(sstable.descriptor, version)))
             {
-                CassandraStreamHeader current = makeHeader(sstable, operation, sections, estimatedKeys, true, context.manifest());
+                CassandraStreamHeader current = makeHeader(sstable, operation, sections, estimatedKeys, true, context.manifest(), sstable.first);
+                CassandraStreamHeader.serializer.serialize(current, out, version);
+                out.flush();
+
+                CassandraEntireSSTableStreamWriter writer = new CassandraEntireSSTableStreamWriter(sstable, session, context);
+                writer.write((AsyncStreamingOutputPlus) out);
+            }
+        }
+        else if (shouldStreamSlicedSSTable)
+        {
+            // the components of the slice are generated from the index and a copy of the statistics of the sstable,
+            // which aren't affected by index summary redistribution
+            try (ComponentContext context = ComponentContext.createSliced(sstable, sections))
+            {
+                CassandraStreamHeader current = makeHeader(sstable, operation, sections, context.slice().keys, true, context.manifest(), context.slice().first);
                 CassandraStreamHeader.serializer.serialize(current, out, version);
                 out.flush();
 
@@ -192,9 +238,24 @@ public class CassandraOutgoingFile implements OutgoingStream
         if (!DatabaseDescriptor.streamEntireSSTables() || ref.get().getSSTableMetadata().hasLegacyCounterShards)
             return false;
 
+        // nor if the peer can't receive a component the sstable is read from; as streams are only accepted from peers
+        // of the current messaging version, that is the peer's
+        if (!ComponentManifest.canStreamEntirely(ref.get().descriptor, MessagingService.current_version))
+            return false;
+
         return contained(sections, ref.get());
     }
 
+    @VisibleForTesting
+    public boolean computeShouldStreamSlicedSSTables()
+    {
+        // slices are streamed as entire sstables, from the sections of uncompressed data files
+        if (!DatabaseDescriptor.streamEntireSSTables() || !DatabaseDescriptor.streamRangeSlicedSSTables() || ref.get().getSSTableMetadata().hasLegacyCounterShards)
+            return false;
+
+        return sections != null && !sections.isEmpty() && SSTableSlice.canSlice(ref.get());
+    }
+
     @VisibleForTesting
     public boolean contained(List<SSTableReader.PartitionPositionBounds> sections, SSTableReader sstable)
     {
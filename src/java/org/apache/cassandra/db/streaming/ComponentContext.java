@@ -18,25 +18,29 @@
 
 package org.apache.cassandra.db.streaming;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.net.MessagingService;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Mutable SSTable components and their hardlinks to avoid concurrent sstable component modification
- * during entire-sstable-streaming.
+ * during entire-sstable-streaming, or the components generated for an {@link SSTableSlice}.
  */
 public class ComponentContext implements AutoCloseable
 {
@@ -46,14 +50,31 @@ public class ComponentContext implements AutoCloseable
 
     private final Map<Component, File> hardLinks;
     private final ComponentManifest manifest;
+    private final List<SSTableReader.PartitionPositionBounds> sections;
+    private final SSTableSlice slice;
 
     private ComponentContext(Map<Component, File> hardLinks, ComponentManifest manifest)
+    {
+        this(hardLinks, manifest, null, null);
+    }
+
+    private ComponentContext(Map<Component, File> hardLinks, ComponentManifest manifest, List<SSTableReader.PartitionPositionBounds> sections, SSTableSlice slice)
     {
         this.hardLinks = hardLinks;
         this.manifest = manifest;
+        this.sections = sections;
+        this.slice = slice;
     }
 
     public static ComponentContext create(Descriptor descriptor)
+    {
+        return create(descriptor, MessagingService.current_version);
+    }
+
+    /**
+     * @return the context of the components of the given sstable a peer of the given messaging version can receive
+     */
+    public static ComponentContext create(Descriptor descriptor, int version)
     {
         Map<Component, File> hardLinks = new HashMap<>(1);
 
@@ -68,7 +89,41 @@ public class ComponentContext implements AutoCloseable
             hardLinks.put(component, hardlink);
         }
 
-        return new ComponentContext(hardLinks, ComponentManifest.create(descriptor));
+        return new ComponentContext(hardLinks, ComponentManifest.create(descriptor, version));
+    }
+
+    /**
+     * Generates the components of the slice of the given sstable made of the given sections of its data file, which
+     * are streamed straight from the data file of the sstable.
+     */
+    public static ComponentContext createSliced(SSTableReader sstable, List<SSTableReader.PartitionPositionBounds> sections) throws IOException
+    {
+        Map<Component, File> generated = new HashMap<>();
+        try
+        {
+            SSTableSlice slice = SSTableSlice.write(sstable, sections, component -> {
+                File file = new File(sstable.descriptor.tmpFilenameForStreaming(component));
+                generated.put(component, file);
+                return file;
+            });
+
+            Map<Component, Long> sizes = new HashMap<>();
+            sizes.put(Component.DATA, sections.stream().mapToLong(p -> p.upperPosition - p.lowerPosition).sum());
+            for (Map.Entry<Component, File> entry : generated.entrySet())
+                sizes.put(entry.getKey(), entry.getValue().length());
+
+            return new ComponentContext(generated, ComponentManifest.create(sizes), sections, slice);
+        }
+        catch (Throwable t)
+        {
+            for (File file : generated.values())
+            {
+                if (file.exists())
+                    t = FileUtils.deleteWithConfirm(file, t);
+            }
+            Throwables.propagateIfPossible(t, IOException.class);
+            throw new RuntimeException(t);
+        }
     }
 
     public ComponentManifest manifest()
@@ -76,6 +131,23 @@ public class ComponentContext implements AutoCloseable
         return manifest;
     }
 
+    /**
+     * @return the slice the components are generated for, or null if the sstable is streamed entirely
+     */
+    public SSTableSlice slice()
+    {
+        return slice;
+    }
+
+    /**
+     * @return the sections of the data file of the sstable making the data file of the slice, or null if the sstable
+     * is streamed entirely
+     */
+    public List<SSTableReader.PartitionPositionBounds> sections()
+    {
+        return sections;
+    }
+
     /**
      * @return file channel to be streamed, either original component or hardlinked component.
      */
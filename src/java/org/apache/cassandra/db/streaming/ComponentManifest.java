@@ -20,6 +20,8 @@ package org.apache.cassandra.db.streaming;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.io.IVersionedSerializer;
@@ -27,6 +29,7 @@ import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.net.MessagingService;
 
 import java.io.File;
 import java.io.IOException;
@@ -39,7 +42,16 @@ public final class ComponentManifest implements Iterable<Component>
 {
     private static final List<Component> STREAM_COMPONENTS = ImmutableList.of(Component.DATA, Component.PRIMARY_INDEX, Component.STATS,
                                                                              Component.COMPRESSION_INFO, Component.FILTER, Component.SUMMARY,
-                                                                             Component.DIGEST, Component.CRC);
+                                                                             Component.DIGEST, Component.CRC, Component.PARTITION_INDEX,
+                                                                             Component.CLUSTERING_FILTER, Component.PARTITION_HASHES);
+
+    // the components only streamed from the given messaging versions on, as earlier peers have no writer for them
+    private static final Map<Component, Integer> MINIMUM_VERSIONS = ImmutableMap.of(Component.PARTITION_INDEX, MessagingService.VERSION_41,
+                                                                                    Component.CLUSTERING_FILTER, MessagingService.VERSION_41,
+                                                                                    Component.PARTITION_HASHES, MessagingService.VERSION_41);
+
+    // the components sstables are read without, which are left out of the streams to the peers that don't know them
+    private static final Set<Component> OPTIONAL_COMPONENTS = ImmutableSet.of(Component.CLUSTERING_FILTER, Component.PARTITION_HASHES);
 
     private final LinkedHashMap<Component, Long> components;
 
@@ -50,11 +62,22 @@ public final class ComponentManifest implements Iterable<Component>
 
     @VisibleForTesting
     public static ComponentManifest create(Descriptor descriptor)
+    {
+        return create(descriptor, MessagingService.current_version);
+    }
+
+    /**
+     * @return the manifest of the components of the given sstable a peer of the given messaging version can receive
+     */
+    public static ComponentManifest create(Descriptor descriptor, int version)
     {
         LinkedHashMap<Component, Long> components = new LinkedHashMap<>(STREAM_COMPONENTS.size());
 
         for (Component component : STREAM_COMPONENTS)
         {
+            if (!isStreamable(component, version))
+                continue;
+
             File file = new File(descriptor.filenameFor(component));
             if (!file.exists())
                 continue;
@@ -65,6 +88,41 @@ public final class ComponentManifest implements Iterable<Component>
         return new ComponentManifest(components);
     }
 
+    /**
+     * @return the manifest of the given components, in the order they are streamed
+     */
+    public static ComponentManifest create(Map<Component, Long> sizes)
+    {
+        LinkedHashMap<Component, Long> components = new LinkedHashMap<>(sizes.size());
+        for (Component component : STREAM_COMPONENTS)
+        {
+            if (sizes.containsKey(component))
+                components.put(component, sizes.get(component));
+        }
+        assert components.size() == sizes.size() : sizes;
+
+        return new ComponentManifest(components);
+    }
+
+    public static boolean isStreamable(Component component, int version)
+    {
+        return version >= MINIMUM_VERSIONS.getOrDefault(component, MessagingService.minimum_version);
+    }
+
+    /**
+     * @return whether the given sstable can be streamed entirely to a peer of the given messaging version, which it
+     * can't if that peer doesn't know one of the components the sstable is read from
+     */
+    public static boolean canStreamEntirely(Descriptor descriptor, int version)
+    {
+        for (Component component : MINIMUM_VERSIONS.keySet())
+        {
+            if (!isStreamable(component, version) && !OPTIONAL_COMPONENTS.contains(component) && new File(descriptor.filenameFor(component)).exists())
+                return false;
+        }
+        return true;
+    }
+
     public long sizeOf(Component component)
     {
         Long size = components.get(component);
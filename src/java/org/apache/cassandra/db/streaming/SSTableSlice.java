@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.streaming;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Downsampling;
+import org.apache.cassandra.io.sstable.IndexSummary;
+import org.apache.cassandra.io.sstable.IndexSummaryBuilder;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.sstable.metadata.MetadataComponent;
+import org.apache.cassandra.io.sstable.metadata.MetadataType;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.io.util.BufferedDataOutputStreamPlus;
+import org.apache.cassandra.io.util.DataOutputStreamPlus;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.BloomFilterSerializer;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FilterFactory;
+import org.apache.cassandra.utils.IFilter;
+
+/**
+ * The sstable made of the sections of an sstable's data file covering the ranges to stream, so that sstables the
+ * ranges only partially contain can be streamed as entire sstables too: the data file of the slice is the
+ * concatenation of the sections, streamed straight from the data file of the sstable, and its index, summary and filter
+ * are generated from the index of the sstable when it is streamed. So that streaming the slice doesn't read its rows,
+ * its statistics are these of the sstable, whose bounds still hold for the slice, but for its partition sizes and
+ * key cardinality, which the index gives, and its row and column counts, scaled down with its data.
+ * <p>
+ * Only uncompressed sstables of the big format can be sliced: the sections of compressed data files start and end
+ * within compression chunks, and the partition index of the trie format can't be cut at a partition.
+ */
+public final class SSTableSlice
+{
+    public final DecoratedKey first;
+    public final DecoratedKey last;
+    public final long keys;
+
+    private SSTableSlice(DecoratedKey first, DecoratedKey last, long keys)
+    {
+        this.first = first;
+        this.last = last;
+        this.keys = keys;
+    }
+
+    public static boolean canSlice(SSTableReader sstable)
+    {
+        return sstable.descriptor.formatType == SSTableFormat.Type.BIG && !sstable.compression;
+    }
+
+    /**
+     * Writes the index, summary, filter and statistics of the slice of the given sstable made of the given sections
+     * to the files the given function returns for them.
+     *
+     * @param sstable the sstable to slice, which must be referenced
+     * @param sections the sections of the data file of the sstable, ordered and non-overlapping
+     * @param files the files to write the components of the slice to
+     * @return the slice
+     */
+    public static SSTableSlice write(SSTableReader sstable, List<SSTableReader.PartitionPositionBounds> sections, Function<Component, File> files) throws IOException
+    {
+        assert canSlice(sstable) && !sections.isEmpty() : sstable;
+
+        TableMetadata metadata = sstable.metadata();
+        long length = 0;
+        for (SSTableReader.PartitionPositionBounds section : sections)
+            length += section.upperPosition - section.lowerPosition;
+        double ratio = (double) length / sstable.uncompressedLength();
+        long estimatedKeys = Math.max(1, (long) (sstable.estimatedKeys() * ratio));
+
+        // like the sstable writers, only write a filter if the table has one
+        IFilter filter = metadata.params.bloomFilterFpChance < 1.0
+                         ? FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, DatabaseDescriptor.useBlockedBloomFilters())
+                         : null;
+        // only collects the partition sizes and keys of the slice, the rest of its statistics are these of the sstable
+        StatsMetadata sstableStats = sstable.getSSTableMetadata();
+        MetadataCollector collector = new MetadataCollector(metadata.comparator);
+        IndexSummary summary = null;
+        try
+        {
+            DecoratedKey first = null;
+            DecoratedKey last = null;
+            long keys = 0;
+
+            try (RandomAccessReader index = RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX)));
+                 SequentialWriter indexWriter = new SequentialWriter(files.apply(Component.PRIMARY_INDEX));
+                 IndexSummaryBuilder summaryBuilder = new IndexSummaryBuilder(estimatedKeys, metadata.params.minIndexInterval, Downsampling.BASE_SAMPLING_LEVEL))
+            {
+                byte[] buffer = new byte[4096];
+                long indexLength = index.length();
+                int section = 0;
+                // the position of the current section in the data file of the slice
+                long sectionStart = 0;
+                // the partition of the slice last read, which ends at the next partition or at the end of its section
+                long previousPosition = -1;
+                long previousSectionEnd = -1;
+                while (index.getFilePointer() != indexLength)
+                {
+                    ByteBuffer key = ByteBufferUtil.readWithShortLength(index);
+                    long position = RowIndexEntry.Serializer.readPosition(index);
+                    int promotedIndexSize = (int) index.readUnsignedVInt();
+
+                    if (previousPosition >= 0)
+                    {
+                        collector.addPartitionSizeInBytes(Math.min(position, previousSectionEnd) - previousPosition);
+                        previousPosition = -1;
+                    }
+
+                    while (section < sections.size() && position >= sections.get(section).upperPosition)
+                    {
+                        sectionStart += sections.get(section).upperPosition - sections.get(section).lowerPosition;
+                        section++;
+                    }
+                    if (section == sections.size())
+                        break;
+                    if (position < sections.get(section).lowerPosition)
+                    {
+                        index.skipBytesFully(promotedIndexSize);
+                        continue;
+                    }
+
+                    // the promoted index is relative to the start of its partition, only the partition position moves
+                    DecoratedKey decoratedKey = metadata.partitioner.decorateKey(key);
+                    long indexPosition = indexWriter.position();
+                    ByteBufferUtil.writeWithShortLength(key, indexWriter);
+                    indexWriter.writeUnsignedVInt(sectionStart + position - sections.get(section).lowerPosition);
+                    indexWriter.writeUnsignedVInt(promotedIndexSize);
+                    for (int copied = 0; copied < promotedIndexSize; )
+                    {
+                        int toCopy = Math.min(buffer.length, promotedIndexSize - copied);
+                        index.readFully(buffer, 0, toCopy);
+                        indexWriter.write(buffer, 0, toCopy);
+                        copied += toCopy;
+                    }
+
+                    summaryBuilder.maybeAddEntry(decoratedKey, indexPosition);
+                    collector.addKey(key);
+                    previousPosition = position;
+                    previousSectionEnd = sections.get(section).upperPosition;
+                    if (filter != null)
+                        filter.add(decoratedKey);
+                    if (first == null)
+                        first = decoratedKey;
+                    last = decoratedKey;
+                    keys++;
+                }
+                if (previousPosition >= 0)
+                    collector.addPartitionSizeInBytes(previousSectionEnd - previousPosition);
+                indexWriter.finish();
+
+                if (first == null)
+                    throw new IllegalStateException(String.format("No partition of %s in %s", sstable, sections));
+                summary = summaryBuilder.build(metadata.partitioner);
+            }
+
+            try (DataOutputStreamPlus out = new BufferedDataOutputStreamPlus(new FileOutputStream(files.apply(Component.SUMMARY))))
+            {
+                IndexSummary.serializer.serialize(summary, out);
+                ByteBufferUtil.writeWithLength(first.getKey(), out);
+                ByteBufferUtil.writeWithLength(last.getKey(), out);
+            }
+
+            if (filter != null)
+            {
+                try (DataOutputStreamPlus out = new BufferedDataOutputStreamPlus(new FileOutputStream(files.apply(Component.FILTER))))
+                {
+                    BloomFilterSerializer.serialize(filter, out);
+                }
+            }
+
+            Map<MetadataType, MetadataComponent> stats = collector.finalizeMetadata(metadata.partitioner.getClass().getCanonicalName(),
+                                                                                    metadata.params.bloomFilterFpChance,
+                                                                                    sstableStats.repairedAt,
+                                                                                    sstableStats.pendingRepair,
+                                                                                    sstableStats.isTransient,
+                                                                                    sstable.header);
+            StatsMetadata sliceStats = (StatsMetadata) stats.get(MetadataType.STATS);
+            stats.put(MetadataType.STATS, new StatsMetadata(sliceStats.estimatedPartitionSize,
+                                                            sstableStats.estimatedCellPerPartitionCount,
+                                                            sstableStats.commitLogIntervals,
+                                                            sstableStats.minTimestamp,
+                                                            sstableStats.maxTimestamp,
+                                                            sstableStats.minLocalDeletionTime,
+                                                            sstableStats.maxLocalDeletionTime,
+                                                            sstableStats.minTTL,
+                                                            sstableStats.maxTTL,
+                                                            sstableStats.compressionRatio,
+                                                            sstableStats.estimatedTombstoneDropTime,
+                                                            sstableStats.sstableLevel,
+                                                            sstableStats.minClusteringValues,
+                                                            sstableStats.maxClusteringValues,
+                                                            sstableStats.hasLegacyCounterShards,
+                                                            sstableStats.repairedAt,
+                                                            (long) Math.ceil(sstableStats.totalColumnsSet * ratio),
+                                                            (long) Math.ceil(sstableStats.totalRows * ratio),
+                                                            sstableStats.pendingRepair,
+                                                            sstableStats.isTransient));
+            try (DataOutputStreamPlus out = new BufferedDataOutputStreamPlus(new FileOutputStream(files.apply(Component.STATS))))
+            {
+                sstable.descriptor.getMetadataSerializer().serialize(stats, out, sstable.descriptor.version);
+            }
+
+            return new SSTableSlice(first, last, keys);
+        }
+        finally
+        {
+            collector.release();
+            if (summary != null)
+                summary.close();
+            if (filter != null)
+                filter.close();
+        }
+    }
+}
@@ -0,0 +1,780 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.tries;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * A map from byte-comparable keys to values, organized as a trie whose nodes are stored in off-heap memory.
+ * The values themselves are kept on heap.
+ *
+ * The trie supports a single writer and any number of concurrent readers: mutations must be serialized by the
+ * caller, while {@link #get} and iteration can proceed without any locking. Readers see a consistent, if
+ * possibly slightly outdated, view of the trie: nodes are either modified by a single atomic pointer write
+ * or copied and then atomically attached in place of the old node. Memory is only released by
+ * {@link #discardBuffers}, which must only be called once no reader can access the trie any more.
+ *
+ * Nodes are stored in 32-byte cells, addressed by an int position. The type of a node is encoded in the
+ * offset of its pointer within the cell:
+ * <ul>
+ * <li>0-27: chain node, a single transition whose byte is stored at the pointer position. Chains of
+ *     consecutive single-transition nodes share a cell: the child of a chain node is the next byte in the cell,
+ *     or, for the last byte of the cell (offset 27), the pointer stored at offset 28.</li>
+ * <li>28: sparse node, up to 6 transitions stored as child pointers at offsets 0-23 and transition bytes at
+ *     offsets 24-29 in ascending order; the number of children is at offset 30.</li>
+ * <li>29: split node, for nodes with more than 6 children. The transition byte is split into 2, 3 and 3 bits,
+ *     each level using a cell of pointers to the next one (4 pointers in the top cell, 8 in the others).</li>
+ * <li>30: prefix node, a node that has both a value and children. The value index is stored at offset 0 and
+ *     the pointer to the node holding the children at offset 4.</li>
+ * </ul>
+ * Negative pointers denote a leaf holding the value with index ~pointer, and 0 stands for no node.
+ */
+public class InMemoryTrie<T>
+{
+    static final int CELL_SIZE = 32;
+    static final int CELL_MASK = CELL_SIZE - 1;
+
+    static final int BUFFER_SHIFT = 16;
+    static final int BUFFER_SIZE = 1 << BUFFER_SHIFT;
+    static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    static final int CONTENT_SHIFT = 10;
+    static final int CONTENT_CHUNK_SIZE = 1 << CONTENT_SHIFT;
+    static final int CONTENT_MASK = CONTENT_CHUNK_SIZE - 1;
+
+    static final int NONE = 0;
+
+    static final int CHAIN_MAX_OFFSET = 27;
+    static final int CHAIN_CHILD_OFFSET = 28;
+    static final int SPARSE_OFFSET = 28;
+    static final int SPLIT_OFFSET = 29;
+    static final int PREFIX_OFFSET = 30;
+
+    static final int SPARSE_CAPACITY = 6;
+    static final int SPARSE_BYTES_OFFSET = 24;
+    static final int SPARSE_COUNT_OFFSET = 30;
+
+    private static final long EMPTY_SIZE = ObjectSizes.measure(new InMemoryTrie<>());
+
+    /** Addresses of the off-heap buffers holding the cells. */
+    private volatile long[] buffers = new long[0];
+    private volatile Object[][] contents = new Object[0][];
+    private volatile int root = NONE;
+
+    // Writer state; the first cell is left unused so that position 0 can mean "no node"
+    private int allocatedPos = CELL_SIZE;
+    private volatile int contentCount = 0;
+
+    /**
+     * Returns the value associated with the given key, or null if there is none.
+     */
+    public T get(ByteComparable key)
+    {
+        ByteSource source = key.asComparableBytes();
+        int node = root;
+        int b;
+        while ((b = source.next()) != ByteSource.END_OF_STREAM)
+        {
+            node = getChild(node, b);
+            if (node == NONE)
+                return null;
+        }
+        return contentOf(node);
+    }
+
+    public boolean isEmpty()
+    {
+        return root == NONE;
+    }
+
+    /**
+     * The number of distinct keys added to the trie.
+     */
+    public int valuesCount()
+    {
+        return contentCount;
+    }
+
+    /**
+     * The amount of off-heap memory used by the trie's nodes.
+     */
+    public long sizeOffHeap()
+    {
+        return (long) buffers.length * BUFFER_SIZE;
+    }
+
+    /**
+     * The amount of on-heap memory used by the trie, excluding the values themselves.
+     */
+    public long sizeOnHeap()
+    {
+        Object[][] contents = this.contents;
+        return EMPTY_SIZE
+               + ObjectSizes.sizeOfArray(buffers)
+               + ObjectSizes.sizeOfReferenceArray(contents.length)
+               + contents.length * ObjectSizes.sizeOfReferenceArray(CONTENT_CHUNK_SIZE);
+    }
+
+    /**
+     * Associates the given value with the key, replacing any previous value.
+     * Calls to this method must be serialized by the caller.
+     */
+    public void put(ByteComparable key, T value)
+    {
+        assert value != null;
+        ByteSource source = key.asComparableBytes();
+
+        // Walk down as far as the existing nodes go, remembering the path so that we can attach any new nodes.
+        int[] path = new int[32];
+        int[] transitions = new int[32];
+        int depth = 0;
+        int node = root;
+        int b;
+        while ((b = source.next()) != ByteSource.END_OF_STREAM)
+        {
+            int child = getChild(node, b);
+            if (child == NONE)
+                break;
+            if (depth == path.length)
+            {
+                path = Arrays.copyOf(path, depth * 2);
+                transitions = Arrays.copyOf(transitions, depth * 2);
+            }
+            path[depth] = node;
+            transitions[depth] = b;
+            ++depth;
+            node = child;
+        }
+
+        int updated = b == ByteSource.END_OF_STREAM
+                      ? attachContent(node, value)
+                      : addChild(node, b, createChain(b, source, value));
+
+        // Propagate upwards any node that had to be copied.
+        while (updated != node)
+        {
+            if (depth == 0)
+            {
+                root = updated;
+                return;
+            }
+            --depth;
+            node = path[depth];
+            updated = setChild(node, transitions[depth], updated);
+        }
+    }
+
+    /**
+     * Iterates over the values in the trie in key order.
+     */
+    public Iterable<T> values()
+    {
+        return () -> new ValueIterator(null, false, null, false);
+    }
+
+    /**
+     * Iterates over the values whose keys lie between the given bounds in key order. A null bound means the
+     * corresponding side is unbounded.
+     */
+    public Iterable<T> subtrieValues(ByteComparable left, boolean includeLeft, ByteComparable right, boolean includeRight)
+    {
+        byte[] leftBytes = left == null ? null : ByteComparable.toArray(left);
+        byte[] rightBytes = right == null ? null : ByteComparable.toArray(right);
+        return () -> new ValueIterator(leftBytes, includeLeft, rightBytes, includeRight);
+    }
+
+    /**
+     * Releases the memory used by the trie. Must only be called when no reader or writer can access it.
+     */
+    public void discardBuffers()
+    {
+        long[] toFree = buffers;
+        buffers = new long[0];
+        contents = new Object[0][];
+        root = NONE;
+        for (long address : toFree)
+            MemoryUtil.free(address);
+    }
+
+    /*
+     * Memory access
+     */
+
+    private long address(int pos)
+    {
+        return buffers[pos >>> BUFFER_SHIFT] + (pos & BUFFER_MASK);
+    }
+
+    private int getInt(int pos)
+    {
+        return MemoryUtil.getIntVolatile(address(pos));
+    }
+
+    private void putInt(int pos, int value)
+    {
+        MemoryUtil.setIntOrdered(address(pos), value);
+    }
+
+    private int getByte(int pos)
+    {
+        return MemoryUtil.getByte(address(pos)) & 0xFF;
+    }
+
+    private void putByte(int pos, int value)
+    {
+        MemoryUtil.setByte(address(pos), (byte) value);
+    }
+
+    private int allocateCell()
+    {
+        int pos = allocatedPos;
+        if ((pos >>> BUFFER_SHIFT) >= buffers.length)
+        {
+            if (pos < 0)
+                throw new IllegalStateException("InMemoryTrie has reached its maximum size");
+            long address = MemoryUtil.allocate(BUFFER_SIZE);
+            MemoryUtil.setByte(address, BUFFER_SIZE, (byte) 0);
+            long[] grown = Arrays.copyOf(buffers, buffers.length + 1);
+            grown[buffers.length] = address;
+            buffers = grown;
+        }
+        allocatedPos = pos + CELL_SIZE;
+        return pos;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T content(int index)
+    {
+        return (T) contents[index >>> CONTENT_SHIFT][index & CONTENT_MASK];
+    }
+
+    private int addContent(T value)
+    {
+        int index = contentCount;
+        int chunk = index >>> CONTENT_SHIFT;
+        Object[][] current = contents;
+        if (chunk == current.length)
+        {
+            Object[][] grown = Arrays.copyOf(current, chunk + 1);
+            grown[chunk] = new Object[CONTENT_CHUNK_SIZE];
+            contents = grown;
+            current = grown;
+        }
+        current[chunk][index & CONTENT_MASK] = value;
+        contentCount = index + 1;
+        return index;
+    }
+
+    private void setContent(int index, T value)
+    {
+        contents[index >>> CONTENT_SHIFT][index & CONTENT_MASK] = value;
+    }
+
+    /*
+     * Node reading
+     */
+
+    private static int offset(int node)
+    {
+        return node & CELL_MASK;
+    }
+
+    private static int cell(int node)
+    {
+        return node & ~CELL_MASK;
+    }
+
+    private static boolean isLeaf(int node)
+    {
+        return node < 0;
+    }
+
+    private T contentOf(int node)
+    {
+        if (isLeaf(node))
+            return content(~node);
+        if (node != NONE && offset(node) == PREFIX_OFFSET)
+            return content(getInt(cell(node)));
+        return null;
+    }
+
+    private int prefixChild(int node)
+    {
+        return getInt(cell(node) + 4);
+    }
+
+    private int chainChild(int node)
+    {
+        return offset(node) < CHAIN_MAX_OFFSET ? node + 1 : getInt(cell(node) + CHAIN_CHILD_OFFSET);
+    }
+
+    private int splitSlot(int node, int b)
+    {
+        int mid = getInt(cell(node) + (b >> 6) * 4);
+        if (mid == NONE)
+            return NONE;
+        int leaf = getInt(mid + ((b >> 3) & 7) * 4);
+        if (leaf == NONE)
+            return NONE;
+        return leaf + (b & 7) * 4;
+    }
+
+    private int getChild(int node, int b)
+    {
+        if (node == NONE || isLeaf(node))
+            return NONE;
+
+        int offset = offset(node);
+        if (offset <= CHAIN_MAX_OFFSET)
+            return getByte(node) == b ? chainChild(node) : NONE;
+
+        switch (offset)
+        {
+            case SPARSE_OFFSET:
+            {
+                int cell = cell(node);
+                int count = getByte(cell + SPARSE_COUNT_OFFSET);
+                for (int i = 0; i < count; ++i)
+                    if (getByte(cell + SPARSE_BYTES_OFFSET + i) == b)
+                        return getInt(cell + i * 4);
+                return NONE;
+            }
+            case SPLIT_OFFSET:
+            {
+                int slot = splitSlot(node, b);
+                return slot == NONE ? NONE : getInt(slot);
+            }
+            case PREFIX_OFFSET:
+                return getChild(prefixChild(node), b);
+            default:
+                throw new AssertionError("Invalid node pointer " + node);
+        }
+    }
+
+    /**
+     * Returns the smallest transition byte of the node that is greater than or equal to the given one,
+     * or 256 if there is none.
+     */
+    private int nextTransition(int node, int from)
+    {
+        if (node == NONE || isLeaf(node))
+            return 256;
+
+        int offset = offset(node);
+        if (offset <= CHAIN_MAX_OFFSET)
+        {
+            int b = getByte(node);
+            return b >= from ? b : 256;
+        }
+
+        switch (offset)
+        {
+            case SPARSE_OFFSET:
+            {
+                int cell = cell(node);
+                int count = getByte(cell + SPARSE_COUNT_OFFSET);
+                for (int i = 0; i < count; ++i)
+                {
+                    int b = getByte(cell + SPARSE_BYTES_OFFSET + i);
+                    if (b >= from)
+                        return b;
+                }
+                return 256;
+            }
+            case SPLIT_OFFSET:
+            {
+                int cell = cell(node);
+                for (int b = from; b < 256; )
+                {
+                    int mid = getInt(cell + (b >> 6) * 4);
+                    if (mid == NONE)
+                    {
+                        b = (b | 0x3F) + 1;
+                        continue;
+                    }
+                    int leaf = getInt(mid + ((b >> 3) & 7) * 4);
+                    if (leaf == NONE)
+                    {
+                        b = (b | 0x7) + 1;
+                        continue;
+                    }
+                    if (getInt(leaf + (b & 7) * 4) != NONE)
+                        return b;
+                    ++b;
+                }
+                return 256;
+            }
+            case PREFIX_OFFSET:
+                return nextTransition(prefixChild(node), from);
+            default:
+                throw new AssertionError("Invalid node pointer " + node);
+        }
+    }
+
+    /*
+     * Node modification. Each of these returns the pointer to the updated node, which is the given node if it
+     * could be modified in place, or a new copy that the caller must attach in place of the old one.
+     */
+
+    /**
+     * Creates a chain of nodes for the given transition byte followed by the rest of the source, leading
+     * to a leaf holding the given value. Returns the pointer to the node holding the first transition.
+     */
+    private int createChain(int first, ByteSource rest, T value)
+    {
+        byte[] bytes = new byte[16];
+        bytes[0] = (byte) first;
+        int length = 1;
+        int b;
+        while ((b = rest.next()) != ByteSource.END_OF_STREAM)
+        {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = (byte) b;
+        }
+
+        int child = ~addContent(value);
+        // Fill cells from the end of the key, so that every cell can point to the one holding the rest of it
+        while (length > 0)
+        {
+            int count = Math.min(length, CHAIN_MAX_OFFSET + 1);
+            int cell = allocateCell();
+            int start = CHAIN_MAX_OFFSET + 1 - count;
+            for (int i = 0; i < count; ++i)
+                putByte(cell + start + i, bytes[length - count + i]);
+            putInt(cell + CHAIN_CHILD_OFFSET, child);
+            child = cell + start;
+            length -= count;
+        }
+        return child;
+    }
+
+    private int attachContent(int node, T value)
+    {
+        if (isLeaf(node))
+        {
+            setContent(~node, value);
+            return node;
+        }
+
+        if (node == NONE)
+            return ~addContent(value);
+
+        if (offset(node) == PREFIX_OFFSET)
+        {
+            setContent(getInt(cell(node)), value);
+            return node;
+        }
+
+        int cell = allocateCell();
+        putInt(cell, addContent(value));
+        putInt(cell + 4, node);
+        return cell + PREFIX_OFFSET;
+    }
+
+    /**
+     * Replaces the child of the given node for the transition b, which must exist.
+     */
+    private int setChild(int node, int b, int child)
+    {
+        int offset = offset(node);
+        if (offset <= CHAIN_MAX_OFFSET)
+        {
+            if (offset == CHAIN_MAX_OFFSET)
+            {
+                putInt(cell(node) + CHAIN_CHILD_OFFSET, child);
+                return node;
+            }
+            // the child is implicit, so we need a new single-transition chain node
+            int cell = allocateCell();
+            putByte(cell + CHAIN_MAX_OFFSET, b);
+            putInt(cell + CHAIN_CHILD_OFFSET, child);
+            return cell + CHAIN_MAX_OFFSET;
+        }
+
+        switch (offset)
+        {
+            case SPARSE_OFFSET:
+            {
+                int cell = cell(node);
+                int count = getByte(cell + SPARSE_COUNT_OFFSET);
+                for (int i = 0; i < count; ++i)
+                {
+                    if (getByte(cell + SPARSE_BYTES_OFFSET + i) == b)
+                    {
+                        putInt(cell + i * 4, child);
+                        return node;
+                    }
+                }
+                throw new AssertionError("Missing transition " + b);
+            }
+            case SPLIT_OFFSET:
+                putInt(splitSlot(node, b), child);
+                return node;
+            case PREFIX_OFFSET:
+            {
+                int inner = prefixChild(node);
+                int updated = setChild(inner, b, child);
+                if (updated != inner)
+                    putInt(cell(node) + 4, updated);
+                return node;
+            }
+            default:
+                throw new AssertionError("Invalid node pointer " + node);
+        }
+    }
+
+    /**
+     * Adds a transition that the given node does not have. The chain starting with the new transition byte must
+     * already have been created; the node for that transition is discarded, as the byte is stored by the parent.
+     */
+    private int addChild(int node, int b, int chain)
+    {
+        if (node == NONE)
+            return chain;
+
+        int child = chainChild(chain);
+        if (isLeaf(node))
+        {
+            int cell = allocateCell();
+            putInt(cell, ~node);
+            putInt(cell + 4, chain);
+            return cell + PREFIX_OFFSET;
+        }
+
+        int offset = offset(node);
+        if (offset <= CHAIN_MAX_OFFSET)
+        {
+            int existing = getByte(node);
+            return existing < b
+                   ? createSparse(new int[]{ existing, b }, new int[]{ chainChild(node), child }, 2)
+                   : createSparse(new int[]{ b, existing }, new int[]{ child, chainChild(node) }, 2);
+        }
+
+        switch (offset)
+        {
+            case SPARSE_OFFSET:
+            {
+                int cell = cell(node);
+                int count = getByte(cell + SPARSE_COUNT_OFFSET);
+                int[] bytes = new int[count + 1];
+                int[] children = new int[count + 1];
+                int j = 0;
+                for (int i = 0; i < count; ++i)
+                {
+                    int t = getByte(cell + SPARSE_BYTES_OFFSET + i);
+                    if (t > b && j == i)
+                    {
+                        bytes[j] = b;
+                        children[j++] = child;
+                    }
+                    bytes[j] = t;
+                    children[j++] = getInt(cell + i * 4);
+                }
+                if (j == count)
+                {
+                    bytes[j] = b;
+                    children[j] = child;
+                }
+
+                if (count < SPARSE_CAPACITY)
+                    return createSparse(bytes, children, count + 1);
+
+                int split = allocateCell() + SPLIT_OFFSET;
+                for (int i = 0; i <= count; ++i)
+                    addSplitChild(split, bytes[i], children[i]);
+                return split;
+            }
+            case SPLIT_OFFSET:
+                addSplitChild(node, b, child);
+                return node;
+            case PREFIX_OFFSET:
+            {
+                int inner = prefixChild(node);
+                int updated = addChild(inner, b, chain);
+                if (updated != inner)
+                    putInt(cell(node) + 4, updated);
+                return node;
+            }
+            default:
+                throw new AssertionError("Invalid node pointer " + node);
+        }
+    }
+
+    private int createSparse(int[] bytes, int[] children, int count)
+    {
+        int cell = allocateCell();
+        for (int i = 0; i < count; ++i)
+        {
+            putByte(cell + SPARSE_BYTES_OFFSET + i, bytes[i]);
+            putInt(cell + i * 4, children[i]);
+        }
+        putByte(cell + SPARSE_COUNT_OFFSET, count);
+        return cell + SPARSE_OFFSET;
+    }
+
+    private void addSplitChild(int node, int b, int child)
+    {
+        // Create any missing intermediate cells bottom-up, so that the write that attaches them is the last one
+        int midSlot = cell(node) + (b >> 6) * 4;
+        int mid = getInt(midSlot);
+        int leaf = mid == NONE ? NONE : getInt(mid + ((b >> 3) & 7) * 4);
+        if (leaf != NONE)
+        {
+            putInt(leaf + (b & 7) * 4, child);
+            return;
+        }
+
+        leaf = allocateCell();
+        putInt(leaf + (b & 7) * 4, child);
+        if (mid != NONE)
+        {
+            putInt(mid + ((b >> 3) & 7) * 4, leaf);
+            return;
+        }
+
+        mid = allocateCell();
+        putInt(mid + ((b >> 3) & 7) * 4, leaf);
+        putInt(midSlot, mid);
+    }
+
+    @VisibleForTesting
+    int nodeCount()
+    {
+        return (allocatedPos - CELL_SIZE) / CELL_SIZE;
+    }
+
+    /**
+     * In-order iterator over the values of the trie, optionally limited to keys between the given bounds.
+     *
+     * The iterator performs a depth-first walk, maintaining a stack of the nodes on the current path and the
+     * next transition to examine for each of them. While the path matches the prefix of a bound, transitions
+     * that lead outside of the bound are skipped.
+     */
+    private class ValueIterator implements Iterator<T>
+    {
+        private final byte[] left;
+        private final boolean includeLeft;
+        private final byte[] right;
+        private final boolean includeRight;
+
+        private int[] nodes = new int[32];
+        private int[] nextBytes = new int[32];
+        // whether the path to the node at each depth is a prefix of the left or right bound
+        private boolean[] onLeft = new boolean[32];
+        private boolean[] onRight = new boolean[32];
+        private int depth = -1;
+
+        private T next;
+
+        ValueIterator(byte[] left, boolean includeLeft, byte[] right, boolean includeRight)
+        {
+            this.left = left;
+            this.includeLeft = includeLeft;
+            this.right = right;
+            this.includeRight = includeRight;
+            int root = InMemoryTrie.this.root;
+            if (root != NONE)
+                descend(root, left != null, right != null);
+        }
+
+        /**
+         * Pushes the node on the stack, and sets next to its value if it has one within the bounds.
+         */
+        private void descend(int node, boolean isOnLeft, boolean isOnRight)
+        {
+            ++depth;
+            if (depth == nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                nextBytes = Arrays.copyOf(nextBytes, depth * 2);
+                onLeft = Arrays.copyOf(onLeft, depth * 2);
+                onRight = Arrays.copyOf(onRight, depth * 2);
+            }
+            nodes[depth] = node;
+            onLeft[depth] = isOnLeft;
+            onRight[depth] = isOnRight;
+
+            // The path is a prefix of a bound; transitions smaller than the left bound's next byte are out of range,
+            // and if the path is the whole bound then all children are greater than it.
+            int from = 0;
+            if (isOnLeft && depth < left.length)
+                from = left[depth] & 0xFF;
+            nextBytes[depth] = from;
+
+            T value = contentOf(node);
+            if (value == null)
+                return;
+            if (isOnLeft && (depth < left.length || !includeLeft))
+                return;
+            if (isOnRight && depth == right.length && !includeRight)
+                return;
+            next = value;
+        }
+
+        private void computeNext()
+        {
+            while (next == null && depth >= 0)
+            {
+                int node = nodes[depth];
+                boolean isOnLeft = onLeft[depth] && depth < left.length;
+                boolean isOnRight = onRight[depth];
+                int limit = !isOnRight ? 255 : depth < right.length ? right[depth] & 0xFF : -1;
+
+                int b = nextBytes[depth] > limit ? 256 : nextTransition(node, nextBytes[depth]);
+                if (b > limit)
+                {
+                    --depth;
+                    continue;
+                }
+
+                nextBytes[depth] = b + 1;
+                int child = getChild(node, b);
+                if (child == NONE)
+                    continue; // cannot normally happen, as nodes are never removed
+                descend(child,
+                        isOnLeft && b == (left[depth] & 0xFF),
+                        isOnRight && b == limit);
+            }
+        }
+
+        public boolean hasNext()
+        {
+            computeNext();
+            return next != null;
+        }
+
+        public T next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T value = next;
+            next = null;
+            return value;
+        }
+    }
+}
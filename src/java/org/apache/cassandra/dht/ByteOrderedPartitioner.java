@@ -30,6 +30,7 @@ import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.Hex;
 import org.apache.cassandra.utils.ObjectSizes;
 import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -83,6 +84,12 @@ public class ByteOrderedPartitioner implements IPartitioner
             return FBUtilities.compareUnsigned(token, o.token, 0, 0, token.length, o.token.length);
         }
 
+        @Override
+        public ByteSource asComparableBytes()
+        {
+            return ByteSource.of(token);
+        }
+
         @Override
         public int hashCode()
         {
@@ -28,6 +28,7 @@ import org.apache.cassandra.db.CachedHashDecoratedKey;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 import org.apache.cassandra.utils.memory.HeapAllocator;
 
 public class LocalPartitioner implements IPartitioner
@@ -156,6 +157,12 @@ public class LocalPartitioner implements IPartitioner
             return comparator.compare(token, ((LocalToken) o).token);
         }
 
+        @Override
+        public ByteSource asComparableBytes()
+        {
+            return comparator.asComparableBytes(token);
+        }
+
         @Override
         public int hashCode()
         {
@@ -20,6 +20,7 @@ package org.apache.cassandra.dht;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -36,6 +37,7 @@ import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.ObjectSizes;
 import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class OrderPreservingPartitioner implements IPartitioner
 {
@@ -194,6 +196,13 @@ public class OrderPreservingPartitioner implements IPartitioner
         {
             return EMPTY_SIZE + ObjectSizes.sizeOf(token);
         }
+
+        @Override
+        public ByteSource asComparableBytes()
+        {
+            // String.compareTo compares UTF-16 code units, which big-endian UTF-16 preserves
+            return ByteSource.of(token.getBytes(StandardCharsets.UTF_16BE));
+        }
     }
 
     public StringToken getToken(ByteBuffer key)
@@ -26,6 +26,7 @@ import org.apache.cassandra.db.PartitionPosition;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public abstract class Token implements RingPosition<Token>, Serializable
 {
@@ -111,6 +112,17 @@ public abstract class Token implements RingPosition<Token>, Serializable
      */
     abstract public Token increaseSlightly();
 
+    /**
+     * Produce a prefix-free byte-comparable representation of the token, i.e. a sequence of bytes whose
+     * unsigned lexicographic order is the same as the order of the tokens.
+     *
+     * Not all partitioners support this; the ones that do not throw {@link UnsupportedOperationException}.
+     */
+    public ByteSource asComparableBytes()
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support byte-comparable representations");
+    }
+
     public Token getToken()
     {
         return this;
@@ -210,6 +222,13 @@ public abstract class Token implements RingPosition<Token>, Serializable
             return isMinimumBound ? PartitionPosition.Kind.MIN_BOUND : PartitionPosition.Kind.MAX_BOUND;
         }
 
+        public ByteSource asComparableBytes()
+        {
+            // Sorts before (resp. after) all keys with the same token, see DecoratedKey.asComparableBytes
+            return ByteSource.withTerminator(isMinimumBound ? ByteSource.LT_NEXT_COMPONENT : ByteSource.GT_NEXT_COMPONENT,
+                                             token.asComparableBytes());
+        }
+
         @Override
         public boolean equals(Object obj)
         {
@@ -21,9 +21,10 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.zip.CRC32;
 
 import org.apache.cassandra.io.util.DataOutputBuffer;
@@ -47,6 +48,9 @@ import static org.apache.cassandra.utils.FBUtilities.updateChecksumInt;
  *
  * It's possible to write a single hint for two or more hosts at the same time, in which case the same offset will be put
  * into two or more offset queues.
+ *
+ * The offset queues are lock-free rings of primitive offsets rather than queues of boxed integers, so that hinting a
+ * host that is down for long doesn't churn the heap with a queue node and an Integer per hint.
  */
 final class HintsBuffer
 {
@@ -57,7 +61,7 @@ final class HintsBuffer
     private final ByteBuffer slab; // the underlying backing ByteBuffer for all the serialized hints
     private final AtomicInteger position; // the position in the slab that we currently allocate from
 
-    private final ConcurrentMap<UUID, Queue<Integer>> offsets;
+    private final ConcurrentMap<UUID, OffsetQueue> offsets;
     private final OpOrder appendOrder;
 
     private HintsBuffer(ByteBuffer slab)
@@ -119,7 +123,7 @@ final class HintsBuffer
      */
     Iterator<ByteBuffer> consumingHintsIterator(UUID hostId)
     {
-        final Queue<Integer> bufferOffsets = offsets.get(hostId);
+        final OffsetQueue bufferOffsets = offsets.get(hostId);
 
         if (bufferOffsets == null)
             return Collections.emptyIterator();
@@ -130,9 +134,9 @@ final class HintsBuffer
 
             protected ByteBuffer computeNext()
             {
-                Integer offset = bufferOffsets.poll();
+                int offset = bufferOffsets.poll();
 
-                if (offset == null)
+                if (offset < 0)
                     return endOfData();
 
                 int totalSize = slab.getInt(offset) + ENTRY_OVERHEAD_SIZE;
@@ -202,12 +206,100 @@ final class HintsBuffer
     {
         // we intentionally don't just return offsets.computeIfAbsent() because it's expensive compared to simple get(),
         // and the method is on a really hot path
-        Queue<Integer> queue = offsets.get(hostId);
+        OffsetQueue queue = offsets.get(hostId);
         if (queue == null)
-            queue = offsets.computeIfAbsent(hostId, (id) -> new ConcurrentLinkedQueue<>());
+            queue = offsets.computeIfAbsent(hostId, (id) -> new OffsetQueue());
         queue.offer(offset);
     }
 
+    /**
+     * The offsets of the hints written for a host, in the order they were put. Any number of threads can put offsets
+     * without locking, in segments of {@link #SEGMENT_SIZE} offsets linked together, while the single flushing thread
+     * consumes them in order, up to the first offset that is still being put.
+     */
+    private static final class OffsetQueue
+    {
+        private static final int SEGMENT_SHIFT = 10;
+        private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+        private static final class Segment
+        {
+            private static final AtomicReferenceFieldUpdater<Segment, Segment> nextUpdater =
+                AtomicReferenceFieldUpdater.newUpdater(Segment.class, Segment.class, "next");
+
+            private final int index;
+            // the offsets plus one, so that 0 marks an offset not put yet
+            private final AtomicIntegerArray offsets = new AtomicIntegerArray(SEGMENT_SIZE);
+            private volatile Segment next;
+
+            private Segment(int index)
+            {
+                this.index = index;
+            }
+
+            private Segment next()
+            {
+                Segment next = this.next;
+                if (next == null)
+                {
+                    Segment created = new Segment(index + 1);
+                    next = nextUpdater.compareAndSet(this, null, created) ? created : this.next;
+                }
+                return next;
+            }
+        }
+
+        private final AtomicInteger size = new AtomicInteger();
+        private final Segment head = new Segment(0);
+        // the last segment, or one before it if the threads putting offsets into it haven't advanced it yet
+        private volatile Segment tail = head;
+
+        // only accessed by the flushing thread
+        private Segment consumingSegment = head;
+        private int consumed;
+
+        void offer(int offset)
+        {
+            int index = size.getAndIncrement();
+            segment(index >>> SEGMENT_SHIFT).offsets.lazySet(index & (SEGMENT_SIZE - 1), offset + 1);
+        }
+
+        private Segment segment(int index)
+        {
+            Segment segment = tail;
+            if (segment.index > index)
+                segment = head;
+
+            while (segment.index < index)
+                segment = segment.next();
+
+            if (segment.index > tail.index)
+                tail = segment;
+            return segment;
+        }
+
+        /**
+         * @return the next offset, or -1 if all the offsets put have been consumed
+         */
+        int poll()
+        {
+            if ((consumed >>> SEGMENT_SHIFT) > consumingSegment.index)
+            {
+                Segment next = consumingSegment.next;
+                if (next == null)
+                    return -1;
+                consumingSegment = next;
+            }
+
+            int offset = consumingSegment.offsets.get(consumed & (SEGMENT_SIZE - 1));
+            if (offset == 0)
+                return -1;
+
+            consumed++;
+            return offset - 1;
+        }
+    }
+
     /**
      * A placeholder for hint serialization. Should always be used in a try-with-resources block.
      */
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.concurrent.JMXEnabledThreadPoolExecutor;
 import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.concurrent.VirtualThreadExecutor;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.FSReadError;
 import org.apache.cassandra.locator.InetAddressAndPort;
@@ -60,10 +61,12 @@ final class HintsDispatchExecutor
         this.isAlive = isAlive;
 
         scheduledDispatches = new ConcurrentHashMap<>();
-        executor = new JMXEnabledThreadPoolExecutor(maxThreads, 1, TimeUnit.MINUTES,
-                                                    new LinkedBlockingQueue<>(),
-                                                    new NamedThreadFactory("HintsDispatcher", Thread.MIN_PRIORITY),
-                                                    "internal");
+        executor = DatabaseDescriptor.useVirtualThreads("HintsDispatcher")
+                   ? new VirtualThreadExecutor(maxThreads, null, "internal", "HintsDispatcher")
+                   : new JMXEnabledThreadPoolExecutor(maxThreads, 1, TimeUnit.MINUTES,
+                                                      new LinkedBlockingQueue<>(),
+                                                      new NamedThreadFactory("HintsDispatcher", Thread.MIN_PRIORITY),
+                                                      "internal");
     }
 
     /*
@@ -104,7 +107,15 @@ final class HintsDispatchExecutor
          *
          * It also simplifies reasoning about dispatch sessions.
          */
-        return scheduledDispatches.computeIfAbsent(hostId, uuid -> executor.submit(new DispatchHintsTask(store, hostId)));
+        return scheduledDispatches.computeIfAbsent(hostId, uuid -> submit(new DispatchHintsTask(store, hostId)));
+    }
+
+    private Future<?> submit(Runnable task)
+    {
+        // a plain FutureTask whatever the executor, so that interruptDispatch() can interrupt the dispatch
+        FutureTask<?> future = new FutureTask<>(task, null);
+        executor.execute(future);
+        return future;
     }
 
     Future transfer(HintsCatalog catalog, Supplier<UUID> hostIdSupplier)
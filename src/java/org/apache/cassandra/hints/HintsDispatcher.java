@@ -23,26 +23,39 @@ import java.util.*;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.net.RequestCallback;
 import org.apache.cassandra.exceptions.RequestFailureReason;
 import org.apache.cassandra.locator.InetAddressAndPort;
 import org.apache.cassandra.metrics.HintsServiceMetrics;
 import org.apache.cassandra.net.Message;
 import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.schema.TableId;
+import org.apache.cassandra.utils.Pair;
 import org.apache.cassandra.utils.concurrent.SimpleCondition;
 
 import static org.apache.cassandra.net.Verb.HINT_REQ;
 import static org.apache.cassandra.utils.MonotonicClock.approxTime;
+import static org.apache.cassandra.utils.MonotonicClock.preciseTime;
 
 /**
  * Dispatches a single hints file to a specified node in a batched manner.
  *
  * Uses either {@link HintMessage.Encoded} - when dispatching hints into a node with the same messaging version as the hints file,
  * or {@link HintMessage}, when conversion is required.
+ *
+ * Up to max_hints_dispatch_pages_in_flight pages are sent before awaiting the responses to the earliest one. The number
+ * of pages in flight grows by one after each page acknowledged about as fast as the fastest page so far, and is halved
+ * when the responses slow down, as they do when the target node falls behind applying the hints. Optionally, the hints
+ * for the same partition in a page are coalesced into a single mutation.
  */
 final class HintsDispatcher implements AutoCloseable
 {
@@ -50,14 +63,22 @@ final class HintsDispatcher implements AutoCloseable
 
     private enum Action { CONTINUE, ABORT }
 
+    // a page acknowledged this many times slower than the fastest one signals a target node falling behind
+    private static final int SLOW_PAGE_FACTOR = 2;
+
     private final HintsReader reader;
     final UUID hostId;
     final InetAddressAndPort address;
     private final int messagingVersion;
     private final BooleanSupplier abortRequested;
+    private final int maxPagesInFlight;
+    private final boolean coalesce;
 
     private InputPosition currentPagePosition;
 
+    private int pagesInFlight = 1;
+    private long fastestPageNanos = Long.MAX_VALUE;
+
     private HintsDispatcher(HintsReader reader, UUID hostId, InetAddressAndPort address, int messagingVersion, BooleanSupplier abortRequested)
     {
         currentPagePosition = null;
@@ -67,6 +88,8 @@ final class HintsDispatcher implements AutoCloseable
         this.address = address;
         this.messagingVersion = messagingVersion;
         this.abortRequested = abortRequested;
+        this.maxPagesInFlight = DatabaseDescriptor.getMaxHintsDispatchPagesInFlight();
+        this.coalesce = DatabaseDescriptor.isHintsDispatchCoalescingEnabled();
     }
 
     static HintsDispatcher create(File file, RateLimiter rateLimiter, InetAddressAndPort address, UUID hostId, BooleanSupplier abortRequested)
@@ -93,10 +116,25 @@ final class HintsDispatcher implements AutoCloseable
      */
     boolean dispatch()
     {
+        Deque<SentPage> sentPages = new ArrayDeque<>();
         for (HintsReader.Page page : reader)
         {
-            currentPagePosition = page.position;
-            if (dispatch(page) != Action.CONTINUE)
+            while (sentPages.size() >= pagesInFlight)
+            {
+                if (await(sentPages.poll()) != Action.CONTINUE)
+                    return false;
+            }
+
+            currentPagePosition = sentPages.isEmpty() ? page.position : sentPages.peek().position;
+            SentPage sentPage = dispatch(page);
+            if (sentPage == null)
+                return false;
+            sentPages.add(sentPage);
+        }
+
+        while (!sentPages.isEmpty())
+        {
+            if (await(sentPages.poll()) != Action.CONTINUE)
                 return false;
         }
 
@@ -113,37 +151,48 @@ final class HintsDispatcher implements AutoCloseable
 
 
     // retry in case of a timeout; stop in case of a failure, host going down, or delivery paused
-    private Action dispatch(HintsReader.Page page)
+    private SentPage dispatch(HintsReader.Page page)
     {
         HintDiagnostics.dispatchPage(this);
-        return sendHintsAndAwait(page);
+        return sendHints(page);
     }
 
-    private Action sendHintsAndAwait(HintsReader.Page page)
+    /**
+     * @return the page sent, or null if dispatch was aborted
+     */
+    private SentPage sendHints(HintsReader.Page page)
     {
-        Collection<Callback> callbacks = new ArrayList<>();
+        SentPage sentPage = new SentPage(page.position);
 
         /*
          * If hints file messaging version matches the version of the target host, we'll use the optimised path -
          * skipping the redundant decoding/encoding cycle of the already encoded hint.
          *
          * If that is not the case, we'll need to perform conversion to a newer (or an older) format, and decoding the hint
-         * is an unavoidable intermediate step.
+         * is an unavoidable intermediate step. So is coalescing the hints of the page.
          */
-        Action action = reader.descriptor().messagingVersion() == messagingVersion
-                      ? sendHints(page.buffersIterator(), callbacks, this::sendEncodedHint)
-                      : sendHints(page.hintsIterator(), callbacks, this::sendHint);
+        Action action;
+        if (reader.descriptor().messagingVersion() == messagingVersion && !coalesce)
+            action = sendHints(page.buffersIterator(), sentPage.callbacks, this::sendEncodedHint);
+        else if (coalesce)
+            action = sendHints(coalesce(page.hintsIterator()), sentPage.callbacks, this::sendHint);
+        else
+            action = sendHints(page.hintsIterator(), sentPage.callbacks, this::sendHint);
 
-        if (action == Action.ABORT)
-            return action;
+        return action == Action.ABORT ? null : sentPage;
+    }
 
+    private Action await(SentPage page)
+    {
         long success = 0, failures = 0, timeouts = 0;
-        for (Callback cb : callbacks)
+        long lastResponseAt = page.sentAt;
+        for (Callback cb : page.callbacks)
         {
             Callback.Outcome outcome = cb.await();
             if (outcome == Callback.Outcome.SUCCESS) success++;
             else if (outcome == Callback.Outcome.FAILURE) failures++;
             else if (outcome == Callback.Outcome.TIMEOUT) timeouts++;
+            lastResponseAt = Math.max(lastResponseAt, cb.respondedAt);
         }
 
         updateMetrics(success, failures, timeouts);
@@ -151,15 +200,86 @@ final class HintsDispatcher implements AutoCloseable
         if (failures > 0 || timeouts > 0)
         {
             HintDiagnostics.pageFailureResult(this, success, failures, timeouts);
+            currentPagePosition = page.position;
             return Action.ABORT;
         }
         else
         {
             HintDiagnostics.pageSuccessResult(this, success, failures, timeouts);
+            if (!page.callbacks.isEmpty())
+            {
+                long pageNanos = lastResponseAt - page.sentAt;
+                fastestPageNanos = Math.min(fastestPageNanos, pageNanos);
+                pagesInFlight = pagesInFlight(pagesInFlight, maxPagesInFlight, pageNanos, fastestPageNanos);
+            }
             return Action.CONTINUE;
         }
     }
 
+    /**
+     * @return the number of pages to keep in flight after a page acknowledged in the given time
+     */
+    @VisibleForTesting
+    static int pagesInFlight(int pagesInFlight, int maxPagesInFlight, long pageNanos, long fastestPageNanos)
+    {
+        if (pageNanos > SLOW_PAGE_FACTOR * Math.max(fastestPageNanos, 1))
+            return Math.max(1, pagesInFlight / 2);
+        return Math.min(maxPagesInFlight, pagesInFlight + 1);
+    }
+
+    /**
+     * Coalesces the hints for the same partition, in the order of their first hint. The hints for a partition are merged
+     * into a single hint created at the time of the earliest, which expires no later than any of them, unless the
+     * merged hint isn't live anymore or a table of the partition was truncated after the earliest hint was created,
+     * in which case they're sent as they are.
+     */
+    @VisibleForTesting
+    static Iterator<Hint> coalesce(Iterator<Hint> hints)
+    {
+        Map<Pair<String, DecoratedKey>, List<Hint>> partitions = new LinkedHashMap<>();
+        while (hints.hasNext())
+        {
+            Hint hint = hints.next();
+            Pair<String, DecoratedKey> partition = Pair.create(hint.mutation.getKeyspaceName(), hint.mutation.key());
+            partitions.computeIfAbsent(partition, p -> new ArrayList<>(1)).add(hint);
+        }
+
+        List<Hint> coalesced = new ArrayList<>(partitions.size());
+        for (List<Hint> partitionHints : partitions.values())
+        {
+            Hint merged = partitionHints.size() == 1 ? null : merge(partitionHints);
+            if (merged != null)
+                coalesced.add(merged);
+            else
+                coalesced.addAll(partitionHints);
+        }
+        return coalesced.iterator();
+    }
+
+    private static Hint merge(List<Hint> hints)
+    {
+        List<Mutation> mutations = new ArrayList<>(hints.size());
+        Set<TableId> tables = new HashSet<>();
+        long creationTime = Long.MAX_VALUE;
+        int gcgs = Integer.MAX_VALUE;
+        for (Hint hint : hints)
+        {
+            mutations.add(hint.mutation);
+            tables.addAll(hint.mutation.getTableIds());
+            creationTime = Math.min(creationTime, hint.creationTime);
+            gcgs = Math.min(gcgs, hint.gcgs);
+        }
+
+        for (TableId table : tables)
+        {
+            if (creationTime <= SystemKeyspace.getTruncatedAt(table))
+                return null;
+        }
+
+        Hint merged = Hint.create(Mutation.merge(mutations), creationTime, gcgs);
+        return merged.isLive() ? merged : null;
+    }
+
     private void updateMetrics(long success, long failures, long timeouts)
     {
         HintsServiceMetrics.hintsSucceeded.mark(success);
@@ -205,6 +325,18 @@ final class HintsDispatcher implements AutoCloseable
         return callback;
     }
 
+    private static final class SentPage
+    {
+        private final InputPosition position;
+        private final long sentAt = preciseTime.now();
+        private final Collection<Callback> callbacks = new ArrayList<>();
+
+        private SentPage(InputPosition position)
+        {
+            this.position = position;
+        }
+    }
+
     private static final class Callback implements RequestCallback
     {
         enum Outcome { SUCCESS, TIMEOUT, FAILURE, INTERRUPTED }
@@ -212,6 +344,7 @@ final class HintsDispatcher implements AutoCloseable
         private final long start = approxTime.now();
         private final SimpleCondition condition = new SimpleCondition();
         private volatile Outcome outcome;
+        private volatile long respondedAt;
         private final long hintCreationNanoTime;
 
         private Callback(long hintCreationTimeMillisSinceEpoch)
@@ -252,6 +385,7 @@ final class HintsDispatcher implements AutoCloseable
         public void onResponse(Message msg)
         {
             HintsServiceMetrics.updateDelayMetrics(msg.from(), approxTime.now() - this.hintCreationNanoTime);
+            respondedAt = preciseTime.now();
             outcome = Outcome.SUCCESS;
             condition.signalAll();
         }
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.ClusteringPrefix;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionTime;
+import org.apache.cassandra.db.Slice;
+import org.apache.cassandra.db.Slices;
+import org.apache.cassandra.db.filter.ClusteringIndexFilter;
+import org.apache.cassandra.db.rows.RangeTombstoneMarker;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.transform.Transformation;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.util.Memory;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.concurrent.WrappedSharedCloseable;
+
+/**
+ * A per-sstable filter telling whether the sstable may hold data of a partition within some clustering slices, so
+ * that single-partition reads can skip the sstables that cannot. The min/max clustering values of the sstable
+ * metadata do the same for the sstable as a whole, but once compaction has mixed many partitions together they tend
+ * to span all the clustering space.
+ *
+ * For every partition, the filter keeps a 64-bit fingerprint of the partition key and the first 8 bytes of the
+ * byte-comparable forms of the first and last clusterings of the partition, rows and range tombstone markers alike.
+ * Like the truncated keys of SuRF, truncated byte-comparable forms keep the (non-strict) order of the full forms,
+ * so comparing the truncated bounds of a slice with the truncated range of a partition has no false negatives. A
+ * partition that is absent from the sstable is recognised as such, barring fingerprint collisions, and so is a
+ * partition that only has a static row or a partition deletion, which queries must still see.
+ *
+ * The entries are written in partition order, 24 bytes each, and loaded in an off-heap open-addressing hash table
+ * taking about 32 bytes per partition. The filter is therefore meant for tables of wide partitions, such as time
+ * series, and only built for the tables listed in {@code clustering_filter_tables}.
+ */
+public class ClusteringRangeFilter extends WrappedSharedCloseable
+{
+    static final int ENTRY_SIZE = 24;
+
+    // the low bits of the fingerprints hold the flags of the partition
+    private static final long HAS_STATIC_ROW = 1;
+    private static final long HAS_PARTITION_DELETION = 2;
+    private static final long HAS_NO_CLUSTERINGS = 4;
+    private static final long FLAGS = 7;
+
+    private final Memory table;
+    private final long mask;
+    private final long count;
+
+    private ClusteringRangeFilter(Memory table, long mask, long count)
+    {
+        super(table);
+        this.table = table;
+        this.mask = mask;
+        this.count = count;
+    }
+
+    private ClusteringRangeFilter(ClusteringRangeFilter copy)
+    {
+        super(copy);
+        this.table = copy.table;
+        this.mask = copy.mask;
+        this.count = copy.count;
+    }
+
+    public ClusteringRangeFilter sharedCopy()
+    {
+        return new ClusteringRangeFilter(this);
+    }
+
+    @SuppressWarnings("resource")
+    public static ClusteringRangeFilter load(File file) throws IOException
+    {
+        long length = file.length();
+        if (length % ENTRY_SIZE != 0)
+            throw new IOException(String.format("Clustering filter %s has a length of %d, which is not a multiple of %d", file, length, ENTRY_SIZE));
+
+        long count = length / ENTRY_SIZE;
+        // at most 3/4 full
+        long capacity = Long.highestOneBit(Math.max(1, count * 4 / 3)) * 2;
+        Memory table = Memory.allocate(capacity * ENTRY_SIZE);
+        table.setMemory(0, table.size(), (byte) 0);
+        ClusteringRangeFilter filter = new ClusteringRangeFilter(table, capacity - 1, count);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()))))
+        {
+            for (long i = 0; i < count; i++)
+                filter.insert(in.readLong(), in.readLong(), in.readLong());
+            return filter;
+        }
+        catch (Throwable t)
+        {
+            filter.close();
+            throw t;
+        }
+    }
+
+    private static long fingerprint(DecoratedKey key)
+    {
+        long[] hash = new long[2];
+        key.filterHash(hash);
+        long fingerprint = hash[1] & ~FLAGS;
+        // zero marks the empty slots of the table
+        return fingerprint == 0 ? FLAGS + 1 : fingerprint;
+    }
+
+    private long firstSlot(long fingerprint)
+    {
+        return (fingerprint >>> 3) & mask;
+    }
+
+    private long nextSlot(long slot)
+    {
+        return (slot + 1) & mask;
+    }
+
+    private void insert(long fingerprintAndFlags, long min, long max)
+    {
+        long fingerprint = fingerprintAndFlags & ~FLAGS;
+        for (long slot = firstSlot(fingerprint); ; slot = nextSlot(slot))
+        {
+            long position = slot * ENTRY_SIZE;
+            long existing = table.getLong(position);
+            if (existing == 0)
+            {
+                table.setLong(position, fingerprintAndFlags);
+                table.setLong(position + 8, min);
+                table.setLong(position + 16, max);
+                return;
+            }
+            if ((existing & ~FLAGS) == fingerprint)
+            {
+                // two partitions with the same fingerprint: keep the union of what they hold
+                long flags = (existing | fingerprintAndFlags) & FLAGS;
+                boolean existingHasClusterings = (existing & HAS_NO_CLUSTERINGS) == 0;
+                boolean hasClusterings = (fingerprintAndFlags & HAS_NO_CLUSTERINGS) == 0;
+                if (existingHasClusterings && hasClusterings)
+                {
+                    min = Long.compareUnsigned(min, table.getLong(position + 8)) < 0 ? min : table.getLong(position + 8);
+                    max = Long.compareUnsigned(max, table.getLong(position + 16)) > 0 ? max : table.getLong(position + 16);
+                }
+                else if (existingHasClusterings)
+                {
+                    min = table.getLong(position + 8);
+                    max = table.getLong(position + 16);
+                }
+                if (existingHasClusterings || hasClusterings)
+                    flags &= ~HAS_NO_CLUSTERINGS;
+
+                table.setLong(position, fingerprint | flags);
+                table.setLong(position + 8, min);
+                table.setLong(position + 16, max);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the sstable holds no data of the given partition selected by the given bounds, not even a
+     * partition deletion; true if it may
+     */
+    public boolean mayIntersect(DecoratedKey key, Bounds bounds)
+    {
+        long fingerprint = fingerprint(key);
+        for (long slot = firstSlot(fingerprint); ; slot = nextSlot(slot))
+        {
+            long position = slot * ENTRY_SIZE;
+            long entry = table.getLong(position);
+            if (entry == 0)
+                return false;
+            if ((entry & ~FLAGS) != fingerprint)
+                continue;
+
+            if ((entry & HAS_PARTITION_DELETION) != 0)
+                return true;
+            if (bounds.selectsStatics && (entry & HAS_STATIC_ROW) != 0)
+                return true;
+            return (entry & HAS_NO_CLUSTERINGS) == 0
+                   && bounds.intersects(table.getLong(position + 8), table.getLong(position + 16));
+        }
+    }
+
+    public long offHeapSize()
+    {
+        return table.size();
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        super.addTo(identities);
+        identities.add(table);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ClusteringRangeFilter[partitions=" + count + ']';
+    }
+
+    /**
+     * @return the first 8 bytes of the byte-comparable form of the given prefix, padded with zeros, as an unsigned
+     * long
+     */
+    static long truncate(ClusteringComparator comparator, ClusteringPrefix<?> prefix)
+    {
+        ByteSource source = comparator.asComparableBytes(prefix);
+        long truncated = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            int b = source.next();
+            truncated = (truncated << 8) | (b == ByteSource.END_OF_STREAM ? 0 : b);
+            if (b == ByteSource.END_OF_STREAM)
+            {
+                truncated <<= 8 * (7 - i);
+                break;
+            }
+        }
+        return truncated;
+    }
+
+    /**
+     * The truncated bounds of the clustering slices selected by a query, computed on first use so that queries on
+     * tables without clustering filters do not pay for them.
+     */
+    public static class Bounds
+    {
+        private final TableMetadata metadata;
+        private final ClusteringIndexFilter filter;
+        private final boolean selectsStatics;
+        private long[] truncated;
+
+        /**
+         * @param selectsStatics whether the query fetches static columns, and must then read the static rows
+         */
+        public Bounds(TableMetadata metadata, ClusteringIndexFilter filter, boolean selectsStatics)
+        {
+            this.metadata = metadata;
+            this.filter = filter;
+            this.selectsStatics = selectsStatics;
+        }
+
+        private boolean intersects(long min, long max)
+        {
+            if (truncated == null)
+            {
+                Slices slices = filter.getSlices(metadata);
+                long[] bounds = new long[slices.size() * 2];
+                for (int i = 0; i < slices.size(); i++)
+                {
+                    Slice slice = slices.get(i);
+                    bounds[2 * i] = truncate(metadata.comparator, slice.start());
+                    bounds[2 * i + 1] = truncate(metadata.comparator, slice.end());
+                }
+                truncated = bounds;
+            }
+
+            for (int i = 0; i < truncated.length; i += 2)
+            {
+                if (Long.compareUnsigned(truncated[i], max) <= 0 && Long.compareUnsigned(truncated[i + 1], min) >= 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Records the first and last clusterings of the partitions it is applied to, and writes their entries as they
+     * are completed.
+     */
+    public static class Writer extends Transformation<UnfilteredRowIterator>
+    {
+        private final ClusteringComparator comparator;
+        private final SequentialWriter out;
+        private ClusteringPrefix<?> first;
+        private ClusteringPrefix<?> last;
+
+        public Writer(ClusteringComparator comparator, SequentialWriter out)
+        {
+            this.comparator = comparator;
+            this.out = out;
+        }
+
+        /**
+         * Forgets the clusterings of any partition that failed to be written.
+         */
+        public Writer startPartition()
+        {
+            first = null;
+            last = null;
+            return this;
+        }
+
+        @Override
+        public Row applyToRow(Row row)
+        {
+            add(row.clustering());
+            return row;
+        }
+
+        @Override
+        public RangeTombstoneMarker applyToMarker(RangeTombstoneMarker marker)
+        {
+            add(marker.clustering());
+            return marker;
+        }
+
+        private void add(ClusteringPrefix<?> clustering)
+        {
+            if (first == null)
+                first = clustering;
+            last = clustering;
+        }
+
+        /**
+         * Writes the entry of the partition this writer was last applied to, once it has been entirely iterated.
+         */
+        public void endPartition(DecoratedKey key, DeletionTime partitionDeletion, Row staticRow)
+        {
+            long flags = 0;
+            if (!staticRow.isEmpty())
+                flags |= HAS_STATIC_ROW;
+            if (!partitionDeletion.isLive())
+                flags |= HAS_PARTITION_DELETION;
+            if (first == null)
+                flags |= HAS_NO_CLUSTERINGS;
+
+            try
+            {
+                out.writeLong(fingerprint(key) | flags);
+                out.writeLong(first == null ? 0 : truncate(comparator, first));
+                out.writeLong(last == null ? 0 : truncate(comparator, last));
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, out.getPath());
+            }
+        }
+    }
+}
@@ -56,6 +56,12 @@ public class Component
         CRC("CRC.db"),
         // holds SSTable Index Summary (sampling of Index component)
         SUMMARY("Summary.db"),
+        // byte-comparable trie mapping partition keys to their position in the Index component
+        PARTITION_INDEX("Partitions.db"),
+        // fingerprints and clustering ranges of the partitions, for skipping sstables on single partition reads
+        CLUSTERING_FILTER("ClusteringFilter.db"),
+        // validation hashes of the partitions, for building merkle trees without reading the data
+        PARTITION_HASHES("PartitionHashes.db"),
         // table of contents, stores the list of all components for the sstable
         TOC("TOC.txt"),
         // built-in secondary index (may be multiple per sstable)
@@ -90,6 +96,9 @@ public class Component
     public final static Component DIGEST = new Component(Type.DIGEST);
     public final static Component CRC = new Component(Type.CRC);
     public final static Component SUMMARY = new Component(Type.SUMMARY);
+    public final static Component PARTITION_INDEX = new Component(Type.PARTITION_INDEX);
+    public final static Component CLUSTERING_FILTER = new Component(Type.CLUSTERING_FILTER);
+    public final static Component PARTITION_HASHES = new Component(Type.PARTITION_HASHES);
     public final static Component TOC = new Component(Type.TOC);
 
     public final Type type;
@@ -140,6 +149,9 @@ public class Component
             case DIGEST:           return Component.DIGEST;
             case CRC:              return Component.CRC;
             case SUMMARY:          return Component.SUMMARY;
+            case PARTITION_INDEX:  return Component.PARTITION_INDEX;
+            case CLUSTERING_FILTER: return Component.CLUSTERING_FILTER;
+            case PARTITION_HASHES: return Component.PARTITION_HASHES;
             case TOC:              return Component.TOC;
             case SECONDARY_INDEX:  return new Component(Type.SECONDARY_INDEX, name);
             case CUSTOM:           return new Component(Type.CUSTOM, name);
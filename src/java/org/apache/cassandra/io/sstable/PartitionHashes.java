@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionTime;
+import org.apache.cassandra.db.Digest;
+import org.apache.cassandra.db.LivenessInfo;
+import org.apache.cassandra.db.RegularAndStaticColumns;
+import org.apache.cassandra.db.rows.Cell;
+import org.apache.cassandra.db.rows.ColumnData;
+import org.apache.cassandra.db.rows.ComplexColumnData;
+import org.apache.cassandra.db.rows.RangeTombstoneMarker;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.db.rows.Rows;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterators;
+import org.apache.cassandra.db.transform.Transformation;
+import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.schema.ColumnMetadata;
+import org.apache.cassandra.schema.DroppedColumn;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.AbstractIterator;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.MerkleTree;
+
+/**
+ * The hashes repair validation computes for the partitions of an sstable, computed as the sstable is written so that
+ * the merkle trees of a validation can be built from them instead of reading the data again.
+ *
+ * The hash of a partition is the one {@link UnfilteredRowIterators#digest} gives with {@link Digest#forValidator()},
+ * with the columns of the table when the sstable was written, which is what a validation reading the partition from
+ * this sstable alone computes, as long as the columns of the table did not change since, and the validation does not
+ * purge any of its tombstones nor turn any of its expired cells into tombstones. The component therefore starts with
+ * a fingerprint of the columns and dropped columns of the table, and every entry records the earliest local deletion
+ * time of the tombstones and the earliest expiration time of the expiring data of its partition, so that validations
+ * can tell the hashes they can use; a partition holding data of dropped columns, which reads may skip, is never used.
+ *
+ * Entries are written in partition order: the key, the hash, the number of bytes hashed, and the two times.
+ */
+public class PartitionHashes
+{
+    private static final int VERSION = 1;
+
+    /**
+     * @return whether the given sstable was written with partition hashes
+     */
+    public static boolean isPresent(SSTableReader sstable)
+    {
+        return sstable.components.contains(Component.PARTITION_HASHES);
+    }
+
+    /**
+     * @return a fingerprint of the columns of the given table that the hashes of its partitions depend on
+     */
+    public static byte[] fingerprint(TableMetadata metadata)
+    {
+        Digest digest = Digest.forValidator();
+        for (ColumnMetadata column : metadata.regularAndStaticColumns())
+        {
+            digest.update(column.name.bytes);
+            digest.updateWithBoolean(column.isStatic());
+            digest.update(ByteBufferUtil.bytes(column.type.toString()));
+        }
+        for (DroppedColumn dropped : metadata.droppedColumns.values())
+        {
+            digest.update(dropped.column.name.bytes);
+            digest.updateWithLong(dropped.droppedTime);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * The hash of a partition, with what tells whether a validation can use it.
+     */
+    public static class Entry
+    {
+        public final DecoratedKey key;
+        private final byte[] hash;
+        private final long size;
+        private final int minTombstoneDeletionTime;
+        private final int minExpirationTime;
+
+        private Entry(DecoratedKey key, byte[] hash, long size, int minTombstoneDeletionTime, int minExpirationTime)
+        {
+            this.key = key;
+            this.hash = hash;
+            this.size = size;
+            this.minTombstoneDeletionTime = minTombstoneDeletionTime;
+            this.minExpirationTime = minExpirationTime;
+        }
+
+        /**
+         * @return whether a validation at {@code nowInSec}, purging the tombstones deleted before {@code gcBefore},
+         * leaves this partition as it was written
+         */
+        public boolean isUnchangedByValidation(int gcBefore, int nowInSec)
+        {
+            return minTombstoneDeletionTime >= gcBefore && minExpirationTime > nowInSec;
+        }
+
+        public MerkleTree.RowHash rowHash()
+        {
+            return new MerkleTree.RowHash(key.getToken(), hash, size);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "PartitionHashes.Entry(" + key + ')';
+        }
+    }
+
+    /**
+     * Hashes the partitions it is applied to, and writes their entries as they are completed.
+     */
+    public static class Writer extends Transformation<UnfilteredRowIterator>
+    {
+        private final TableMetadata metadata;
+        private final RegularAndStaticColumns columns;
+        private final SequentialWriter out;
+
+        private Digest digest;
+        private int minTombstoneDeletionTime;
+        private int minExpirationTime;
+
+        public Writer(TableMetadata metadata, SequentialWriter out)
+        {
+            this.metadata = metadata;
+            this.columns = metadata.regularAndStaticColumns();
+            this.out = out;
+            try
+            {
+                out.writeInt(VERSION);
+                ByteBufferUtil.writeWithShortLength(ByteBuffer.wrap(fingerprint(metadata)), out);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, out.getPath());
+            }
+        }
+
+        /**
+         * Starts hashing the given partition, forgetting any partition that failed to be written.
+         */
+        public Writer startPartition(UnfilteredRowIterator partition)
+        {
+            digest = Digest.forValidator();
+            minTombstoneDeletionTime = Integer.MAX_VALUE;
+            minExpirationTime = Integer.MAX_VALUE;
+
+            // as UnfilteredRowIterators.digest() does for the partition read back from this sstable
+            Row staticRow = partition.staticRow().isEmpty() ? Rows.EMPTY_STATIC_ROW : partition.staticRow();
+            digest.update(partition.partitionKey().getKey());
+            partition.partitionLevelDeletion().digest(digest);
+            columns.regulars.digest(digest);
+            if (staticRow != Rows.EMPTY_STATIC_ROW)
+                columns.statics.digest(digest);
+            digest.updateWithBoolean(false);
+            staticRow.digest(digest);
+
+            addDeletion(partition.partitionLevelDeletion());
+            addRow(staticRow);
+            return this;
+        }
+
+        @Override
+        public Row applyToRow(Row row)
+        {
+            row.digest(digest);
+            addRow(row);
+            return row;
+        }
+
+        @Override
+        public RangeTombstoneMarker applyToMarker(RangeTombstoneMarker marker)
+        {
+            marker.digest(digest);
+            if (marker.isOpen(false))
+                addDeletion(marker.openDeletionTime(false));
+            if (marker.isClose(false))
+                addDeletion(marker.closeDeletionTime(false));
+            return marker;
+        }
+
+        private void addRow(Row row)
+        {
+            addLiveness(row.primaryKeyLivenessInfo());
+            addDeletion(row.deletion().time());
+            for (ColumnData data : row)
+            {
+                // reads skip the cells of dropped columns that predate the drop
+                if (metadata.getDroppedColumn(data.column().name.bytes) != null)
+                    minExpirationTime = Integer.MIN_VALUE;
+
+                if (data.column().isComplex())
+                {
+                    ComplexColumnData complex = (ComplexColumnData) data;
+                    addDeletion(complex.complexDeletion());
+                    for (Cell<?> cell : complex)
+                        addCell(cell);
+                }
+                else
+                {
+                    addCell((Cell<?>) data);
+                }
+            }
+        }
+
+        private void addCell(Cell<?> cell)
+        {
+            if (cell.isTombstone())
+                minTombstoneDeletionTime = Math.min(minTombstoneDeletionTime, cell.localDeletionTime());
+            else if (cell.isExpiring())
+                minExpirationTime = Math.min(minExpirationTime, cell.localDeletionTime());
+        }
+
+        private void addLiveness(LivenessInfo info)
+        {
+            if (info.isExpiring())
+                minExpirationTime = Math.min(minExpirationTime, info.localExpirationTime());
+        }
+
+        private void addDeletion(DeletionTime deletion)
+        {
+            if (!deletion.isLive())
+                minTombstoneDeletionTime = Math.min(minTombstoneDeletionTime, deletion.localDeletionTime());
+        }
+
+        /**
+         * Writes the entry of the partition this writer was last applied to, once it has been entirely iterated.
+         */
+        public void endPartition(DecoratedKey key)
+        {
+            try
+            {
+                ByteBufferUtil.writeWithShortLength(key.getKey(), out);
+                ByteBufferUtil.writeWithShortLength(ByteBuffer.wrap(digest.digest()), out);
+                out.writeUnsignedVInt(digest.inputBytes());
+                out.writeInt(minTombstoneDeletionTime);
+                out.writeInt(minExpirationTime);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, out.getPath());
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of an sstable, in partition order.
+     */
+    public static class Reader extends AbstractIterator<Entry>
+    {
+        private final SSTableReader sstable;
+        private final RandomAccessReader in;
+
+        private Reader(SSTableReader sstable, RandomAccessReader in)
+        {
+            this.sstable = sstable;
+            this.in = in;
+        }
+
+        /**
+         * @return the entries of the given sstable, or null if they were computed with other columns than the given
+         * fingerprint
+         */
+        @SuppressWarnings("resource")
+        public static Reader open(SSTableReader sstable, byte[] fingerprint) throws IOException
+        {
+            RandomAccessReader in = RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PARTITION_HASHES)));
+            try
+            {
+                int version = in.readInt();
+                if (version != VERSION)
+                    throw new IOException(String.format("Unknown version %d of the partition hashes of %s", version, sstable));
+
+                if (Arrays.equals(fingerprint, ByteBufferUtil.getArray(ByteBufferUtil.readWithShortLength(in))))
+                    return new Reader(sstable, in);
+            }
+            catch (Throwable t)
+            {
+                in.close();
+                throw t;
+            }
+            in.close();
+            return null;
+        }
+
+        protected Entry computeNext()
+        {
+            try
+            {
+                if (in.isEOF())
+                    return endOfData();
+
+                DecoratedKey key = sstable.decorateKey(ByteBufferUtil.readWithShortLength(in));
+                byte[] hash = ByteBufferUtil.getArray(ByteBufferUtil.readWithShortLength(in));
+                long size = in.readUnsignedVInt();
+                return new Entry(key, hash, size, in.readInt(), in.readInt());
+            }
+            catch (IOException e)
+            {
+                throw new FSReadError(e, in.getPath());
+            }
+        }
+
+        public void close()
+        {
+            in.close();
+        }
+    }
+}
@@ -131,6 +131,8 @@ public class SSTableLoader implements StreamEventHandler
                                           components.add(Component.PRIMARY_INDEX);
                                           if (new File(desc.filenameFor(Component.SUMMARY)).exists())
                                               components.add(Component.SUMMARY);
+                                          if (new File(desc.filenameFor(Component.PARTITION_INDEX)).exists())
+                                              components.add(Component.PARTITION_INDEX);
                                           if (new File(desc.filenameFor(Component.COMPRESSION_INFO)).exists())
                                               components.add(Component.COMPRESSION_INFO);
                                           if (new File(desc.filenameFor(Component.STATS)).exists())
@@ -19,10 +19,12 @@ package org.apache.cassandra.io.sstable.format;
 
 import com.google.common.base.CharMatcher;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.db.SerializationHeader;
 import org.apache.cassandra.io.sstable.format.big.BigFormat;
+import org.apache.cassandra.io.sstable.format.trie.TrieIndexFormat;
 
 /**
  * Provides the accessors to data on disk.
@@ -43,14 +45,20 @@ public interface SSTableFormat
     public static enum Type
     {
         //The original sstable format
-        BIG("big", BigFormat.instance);
+        BIG("big", BigFormat.instance),
+
+        //The original sstable format with a trie-based partition index
+        BTI("bti", TrieIndexFormat.instance);
 
         public final SSTableFormat info;
         public final String name;
 
+        /**
+         * @return the format new sstables are written in, set with {@code sstable_format}
+         */
         public static Type current()
         {
-            return BIG;
+            return DatabaseDescriptor.getSSTableFormat();
         }
 
         private Type(String name, SSTableFormat info)
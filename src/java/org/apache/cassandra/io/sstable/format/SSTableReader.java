@@ -37,6 +37,7 @@ import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
 import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
 import com.clearspring.analytics.stream.cardinality.ICardinality;
 
+import org.apache.cassandra.cache.ChunkCache;
 import org.apache.cassandra.cache.InstrumentingCache;
 import org.apache.cassandra.cache.KeyCacheKey;
 import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
@@ -227,6 +228,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     private final Ref<SSTableReader> selfRef;
 
     private RestorableMeter readMeter;
+    private ClusteringRangeFilter clusteringRangeFilter;
 
     private volatile double crcCheckChance;
 
@@ -740,7 +742,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         File filterFile = new File(descriptor.filenameFor(Component.FILTER));
         try (DataOutputStreamPlus stream = new BufferedDataOutputStreamPlus(new FileOutputStream(filterFile)))
         {
-            BloomFilterSerializer.serialize((BloomFilter) filter, stream);
+            BloomFilterSerializer.serialize(filter, stream);
             stream.flush();
         }
         catch (IOException e)
@@ -1122,6 +1124,15 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return bf;
     }
 
+    /**
+     * @return whether the chunk of the data file holding the given position is in the chunk cache, so that reading it
+     * wouldn't touch the disk
+     */
+    public boolean isDataChunkCached(long position)
+    {
+        return ChunkCache.instance != null && ChunkCache.instance.isCached(dfile, position);
+    }
+
     public long getBloomFilterSerializedSize()
     {
         return bf.serializedSize();
@@ -1136,6 +1147,23 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return bf.offHeapSize();
     }
 
+    /**
+     * @return the amount of memory in bytes used off heap by the clustering range filter, if this sstable has one
+     */
+    public long getClusteringFilterOffHeapSize()
+    {
+        return clusteringRangeFilter == null ? 0 : clusteringRangeFilter.offHeapSize();
+    }
+
+    /**
+     * @return false if the clustering range filter of this sstable tells it holds no data of the given partition
+     * selected by the given bounds, true if it may or if this sstable has no such filter
+     */
+    public boolean mayContain(DecoratedKey key, ClusteringRangeFilter.Bounds bounds)
+    {
+        return clusteringRangeFilter == null || clusteringRangeFilter.mayIntersect(key, bounds);
+    }
+
     /**
      * @return An estimate of the number of keys in this SSTable based on the index summary.
      */
@@ -1854,10 +1882,13 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return sstableMetadata;
     }
 
+    /**
+     * Opens a reader of the data file for compaction, which is rate limited and does not populate the chunk cache.
+     */
     public RandomAccessReader openDataReader(RateLimiter limiter)
     {
         assert limiter != null;
-        return dfile.createReader(limiter);
+        return dfile.createScanReader(limiter);
     }
 
     public RandomAccessReader openDataReader()
@@ -1872,6 +1903,24 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return null;
     }
 
+    /**
+     * Opens a reader of the data file for a scan, which does not populate the chunk cache.
+     */
+    public RandomAccessReader openScanDataReader()
+    {
+        return dfile.createScanReader(null);
+    }
+
+    /**
+     * Opens a reader of the index file for a scan, which does not populate the chunk cache.
+     */
+    public RandomAccessReader openScanIndexReader()
+    {
+        if (ifile != null)
+            return ifile.createScanReader(null);
+        return null;
+    }
+
     public ChannelProxy getDataChannel()
     {
         return dfile.channel;
@@ -1948,6 +1997,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     {
         tidy.setup(this, trackHotness);
         this.readMeter = tidy.global.readMeter;
+        this.clusteringRangeFilter = tidy.global.ensureClusteringRangeFilter(this);
     }
 
     @VisibleForTesting
@@ -1956,6 +2006,15 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         this.readMeter = tidy.global.readMeter = readMeter;
     }
 
+    /**
+     * @return the resources owned by this reader instance in addition to its data and index files, which are closed
+     * with them when the instance is tidied
+     */
+    protected List<AutoCloseable> closeables()
+    {
+        return Collections.emptyList();
+    }
+
     public void addTo(Ref.IdentityCollection identities)
     {
         identities.add(this);
@@ -1985,6 +2044,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
         private FileHandle dfile;
         private FileHandle ifile;
+        private List<AutoCloseable> closeables;
         private Runnable runOnClose;
         private boolean isReplaced = false;
 
@@ -2002,6 +2062,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             this.summary = reader.indexSummary;
             this.dfile = reader.dfile;
             this.ifile = reader.ifile;
+            this.closeables = reader.closeables();
             // get a new reference to the shared descriptor-type tidy
             this.globalRef = GlobalTidy.get(reader);
             this.global = globalRef.get();
@@ -2057,6 +2118,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                         dfile.close();
                     if (ifile != null)
                         ifile.close();
+                    if (closeables != null)
+                        Throwables.maybeFail(Throwables.close(null, closeables));
                     globalRef.release();
 
                     if (logger.isTraceEnabled())
@@ -2101,6 +2164,10 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         private WeakReference<ScheduledFuture<?>> readMeterSyncFuture = NULL;
         // shared state managing if the logical sstable has been compacted; this is used in cleanup
         private volatile Runnable obsoletion;
+        // the clustering range filter shared between all instances of the sstable, loaded by the first one that
+        // is not opened early, as the component is only complete once the sstable is
+        private ClusteringRangeFilter clusteringRangeFilter;
+        private boolean clusteringRangeFilterLoaded;
 
         GlobalTidy(final SSTableReader reader)
         {
@@ -2137,6 +2204,27 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             }, 1, 5, TimeUnit.MINUTES));
         }
 
+        synchronized ClusteringRangeFilter ensureClusteringRangeFilter(SSTableReader reader)
+        {
+            if (clusteringRangeFilterLoaded
+                || reader.openReason == OpenReason.EARLY
+                || !reader.components.contains(Component.CLUSTERING_FILTER))
+                return clusteringRangeFilter;
+
+            clusteringRangeFilterLoaded = true;
+            File file = new File(desc.filenameFor(Component.CLUSTERING_FILTER));
+            try
+            {
+                clusteringRangeFilter = ClusteringRangeFilter.load(file);
+            }
+            catch (IOException e)
+            {
+                // the filter only saves reads, so do without it
+                logger.warn("Could not load the clustering filter {}, reads will not skip {}", file, desc, e);
+            }
+            return clusteringRangeFilter;
+        }
+
         private void stopReadMeterPersistence()
         {
             ScheduledFuture<?> readMeterSyncFutureLocal = readMeterSyncFuture.get();
@@ -2151,6 +2239,9 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         {
             lookup.remove(desc);
 
+            if (clusteringRangeFilter != null)
+                clusteringRangeFilter.close();
+
             if (obsoletion != null)
                 obsoletion.run();
 
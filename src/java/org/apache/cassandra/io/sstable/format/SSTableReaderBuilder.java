@@ -185,7 +185,7 @@ public abstract class SSTableReaderBuilder
                                  : SSTable.estimateRowsFromIndex(primaryIndex, descriptor); // statistics is supposed to be optional
 
             if (recreateBloomFilter)
-                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance);
+                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, DatabaseDescriptor.useBlockedBloomFilters());
 
             try (IndexSummaryBuilder summaryBuilder = summaryLoaded ? null : new IndexSummaryBuilder(estimatedKeys, metadata.params.minIndexInterval, Downsampling.BASE_SAMPLING_LEVEL))
             {
@@ -288,6 +288,7 @@ public abstract class SSTableReaderBuilder
                     .withChunkCache(ChunkCache.instance);
                     FileHandle.Builder dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
                                                                                                                 .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                                                                                                .directIO(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.direct)
                                                                                                                 .withChunkCache(ChunkCache.instance))
             {
                 long indexFileLength = new File(descriptor.filenameFor(Component.PRIMARY_INDEX)).length();
@@ -425,6 +426,7 @@ public abstract class SSTableReaderBuilder
                     .withChunkCache(ChunkCache.instance);
                     FileHandle.Builder dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(components.contains(Component.COMPRESSION_INFO))
                                                                                                                 .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                                                                                                .directIO(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.direct)
                                                                                                                 .withChunkCache(ChunkCache.instance))
             {
                 loadSummary();
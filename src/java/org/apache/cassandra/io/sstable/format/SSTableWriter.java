@@ -174,6 +174,13 @@ public abstract class SSTableWriter extends SSTable implements Transactional
             // but the components are unmodifiable after construction
             components.add(Component.CRC);
         }
+
+        if (!metadata.clusteringColumns().isEmpty() && DatabaseDescriptor.isClusteringFilterEnabled(metadata.keyspace, metadata.name))
+            components.add(Component.CLUSTERING_FILTER);
+
+        // the rows of views may be purged by validation even when none of their tombstones are
+        if (!metadata.isView() && DatabaseDescriptor.isPartitionHashesEnabled(metadata.keyspace, metadata.name))
+            components.add(Component.PARTITION_HASHES);
         return components;
     }
 
@@ -52,7 +52,7 @@ public class BigTableReader extends SSTableReader
 {
     private static final Logger logger = LoggerFactory.getLogger(BigTableReader.class);
 
-    BigTableReader(SSTableReaderBuilder builder)
+    protected BigTableReader(SSTableReaderBuilder builder)
     {
         super(builder);
     }
@@ -191,15 +191,40 @@ public class BigTableReader extends SSTableReader
             return null;
         }
 
+        if (ifile == null)
+            return null;
+
+        return searchIndex(key, op, updateCacheAndStats, listener);
+    }
+
+    /**
+     * Finds the index entry for the given key in the primary index, once the bloom filter, key cache and bounds
+     * checks of {@link #getPosition(PartitionPosition, Operator, boolean, boolean, SSTableReadsListener)} have
+     * passed. This locates the closest sampled position with the index summary, then scans the primary index from it.
+     */
+    protected RowIndexEntry searchIndex(PartitionPosition key, Operator op, boolean updateCacheAndStats, SSTableReadsListener listener)
+    {
         int binarySearchResult = indexSummary.binarySearch(key);
         long sampledPosition = getIndexScanPositionFromBinarySearchResult(binarySearchResult, indexSummary);
         int sampledIndex = getIndexSummaryIndexFromBinarySearchResult(binarySearchResult);
 
         int effectiveInterval = indexSummary.getEffectiveIndexIntervalAfterIndex(sampledIndex);
 
-        if (ifile == null)
-            return null;
+        return scanIndex(key, op, updateCacheAndStats, listener, sampledPosition, effectiveInterval);
+    }
 
+    /**
+     * Scans the primary index from {@code indexPosition}, which must not be past the entry looked for, and returns the
+     * first entry satisfying {@code op}. For exact matches, the first {@code effectiveInterval} entries are compared by
+     * raw key, and the following ones as decorated keys so that the scan stops once past the key.
+     */
+    protected RowIndexEntry scanIndex(PartitionPosition key,
+                                      Operator op,
+                                      boolean updateCacheAndStats,
+                                      SSTableReadsListener listener,
+                                      long indexPosition,
+                                      int effectiveInterval)
+    {
         // scan the on-disk index, starting at the nearest sampled position.
         // The check against IndexInterval is to be exit the loop in the EQ case when the key looked for is not present
         // (bloom filter false positive). But note that for non-EQ cases, we might need to check the first key of the
@@ -208,7 +233,7 @@ public class BigTableReader extends SSTableReader
         // of the next interval).
         int i = 0;
         String path = null;
-        try (FileDataInput in = ifile.createReader(sampledPosition))
+        try (FileDataInput in = ifile.createReader(indexPosition))
         {
             path = in.getPath();
             while (!in.isEOF())
@@ -105,8 +105,8 @@ public class BigTableScanner implements ISSTableScanner
     {
         assert sstable != null;
 
-        this.dfile = sstable.openDataReader();
-        this.ifile = sstable.openIndexReader();
+        this.dfile = sstable.openScanDataReader();
+        this.ifile = sstable.openScanIndexReader();
         this.sstable = sstable;
         this.columns = columns;
         this.dataRange = dataRange;
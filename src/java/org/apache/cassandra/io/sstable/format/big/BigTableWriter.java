@@ -58,12 +58,18 @@ public class BigTableWriter extends SSTableWriter
     private final IndexWriter iwriter;
     private final FileHandle.Builder dbuilder;
     protected final SequentialWriter dataFile;
+    private final SequentialWriter clusteringFilterFile;
+    private final ClusteringRangeFilter.Writer clusteringFilter;
+    private final SequentialWriter partitionHashesFile;
+    private final PartitionHashes.Writer partitionHashes;
     private DecoratedKey lastWrittenKey;
     private DataPosition dataMark;
+    private DataPosition clusteringFilterMark;
+    private DataPosition partitionHashesMark;
     private long lastEarlyOpenLength = 0;
     private final Optional<ChunkCache> chunkCache = Optional.ofNullable(ChunkCache.instance);
 
-    private final SequentialWriterOption writerOption = SequentialWriterOption.newBuilder()
+    protected final SequentialWriterOption writerOption = SequentialWriterOption.newBuilder()
                                                         .trickleFsync(DatabaseDescriptor.getTrickleFsync())
                                                         .trickleFsyncByteInterval(DatabaseDescriptor.getTrickleFsyncIntervalInKb() * 1024)
                                                         .build();
@@ -101,11 +107,34 @@ public class BigTableWriter extends SSTableWriter
                     writerOption);
         }
         dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
-                                              .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap);
+                                              .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                              .directIO(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.direct);
         chunkCache.ifPresent(dbuilder::withChunkCache);
         iwriter = new IndexWriter(keyCount);
 
         columnIndexWriter = new ColumnIndex(this.header, dataFile, descriptor.version, this.observers, getRowIndexEntrySerializer().indexInfoSerializer());
+
+        if (components.contains(Component.CLUSTERING_FILTER))
+        {
+            clusteringFilterFile = new SequentialWriter(new File(descriptor.filenameFor(Component.CLUSTERING_FILTER)), writerOption);
+            clusteringFilter = new ClusteringRangeFilter.Writer(metadata().comparator, clusteringFilterFile);
+        }
+        else
+        {
+            clusteringFilterFile = null;
+            clusteringFilter = null;
+        }
+
+        if (components.contains(Component.PARTITION_HASHES))
+        {
+            partitionHashesFile = new SequentialWriter(new File(descriptor.filenameFor(Component.PARTITION_HASHES)), writerOption);
+            partitionHashes = new PartitionHashes.Writer(metadata(), partitionHashesFile);
+        }
+        else
+        {
+            partitionHashesFile = null;
+            partitionHashes = null;
+        }
     }
 
     /**
@@ -151,12 +180,20 @@ public class BigTableWriter extends SSTableWriter
     {
         dataMark = dataFile.mark();
         iwriter.mark();
+        if (clusteringFilterFile != null)
+            clusteringFilterMark = clusteringFilterFile.mark();
+        if (partitionHashesFile != null)
+            partitionHashesMark = partitionHashesFile.mark();
     }
 
     public void resetAndTruncate()
     {
         dataFile.resetAndTruncate(dataMark);
         iwriter.resetAndTruncate();
+        if (clusteringFilterFile != null)
+            clusteringFilterFile.resetAndTruncate(clusteringFilterMark);
+        if (partitionHashesFile != null)
+            partitionHashesFile.resetAndTruncate(partitionHashesMark);
     }
 
     /**
@@ -211,7 +248,12 @@ public class BigTableWriter extends SSTableWriter
         //Reuse the writer for each row
         columnIndexWriter.reset();
 
-        try (UnfilteredRowIterator collecting = Transformation.apply(iterator, new StatsCollector(metadataCollector)))
+        UnfilteredRowIterator tracked = iterator;
+        if (clusteringFilter != null)
+            tracked = Transformation.apply(tracked, clusteringFilter.startPartition());
+        if (partitionHashes != null)
+            tracked = Transformation.apply(tracked, partitionHashes.startPartition(iterator));
+        try (UnfilteredRowIterator collecting = Transformation.apply(tracked, new StatsCollector(metadataCollector)))
         {
             columnIndexWriter.buildRowIndex(collecting);
 
@@ -233,6 +275,10 @@ public class BigTableWriter extends SSTableWriter
             maybeLogLargePartitionWarning(key, rowSize);
             metadataCollector.addPartitionSizeInBytes(rowSize);
             afterAppend(key, endPosition, entry, columnIndexWriter.buffer());
+            if (clusteringFilter != null)
+                clusteringFilter.endPartition(key, collecting.partitionLevelDeletion(), collecting.staticRow());
+            if (partitionHashes != null)
+                partitionHashes.endPartition(key);
             return entry;
         }
         catch (BufferOverflowException boe)
@@ -245,6 +291,13 @@ public class BigTableWriter extends SSTableWriter
         }
     }
 
+    /**
+     * Called once the index entry of a partition has been written to the primary index, at {@code indexPosition}.
+     */
+    protected void onIndexEntryWritten(DecoratedKey key, long indexPosition)
+    {
+    }
+
     private RowIndexEntry.IndexSerializer<IndexInfo> getRowIndexEntrySerializer()
     {
         return (RowIndexEntry.IndexSerializer<IndexInfo>) rowIndexEntrySerializer;
@@ -408,12 +461,16 @@ public class BigTableWriter extends SSTableWriter
         return new TransactionalProxy();
     }
 
-    class TransactionalProxy extends SSTableWriter.TransactionalProxy
+    protected class TransactionalProxy extends SSTableWriter.TransactionalProxy
     {
         // finalise our state on disk, including renaming
         protected void doPrepare()
         {
             iwriter.prepareToCommit();
+            if (clusteringFilterFile != null)
+                clusteringFilterFile.prepareToCommit();
+            if (partitionHashesFile != null)
+                partitionHashesFile.prepareToCommit();
 
             // write sstable statistics
             dataFile.prepareToCommit();
@@ -430,6 +487,10 @@ public class BigTableWriter extends SSTableWriter
         {
             accumulate = dataFile.commit(accumulate);
             accumulate = iwriter.commit(accumulate);
+            if (clusteringFilterFile != null)
+                accumulate = clusteringFilterFile.commit(accumulate);
+            if (partitionHashesFile != null)
+                accumulate = partitionHashesFile.commit(accumulate);
             return accumulate;
         }
 
@@ -443,6 +504,10 @@ public class BigTableWriter extends SSTableWriter
         protected Throwable doAbort(Throwable accumulate)
         {
             accumulate = iwriter.abort(accumulate);
+            if (clusteringFilterFile != null)
+                accumulate = clusteringFilterFile.abort(accumulate);
+            if (partitionHashesFile != null)
+                accumulate = partitionHashesFile.abort(accumulate);
             accumulate = dataFile.abort(accumulate);
             return accumulate;
         }
@@ -494,7 +559,7 @@ public class BigTableWriter extends SSTableWriter
             builder = new FileHandle.Builder(descriptor.filenameFor(Component.PRIMARY_INDEX)).mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap);
             chunkCache.ifPresent(builder::withChunkCache);
             summary = new IndexSummaryBuilder(keyCount, metadata().params.minIndexInterval, Downsampling.BASE_SAMPLING_LEVEL);
-            bf = FilterFactory.getFilter(keyCount, metadata().params.bloomFilterFpChance);
+            bf = FilterFactory.getFilter(keyCount, metadata().params.bloomFilterFpChance, DatabaseDescriptor.useBlockedBloomFilters());
             // register listeners to be alerted when the data files are flushed
             indexFile.setPostFlushListener(() -> summary.markIndexSynced(indexFile.getLastFlushOffset()));
             dataFile.setPostFlushListener(() -> summary.markDataSynced(dataFile.getLastFlushOffset()));
@@ -525,6 +590,7 @@ public class BigTableWriter extends SSTableWriter
                 logger.trace("wrote index entry: {} at {}", indexEntry, indexStart);
 
             summary.maybeAddEntry(key, indexStart, indexEnd, dataEnd);
+            onIndexEntryWritten(key, indexStart);
         }
 
         /**
@@ -539,7 +605,7 @@ public class BigTableWriter extends SSTableWriter
                      DataOutputStreamPlus stream = new BufferedDataOutputStreamPlus(fos))
                 {
                     // bloom filter
-                    BloomFilterSerializer.serialize((BloomFilter) bf, stream);
+                    BloomFilterSerializer.serialize(bf, stream);
                     stream.flush();
                     SyncUtil.sync(fos);
                 }
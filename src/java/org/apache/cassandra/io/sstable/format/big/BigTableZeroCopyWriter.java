@@ -73,7 +73,10 @@ public class BigTableZeroCopyWriter extends SSTable implements SSTableMultiWrite
                         Component.COMPRESSION_INFO,
                         Component.FILTER,
                         Component.DIGEST,
-                        Component.CRC);
+                        Component.CRC,
+                        Component.PARTITION_INDEX,
+                        Component.CLUSTERING_FILTER,
+                        Component.PARTITION_HASHES);
 
     public BigTableZeroCopyWriter(Descriptor descriptor,
                                   TableMetadataRef metadata,
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+import org.apache.cassandra.utils.concurrent.Ref;
+
+/**
+ * An on-disk trie mapping the byte-comparable representation of partition keys to the position of their entry in
+ * the primary index. Lookups walk the file directly (it is memory-mapped with the index access mode), without
+ * deserializing anything but the nodes on the path of the key.
+ *
+ * The file is a sequence of nodes, each starting with a header byte whose high bits give the node type and whose
+ * low bits give the width in bytes of the numbers stored in the node:
+ * <ul>
+ *   <li>leaf: the payload, a position in the primary index;</li>
+ *   <li>branch: the number of children minus one, the transition bytes of the children in increasing order, then
+ *       the distance back from the node to each child.</li>
+ * </ul>
+ * The last 8 bytes of the file hold the position of the root node, or -1 if the index is empty.
+ *
+ * Only the prefixes that distinguish each key from its neighbours are stored (see {@link PartitionIndexBuilder}),
+ * so the index cannot tell if a key is present; it gives a position from which to scan the primary index instead.
+ */
+public class PartitionIndex implements Closeable
+{
+    static final int LEAF = 0x00;
+    static final int BRANCH = 0x10;
+    private static final int TYPE_MASK = 0xF0;
+    private static final int WIDTH_MASK = 0x0F;
+
+    private final FileHandle fh;
+    private final long root;
+
+    // the cursors of finished lookups, reused by the next ones so that lookups don't allocate
+    private final Queue<Cursor> cursors = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A reader of the file and a buffer for the transitions of a node, used by one lookup at a time.
+     */
+    private static class Cursor
+    {
+        final RandomAccessReader reader;
+        final byte[] transitions = new byte[256];
+
+        Cursor(RandomAccessReader reader)
+        {
+            this.reader = reader;
+        }
+    }
+
+    public PartitionIndex(FileHandle fh) throws IOException
+    {
+        this.fh = fh;
+        try (RandomAccessReader reader = fh.createReader())
+        {
+            reader.seek(reader.length() - Long.BYTES);
+            this.root = reader.readLong();
+        }
+    }
+
+    /**
+     * Returns the payload of the greatest key whose stored prefix is less than or equal to the given key, or -1 if
+     * there is no such key.
+     *
+     * If the stored prefix of the returned key is a prefix of {@code key}, that key may be greater than {@code key};
+     * no key before it can then be greater than or equal to {@code key}. In all cases, the first key greater than or
+     * equal to {@code key}, if any, is thus found by scanning the primary index from the returned position.
+     */
+    public long floor(ByteComparable key) throws IOException
+    {
+        if (root < 0)
+            return -1;
+
+        Cursor cursor = cursors.poll();
+        if (cursor == null)
+            cursor = new Cursor(fh.createReader());
+        try
+        {
+            return floor(cursor.reader, cursor.transitions, key);
+        }
+        finally
+        {
+            cursors.offer(cursor);
+        }
+    }
+
+    private long floor(RandomAccessReader reader, byte[] transitions, ByteComparable key) throws IOException
+    {
+        ByteSource source = key.asComparableBytes();
+        long lesser = -1;
+        long node = root;
+        while (true)
+        {
+            reader.seek(node);
+            int header = reader.readUnsignedByte();
+            int width = header & WIDTH_MASK;
+            if ((header & TYPE_MASK) == LEAF)
+                return readSized(reader, width);
+
+            int next = source.next();
+            if (next == ByteSource.END_OF_STREAM)
+                break; // all keys below this node are greater than the key
+
+            int count = reader.readUnsignedByte() + 1;
+            reader.readFully(transitions, 0, count);
+            int index = search(transitions, count, next);
+            int lesserIndex = index >= 0 ? index - 1 : -index - 2;
+            if (lesserIndex >= 0)
+                lesser = child(reader, node, count, width, lesserIndex);
+            if (index < 0)
+                break;
+            node = child(reader, node, count, width, index);
+        }
+
+        return lesser < 0 ? -1 : lastPayload(reader, lesser);
+    }
+
+    private static int search(byte[] transitions, int count, int transition)
+    {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = Integer.compare(transitions[mid] & 0xFF, transition);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private static long child(RandomAccessReader reader, long node, int count, int width, int index) throws IOException
+    {
+        reader.seek(node + 2 + count + (long) index * width);
+        return node - readSized(reader, width);
+    }
+
+    private static long lastPayload(RandomAccessReader reader, long node) throws IOException
+    {
+        while (true)
+        {
+            reader.seek(node);
+            int header = reader.readUnsignedByte();
+            int width = header & WIDTH_MASK;
+            if ((header & TYPE_MASK) == LEAF)
+                return readSized(reader, width);
+
+            int count = reader.readUnsignedByte() + 1;
+            node = child(reader, node, count, width, count - 1);
+        }
+    }
+
+    static int widthOf(long value)
+    {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / 8);
+    }
+
+    static void writeSized(DataOutputPlus out, long value, int width) throws IOException
+    {
+        for (int shift = (width - 1) * 8; shift >= 0; shift -= 8)
+            out.writeByte((int) (value >>> shift));
+    }
+
+    private static long readSized(RandomAccessReader reader, int width) throws IOException
+    {
+        long value = 0;
+        for (int i = 0; i < width; ++i)
+            value = (value << 8) | reader.readUnsignedByte();
+        return value;
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        fh.addTo(identities);
+    }
+
+    public void close()
+    {
+        Cursor cursor;
+        while ((cursor = cursors.poll()) != null)
+            cursor.reader.close();
+        fh.close();
+    }
+}
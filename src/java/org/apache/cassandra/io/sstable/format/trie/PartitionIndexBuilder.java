@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+
+/**
+ * Writes the on-disk trie of a {@link PartitionIndex} from keys given in increasing order.
+ *
+ * Only the shortest prefix that distinguishes a key from its neighbours is stored, which is enough to find the
+ * floor of any key (see {@link PartitionIndex#floor}). Each key is held back until the next one is known to determine
+ * that prefix, and nodes are written as soon as no further key can add children to them; a node is thus always
+ * written after its children, and the root last, followed by a footer holding the root's position.
+ */
+public class PartitionIndexBuilder
+{
+    private final SequentialWriter writer;
+
+    // The nodes on the path of the last added prefix; the last child of each is the next node in the list.
+    private final List<Node> path = new ArrayList<>();
+    private int depth = 0;
+
+    private byte[] pendingKey;
+    private long pendingPayload;
+    private int pendingCommonPrefix;
+
+    public PartitionIndexBuilder(SequentialWriter writer)
+    {
+        this.writer = writer;
+        path.add(new Node());
+    }
+
+    /**
+     * Adds a key with the given payload, which must be non-negative. Keys must be added in increasing order, and
+     * none of them may be a prefix of another.
+     */
+    public void addEntry(ByteComparable key, long payload) throws IOException
+    {
+        assert payload >= 0;
+        byte[] bytes = ByteComparable.toArray(key);
+        if (pendingKey != null)
+        {
+            int common = commonPrefixLength(pendingKey, bytes);
+            assert common < pendingKey.length && common < bytes.length && (pendingKey[common] & 0xFF) < (bytes[common] & 0xFF)
+                 : "Keys must be added in increasing order and not be prefixes of one another";
+            add(pendingKey, Math.max(pendingCommonPrefix, common) + 1, pendingCommonPrefix, pendingPayload);
+            pendingCommonPrefix = common;
+        }
+        pendingKey = bytes;
+        pendingPayload = payload;
+    }
+
+    /**
+     * Writes the remaining nodes and the footer. No entries can be added after this.
+     */
+    public void complete() throws IOException
+    {
+        if (pendingKey != null)
+            add(pendingKey, pendingCommonPrefix + 1, pendingCommonPrefix, pendingPayload);
+        pendingKey = null;
+
+        finishDeeperThan(0);
+        Node root = path.get(0);
+        writer.writeLong(root.count > 0 ? root.write(writer) : -1);
+    }
+
+    private static int commonPrefixLength(byte[] left, byte[] right)
+    {
+        int limit = Math.min(left.length, right.length);
+        int i = 0;
+        while (i < limit && left[i] == right[i])
+            ++i;
+        return i;
+    }
+
+    /**
+     * Adds the first {@code length} bytes of {@code key} to the trie, where {@code common} is the length of the
+     * prefix they share with the previously added ones.
+     */
+    private void add(byte[] key, int length, int common, long payload) throws IOException
+    {
+        finishDeeperThan(common);
+        for (int d = common; d < length; ++d)
+        {
+            path.get(d).addTransition(key[d]);
+            if (path.size() == d + 1)
+                path.add(new Node());
+            else
+                path.get(d + 1).reset();
+        }
+        path.get(length).payload = payload;
+        depth = length;
+    }
+
+    private void finishDeeperThan(int newDepth) throws IOException
+    {
+        for (; depth > newDepth; --depth)
+            path.get(depth - 1).setLastChild(path.get(depth).write(writer));
+    }
+
+    private static class Node
+    {
+        final byte[] transitions = new byte[256];
+        final long[] children = new long[256];
+        int count = 0;
+        long payload = -1;
+
+        void reset()
+        {
+            count = 0;
+            payload = -1;
+        }
+
+        void addTransition(byte transition)
+        {
+            transitions[count] = transition;
+            children[count] = -1;
+            ++count;
+        }
+
+        void setLastChild(long position)
+        {
+            children[count - 1] = position;
+        }
+
+        long write(SequentialWriter out) throws IOException
+        {
+            long position = out.position();
+            if (count == 0)
+            {
+                int width = PartitionIndex.widthOf(payload);
+                out.writeByte(PartitionIndex.LEAF | width);
+                PartitionIndex.writeSized(out, payload, width);
+                return position;
+            }
+
+            assert payload == -1 : "Keys must not be prefixes of one another";
+            int width = PartitionIndex.widthOf(position - children[0]);
+            out.writeByte(PartitionIndex.BRANCH | width);
+            out.writeByte(count - 1);
+            out.write(transitions, 0, count);
+            for (int i = 0; i < count; ++i)
+                PartitionIndex.writeSized(out, position - children[i], width);
+            return position;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.cassandra.cache.ChunkCache;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.CorruptSSTableException;
+import org.apache.cassandra.io.sstable.format.SSTableReaderBuilder;
+import org.apache.cassandra.io.sstable.format.SSTableReadsListener;
+import org.apache.cassandra.io.sstable.format.big.BigTableReader;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.utils.concurrent.Ref;
+
+/**
+ * Reads sstables of the {@link TrieIndexFormat}, locating partitions in the primary index with the partition index
+ * rather than the index summary. Readers opened early, before the partition index is written, use the summary.
+ */
+public class TrieIndexSSTableReader extends BigTableReader
+{
+    private final PartitionIndex partitionIndex;
+
+    TrieIndexSSTableReader(SSTableReaderBuilder builder)
+    {
+        super(builder);
+        partitionIndex = openReason != OpenReason.EARLY && components.contains(Component.PARTITION_INDEX)
+                         ? openPartitionIndex()
+                         : null;
+    }
+
+    @SuppressWarnings("resource")
+    private PartitionIndex openPartitionIndex()
+    {
+        String path = descriptor.filenameFor(Component.PARTITION_INDEX);
+        FileHandle fh;
+        try (FileHandle.Builder builder = new FileHandle.Builder(path))
+        {
+            fh = builder.mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap)
+                        .withChunkCache(ChunkCache.instance)
+                        .complete();
+        }
+
+        try
+        {
+            return new PartitionIndex(fh);
+        }
+        catch (IOException e)
+        {
+            fh.close();
+            throw new CorruptSSTableException(e, path);
+        }
+    }
+
+    @Override
+    protected RowIndexEntry searchIndex(PartitionPosition key, Operator op, boolean updateCacheAndStats, SSTableReadsListener listener)
+    {
+        if (partitionIndex == null)
+            return super.searchIndex(key, op, updateCacheAndStats, listener);
+
+        long indexPosition;
+        try
+        {
+            indexPosition = partitionIndex.floor(key);
+        }
+        catch (IOException e)
+        {
+            markSuspect();
+            throw new CorruptSSTableException(e, descriptor.filenameFor(Component.PARTITION_INDEX));
+        }
+
+        // The entry found is the only one that can match exactly; when it does not, the next entry is past the key.
+        return scanIndex(key, op, updateCacheAndStats, listener, Math.max(indexPosition, 0), 1);
+    }
+
+    @Override
+    protected List<AutoCloseable> closeables()
+    {
+        return partitionIndex == null ? Collections.emptyList() : Collections.singletonList(partitionIndex);
+    }
+
+    @Override
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        super.addTo(identities);
+        if (partitionIndex != null)
+            partitionIndex.addTo(identities);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.lifecycle.LifecycleNewTracker;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableFlushObserver;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.format.big.BigTableWriter;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.schema.TableMetadataRef;
+
+/**
+ * Writes sstables of the {@link TrieIndexFormat}: the components of the big format, plus the partition index built
+ * as index entries are written. The partition index is completed when the writer is prepared, so readers opened
+ * early do without it.
+ */
+public class TrieIndexSSTableWriter extends BigTableWriter
+{
+    private final SequentialWriter partitionIndexFile;
+    private final PartitionIndexBuilder partitionIndex;
+
+    public TrieIndexSSTableWriter(Descriptor descriptor,
+                                  long keyCount,
+                                  long repairedAt,
+                                  UUID pendingRepair,
+                                  boolean isTransient,
+                                  TableMetadataRef metadata,
+                                  MetadataCollector metadataCollector,
+                                  SerializationHeader header,
+                                  Collection<SSTableFlushObserver> observers,
+                                  LifecycleNewTracker lifecycleNewTracker)
+    {
+        super(descriptor, keyCount, repairedAt, pendingRepair, isTransient, metadata, metadataCollector, header, observers, lifecycleNewTracker);
+        components.add(Component.PARTITION_INDEX);
+        partitionIndexFile = new SequentialWriter(new File(descriptor.filenameFor(Component.PARTITION_INDEX)), writerOption);
+        partitionIndex = new PartitionIndexBuilder(partitionIndexFile);
+    }
+
+    @Override
+    protected void onIndexEntryWritten(DecoratedKey key, long indexPosition)
+    {
+        try
+        {
+            partitionIndex.addEntry(key, indexPosition);
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, partitionIndexFile.getPath());
+        }
+    }
+
+    @Override
+    protected SSTableWriter.TransactionalProxy txnProxy()
+    {
+        return new TransactionalProxy();
+    }
+
+    class TransactionalProxy extends BigTableWriter.TransactionalProxy
+    {
+        @Override
+        protected void doPrepare()
+        {
+            // the partition index must be complete on disk before the final reader is opened
+            try
+            {
+                partitionIndex.complete();
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, partitionIndexFile.getPath());
+            }
+            partitionIndexFile.prepareToCommit();
+            super.doPrepare();
+        }
+
+        @Override
+        protected Throwable doCommit(Throwable accumulate)
+        {
+            accumulate = super.doCommit(accumulate);
+            return partitionIndexFile.commit(accumulate);
+        }
+
+        @Override
+        protected Throwable doAbort(Throwable accumulate)
+        {
+            accumulate = super.doAbort(accumulate);
+            return partitionIndexFile.abort(accumulate);
+        }
+    }
+}
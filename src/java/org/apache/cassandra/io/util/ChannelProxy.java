@@ -24,11 +24,20 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.compress.BufferType;
 import org.apache.cassandra.utils.NativeLibrary;
+import org.apache.cassandra.utils.NoSpamLogger;
 import org.apache.cassandra.utils.concurrent.RefCounted;
 import org.apache.cassandra.utils.concurrent.SharedCloseableImpl;
+import org.apache.cassandra.utils.memory.BufferPool;
+import org.apache.cassandra.utils.memory.BufferPools;
+import org.apache.cassandra.utils.memory.MemoryUtil;
 
 /**
  * A proxy of a FileChannel that:
@@ -36,13 +45,26 @@ import org.apache.cassandra.utils.concurrent.SharedCloseableImpl;
  * - implements reference counting
  * - exports only thread safe FileChannel operations
  * - wraps IO exceptions into runtime exceptions
+ * - optionally reads with direct I/O, bypassing the page cache
  *
  * Tested by RandomAccessReaderTest.
  */
 public final class ChannelProxy extends SharedCloseableImpl
 {
+    private static final Logger logger = LoggerFactory.getLogger(ChannelProxy.class);
+
+    /**
+     * The alignment of the position, length and memory address of direct reads, which must be a multiple of the
+     * logical block size of the device.
+     */
+    public static final int DIRECT_IO_ALIGNMENT = 4096;
+
+    private static final BufferPool bufferPool = BufferPools.forChunkCache();
+
     private final String filePath;
     private final FileChannel channel;
+    // the file descriptor opened for direct reads, or -1 if reads go through the channel
+    private final int directFd;
 
     public static FileChannel openChannel(File file)
     {
@@ -66,12 +88,27 @@ public final class ChannelProxy extends SharedCloseableImpl
         this(file.getPath(), openChannel(file));
     }
 
+    /**
+     * @param direct whether reads should use direct I/O; if the file cannot be opened for direct I/O, e.g. because
+     *               the platform or the file system does not support it, reads go through the page cache
+     */
+    public ChannelProxy(File file, boolean direct)
+    {
+        this(file.getPath(), openChannel(file), direct ? openDirect(file.getPath()) : -1);
+    }
+
     public ChannelProxy(String filePath, FileChannel channel)
     {
-        super(new Cleanup(filePath, channel));
+        this(filePath, channel, -1);
+    }
+
+    private ChannelProxy(String filePath, FileChannel channel, int directFd)
+    {
+        super(new Cleanup(filePath, channel, directFd));
 
         this.filePath = filePath;
         this.channel = channel;
+        this.directFd = directFd;
     }
 
     public ChannelProxy(ChannelProxy copy)
@@ -80,17 +117,29 @@ public final class ChannelProxy extends SharedCloseableImpl
 
         this.filePath = copy.filePath;
         this.channel = copy.channel;
+        this.directFd = copy.directFd;
+    }
+
+    private static int openDirect(String filePath)
+    {
+        int fd = NativeLibrary.tryOpenDirect(filePath);
+        if (fd < 0)
+            NoSpamLogger.log(logger, NoSpamLogger.Level.WARN, 1, TimeUnit.HOURS,
+                             "Unable to open {} for direct I/O, reading through the page cache instead", filePath);
+        return fd;
     }
 
     private final static class Cleanup implements RefCounted.Tidy
     {
         final String filePath;
         final FileChannel channel;
+        final int directFd;
 
-        Cleanup(String filePath, FileChannel channel)
+        Cleanup(String filePath, FileChannel channel, int directFd)
         {
             this.filePath = filePath;
             this.channel = channel;
+            this.directFd = directFd;
         }
 
         public String name()
@@ -108,6 +157,10 @@ public final class ChannelProxy extends SharedCloseableImpl
             {
                 throw new FSReadError(e, filePath);
             }
+            finally
+            {
+                NativeLibrary.tryCloseFD(directFd);
+            }
         }
     }
 
@@ -118,7 +171,7 @@ public final class ChannelProxy extends SharedCloseableImpl
      */
     public final ChannelProxy newChannel()
     {
-        return new ChannelProxy(filePath);
+        return new ChannelProxy(new File(filePath), isDirect());
     }
 
     public ChannelProxy sharedCopy()
@@ -131,10 +184,21 @@ public final class ChannelProxy extends SharedCloseableImpl
         return filePath;
     }
 
+    /**
+     * @return whether reads bypass the page cache
+     */
+    public boolean isDirect()
+    {
+        return directFd >= 0;
+    }
+
     public int read(ByteBuffer buffer, long position)
     {
         try
         {
+            if (directFd >= 0)
+                return readDirect(buffer, position);
+
             // FIXME: consider wrapping in a while loop
             return channel.read(buffer, position);
         }
@@ -144,6 +208,68 @@ public final class ChannelProxy extends SharedCloseableImpl
         }
     }
 
+    /**
+     * Reads with direct I/O. If the requested position, length and memory are aligned, the data is read straight
+     * into the given buffer, otherwise the enclosing aligned region is read into a pooled buffer and the requested
+     * part of it is copied.
+     */
+    private int readDirect(ByteBuffer buffer, long position) throws IOException
+    {
+        int length = buffer.remaining();
+        long start = position & -DIRECT_IO_ALIGNMENT;
+        long end = (position + length + DIRECT_IO_ALIGNMENT - 1) & -DIRECT_IO_ALIGNMENT;
+
+        if (start == position && end == position + length && isAligned(buffer))
+        {
+            int read = readDirectFully(buffer, position);
+            return read == 0 && length > 0 ? -1 : read;
+        }
+
+        int alignedLength = (int) (end - start);
+        ByteBuffer pooled = bufferPool.getAtLeast(alignedLength + DIRECT_IO_ALIGNMENT, BufferType.OFF_HEAP);
+        try
+        {
+            int offset = (int) (-(MemoryUtil.getAddress(pooled) + pooled.position()) & (DIRECT_IO_ALIGNMENT - 1));
+            ByteBuffer aligned = pooled.duplicate();
+            aligned.position(pooled.position() + offset).limit(pooled.position() + offset + alignedLength);
+            aligned = aligned.slice();
+
+            int read = readDirectFully(aligned, start) - (int) (position - start);
+            if (read <= 0)
+                return length > 0 ? -1 : 0;
+
+            aligned.limit((int) (position - start) + Math.min(read, length)).position((int) (position - start));
+            int copied = aligned.remaining();
+            buffer.put(aligned);
+            return copied;
+        }
+        finally
+        {
+            bufferPool.put(pooled);
+        }
+    }
+
+    private int readDirectFully(ByteBuffer buffer, long position) throws IOException
+    {
+        int total = 0;
+        while (buffer.hasRemaining())
+        {
+            int read = NativeLibrary.pread(directFd, buffer, position + total);
+            if (read <= 0)
+                break;
+            total += read;
+            // reads only stop short of an aligned length at the end of the file
+            if ((read & (DIRECT_IO_ALIGNMENT - 1)) != 0)
+                break;
+        }
+        return total;
+    }
+
+    private static boolean isAligned(ByteBuffer buffer)
+    {
+        return buffer.isDirect() && ((MemoryUtil.getAddress(buffer) + buffer.position()) & (DIRECT_IO_ALIGNMENT - 1)) == 0;
+    }
+
     public long transferTo(long position, long count, WritableByteChannel target)
     {
         try
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.io.util;
 
+import java.io.File;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -145,6 +146,19 @@ public class FileHandle extends SharedCloseableImpl
         return new RandomAccessReader(instantiateRebufferer(limiter));
     }
 
+    /**
+     * Create {@link RandomAccessReader} for scanning through a large part of the file once, which does not populate
+     * the chunk cache. Reading from file will be rate limited by given {@link RateLimiter}, if not null.
+     *
+     * @param limiter RateLimiter to use for rate limiting read, or null
+     * @return RandomAccessReader for the file
+     * @see RebuffererFactory#instantiateScanRebufferer()
+     */
+    public RandomAccessReader createScanReader(RateLimiter limiter)
+    {
+        return new RandomAccessReader(instantiateRebufferer(rebuffererFactory.instantiateScanRebufferer(), limiter));
+    }
+
     public FileDataInput createReader(long position)
     {
         RandomAccessReader reader = createReader();
@@ -170,8 +184,11 @@ public class FileHandle extends SharedCloseableImpl
 
     private Rebufferer instantiateRebufferer(RateLimiter limiter)
     {
-        Rebufferer rebufferer = rebuffererFactory.instantiateRebufferer();
+        return instantiateRebufferer(rebuffererFactory.instantiateRebufferer(), limiter);
+    }
 
+    private Rebufferer instantiateRebufferer(Rebufferer rebufferer, RateLimiter limiter)
+    {
         if (limiter != null)
             rebufferer = new LimitingRebufferer(rebufferer, limiter, DiskOptimizationStrategy.MAX_BUFFER_SIZE);
         return rebufferer;
@@ -242,6 +259,7 @@ public class FileHandle extends SharedCloseableImpl
         private BufferType bufferType = BufferType.OFF_HEAP;
 
         private boolean mmapped = false;
+        private boolean directIO = false;
         private boolean compressed = false;
 
         public Builder(String path)
@@ -298,6 +316,19 @@ public class FileHandle extends SharedCloseableImpl
             return this;
         }
 
+        /**
+         * Set whether to read with direct I/O, bypassing the page cache. Ignored if the file is mmapped or if the
+         * channel was provided.
+         *
+         * @param directIO true if using direct I/O
+         * @return this instance
+         */
+        public Builder directIO(boolean directIO)
+        {
+            this.directIO = directIO;
+            return this;
+        }
+
         /**
          * Set the buffer size to use (if appropriate).
          *
@@ -345,7 +376,7 @@ public class FileHandle extends SharedCloseableImpl
             boolean channelOpened = false;
             if (channel == null)
             {
-                channel = new ChannelProxy(path);
+                channel = new ChannelProxy(new File(path), directIO && !mmapped);
                 channelOpened = true;
             }
 
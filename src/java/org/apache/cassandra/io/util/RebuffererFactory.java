@@ -29,4 +29,14 @@ package org.apache.cassandra.io.util;
 public interface RebuffererFactory extends ReaderFileProxy
 {
     Rebufferer instantiateRebufferer();
+
+    /**
+     * Instantiates a rebufferer for a reader that scans through a large part of the file once, e.g. for a range
+     * read, a compaction or a repair validation. Such a rebufferer may use shared caches without populating them, so
+     * that scans do not evict the data of point reads.
+     */
+    default Rebufferer instantiateScanRebufferer()
+    {
+        return instantiateRebufferer();
+    }
 }
@@ -23,6 +23,7 @@ import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.cassandra.io.compress.BufferType;
+import org.apache.cassandra.utils.memory.MemoryUtil;
 import org.jctools.queues.MpmcArrayQueue;
 
 /**
@@ -55,13 +56,29 @@ public class SimpleCachedBufferPool
 
     private final BufferType preferredReusableBufferType;
 
+    /**
+     * Alignment of the memory address of the buffers, or 0 if they need not be aligned.
+     */
+    private final int alignment;
+
     public SimpleCachedBufferPool(int maxBufferPoolSize, int bufferSize, BufferType preferredReusableBufferType)
     {
+        this(maxBufferPoolSize, bufferSize, preferredReusableBufferType, 0);
+    }
+
+    /**
+     * @param alignment the power of two the memory address of the buffers must be a multiple of, for instance to write
+     * them with direct I/O, or 0 if they need not be aligned. Only off-heap buffers can be aligned.
+     */
+    public SimpleCachedBufferPool(int maxBufferPoolSize, int bufferSize, BufferType preferredReusableBufferType, int alignment)
+    {
+        assert alignment == 0 || (preferredReusableBufferType == BufferType.OFF_HEAP && Integer.bitCount(alignment) == 1);
         // We want to use a bounded queue to ensure that we do not pool more buffers than maxBufferPoolSize
         this.bufferPool = new MpmcArrayQueue<>(maxBufferPoolSize);
         this.maxBufferPoolSize = maxBufferPoolSize;
         this.bufferSize = bufferSize;
         this.preferredReusableBufferType = preferredReusableBufferType;
+        this.alignment = alignment;
         this.bufferHolder = new ThreadLocalByteBufferHolder(preferredReusableBufferType);
     }
 
@@ -74,7 +91,14 @@ public class SimpleCachedBufferPool
             buf.clear();
             return buf;
         }
-        return preferredReusableBufferType.allocate(bufferSize);
+        if (alignment == 0)
+            return preferredReusableBufferType.allocate(bufferSize);
+
+        // over-allocate and slice the aligned part, the slice keeps a reference to the allocated buffer
+        ByteBuffer allocated = ByteBuffer.allocateDirect(bufferSize + alignment);
+        int offset = (int) (-MemoryUtil.getAddress(allocated) & (alignment - 1));
+        allocated.position(offset).limit(offset + bufferSize);
+        return allocated.slice();
     }
 
     public ByteBuffer getThreadLocalReusableBuffer(int size)
@@ -92,7 +116,7 @@ public class SimpleCachedBufferPool
         // We use a bounded queue. By consequence if we have reached the maximum size for the buffer pool
         // offer will return false and we know that we can simply get rid of the buffer.
         if (!bufferPool.offer(buffer))
-            FileUtils.clean(buffer);
+            clean(buffer);
     }
 
     /**
@@ -103,11 +127,16 @@ public class SimpleCachedBufferPool
         ByteBuffer buffer = bufferPool.poll();
         while(buffer != null)
         {
-            FileUtils.clean(buffer);
+            clean(buffer);
             buffer = bufferPool.poll();
         }
     }
 
+    private void clean(ByteBuffer buffer)
+    {
+        FileUtils.clean(alignment == 0 ? buffer : (ByteBuffer) MemoryUtil.getAttachment(buffer));
+    }
+
     /**
      * Checks if the number of used buffers has exceeded the maximum number of cached buffers.
      *
@@ -17,9 +17,15 @@
  */
 package org.apache.cassandra.metrics;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nonnull;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.RatioGauge;
 import com.codahale.metrics.Timer;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
@@ -34,6 +40,10 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
 {
     /** Latency of misses */
     public final Timer missLatency;
+    /** Total number of chunks evicted from the cache */
+    public final Meter evictions;
+
+    private final ConcurrentMap<String, TableMetrics> tables = new ConcurrentHashMap<>();
 
     /**
      * Create metrics for the provided chunk cache.
@@ -44,6 +54,25 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
     {
         super("ChunkCache", cache);
         missLatency = Metrics.timer(factory.createMetricName("MissLatency"));
+        evictions = Metrics.meter(factory.createMetricName("Evictions"));
+    }
+
+    /**
+     * @return the metrics of the chunks of the given table, which are created on first use
+     */
+    public TableMetrics forTable(String keyspace, String table)
+    {
+        return tables.computeIfAbsent(keyspace + '.' + table, TableMetrics::new);
+    }
+
+    /**
+     * Unregisters the metrics of the given table, if any.
+     */
+    public void releaseTable(String keyspace, String table)
+    {
+        TableMetrics metrics = tables.remove(keyspace + '.' + table);
+        if (metrics != null)
+            metrics.release();
     }
 
     @Override
@@ -74,6 +103,7 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
     @Override
     public void recordEviction()
     {
+        evictions.mark();
     }
 
     @Nonnull
@@ -82,4 +112,55 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
     {
         return new CacheStats(hits.getCount(), misses.getCount(), missLatency.getCount(), 0L, missLatency.getCount(), 0L, 0L);
     }
+
+    /**
+     * Chunk cache metrics of a single table, with the scope {@code <keyspace>.<table>}.
+     */
+    public static class TableMetrics
+    {
+        /** Number of chunk requests of the table */
+        public final Meter requests;
+        /** Number of chunk requests of the table that were not served from the cache */
+        public final Meter misses;
+        /** Number of chunks of the table evicted from the cache */
+        public final Meter evictions;
+        /** Total size of the cached chunks of the table, in bytes */
+        public final Gauge<Long> size;
+        /** All time hit rate of the table */
+        public final Gauge<Double> hitRate;
+
+        private final LongAdder cachedBytes = new LongAdder();
+        private final MetricNameFactory factory;
+
+        private TableMetrics(String scope)
+        {
+            factory = new DefaultNameFactory("ChunkCache", scope);
+            requests = Metrics.meter(factory.createMetricName("Requests"));
+            misses = Metrics.meter(factory.createMetricName("Misses"));
+            evictions = Metrics.meter(factory.createMetricName("Evictions"));
+            size = Metrics.register(factory.createMetricName("Size"), cachedBytes::sum);
+            hitRate = Metrics.register(factory.createMetricName("HitRate"), new RatioGauge()
+            {
+                @Override
+                protected Ratio getRatio()
+                {
+                    return Ratio.of(requests.getCount() - misses.getCount(), requests.getCount());
+                }
+            });
+        }
+
+        public void addCachedBytes(long bytes)
+        {
+            cachedBytes.add(bytes);
+        }
+
+        private void release()
+        {
+            Metrics.remove(factory.createMetricName("Requests"));
+            Metrics.remove(factory.createMetricName("Misses"));
+            Metrics.remove(factory.createMetricName("Evictions"));
+            Metrics.remove(factory.createMetricName("Size"));
+            Metrics.remove(factory.createMetricName("HitRate"));
+        }
+    }
 }
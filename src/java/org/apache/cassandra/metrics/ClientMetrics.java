@@ -19,22 +19,24 @@
 package org.apache.cassandra.metrics;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Timer;
 import org.apache.cassandra.transport.*;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
 public final class ClientMetrics
 {
-    public static final ClientMetrics instance = new ClientMetrics();
-
     private static final MetricNameFactory factory = new DefaultNameFactory("Client");
 
+    public static final ClientMetrics instance = new ClientMetrics();
+
     private volatile boolean initialized = false;
     private Collection<Server> servers = Collections.emptyList();
 
@@ -47,8 +49,21 @@ public final class ClientMetrics
     
     private Meter requestDiscarded;
 
+    // the responses written and flushed to the client connections by a run of an event loop's flusher, and the time
+    // it took to write and flush them
+    private final Histogram flushBatchSize;
+    private final Timer flushLatency;
+
+    // the reads run on the event loop that received them, and those of them that took too long to be run there again
+    private final Meter inlineRequests;
+    private final Meter slowInlineRequests;
+
     private ClientMetrics()
     {
+        flushBatchSize = Metrics.histogram(factory.createMetricName("FlushBatchSize"), false);
+        flushLatency = Metrics.timer(factory.createMetricName("FlushLatency"));
+        inlineRequests = Metrics.meter(factory.createMetricName("InlineRequests"));
+        slowInlineRequests = Metrics.meter(factory.createMetricName("SlowInlineRequests"));
     }
 
     public void markAuthSuccess()
@@ -66,6 +81,19 @@ public final class ClientMetrics
 
     public void markRequestDiscarded() { requestDiscarded.mark(); }
 
+    public void recordFlush(int batchSize, long latencyNanos)
+    {
+        flushBatchSize.update(batchSize);
+        flushLatency.update(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void markInlineRequest(boolean slow)
+    {
+        inlineRequests.mark();
+        if (slow)
+            slowInlineRequests.mark();
+    }
+
     public List<ConnectedClient> allConnectedClients()
     {
         List<ConnectedClient> clients = new ArrayList<>();
@@ -17,7 +17,10 @@
  */
 package org.apache.cassandra.metrics;
 
+import java.util.concurrent.TimeUnit;
+
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import org.apache.cassandra.db.commitlog.AbstractCommitLogService;
@@ -38,18 +41,32 @@ public class CommitLogMetrics
     public Gauge<Long> pendingTasks;
     /** Current size used by all the commit log segments */
     public Gauge<Long> totalCommitLogSize;
+    /** Time between the starts of syncs to disk, in microseconds, unless a sync is requested earlier */
+    public Gauge<Long> syncWindow;
     /** Time spent waiting for a CLS to be allocated - under normal conditions this should be zero */
     public final Timer waitingOnSegmentAllocation;
     /** The time spent waiting on CL sync; for Periodic this is only occurs when the sync is lagging its sync interval */
     public final Timer waitingOnCommit;
     /** Number and rate of oversized mutations */
     public final Meter oversizedMutations;
+    /** Number of writes acknowledged by each sync to disk, in adaptive mode */
+    public final Histogram syncBatchSize;
+    /** Number and rate of bytes of mutations replayed at startup */
+    public final Meter replayedBytes;
+    /** Number and rate of mutations applied by the replay at startup */
+    public final Meter replayedMutations;
+    /** Time spent replaying the commit log, until all the replayed mutations are applied */
+    public final Timer replayTime;
 
     public CommitLogMetrics()
     {
         waitingOnSegmentAllocation = Metrics.timer(factory.createMetricName("WaitingOnSegmentAllocation"));
         waitingOnCommit = Metrics.timer(factory.createMetricName("WaitingOnCommit"));
         oversizedMutations = Metrics.meter(factory.createMetricName("OverSizedMutations"));
+        syncBatchSize = Metrics.histogram(factory.createMetricName("SyncBatchSize"), true);
+        replayedBytes = Metrics.meter(factory.createMetricName("ReplayedBytes"));
+        replayedMutations = Metrics.meter(factory.createMetricName("ReplayedMutations"));
+        replayTime = Metrics.timer(factory.createMetricName("ReplayTime"));
     }
 
     public void attach(final AbstractCommitLogService service, final AbstractCommitLogSegmentManager segmentManager)
@@ -75,5 +92,12 @@ public class CommitLogMetrics
                 return segmentManager.onDiskSize();
             }
         });
+        syncWindow = Metrics.register(factory.createMetricName("SyncWindow"), new Gauge<Long>()
+        {
+            public Long getValue()
+            {
+                return TimeUnit.NANOSECONDS.toMicros(service.getSyncWindowNanos());
+            }
+        });
     }
 }
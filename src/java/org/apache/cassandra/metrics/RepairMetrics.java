@@ -19,6 +19,7 @@
 package org.apache.cassandra.metrics;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
@@ -26,6 +27,16 @@ public class RepairMetrics
 {
     public static final String TYPE_NAME = "Repair";
     public static final Counter previewFailures = Metrics.counter(DefaultNameFactory.createMetricName(TYPE_NAME, "PreviewFailures", null));
+    /** Throughput of each validation of a repair session, in bytes of sstables per second */
+    public static final Histogram validationBytesPerSecond = Metrics.histogram(DefaultNameFactory.createMetricName(TYPE_NAME, "ValidationBytesPerSecond", null), false);
+    /** Throughput of each validation of a repair session, in partitions per second */
+    public static final Histogram validationPartitionsPerSecond = Metrics.histogram(DefaultNameFactory.createMetricName(TYPE_NAME, "ValidationPartitionsPerSecond", null), false);
+    /** Number of token ranges of validations hashed concurrently, see concurrent_validation_subranges */
+    public static final Counter validationSubRanges = Metrics.counter(DefaultNameFactory.createMetricName(TYPE_NAME, "ValidationSubRanges", null));
+    /** Number of partitions repairs sent as mutations rather than streamed, see repair_row_level_sync_threshold_in_kb */
+    public static final Counter rowLevelSyncPartitions = Metrics.counter(DefaultNameFactory.createMetricName(TYPE_NAME, "RowLevelSyncPartitions", null));
+    /** Number of syncs row by row that failed, and streamed their ranges instead */
+    public static final Counter rowLevelSyncFallbacks = Metrics.counter(DefaultNameFactory.createMetricName(TYPE_NAME, "RowLevelSyncFallbacks", null));
 
     public static void init()
     {
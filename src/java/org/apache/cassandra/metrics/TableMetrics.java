@@ -140,6 +140,8 @@ public class TableMetrics
     public final Gauge<Long> bloomFilterDiskSpaceUsed;
     /** Off heap memory used by bloom filter */
     public final Gauge<Long> bloomFilterOffHeapMemoryUsed;
+    /** Off heap memory used by clustering range filters */
+    public final Gauge<Long> clusteringFilterOffHeapMemoryUsed;
     /** Off heap memory used by index summary */
     public final Gauge<Long> indexSummaryOffHeapMemoryUsed;
     /** Off heap memory used by compression meta data*/
@@ -778,6 +780,16 @@ public class TableMetrics
                 return total;
             }
         });
+        clusteringFilterOffHeapMemoryUsed = createTableGauge("ClusteringFilterOffHeapMemoryUsed", new Gauge<Long>()
+        {
+            public Long getValue()
+            {
+                long total = 0;
+                for (SSTableReader sst : cfs.getSSTables(SSTableSet.LIVE))
+                    total += sst.getClusteringFilterOffHeapSize();
+                return total;
+            }
+        });
         indexSummaryOffHeapMemoryUsed = createTableGauge("IndexSummaryOffHeapMemoryUsed", new Gauge<Long>()
         {
             public Long getValue()
@@ -176,20 +176,35 @@ public class AsyncStreamingOutputPlus extends AsyncChannelOutputPlus
      * the {@link FileRegion}(zero-copy) or {@link ByteBuffer}(ssl) is flushed to the network.
      */
     public long writeFileToChannel(FileChannel file, StreamRateLimiter limiter) throws IOException
+    {
+        return writeFileToChannel(file, 0, file.size(), limiter);
+    }
+
+    /**
+     * Writes the {@code length} bytes of the file channel starting at {@code start} to stream, as
+     * {@link #writeFileToChannel(FileChannel, StreamRateLimiter)} writes all of them.
+     * <p>
+     * This method takes ownership of the provided {@link FileChannel}.
+     */
+    public long writeFileToChannel(FileChannel file, long start, long length, StreamRateLimiter limiter) throws IOException
     {
         if (channel.pipeline().get(SslHandler.class) != null)
             // each batch is loaded into ByteBuffer, 64kb is more BufferPool friendly.
-            return writeFileToChannel(file, limiter, 1 << 16);
+            return writeFileToChannel(file, start, length, limiter, 1 << 16);
         else
             // write files in 1MiB chunks, since there may be blocking work performed to fetch it from disk,
             // the data is never brought in process and is gated by the wire anyway
-            return writeFileToChannelZeroCopy(file, limiter, 1 << 20, 1 << 20, 2 << 20);
+            return writeFileToChannelZeroCopy(file, start, length, limiter, 1 << 20, 1 << 20, 2 << 20);
     }
 
     @VisibleForTesting
     long writeFileToChannel(FileChannel fc, StreamRateLimiter limiter, int batchSize) throws IOException
     {
-        final long length = fc.size();
+        return writeFileToChannel(fc, 0, fc.size(), limiter, batchSize);
+    }
+
+    private long writeFileToChannel(FileChannel fc, long start, long length, StreamRateLimiter limiter, int batchSize) throws IOException
+    {
         long bytesTransferred = 0;
 
         try
@@ -197,7 +212,7 @@ public class AsyncStreamingOutputPlus extends AsyncChannelOutputPlus
             while (bytesTransferred < length)
             {
                 int toWrite = (int) min(batchSize, length - bytesTransferred);
-                final long position = bytesTransferred;
+                final long position = start + bytesTransferred;
 
                 writeToChannel(bufferSupplier -> {
                     ByteBuffer outBuffer = bufferSupplier.get(toWrite);
@@ -226,7 +241,11 @@ public class AsyncStreamingOutputPlus extends AsyncChannelOutputPlus
     @VisibleForTesting
     long writeFileToChannelZeroCopy(FileChannel file, StreamRateLimiter limiter, int batchSize, int lowWaterMark, int highWaterMark) throws IOException
     {
-        final long length = file.size();
+        return writeFileToChannelZeroCopy(file, 0, file.size(), limiter, batchSize, lowWaterMark, highWaterMark);
+    }
+
+    private long writeFileToChannelZeroCopy(FileChannel file, long start, long length, StreamRateLimiter limiter, int batchSize, int lowWaterMark, int highWaterMark) throws IOException
+    {
         long bytesTransferred = 0;
 
         final SharedFileChannel sharedFile = SharedDefaultFileRegion.share(file);
@@ -239,7 +258,7 @@ public class AsyncStreamingOutputPlus extends AsyncChannelOutputPlus
                 limiter.acquire(toWrite);
                 ChannelPromise promise = beginFlush(toWrite, lowWaterMark, highWaterMark);
 
-                SharedDefaultFileRegion fileRegion = new SharedDefaultFileRegion(sharedFile, bytesTransferred, toWrite);
+                SharedDefaultFileRegion fileRegion = new SharedDefaultFileRegion(sharedFile, start + bytesTransferred, toWrite);
                 channel.writeAndFlush(fileRegion, promise);
 
                 if (logger.isTraceEnabled())
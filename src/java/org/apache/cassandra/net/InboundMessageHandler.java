@@ -398,7 +398,7 @@ public class InboundMessageHandler extends AbstractMessageHandler
         if (state != null) state.trace("{} message received from {}", header.verb, header.from);
 
         callbacks.onDispatched(task.size(), header);
-        header.verb.stage.execute(task, ExecutorLocals.create(state));
+        header.verb.stage.executor(task.payload()).execute(task, ExecutorLocals.create(state));
     }
 
     private abstract class ProcessMessage implements Runnable
@@ -451,6 +451,14 @@ public class InboundMessageHandler extends AbstractMessageHandler
         abstract Header header();
         abstract Message provideMessage();
         void releaseResources() {}
+
+        /**
+         * @return the payload of the message if it has been deserialized, or null
+         */
+        Object payload()
+        {
+            return null;
+        }
     }
 
     private class ProcessSmallMessage extends ProcessMessage
@@ -478,6 +486,12 @@ public class InboundMessageHandler extends AbstractMessageHandler
         {
             return message;
         }
+
+        @Override
+        Object payload()
+        {
+            return message.payload;
+        }
     }
 
     private class ProcessLargeMessage extends ProcessMessage
@@ -61,6 +61,10 @@ import org.apache.cassandra.repair.messages.FailSession;
 import org.apache.cassandra.repair.messages.FinalizeCommit;
 import org.apache.cassandra.repair.messages.FinalizePromise;
 import org.apache.cassandra.repair.messages.FinalizePropose;
+import org.apache.cassandra.repair.messages.HashTreeLevelsRequest;
+import org.apache.cassandra.repair.messages.HashTreeLevelsResponse;
+import org.apache.cassandra.repair.messages.PartitionHashesRequest;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse;
 import org.apache.cassandra.repair.messages.PrepareConsistentRequest;
 import org.apache.cassandra.repair.messages.PrepareConsistentResponse;
 import org.apache.cassandra.repair.messages.PrepareMessage;
@@ -163,6 +167,11 @@ public enum Verb
     FAILED_SESSION_MSG     (113, P1, rpcTimeout,      ANTI_ENTROPY,      () -> FailSession.serializer,               () -> RepairMessageVerbHandler.instance,   REPAIR_RSP          ),
     STATUS_RSP             (115, P1, rpcTimeout,      ANTI_ENTROPY,      () -> StatusResponse.serializer,            () -> RepairMessageVerbHandler.instance,   REPAIR_RSP          ),
     STATUS_REQ             (114, P1, rpcTimeout,      ANTI_ENTROPY,      () -> StatusRequest.serializer,             () -> RepairMessageVerbHandler.instance,   REPAIR_RSP          ),
+    LEVELS_VALIDATION_REQ  (116, P1, rpcTimeout,      ANTI_ENTROPY,      () -> ValidationRequest.serializer,         () -> RepairMessageVerbHandler.instance,   REPAIR_RSP          ),
+    HASH_TREE_LEVELS_RSP   (118, P1, rpcTimeout,      REQUEST_RESPONSE,  () -> HashTreeLevelsResponse.serializer,    () -> ResponseVerbHandler.instance                             ),
+    HASH_TREE_LEVELS_REQ   (117, P1, rpcTimeout,      ANTI_ENTROPY,      () -> HashTreeLevelsRequest.serializer,     () -> RepairMessageVerbHandler.instance,   HASH_TREE_LEVELS_RSP),
+    PARTITION_HASHES_RSP   (120, P1, longTimeout,     REQUEST_RESPONSE,  () -> PartitionHashesResponse.serializer,   () -> ResponseVerbHandler.instance                             ),
+    PARTITION_HASHES_REQ   (119, P1, longTimeout,     ANTI_ENTROPY,      () -> PartitionHashesRequest.serializer,    () -> RepairMessageVerbHandler.instance,   PARTITION_HASHES_RSP),
 
     REPLICATION_DONE_RSP   (82,  P0, rpcTimeout,      MISC,              () -> NoPayload.serializer,                 () -> ResponseVerbHandler.instance                             ),
     REPLICATION_DONE_REQ   (22,  P0, rpcTimeout,      MISC,              () -> NoPayload.serializer,                 () -> ReplicationDoneVerbHandler.instance, REPLICATION_DONE_RSP),
@@ -183,7 +192,7 @@ public enum Verb
     @Deprecated
     INTERNAL_RSP           (23,  P1, rpcTimeout,      INTERNAL_RESPONSE, () -> null,                                 () -> ResponseVerbHandler.instance                             ),
 
-    // largest used ID: 116
+    // largest used ID: 120
 
     // CUSTOM VERBS
     UNUSED_CUSTOM_VERB     (CUSTOM,
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.RequestFailureReason;
+import org.apache.cassandra.locator.InetAddressAndPort;
+import org.apache.cassandra.net.Message;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.net.RequestCallback;
+import org.apache.cassandra.repair.messages.HashTreeLevelsRequest;
+import org.apache.cassandra.repair.messages.HashTreeLevelsResponse;
+import org.apache.cassandra.repair.messages.PartitionHashesRequest;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse.PartitionHash;
+import org.apache.cassandra.utils.MerkleTree;
+import org.apache.cassandra.utils.MerkleTrees;
+
+import static org.apache.cassandra.net.Verb.HASH_TREE_LEVELS_REQ;
+import static org.apache.cassandra.net.Verb.PARTITION_HASHES_REQ;
+
+/**
+ * Narrows down the ranges the replicas of a hierarchical repair differ on. Their validations only sent the top
+ * {@link #LEVELS_PER_ROUND} levels of their merkle trees, keeping the trees in {@link RetainedTrees}, so the ranges
+ * these levels differ on are refined in rounds: every replica is sent the ranges it differs on with any other
+ * replica, and responds with the next levels of its trees below each of them, which are compared in turn. A range
+ * is refined as far as the trees go once it is a leaf of the trees, or all the levels below it differ. These ranges
+ * are finally narrowed down to the partitions that differ, from the hashes the replicas compute for the partitions
+ * of these ranges, unless they hold more than {@link #MAX_PARTITIONS_PER_RANGE} partitions.
+ *
+ * A range is only ever narrowed down from the hashes of both replicas, so the ranges that cannot be, because a
+ * replica failed to answer or the trees of the replicas are split differently, are synced whole.
+ */
+public class HashTreeRefinement
+{
+    private static final Logger logger = LoggerFactory.getLogger(HashTreeRefinement.class);
+
+    /** The number of levels of the merkle trees sent for each range, by the validations and then by every round. */
+    public static final int LEVELS_PER_ROUND = Integer.getInteger("cassandra.repair.hash_tree_levels_per_round", 8);
+    /** The maximum number of partitions of a range refined from the hashes of its partitions, 0 to not refine any. */
+    static final int MAX_PARTITIONS_PER_RANGE = Integer.getInteger("cassandra.repair.max_partition_hashes_per_range", 1024);
+
+    /**
+     * Sends the requests of a refinement to the replicas.
+     */
+    @VisibleForTesting
+    interface Replicas
+    {
+        /**
+         * @return the response of the replica, or a failed response if it could not be obtained
+         */
+        ListenableFuture<HashTreeLevelsResponse> levels(InetAddressAndPort endpoint, HashTreeLevelsRequest request);
+
+        /**
+         * @return the response of the replica, or a failed response if it could not be obtained
+         */
+        ListenableFuture<PartitionHashesResponse> partitionHashes(InetAddressAndPort endpoint, PartitionHashesRequest request);
+    }
+
+    private static final Replicas MESSAGING = new Replicas()
+    {
+        public ListenableFuture<HashTreeLevelsResponse> levels(InetAddressAndPort endpoint, HashTreeLevelsRequest request)
+        {
+            return send(Message.out(HASH_TREE_LEVELS_REQ, request), endpoint, new HashTreeLevelsResponse(null));
+        }
+
+        public ListenableFuture<PartitionHashesResponse> partitionHashes(InetAddressAndPort endpoint, PartitionHashesRequest request)
+        {
+            return send(Message.out(PARTITION_HASHES_REQ, request), endpoint, new PartitionHashesResponse(null));
+        }
+
+        private <T> ListenableFuture<T> send(Message<?> request, InetAddressAndPort endpoint, T failed)
+        {
+            SettableFuture<T> response = SettableFuture.create();
+            MessagingService.instance().sendWithCallback(request, endpoint, new RequestCallback<T>()
+            {
+                public void onResponse(Message<T> msg)
+                {
+                    response.set(msg.payload);
+                }
+
+                public boolean invokeOnFailure()
+                {
+                    return true;
+                }
+
+                public void onFailure(InetAddressAndPort from, RequestFailureReason failureReason)
+                {
+                    logger.warn("{} failed to send {} ({}), syncing the ranges it was asked for whole", from, request.verb(), failureReason);
+                    response.set(failed);
+                }
+            });
+            return response;
+        }
+    };
+
+    private final RepairJobDesc desc;
+    private final int nowInSec;
+    private final Replicas replicas;
+    private final IPartitioner partitioner;
+    private final List<Differences> pairs = new ArrayList<>();
+    private int rounds;
+
+    /**
+     * The ranges two replicas differ on.
+     */
+    private static class Differences
+    {
+        private final InetAddressAndPort left;
+        private final InetAddressAndPort right;
+        // the ranges to refine from the next levels of the trees
+        private List<Range<Token>> pending;
+        // the ranges refined as far as the trees go
+        private List<Range<Token>> refined = new ArrayList<>();
+
+        private Differences(InetAddressAndPort left, InetAddressAndPort right, List<Range<Token>> pending)
+        {
+            this.left = left;
+            this.right = right;
+            this.pending = pending;
+        }
+
+        private void refineLevels(Map<Range<Token>, MerkleTree> leftSubtrees, Map<Range<Token>, MerkleTree> rightSubtrees)
+        {
+            List<Range<Token>> next = new ArrayList<>();
+            for (Range<Token> range : pending)
+            {
+                MerkleTree leftSubtree = leftSubtrees.get(range);
+                MerkleTree rightSubtree = rightSubtrees.get(range);
+                if (leftSubtree == null || rightSubtree == null)
+                {
+                    refined.add(range);
+                    continue;
+                }
+
+                List<MerkleTree.TreeRange> difference = MerkleTree.difference(leftSubtree, rightSubtree);
+                if (difference.size() == 1 && difference.get(0).equals(range))
+                    refined.add(range);
+                else
+                    next.addAll(difference);
+            }
+            pending = next;
+        }
+
+        private void refinePartitions(Map<Range<Token>, List<PartitionHash>> leftHashes, Map<Range<Token>, List<PartitionHash>> rightHashes, IPartitioner partitioner)
+        {
+            List<Range<Token>> next = new ArrayList<>();
+            for (Range<Token> range : refined)
+            {
+                List<PartitionHash> leftRange = containing(leftHashes, range);
+                List<PartitionHash> rightRange = containing(rightHashes, range);
+                if (leftRange == null || rightRange == null)
+                    next.add(range);
+                else
+                    next.addAll(partitionDifferences(range, leftRange, rightRange, partitioner));
+            }
+            refined = next;
+        }
+
+        private static List<PartitionHash> containing(Map<Range<Token>, List<PartitionHash>> hashes, Range<Token> range)
+        {
+            for (Map.Entry<Range<Token>, List<PartitionHash>> entry : hashes.entrySet())
+            {
+                if (entry.getKey().contains(range))
+                    return entry.getValue();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param trees the top levels of the trees of the replicas
+     * @param nowInSec the time of the validations
+     */
+    public HashTreeRefinement(RepairJobDesc desc, List<TreeResponse> trees, int nowInSec)
+    {
+        this(desc, trees, nowInSec, MESSAGING);
+    }
+
+    @VisibleForTesting
+    HashTreeRefinement(RepairJobDesc desc, List<TreeResponse> trees, int nowInSec, Replicas replicas)
+    {
+        this.desc = desc;
+        this.nowInSec = nowInSec;
+        this.replicas = replicas;
+        this.partitioner = trees.get(0).trees.partitioner();
+        for (int i = 0; i < trees.size() - 1; i++)
+        {
+            for (int j = i + 1; j < trees.size(); j++)
+            {
+                TreeResponse r1 = trees.get(i);
+                TreeResponse r2 = trees.get(j);
+                pairs.add(new Differences(r1.endpoint, r2.endpoint, MerkleTrees.difference(r1.trees, r2.trees)));
+            }
+        }
+    }
+
+    /**
+     * @return a future completed with this refinement once the differences between the replicas are refined
+     */
+    public ListenableFuture<HashTreeRefinement> refine(Executor executor)
+    {
+        long startedAt = System.currentTimeMillis();
+        ListenableFuture<?> refined = Futures.transformAsync(refineLevels(executor), ignored -> refinePartitions(executor), executor);
+        return Futures.transform(refined, ignored ->
+        {
+            logger.info("Refined the differences of {} pairs of replicas in {} rounds for {} (took: {}ms)",
+                        pairs.size(), rounds, desc, System.currentTimeMillis() - startedAt);
+            return this;
+        }, executor);
+    }
+
+    /**
+     * @return the ranges the given replicas differ on, once refined
+     */
+    public List<Range<Token>> differences(InetAddressAndPort endpoint1, InetAddressAndPort endpoint2)
+    {
+        for (Differences pair : pairs)
+        {
+            if ((pair.left.equals(endpoint1) && pair.right.equals(endpoint2)) || (pair.left.equals(endpoint2) && pair.right.equals(endpoint1)))
+                return pair.refined;
+        }
+        throw new IllegalArgumentException("No differences between " + endpoint1 + " and " + endpoint2);
+    }
+
+    private ListenableFuture<?> refineLevels(Executor executor)
+    {
+        Map<InetAddressAndPort, List<Range<Token>>> requested = requestedRanges(pair -> pair.pending);
+        if (requested.isEmpty())
+            return Futures.immediateFuture(null);
+
+        rounds++;
+        List<ListenableFuture<HashTreeLevelsResponse>> responses = new ArrayList<>(requested.size());
+        for (Map.Entry<InetAddressAndPort, List<Range<Token>>> entry : requested.entrySet())
+            responses.add(replicas.levels(entry.getKey(), new HashTreeLevelsRequest(desc, entry.getValue(), LEVELS_PER_ROUND)));
+
+        return Futures.transformAsync(Futures.successfulAsList(responses), received ->
+        {
+            Map<InetAddressAndPort, Map<Range<Token>, MerkleTree>> subtrees = new HashMap<>();
+            int i = 0;
+            for (Map.Entry<InetAddressAndPort, List<Range<Token>>> entry : requested.entrySet())
+            {
+                HashTreeLevelsResponse response = received.get(i++);
+                Map<Range<Token>, MerkleTree> bySubrange = new HashMap<>();
+                if (response != null && response.success())
+                {
+                    for (int j = 0; j < entry.getValue().size(); j++)
+                        bySubrange.put(entry.getValue().get(j), response.subtrees.get(j));
+                }
+                subtrees.put(entry.getKey(), bySubrange);
+            }
+
+            for (Differences pair : pairs)
+                pair.refineLevels(subtrees.get(pair.left), subtrees.get(pair.right));
+            return refineLevels(executor);
+        }, executor);
+    }
+
+    private ListenableFuture<?> refinePartitions(Executor executor)
+    {
+        if (MAX_PARTITIONS_PER_RANGE <= 0)
+            return Futures.immediateFuture(null);
+
+        // the partitions are read in token order, so the ranges sent must neither wrap nor overlap
+        Map<InetAddressAndPort, List<Range<Token>>> requested = requestedRanges(pair -> pair.refined);
+        if (requested.isEmpty())
+            return Futures.immediateFuture(null);
+        requested.replaceAll((endpoint, ranges) -> Range.normalize(ranges));
+
+        List<ListenableFuture<PartitionHashesResponse>> responses = new ArrayList<>(requested.size());
+        for (Map.Entry<InetAddressAndPort, List<Range<Token>>> entry : requested.entrySet())
+            responses.add(replicas.partitionHashes(entry.getKey(), new PartitionHashesRequest(desc, entry.getValue(), nowInSec, MAX_PARTITIONS_PER_RANGE)));
+
+        return Futures.transform(Futures.successfulAsList(responses), received ->
+        {
+            Map<InetAddressAndPort, Map<Range<Token>, List<PartitionHash>>> hashes = new HashMap<>();
+            int i = 0;
+            for (Map.Entry<InetAddressAndPort, List<Range<Token>>> entry : requested.entrySet())
+            {
+                PartitionHashesResponse response = received.get(i++);
+                Map<Range<Token>, List<PartitionHash>> byRange = new HashMap<>();
+                if (response != null && response.success())
+                {
+                    for (int j = 0; j < entry.getValue().size(); j++)
+                        byRange.put(entry.getValue().get(j), response.ranges.get(j));
+                }
+                hashes.put(entry.getKey(), byRange);
+            }
+
+            for (Differences pair : pairs)
+            {
+                List<Range<Token>> unwrapped = new ArrayList<>(pair.refined.size());
+                for (Range<Token> range : pair.refined)
+                    unwrapped.addAll(range.unwrap());
+                pair.refined = unwrapped;
+                pair.refinePartitions(hashes.get(pair.left), hashes.get(pair.right), partitioner);
+            }
+            return null;
+        }, executor);
+    }
+
+    /**
+     * @return the distinct ranges to send to every replica, from the ranges of the pairs of replicas they are part of
+     */
+    private Map<InetAddressAndPort, List<Range<Token>>> requestedRanges(Function<Differences, List<Range<Token>>> ranges)
+    {
+        Map<InetAddressAndPort, Set<Range<Token>>> requested = new LinkedHashMap<>();
+        for (Differences pair : pairs)
+        {
+            List<Range<Token>> pairRanges = ranges.apply(pair);
+            if (pairRanges.isEmpty())
+                continue;
+            requested.computeIfAbsent(pair.left, endpoint -> new LinkedHashSet<>()).addAll(pairRanges);
+            requested.computeIfAbsent(pair.right, endpoint -> new LinkedHashSet<>()).addAll(pairRanges);
+        }
+
+        Map<InetAddressAndPort, List<Range<Token>>> lists = new LinkedHashMap<>();
+        for (Map.Entry<InetAddressAndPort, Set<Range<Token>>> entry : requested.entrySet())
+            lists.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        return lists;
+    }
+
+    /**
+     * @param range a range that does not wrap
+     * @param left the hashes of the partitions of a replica, in partition order, some of which may not be in the range
+     * @param right the hashes of the partitions of another replica, in partition order
+     * @return the smallest ranges holding all the partitions of the range whose hashes differ between the replicas,
+     * or that only one of them has, merged when adjacent
+     */
+    @VisibleForTesting
+    static List<Range<Token>> partitionDifferences(Range<Token> range, List<PartitionHash> left, List<PartitionHash> right, IPartitioner partitioner)
+    {
+        List<Range<Token>> differences = new ArrayList<>();
+        // the ranges start after the token of the previous partition of either replica, which no other partition has
+        Token bound = range.left;
+        Token last = null;
+        int l = 0;
+        int r = 0;
+        while (l < left.size() || r < right.size())
+        {
+            DecoratedKey leftKey = l < left.size() ? partitioner.decorateKey(left.get(l).key) : null;
+            DecoratedKey rightKey = r < right.size() ? partitioner.decorateKey(right.get(r).key) : null;
+            int cmp = leftKey == null ? 1 : rightKey == null ? -1 : leftKey.compareTo(rightKey);
+            DecoratedKey key = cmp <= 0 ? leftKey : rightKey;
+            boolean differ = cmp != 0 || !Arrays.equals(left.get(l).hash, right.get(r).hash);
+            if (cmp <= 0)
+                l++;
+            if (cmp >= 0)
+                r++;
+
+            Token token = key.getToken();
+            if (!range.contains(token))
+                continue;
+
+            if (last != null && !token.equals(last))
+                bound = last;
+            last = token;
+
+            if (differ)
+                addDifference(differences, new Range<>(bound, token));
+        }
+        return differences;
+    }
+
+    private static void addDifference(List<Range<Token>> differences, Range<Token> difference)
+    {
+        if (!differences.isEmpty())
+        {
+            Range<Token> previous = differences.get(differences.size() - 1);
+            // partitions of the same token
+            if (previous.equals(difference))
+                return;
+
+            if (previous.right.equals(difference.left))
+            {
+                differences.set(differences.size() - 1, new Range<>(previous.left, difference.right));
+                return;
+            }
+        }
+        differences.add(difference);
+    }
+}
@@ -23,6 +23,9 @@ import java.util.UUID;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +33,7 @@ import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.locator.InetAddressAndPort;
 import org.apache.cassandra.locator.RangesAtEndpoint;
+import org.apache.cassandra.metrics.RepairMetrics;
 import org.apache.cassandra.streaming.PreviewKind;
 import org.apache.cassandra.streaming.ProgressInfo;
 import org.apache.cassandra.streaming.StreamEvent;
@@ -43,7 +47,8 @@ import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTrees;
 
 /**
- * LocalSyncTask performs streaming between local(coordinator) node and remote replica.
+ * LocalSyncTask performs streaming between local(coordinator) node and remote replica, or syncs small differences
+ * row by row, see {@link RowLevelSync}.
  */
 public class LocalSyncTask extends SyncTask implements StreamEventHandler
 {
@@ -106,6 +111,34 @@ public class LocalSyncTask extends SyncTask implements StreamEventHandler
     {
         InetAddressAndPort remote = nodePair.peer;
 
+        if (requestRanges && transferRanges && RowLevelSync.shouldSync(desc, rangesToSync, pendingRepair, previewKind))
+        {
+            String message = String.format("Performing row level repair of %d ranges with %s", rangesToSync.size(), remote);
+            logger.info("{} {}", previewKind.logPrefix(desc.sessionId), message);
+            Tracing.traceRepair(message);
+
+            Futures.addCallback(RowLevelSync.sync(desc, remote, rangesToSync), new FutureCallback<Long>()
+            {
+                public void onSuccess(Long partitions)
+                {
+                    String message = String.format("Sync complete using session %s between %s and %s on %s, %d partitions synced row by row",
+                                                   desc.sessionId, nodePair.coordinator, nodePair.peer, desc.columnFamily, partitions);
+                    logger.info("{} {}", previewKind.logPrefix(desc.sessionId), message);
+                    Tracing.traceRepair(message);
+                    set(stat.withSummaries(Collections.emptyList()));
+                    finished();
+                }
+
+                public void onFailure(Throwable t)
+                {
+                    logger.warn("{} Row level repair with {} failed, streaming the ranges instead", previewKind.logPrefix(desc.sessionId), remote, t);
+                    RepairMetrics.rowLevelSyncFallbacks.inc();
+                    createStreamPlan().execute();
+                }
+            }, MoreExecutors.directExecutor());
+            return;
+        }
+
         String message = String.format("Performing streaming repair of %d ranges with %s", rangesToSync.size(), remote);
         logger.info("{} {}", previewKind.logPrefix(desc.sessionId), message);
         Tracing.traceRepair(message);
@@ -18,6 +18,7 @@
 package org.apache.cassandra.repair;
 
 import java.util.*;
+import java.util.function.BiFunction;
 import java.util.function.Predicate;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -37,6 +38,7 @@ import org.apache.cassandra.repair.asymmetric.HostDifferences;
 import org.apache.cassandra.repair.asymmetric.PreferedNodeFilter;
 import org.apache.cassandra.repair.asymmetric.ReduceHelper;
 import org.apache.cassandra.locator.InetAddressAndPort;
+import org.apache.cassandra.net.Verb;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.streaming.PreviewKind;
 import org.apache.cassandra.dht.Range;
@@ -46,6 +48,9 @@ import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTrees;
 import org.apache.cassandra.utils.Pair;
 
+import static org.apache.cassandra.net.Verb.LEVELS_VALIDATION_REQ;
+import static org.apache.cassandra.net.Verb.VALIDATION_REQ;
+
 /**
  * RepairJob runs repair on given ColumnFamily.
  */
@@ -57,6 +62,8 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
     private final RepairJobDesc desc;
     private final RepairParallelism parallelismDegree;
     private final ListeningExecutorService taskExecutor;
+    // the time the validations were requested at
+    private volatile int validationNowInSec;
 
     /**
      * Create repair job to run on specific columnfamily
@@ -142,7 +149,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
 
         // When all validations complete, submit sync tasks
         ListenableFuture<List<SyncStat>> syncResults = Futures.transformAsync(validations,
-                                                                              session.optimiseStreams && !session.pullRepair ? this::optimisedSyncing : this::standardSyncing,
+                                                                              session.hierarchical ? this::hierarchicalSyncing : this::syncing,
                                                                               taskExecutor);
 
         // When all sync complete, set the final result
@@ -180,10 +187,38 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         return session.commonRange.transEndpoints.contains(ep);
     }
 
-    private ListenableFuture<List<SyncStat>> standardSyncing(List<TreeResponse> trees)
+    private ListenableFuture<List<SyncStat>> syncing(List<TreeResponse> trees)
+    {
+        return syncing(trees, RepairJob::treeDifference);
+    }
+
+    private ListenableFuture<List<SyncStat>> syncing(List<TreeResponse> trees, BiFunction<TreeResponse, TreeResponse, List<Range<Token>>> difference)
+    {
+        return session.optimiseStreams && !session.pullRepair ? optimisedSyncing(trees, difference) : standardSyncing(trees, difference);
+    }
+
+    /**
+     * The replicas only sent the top levels of their trees, so the ranges these differ on are refined with the
+     * levels below before being synced, see {@link HashTreeRefinement}.
+     */
+    private ListenableFuture<List<SyncStat>> hierarchicalSyncing(List<TreeResponse> trees)
+    {
+        HashTreeRefinement refinement = new HashTreeRefinement(desc, trees, validationNowInSec);
+        return Futures.transformAsync(refinement.refine(taskExecutor),
+                                      refined -> syncing(trees, (r1, r2) -> refined.differences(r1.endpoint, r2.endpoint)),
+                                      taskExecutor);
+    }
+
+    private static List<Range<Token>> treeDifference(TreeResponse r1, TreeResponse r2)
+    {
+        return MerkleTrees.difference(r1.trees, r2.trees);
+    }
+
+    private ListenableFuture<List<SyncStat>> standardSyncing(List<TreeResponse> trees, BiFunction<TreeResponse, TreeResponse, List<Range<Token>>> difference)
     {
         List<SyncTask> syncTasks = createStandardSyncTasks(desc,
                                                            trees,
+                                                           difference,
                                                            FBUtilities.getLocalAddressAndPort(),
                                                            this::isTransient,
                                                            session.isIncremental,
@@ -199,6 +234,21 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
                                                   boolean isIncremental,
                                                   boolean pullRepair,
                                                   PreviewKind previewKind)
+    {
+        return createStandardSyncTasks(desc, trees, RepairJob::treeDifference, local, isTransient, isIncremental, pullRepair, previewKind);
+    }
+
+    /**
+     * @param difference the ranges two replicas differ on, from their responses
+     */
+    static List<SyncTask> createStandardSyncTasks(RepairJobDesc desc,
+                                                  List<TreeResponse> trees,
+                                                  BiFunction<TreeResponse, TreeResponse, List<Range<Token>>> difference,
+                                                  InetAddressAndPort local,
+                                                  Predicate<InetAddressAndPort> isTransient,
+                                                  boolean isIncremental,
+                                                  boolean pullRepair,
+                                                  PreviewKind previewKind)
     {
         long startedAt = System.currentTimeMillis();
         List<SyncTask> syncTasks = new ArrayList<>();
@@ -214,7 +264,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
                 if (isTransient.test(r1.endpoint) && isTransient.test(r2.endpoint))
                     continue;
 
-                List<Range<Token>> differences = MerkleTrees.difference(r1.trees, r2.trees);
+                List<Range<Token>> differences = difference.apply(r1, r2);
 
                 // Nothing to do
                 if (differences.isEmpty())
@@ -259,10 +309,11 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         return syncTasks;
     }
 
-    private ListenableFuture<List<SyncStat>> optimisedSyncing(List<TreeResponse> trees)
+    private ListenableFuture<List<SyncStat>> optimisedSyncing(List<TreeResponse> trees, BiFunction<TreeResponse, TreeResponse, List<Range<Token>>> difference)
     {
         List<SyncTask> syncTasks = createOptimisedSyncingSyncTasks(desc,
                                                                    trees,
+                                                                   difference,
                                                                    FBUtilities.getLocalAddressAndPort(),
                                                                    this::isTransient,
                                                                    this::getDC,
@@ -294,11 +345,26 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
                                                           Function<InetAddressAndPort, String> getDC,
                                                           boolean isIncremental,
                                                           PreviewKind previewKind)
+    {
+        return createOptimisedSyncingSyncTasks(desc, trees, RepairJob::treeDifference, local, isTransient, getDC, isIncremental, previewKind);
+    }
+
+    /**
+     * @param difference the ranges two replicas differ on, from their responses
+     */
+    static List<SyncTask> createOptimisedSyncingSyncTasks(RepairJobDesc desc,
+                                                          List<TreeResponse> trees,
+                                                          BiFunction<TreeResponse, TreeResponse, List<Range<Token>>> difference,
+                                                          InetAddressAndPort local,
+                                                          Predicate<InetAddressAndPort> isTransient,
+                                                          Function<InetAddressAndPort, String> getDC,
+                                                          boolean isIncremental,
+                                                          PreviewKind previewKind)
     {
         long startedAt = System.currentTimeMillis();
         List<SyncTask> syncTasks = new ArrayList<>();
         // We need to difference all trees one against another
-        DifferenceHolder diffHolder = new DifferenceHolder(trees);
+        DifferenceHolder diffHolder = new DifferenceHolder(trees, difference);
 
         logger.trace("diffs = {}", diffHolder);
         PreferedNodeFilter preferSameDCFilter = (streaming, candidates) ->
@@ -351,6 +417,11 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         return syncTasks;
     }
 
+    private Verb validationVerb()
+    {
+        return session.hierarchical ? LEVELS_VALIDATION_REQ : VALIDATION_REQ;
+    }
+
     private String getDC(InetAddressAndPort address)
     {
         return DatabaseDescriptor.getEndpointSnitch().getDatacenter(address);
@@ -368,10 +439,11 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         logger.info("{} {}", session.previewKind.logPrefix(desc.sessionId), message);
         Tracing.traceRepair(message);
         int nowInSec = getNowInSeconds();
+        validationNowInSec = nowInSec;
         List<ListenableFuture<TreeResponse>> tasks = new ArrayList<>(endpoints.size());
         for (InetAddressAndPort endpoint : endpoints)
         {
-            ValidationTask task = new ValidationTask(desc, endpoint, nowInSec, session.previewKind);
+            ValidationTask task = new ValidationTask(desc, endpoint, nowInSec, session.previewKind, validationVerb());
             tasks.add(task);
             session.trackValidationCompletion(Pair.create(desc, endpoint), task);
             taskExecutor.execute(task);
@@ -388,11 +460,12 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         logger.info("{} {}", session.previewKind.logPrefix(desc.sessionId), message);
         Tracing.traceRepair(message);
         int nowInSec = getNowInSeconds();
+        validationNowInSec = nowInSec;
         List<ListenableFuture<TreeResponse>> tasks = new ArrayList<>(endpoints.size());
 
         Queue<InetAddressAndPort> requests = new LinkedList<>(endpoints);
         InetAddressAndPort address = requests.poll();
-        ValidationTask firstTask = new ValidationTask(desc, address, nowInSec, session.previewKind);
+        ValidationTask firstTask = new ValidationTask(desc, address, nowInSec, session.previewKind, validationVerb());
         logger.info("{} Validating {}", session.previewKind.logPrefix(desc.sessionId), address);
         session.trackValidationCompletion(Pair.create(desc, address), firstTask);
         tasks.add(firstTask);
@@ -400,7 +473,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         while (requests.size() > 0)
         {
             final InetAddressAndPort nextAddress = requests.poll();
-            final ValidationTask nextTask = new ValidationTask(desc, nextAddress, nowInSec, session.previewKind);
+            final ValidationTask nextTask = new ValidationTask(desc, nextAddress, nowInSec, session.previewKind, validationVerb());
             tasks.add(nextTask);
             Futures.addCallback(currentTask, new FutureCallback<TreeResponse>()
             {
@@ -430,6 +503,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         logger.info("{} {}", session.previewKind.logPrefix(desc.sessionId), message);
         Tracing.traceRepair(message);
         int nowInSec = getNowInSeconds();
+        validationNowInSec = nowInSec;
         List<ListenableFuture<TreeResponse>> tasks = new ArrayList<>(endpoints.size());
 
         Map<String, Queue<InetAddressAndPort>> requestsByDatacenter = new HashMap<>();
@@ -449,7 +523,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         {
             Queue<InetAddressAndPort> requests = entry.getValue();
             InetAddressAndPort address = requests.poll();
-            ValidationTask firstTask = new ValidationTask(desc, address, nowInSec, session.previewKind);
+            ValidationTask firstTask = new ValidationTask(desc, address, nowInSec, session.previewKind, validationVerb());
             logger.info("{} Validating {}", session.previewKind.logPrefix(session.getId()), address);
             session.trackValidationCompletion(Pair.create(desc, address), firstTask);
             tasks.add(firstTask);
@@ -457,7 +531,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
             while (requests.size() > 0)
             {
                 final InetAddressAndPort nextAddress = requests.poll();
-                final ValidationTask nextTask = new ValidationTask(desc, nextAddress, nowInSec, session.previewKind);
+                final ValidationTask nextTask = new ValidationTask(desc, nextAddress, nowInSec, session.previewKind, validationVerb());
                 tasks.add(nextTask);
                 Futures.addCallback(currentTask, new FutureCallback<TreeResponse>()
                 {
@@ -32,6 +32,7 @@ import org.apache.cassandra.schema.TableId;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.streaming.PreviewKind;
 
+import static org.apache.cassandra.net.Verb.LEVELS_VALIDATION_REQ;
 import static org.apache.cassandra.net.Verb.VALIDATION_RSP;
 
 /**
@@ -123,6 +124,7 @@ public class RepairMessageVerbHandler implements IVerbHandler<RepairMessage>
                     break;
 
                 case VALIDATION_REQ:
+                case LEVELS_VALIDATION_REQ:
                     ValidationRequest validationRequest = (ValidationRequest) message.payload;
                     logger.debug("Validating {}", validationRequest);
                     // trigger read-only compaction
@@ -136,11 +138,31 @@ public class RepairMessageVerbHandler implements IVerbHandler<RepairMessage>
                     }
 
                     ActiveRepairService.instance.consistent.local.maybeSetRepairing(desc.parentSessionId);
-                    Validator validator = new Validator(desc, message.from(), validationRequest.nowInSec,
-                                                        isIncremental(desc.parentSessionId), previewKind(desc.parentSessionId));
+                    // hierarchical validations only send the top levels of the trees, and keep them for the levels below
+                    int responseLevels = message.verb() == LEVELS_VALIDATION_REQ ? HashTreeRefinement.LEVELS_PER_ROUND : 0;
+                    Validator validator = new Validator(desc, message.from(), validationRequest.nowInSec, false,
+                                                        isIncremental(desc.parentSessionId), previewKind(desc.parentSessionId), responseLevels);
                     ValidationManager.instance.submitValidation(store, validator);
                     break;
 
+                case HASH_TREE_LEVELS_REQ:
+                    HashTreeLevelsRequest levelsRequest = (HashTreeLevelsRequest) message.payload;
+                    logger.debug("Sending hash tree levels for {}", levelsRequest);
+                    MessagingService.instance().send(message.responseWith(RetainedTrees.instance.levels(levelsRequest)), message.from());
+                    break;
+
+                case PARTITION_HASHES_REQ:
+                    logger.debug("Reading partition hashes for {}", message.payload);
+                    ColumnFamilyStore hashed = ColumnFamilyStore.getIfExists(desc.keyspace, desc.columnFamily);
+                    if (hashed == null)
+                    {
+                        logger.error("Table {}.{} was dropped during repair {}", desc.keyspace, desc.columnFamily, desc.parentSessionId);
+                        MessagingService.instance().send(message.responseWith(new PartitionHashesResponse(null)), message.from());
+                        return;
+                    }
+                    ValidationManager.instance.submitPartitionHashes(hashed, message, (PartitionHashesRequest) message.payload, isIncremental(desc.parentSessionId));
+                    break;
+
                 case SYNC_REQ:
                     // forwarded sync request
                     SyncRequest request = (SyncRequest) message.payload;
@@ -645,6 +645,7 @@ public class RepairRunnable implements Runnable, ProgressEventNotifier
                                                                                      options.isPullRepair(),
                                                                                      options.getPreviewKind(),
                                                                                      options.optimiseStreams(),
+                                                                                     options.isHierarchical(),
                                                                                      executor,
                                                                                      cfnames);
             if (session == null)
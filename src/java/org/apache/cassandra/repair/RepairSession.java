@@ -112,6 +112,8 @@ public class RepairSession extends AbstractFuture<RepairSessionResult> implement
     // Tasks(snapshot, validate request, differencing, ...) are run on taskExecutor
     public final ListeningExecutorService taskExecutor;
     public final boolean optimiseStreams;
+    // whether the differences between the replicas are refined from the levels of their trees, see HashTreeRefinement
+    public final boolean hierarchical;
 
     private volatile boolean terminated = false;
 
@@ -135,6 +137,25 @@ public class RepairSession extends AbstractFuture<RepairSessionResult> implement
                          PreviewKind previewKind,
                          boolean optimiseStreams,
                          String... cfnames)
+    {
+        this(parentRepairSession, id, commonRange, keyspace, parallelismDegree, isIncremental, pullRepair, previewKind, optimiseStreams, false, cfnames);
+    }
+
+    /**
+     * @param hierarchical true if the replicas should only send the top levels of their merkle trees, the ranges
+     * these differ on being refined with the levels below before syncing them
+     */
+    public RepairSession(UUID parentRepairSession,
+                         UUID id,
+                         CommonRange commonRange,
+                         String keyspace,
+                         RepairParallelism parallelismDegree,
+                         boolean isIncremental,
+                         boolean pullRepair,
+                         PreviewKind previewKind,
+                         boolean optimiseStreams,
+                         boolean hierarchical,
+                         String... cfnames)
     {
         assert cfnames.length > 0 : "Repairing no column families seems pointless, doesn't it";
 
@@ -148,6 +169,7 @@ public class RepairSession extends AbstractFuture<RepairSessionResult> implement
         this.previewKind = previewKind;
         this.pullRepair = pullRepair;
         this.optimiseStreams = optimiseStreams;
+        this.hierarchical = hierarchical;
         this.taskExecutor = MoreExecutors.listeningDecorator(createExecutor());
     }
 
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.repair.messages.HashTreeLevelsRequest;
+import org.apache.cassandra.repair.messages.HashTreeLevelsResponse;
+import org.apache.cassandra.utils.MerkleTree;
+import org.apache.cassandra.utils.MerkleTrees;
+
+/**
+ * The merkle trees this replica computed for hierarchical validations, which only send the top levels of the trees
+ * to the coordinator, kept so that the coordinator can then ask for the levels below the nodes it found to mismatch.
+ *
+ * The trees are kept on heap until the parent repair session is removed, or until they expire if it never is.
+ */
+public class RetainedTrees
+{
+    private static final Logger logger = LoggerFactory.getLogger(RetainedTrees.class);
+
+    public static final RetainedTrees instance = new RetainedTrees();
+
+    private static final long EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(Long.getLong("cassandra.repair.retained_trees_expiry_minutes", 60));
+
+    private final Map<RepairJobDesc, Retained> retained = new ConcurrentHashMap<>();
+
+    private static class Retained
+    {
+        private final MerkleTrees trees;
+        private final long retainedAt = System.nanoTime();
+
+        private Retained(MerkleTrees trees)
+        {
+            this.trees = trees;
+        }
+    }
+
+    private RetainedTrees() {}
+
+    public void retain(RepairJobDesc desc, MerkleTrees trees)
+    {
+        long now = System.nanoTime();
+        retained.values().removeIf(r -> now - r.retainedAt > EXPIRY_NANOS);
+        retained.put(desc, new Retained(trees));
+    }
+
+    /**
+     * Forgets the trees of all the validations of the given parent repair session.
+     */
+    public void release(UUID parentSessionId)
+    {
+        retained.keySet().removeIf(desc -> parentSessionId.equals(desc.parentSessionId));
+    }
+
+    public MerkleTrees get(RepairJobDesc desc)
+    {
+        Retained r = retained.get(desc);
+        return r == null ? null : r.trees;
+    }
+
+    /**
+     * @return the response to the given request, from the trees retained for its validation
+     */
+    public HashTreeLevelsResponse levels(HashTreeLevelsRequest request)
+    {
+        MerkleTrees trees = get(request.desc);
+        if (trees == null)
+        {
+            logger.warn("No merkle trees retained for {}, they were released or expired", request.desc);
+            return new HashTreeLevelsResponse(null);
+        }
+
+        List<MerkleTree> subtrees = new ArrayList<>(request.ranges.size());
+        for (Range<Token> range : request.ranges)
+            subtrees.add(trees.subtree(range, request.levels));
+        return new HashTreeLevelsResponse(subtrees);
+    }
+}
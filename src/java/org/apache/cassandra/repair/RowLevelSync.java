@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionTime;
+import org.apache.cassandra.db.MutableDeletionInfo;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.PartitionRangeReadCommand;
+import org.apache.cassandra.db.RangeTombstone;
+import org.apache.cassandra.db.ReadExecutionController;
+import org.apache.cassandra.db.ReadResponse;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.filter.DataLimits;
+import org.apache.cassandra.db.filter.RowFilter;
+import org.apache.cassandra.db.lifecycle.SSTableSet;
+import org.apache.cassandra.db.lifecycle.View;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterators;
+import org.apache.cassandra.db.rows.RangeTombstoneMarker;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterators;
+import org.apache.cassandra.db.transform.StoppingTransformation;
+import org.apache.cassandra.db.transform.Transformation;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.ExcludingBounds;
+import org.apache.cassandra.dht.IncludingExcludingBounds;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.RequestFailureReason;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.locator.InetAddressAndPort;
+import org.apache.cassandra.metrics.RepairMetrics;
+import org.apache.cassandra.net.Message;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.net.RequestCallback;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.streaming.PreviewKind;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.apache.cassandra.net.Verb.MUTATION_REQ;
+import static org.apache.cassandra.net.Verb.RANGE_REQ;
+
+/**
+ * Syncs the ranges two full replicas mismatch on by reading them on both replicas and merging the two reads, the way
+ * read repair does, and sending each replica the rows it misses, or has older versions of, as mutations. This avoids
+ * streaming the whole sstable sections of the ranges when the replicas only differ on a few rows, so it is only used
+ * while the local sstables hold at most repair_row_level_sync_threshold_in_kb in these ranges, see {@link #shouldSync}.
+ * The peer's data is read in pages of {@link #PAGE_SIZE} rows, and the sync fails once it has sent more than the
+ * threshold too, as it does for partitions larger than a page. The sync tasks stream the ranges if it fails.
+ */
+public class RowLevelSync
+{
+    private static final Logger logger = LoggerFactory.getLogger(RowLevelSync.class);
+
+    @VisibleForTesting
+    static final int PAGE_SIZE = Integer.getInteger("cassandra.repair_row_level_sync_page_size", 1000);
+
+    private static final ListeningExecutorService executor = MoreExecutors.listeningDecorator(DebuggableThreadPoolExecutor.createCachedThreadpoolWithMaxSize("RepairRowLevelSync"));
+
+    @VisibleForTesting
+    static final int LOCAL = 0;
+    @VisibleForTesting
+    static final int REMOTE = 1;
+
+    private final RepairJobDesc desc;
+    private final InetAddressAndPort peer;
+    private final Collection<Range<Token>> ranges;
+    private final List<ListenableFuture<Object>> acks = new ArrayList<>();
+    private long partitions;
+    private long remoteSize;
+
+    private RowLevelSync(RepairJobDesc desc, InetAddressAndPort peer, Collection<Range<Token>> ranges)
+    {
+        this.desc = desc;
+        this.peer = peer;
+        this.ranges = ranges;
+    }
+
+    /**
+     * @return whether the given ranges of the table of a repair job should be synced row by row rather than streamed:
+     * incremental repairs stream, so that the synced data stays isolated in the pending repair, as do previews and
+     * counter tables, whose merged cells can't be written back as plain mutations.
+     */
+    public static boolean shouldSync(RepairJobDesc desc, Collection<Range<Token>> ranges, UUID pendingRepair, PreviewKind previewKind)
+    {
+        long threshold = DatabaseDescriptor.getRepairRowLevelSyncThreshold();
+        if (threshold <= 0 || pendingRepair != null || previewKind.isPreview())
+            return false;
+
+        ColumnFamilyStore cfs = ColumnFamilyStore.getIfExists(desc.keyspace, desc.columnFamily);
+        if (cfs == null || cfs.metadata().isCounter())
+            return false;
+
+        long size = 0;
+        try (ColumnFamilyStore.RefViewFragment view = cfs.selectAndReference(View.selectFunction(SSTableSet.CANONICAL)))
+        {
+            for (SSTableReader sstable : view.sstables)
+            {
+                for (SSTableReader.PartitionPositionBounds position : sstable.getPositionsForRanges(ranges))
+                {
+                    size += position.upperPosition - position.lowerPosition;
+                    if (size > threshold)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Syncs the given ranges with the given peer row by row.
+     *
+     * @return a future completed with the number of partitions synced, or failed if any read or mutation failed
+     */
+    public static ListenableFuture<Long> sync(RepairJobDesc desc, InetAddressAndPort peer, Collection<Range<Token>> ranges)
+    {
+        return executor.submit(() -> new RowLevelSync(desc, peer, ranges).run());
+    }
+
+    private long run() throws Exception
+    {
+        ColumnFamilyStore cfs = ColumnFamilyStore.getIfExists(desc.keyspace, desc.columnFamily);
+        if (cfs == null)
+            throw new IllegalStateException(String.format("Table %s.%s does not exist", desc.keyspace, desc.columnFamily));
+
+        TableMetadata metadata = cfs.metadata();
+        int nowInSec = FBUtilities.nowInSeconds();
+        for (Range<Token> range : Range.normalize(ranges))
+        {
+            DataRange dataRange = DataRange.forTokenRange(range);
+            AbstractBounds<PartitionPosition> bounds = dataRange.keyRange();
+            while (bounds != null)
+                bounds = syncPage(metadata, nowInSec, dataRange, bounds);
+        }
+        Futures.allAsList(acks).get();
+
+        RepairMetrics.rowLevelSyncPartitions.inc(partitions);
+        logger.debug("[repair #{}] Synced {} partitions of {}.{} with {} row by row", desc.sessionId, partitions, desc.keyspace, desc.columnFamily, peer);
+        return partitions;
+    }
+
+    /**
+     * Syncs the partitions of the next page of the peer's data in the given bounds of the given range.
+     *
+     * @return the bounds left to sync, or null if the page ended them
+     */
+    private AbstractBounds<PartitionPosition> syncPage(TableMetadata metadata, int nowInSec, DataRange dataRange, AbstractBounds<PartitionPosition> bounds) throws Exception
+    {
+        PartitionRangeReadCommand command = command(metadata, nowInSec, dataRange.forSubRange(bounds), DataLimits.cqlLimits(PAGE_SIZE));
+        ReadResponse response = RowLevelSync.<ReadResponse>send(Message.out(RANGE_REQ, command), peer).get();
+        remoteSize += ReadResponse.serializer.serializedSize(response, MessagingService.current_version);
+        if (remoteSize > DatabaseDescriptor.getRepairRowLevelSyncThreshold())
+            throw new IllegalStateException(String.format("%s holds more than repair_row_level_sync_threshold_in_kb in %s", peer, ranges));
+
+        // the last partition of a full page may be cut short, so it starts the next page instead
+        DecoratedKey end = pageEnd(command, response);
+        AbstractBounds<PartitionPosition> synced = end == null ? bounds : before(bounds, end);
+        PartitionRangeReadCommand local = command(metadata, nowInSec, dataRange.forSubRange(synced), DataLimits.NONE);
+        try (ReadExecutionController controller = local.executionController();
+             UnfilteredPartitionIterator merged = merge(local.executeLocally(controller), until(response.makeIterator(command), end), this::repair))
+        {
+            while (merged.hasNext())
+            {
+                try (UnfilteredRowIterator partition = merged.next())
+                {
+                    // consumes the partition, which the listener diffs
+                    while (partition.hasNext())
+                        partition.next();
+                }
+            }
+        }
+        return end == null ? null : from(bounds, end);
+    }
+
+    private static PartitionRangeReadCommand command(TableMetadata metadata, int nowInSec, DataRange dataRange, DataLimits limits)
+    {
+        return PartitionRangeReadCommand.create(metadata, nowInSec, ColumnFilter.all(metadata), RowFilter.NONE, limits, dataRange);
+    }
+
+    /**
+     * @return the key of the last partition of the given page if it is full, or null if it ends the range it reads
+     */
+    @VisibleForTesting
+    static DecoratedKey pageEnd(PartitionRangeReadCommand command, ReadResponse response)
+    {
+        // counts the rows as the peer did when limiting its response
+        DataLimits.Counter counter = command.limits().newCounter(command.nowInSec(), false, command.selectsFullPartition(), command.metadata().enforceStrictLiveness());
+        DecoratedKey first = null;
+        DecoratedKey last = null;
+        try (UnfilteredPartitionIterator partitions = counter.applyTo(response.makeIterator(command)))
+        {
+            while (partitions.hasNext())
+            {
+                try (UnfilteredRowIterator partition = partitions.next())
+                {
+                    if (first == null)
+                        first = partition.partitionKey();
+                    last = partition.partitionKey();
+                    while (partition.hasNext())
+                        partition.next();
+                }
+            }
+        }
+
+        if (counter.counted() < command.limits().count())
+            return null;
+        if (last.equals(first))
+            throw new IllegalStateException(String.format("Partition %s holds more than %d rows", command.metadata().partitionKeyType.getString(last.getKey()), PAGE_SIZE));
+        return last;
+    }
+
+    // the given bounds up to the given key, excluded
+    private static AbstractBounds<PartitionPosition> before(AbstractBounds<PartitionPosition> bounds, PartitionPosition end)
+    {
+        return bounds.inclusiveLeft() ? new IncludingExcludingBounds<>(bounds.left, end) : new ExcludingBounds<>(bounds.left, end);
+    }
+
+    // the given bounds from the given key, included, as the range query pagers build them
+    private static AbstractBounds<PartitionPosition> from(AbstractBounds<PartitionPosition> bounds, PartitionPosition start)
+    {
+        return bounds.inclusiveRight() ? new Bounds<>(start, bounds.right) : new IncludingExcludingBounds<>(start, bounds.right);
+    }
+
+    // the given partitions up to the given key, excluded, or all of them if it is null
+    private static UnfilteredPartitionIterator until(UnfilteredPartitionIterator partitions, DecoratedKey end)
+    {
+        if (end == null)
+            return partitions;
+
+        return Transformation.apply(partitions, new StoppingTransformation<UnfilteredRowIterator>()
+        {
+            @Override
+            protected UnfilteredRowIterator applyToPartition(UnfilteredRowIterator partition)
+            {
+                if (partition.partitionKey().compareTo(end) < 0)
+                    return partition;
+
+                partition.close();
+                stop();
+                return null;
+            }
+        });
+    }
+
+    private void repair(PartitionUpdate[] updates)
+    {
+        if (updates[LOCAL] != null)
+            new Mutation(updates[LOCAL]).apply();
+        if (updates[REMOTE] != null)
+            acks.add(send(Message.out(MUTATION_REQ, new Mutation(updates[REMOTE])), peer));
+        partitions++;
+    }
+
+    /**
+     * Merges the given local and remote reads, passing the updates each replica needs to be in sync with the merged
+     * partitions to the given consumer, once per differing partition as it is consumed. The updates of a replica
+     * that is already in sync are null.
+     */
+    @VisibleForTesting
+    static UnfilteredPartitionIterator merge(UnfilteredPartitionIterator local, UnfilteredPartitionIterator remote, Consumer<PartitionUpdate[]> repair)
+    {
+        return UnfilteredPartitionIterators.merge(Arrays.asList(local, remote), (key, versions) -> new PartitionDiff(versions.get(0).metadata(), key, repair));
+    }
+
+    /**
+     * Builds the updates bringing each version of a partition up to the merged partition: its partition deletion
+     * if it misses it, and the merged version of each row it differs on. Range tombstones are not diffed, a version
+     * differing on any of them gets the whole merged partition instead.
+     */
+    private static class PartitionDiff implements UnfilteredRowIterators.MergeListener
+    {
+        private final DecoratedKey key;
+        private final Consumer<PartitionUpdate[]> repair;
+        private final PartitionUpdate.Builder merged;
+        private MutableDeletionInfo.Builder mergedDeletions;
+        private final PartitionUpdate.Builder[] updates = new PartitionUpdate.Builder[2];
+        private final boolean[] markersDiffer = new boolean[2];
+
+        private PartitionDiff(TableMetadata metadata, DecoratedKey key, Consumer<PartitionUpdate[]> repair)
+        {
+            this.key = key;
+            this.repair = repair;
+            this.merged = new PartitionUpdate.Builder(metadata, key, metadata.regularAndStaticColumns(), 16);
+        }
+
+        private PartitionUpdate.Builder update(int i)
+        {
+            if (updates[i] == null)
+                updates[i] = new PartitionUpdate.Builder(merged.metadata(), key, merged.metadata().regularAndStaticColumns(), 1);
+            return updates[i];
+        }
+
+        public void onMergedPartitionLevelDeletion(DeletionTime mergedDeletion, DeletionTime[] versions)
+        {
+            merged.addPartitionDeletion(mergedDeletion);
+            mergedDeletions = MutableDeletionInfo.builder(mergedDeletion, merged.metadata().comparator, false);
+            for (int i = 0; i < versions.length; i++)
+            {
+                if (mergedDeletion.supersedes(versions[i]))
+                    update(i).addPartitionDeletion(mergedDeletion);
+            }
+        }
+
+        public Row onMergedRows(Row mergedRow, Row[] versions)
+        {
+            // rows shadowed by the merged partition or range deletions are repaired by these deletions
+            if (mergedRow.isEmpty())
+                return mergedRow;
+
+            merged.add(mergedRow);
+            for (int i = 0; i < versions.length; i++)
+            {
+                if (!mergedRow.equals(versions[i]))
+                    update(i).add(mergedRow);
+            }
+            return mergedRow;
+        }
+
+        public void onMergedRangeTombstoneMarkers(RangeTombstoneMarker mergedMarker, RangeTombstoneMarker[] versions)
+        {
+            if (mergedMarker != null)
+                mergedDeletions.add(mergedMarker);
+            for (int i = 0; i < versions.length; i++)
+            {
+                if (!Objects.equals(mergedMarker, versions[i]))
+                    markersDiffer[i] = true;
+            }
+        }
+
+        public void close()
+        {
+            PartitionUpdate[] repairs = new PartitionUpdate[updates.length];
+            PartitionUpdate mergedPartition = null;
+            boolean differs = false;
+            for (int i = 0; i < updates.length; i++)
+            {
+                if (markersDiffer[i])
+                    repairs[i] = mergedPartition == null ? mergedPartition = mergedPartition() : mergedPartition;
+                else if (updates[i] != null)
+                    repairs[i] = updates[i].build();
+                differs |= repairs[i] != null;
+            }
+            if (differs)
+                repair.accept(repairs);
+        }
+
+        private PartitionUpdate mergedPartition()
+        {
+            Iterator<RangeTombstone> rangeTombstones = mergedDeletions.build().rangeIterator(false);
+            while (rangeTombstones.hasNext())
+                merged.add(rangeTombstones.next());
+            return merged.build();
+        }
+    }
+
+    private static <T> ListenableFuture<T> send(Message<?> request, InetAddressAndPort peer)
+    {
+        SettableFuture<T> response = SettableFuture.create();
+        MessagingService.instance().sendWithCallback(request, peer, new RequestCallback<T>()
+        {
+            public void onResponse(Message<T> msg)
+            {
+                response.set(msg.payload);
+            }
+
+            public boolean invokeOnFailure()
+            {
+                return true;
+            }
+
+            public void onFailure(InetAddressAndPort from, RequestFailureReason failureReason)
+            {
+                response.setException(new RuntimeException(String.format("%s failed %s (%s)", from, request.verb(), failureReason)));
+            }
+        });
+        return response;
+    }
+}
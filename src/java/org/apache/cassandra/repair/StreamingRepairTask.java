@@ -22,6 +22,9 @@ import java.util.Collections;
 import java.util.Collection;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.cassandra.locator.RangesAtEndpoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.locator.InetAddressAndPort;
+import org.apache.cassandra.metrics.RepairMetrics;
 import org.apache.cassandra.net.Message;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.repair.messages.SyncResponse;
@@ -42,7 +46,8 @@ import org.apache.cassandra.streaming.StreamOperation;
 import static org.apache.cassandra.net.Verb.SYNC_RSP;
 
 /**
- * StreamingRepairTask performs data streaming between two remote replicas, neither of which is repair coordinator.
+ * StreamingRepairTask performs data streaming between two remote replicas, neither of which is repair coordinator, or
+ * syncs small differences row by row, see {@link RowLevelSync}.
  * Task will send {@link SyncResponse} message back to coordinator upon streaming completion.
  */
 public class StreamingRepairTask implements Runnable, StreamEventHandler
@@ -72,6 +77,27 @@ public class StreamingRepairTask implements Runnable, StreamEventHandler
 
     public void run()
     {
+        if (!asymmetric && RowLevelSync.shouldSync(desc, ranges, pendingRepair, previewKind))
+        {
+            logger.info("[streaming task #{}] Performing row level repair of {} ranges with {}", desc.sessionId, ranges.size(), dst);
+            Futures.addCallback(RowLevelSync.sync(desc, dst, ranges), new FutureCallback<Long>()
+            {
+                public void onSuccess(Long partitions)
+                {
+                    logger.info("[repair #{}] row level repair synced {} partitions, returning response to {}", desc.sessionId, partitions, initiator);
+                    MessagingService.instance().send(Message.out(SYNC_RSP, new SyncResponse(desc, src, dst, true, Collections.emptyList())), initiator);
+                }
+
+                public void onFailure(Throwable t)
+                {
+                    logger.warn("[repair #{}] Row level repair with {} failed, streaming the ranges instead", desc.sessionId, dst, t);
+                    RepairMetrics.rowLevelSyncFallbacks.inc();
+                    createStreamPlan(dst).execute();
+                }
+            }, MoreExecutors.directExecutor());
+            return;
+        }
+
         logger.info("[streaming task #{}] Performing {}streaming repair of {} ranges with {}", desc.sessionId, asymmetric ? "asymmetric " : "", ranges.size(), dst);
         createStreamPlan(dst).execute();
     }
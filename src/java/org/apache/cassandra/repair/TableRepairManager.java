@@ -44,6 +44,12 @@ public interface TableRepairManager
      */
     Future<?> submitValidation(Callable<Object> validation);
 
+    /**
+     * Begin execution of a part of a validation, run concurrently with the other parts of the validation, which
+     * waits for all of them. It must not run in the thread pool of the validations.
+     */
+    <T> Future<T> submitValidationSubRange(Callable<T> task);
+
     /**
      * Called when the given incremental session has completed. Because of race and failure conditions, implementors
      * should not rely only on receiving calls from this method to determine when a session has ended. Implementors
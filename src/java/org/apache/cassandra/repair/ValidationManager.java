@@ -19,24 +19,42 @@
 package org.apache.cassandra.repair;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.PartitionHashes;
+import org.apache.cassandra.metrics.RepairMetrics;
 import org.apache.cassandra.metrics.TableMetrics;
+import org.apache.cassandra.net.Message;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.repair.messages.PartitionHashesRequest;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse.PartitionHash;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTree;
 import org.apache.cassandra.utils.MerkleTrees;
+import org.apache.cassandra.utils.Throwables;
 
 public class ValidationManager
 {
@@ -44,6 +62,9 @@ public class ValidationManager
 
     public static final ValidationManager instance = new ValidationManager();
 
+    // the number of token ranges a validation split into ranges is split into, per thread hashing them
+    private static final int SUB_RANGES_PER_THREAD = 4;
+
     private ValidationManager() {}
 
     private static MerkleTrees createMerkleTrees(ValidationPartitionIterator validationIterator, Collection<Range<Token>> ranges, ColumnFamilyStore cfs)
@@ -116,14 +137,11 @@ public class ValidationManager
             {
                 // validate the CF as we iterate over it
                 validator.prepare(cfs, tree);
-                while (vi.hasNext())
-                {
-                    try (UnfilteredRowIterator partition = vi.next())
-                    {
-                        validator.add(partition);
-                        partitionCount++;
-                    }
-                }
+                List<Range<Token>> subRanges = subRanges(vi, tree);
+                if (subRanges == null)
+                    validate(vi, validator);
+                else
+                    validateSubRanges(cfs, vi, validator, subRanges);
                 validator.complete();
             }
             finally
@@ -137,9 +155,14 @@ public class ValidationManager
             cfs.metric.bytesValidated.update(estimatedTotalBytes);
             cfs.metric.partitionsValidated.update(partitionCount);
         }
+
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        double seconds = (double) elapsed / TimeUnit.SECONDS.toNanos(1);
+        RepairMetrics.validationBytesPerSecond.update((long) (estimatedTotalBytes / seconds));
+        RepairMetrics.validationPartitionsPerSecond.update((long) (validator.validated() / seconds));
         if (logger.isDebugEnabled())
         {
-            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long duration = TimeUnit.NANOSECONDS.toMillis(elapsed);
             logger.debug("Validation of {} partitions (~{}) finished in {} msec, for {}",
                          partitionCount,
                          FBUtilities.prettyPrintMemory(estimatedTotalBytes),
@@ -148,6 +171,169 @@ public class ValidationManager
         }
     }
 
+    private static void validate(ValidationPartitionIterator vi, Validator validator)
+    {
+        while (vi.hasNext())
+        {
+            if (vi.hasNextHash())
+            {
+                PartitionHashes.Entry hash = vi.nextHash();
+                validator.add(hash.key, hash.rowHash());
+                continue;
+            }
+
+            try (UnfilteredRowIterator partition = vi.next())
+            {
+                validator.add(partition);
+            }
+        }
+    }
+
+    /**
+     * @return the token ranges to hash concurrently, aligned with the leaves of the trees, or null if the validation
+     * is not split
+     */
+    private static List<Range<Token>> subRanges(ValidationPartitionIterator vi, MerkleTrees trees)
+    {
+        int threads = DatabaseDescriptor.getConcurrentValidationSubranges();
+        if (threads == 0 || !vi.supportsSubRanges())
+            return null;
+
+        // more ranges than threads, so that no thread is left with much more to do than the others at the end
+        List<Range<Token>> subRanges = trees.subRanges(threads * SUB_RANGES_PER_THREAD);
+        return subRanges.size() > 1 ? subRanges : null;
+    }
+
+    /**
+     * Hashes the given token ranges concurrently into the trees of the validator, and waits for all of them. If any
+     * range fails, the ranges not started yet are skipped.
+     */
+    private static void validateSubRanges(ColumnFamilyStore cfs, ValidationPartitionIterator vi, Validator validator, List<Range<Token>> subRanges) throws IOException
+    {
+        logger.debug("Validating {} token ranges concurrently for {}", subRanges.size(), validator.desc);
+        RepairMetrics.validationSubRanges.inc(subRanges.size());
+
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<Validator>> futures = new ArrayList<>(subRanges.size());
+        for (Range<Token> range : subRanges)
+        {
+            futures.add(cfs.getRepairManager().submitValidationSubRange(() ->
+            {
+                if (failed.get())
+                    return null;
+
+                Validator part = validator.forSubRange();
+                try (ValidationPartitionIterator partitions = vi.subRange(range))
+                {
+                    validate(partitions, part);
+                }
+                return part;
+            }));
+        }
+
+        // wait for all ranges even after a failure, so that none still reads the sstables once the validation is closed
+        Throwable failure = null;
+        for (Future<Validator> future : futures)
+        {
+            try
+            {
+                Validator part = Uninterruptibles.getUninterruptibly(future);
+                if (part != null)
+                    validator.merge(part);
+            }
+            catch (ExecutionException e)
+            {
+                failure = Throwables.merge(failure, e.getCause());
+                failed.set(true);
+            }
+            catch (Throwable t)
+            {
+                failure = Throwables.merge(failure, t);
+                failed.set(true);
+            }
+        }
+        Throwables.maybeFail(failure, IOException.class);
+    }
+
+    /**
+     * @return the hashes a validation at {@code nowInSec} computes for the partitions of each of the given ranges,
+     * which must neither overlap nor wrap, in partition order, or null for the ranges holding more than
+     * {@code maxPartitions} partitions
+     */
+    @VisibleForTesting
+    static List<List<PartitionHash>> partitionHashes(ColumnFamilyStore cfs, RepairJobDesc desc, List<Range<Token>> ranges, boolean isIncremental, int nowInSec, int maxPartitions) throws IOException
+    {
+        List<List<PartitionHash>> hashes = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++)
+            hashes.add(new ArrayList<>());
+
+        // the partitions are iterated in token order, so their ranges are found walking the ranges in that order
+        Integer[] sorted = new Integer[ranges.size()];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = i;
+        Arrays.sort(sorted, Comparator.comparing(i -> ranges.get(i).left));
+        int current = 0;
+
+        try (ValidationPartitionIterator vi = cfs.getRepairManager().getValidationIterator(ranges, desc.parentSessionId, desc.sessionId, isIncremental, nowInSec))
+        {
+            while (vi.hasNext())
+            {
+                DecoratedKey key;
+                MerkleTree.RowHash hash;
+                if (vi.hasNextHash())
+                {
+                    PartitionHashes.Entry entry = vi.nextHash();
+                    key = entry.key;
+                    hash = entry.rowHash();
+                }
+                else
+                {
+                    try (UnfilteredRowIterator partition = vi.next())
+                    {
+                        key = partition.partitionKey();
+                        hash = Validator.rowHash(partition);
+                    }
+                }
+
+                while (!ranges.get(sorted[current]).contains(key.getToken()))
+                    current++;
+
+                List<PartitionHash> rangeHashes = hashes.get(sorted[current]);
+                if (hash == null || rangeHashes == null)
+                    continue;
+
+                if (rangeHashes.size() == maxPartitions)
+                    hashes.set(sorted[current], null);
+                else
+                    rangeHashes.add(new PartitionHash(key.getKey(), hash.hash));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Reads the hashes of the partitions of the given request, and responds with them. Does not mutate data, so is
+     * not scheduled.
+     */
+    public Future<?> submitPartitionHashes(ColumnFamilyStore cfs, Message<?> message, PartitionHashesRequest request, boolean isIncremental)
+    {
+        return cfs.getRepairManager().submitValidation(() ->
+        {
+            PartitionHashesResponse response;
+            try
+            {
+                response = new PartitionHashesResponse(partitionHashes(cfs, request.desc, request.ranges, isIncremental, request.nowInSec, request.maxPartitions));
+            }
+            catch (Throwable t)
+            {
+                logger.error("Failed reading the partition hashes of {}", request.desc, t);
+                response = new PartitionHashesResponse(null);
+            }
+            MessagingService.instance().send(message.responseWith(response), message.from());
+            return null;
+        });
+    }
+
     /**
      * Does not mutate data, so is not scheduled.
      */
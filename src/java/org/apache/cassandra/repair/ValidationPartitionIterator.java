@@ -24,10 +24,42 @@ import java.util.Map;
 import org.apache.cassandra.db.partitions.AbstractUnfilteredPartitionIterator;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.PartitionHashes;
 
 public abstract class ValidationPartitionIterator extends AbstractUnfilteredPartitionIterator
 {
     public abstract long getEstimatedBytes();
     public abstract long estimatedPartitions();
     public abstract Map<Range<Token>, Long> getRangePartitionCounts();
+
+    /**
+     * @return whether the hash of the next partition is already known, in which case the partition is returned by
+     * {@link #nextHash()} rather than by {@link #next()}
+     */
+    public boolean hasNextHash()
+    {
+        return false;
+    }
+
+    public PartitionHashes.Entry nextHash()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return whether the validated ranges can be iterated in parts with {@link #subRange(Range)}
+     */
+    public boolean supportsSubRanges()
+    {
+        return false;
+    }
+
+    /**
+     * @return the partitions of a part of the validated ranges, which may be iterated concurrently with the other
+     * parts, as long as this iterator is not closed before them. This iterator itself is then left unused.
+     */
+    public ValidationPartitionIterator subRange(Range<Token> range) throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
 }
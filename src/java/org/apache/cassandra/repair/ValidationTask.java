@@ -23,6 +23,7 @@ import org.apache.cassandra.exceptions.RepairException;
 import org.apache.cassandra.locator.InetAddressAndPort;
 import org.apache.cassandra.net.Message;
 import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.net.Verb;
 import org.apache.cassandra.repair.messages.ValidationRequest;
 import org.apache.cassandra.streaming.PreviewKind;
 import org.apache.cassandra.utils.MerkleTrees;
@@ -39,13 +40,24 @@ public class ValidationTask extends AbstractFuture<TreeResponse> implements Runn
     private final InetAddressAndPort endpoint;
     private final int nowInSec;
     private final PreviewKind previewKind;
+    private final Verb verb;
 
     public ValidationTask(RepairJobDesc desc, InetAddressAndPort endpoint, int nowInSec, PreviewKind previewKind)
+    {
+        this(desc, endpoint, nowInSec, previewKind, VALIDATION_REQ);
+    }
+
+    /**
+     * @param verb the verb to send the request with, {@link Verb#LEVELS_VALIDATION_REQ} for the replica to only send
+     * back the top levels of its trees
+     */
+    public ValidationTask(RepairJobDesc desc, InetAddressAndPort endpoint, int nowInSec, PreviewKind previewKind, Verb verb)
     {
         this.desc = desc;
         this.endpoint = endpoint;
         this.nowInSec = nowInSec;
         this.previewKind = previewKind;
+        this.verb = verb;
     }
 
     /**
@@ -54,7 +66,7 @@ public class ValidationTask extends AbstractFuture<TreeResponse> implements Runn
     public void run()
     {
         ValidationRequest request = new ValidationRequest(desc, nowInSec);
-        MessagingService.instance().send(Message.out(VALIDATION_REQ, request), endpoint);
+        MessagingService.instance().send(Message.out(verb, request), endpoint);
     }
 
     /**
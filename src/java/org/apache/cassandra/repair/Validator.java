@@ -72,6 +72,8 @@ public class Validator implements Runnable
     public final int nowInSec;
     private final boolean evenTreeDistribution;
     public final boolean isIncremental;
+    // the number of levels of the trees to respond with, the trees being retained for the levels below; 0 to respond with the whole trees
+    private final int responseLevels;
 
     // null when all rows with the min token have been consumed
     private long validated;
@@ -96,6 +98,15 @@ public class Validator implements Runnable
     }
 
     public Validator(RepairJobDesc desc, InetAddressAndPort initiator, int nowInSec, boolean evenTreeDistribution, boolean isIncremental, PreviewKind previewKind)
+    {
+        this(desc, initiator, nowInSec, evenTreeDistribution, isIncremental, previewKind, 0);
+    }
+
+    /**
+     * @param responseLevels the number of levels of the trees to respond with, the trees being kept by
+     * {@link RetainedTrees} for the coordinator to ask for the levels below, or 0 to respond with the whole trees
+     */
+    public Validator(RepairJobDesc desc, InetAddressAndPort initiator, int nowInSec, boolean evenTreeDistribution, boolean isIncremental, PreviewKind previewKind, int responseLevels)
     {
         this.desc = desc;
         this.initiator = initiator;
@@ -106,6 +117,7 @@ public class Validator implements Runnable
         range = null;
         ranges = null;
         this.evenTreeDistribution = evenTreeDistribution;
+        this.responseLevels = responseLevels;
     }
 
     public void prepare(ColumnFamilyStore cfs, MerkleTrees tree)
@@ -153,6 +165,33 @@ public class Validator implements Runnable
         ranges = tree.rangeIterator();
     }
 
+    /**
+     * @return a validator adding partitions to the trees of this prepared one, to be used by another thread for the
+     * partitions of one of the ranges of {@link MerkleTrees#subRanges(int)}, so that the partitions of the other
+     * ranges can be added concurrently. Its partitions are accounted by this validator when it is merged back.
+     */
+    Validator forSubRange()
+    {
+        assert ranges != null : "Validator was not prepared()";
+        Validator validator = new Validator(desc, initiator, nowInSec, evenTreeDistribution, isIncremental, previewKind, responseLevels);
+        validator.trees = trees;
+        validator.ranges = trees.rangeIterator();
+        return validator;
+    }
+
+    /**
+     * Accounts the partitions added by a validator returned by {@link #forSubRange()}, once it is done.
+     */
+    void merge(Validator subRange)
+    {
+        validated += subRange.validated;
+    }
+
+    long validated()
+    {
+        return validated;
+    }
+
     /**
      * Called (in order) for every row present in the CF.
      * Hashes the row, and adds it to the tree being built.
@@ -161,10 +200,23 @@ public class Validator implements Runnable
      */
     public void add(UnfilteredRowIterator partition)
     {
-        assert Range.isInRanges(partition.partitionKey().getToken(), desc.ranges) : partition.partitionKey().getToken() + " is not contained in " + desc.ranges;
-        assert lastKey == null || lastKey.compareTo(partition.partitionKey()) < 0
-               : "partition " + partition.partitionKey() + " received out of order wrt " + lastKey;
-        lastKey = partition.partitionKey();
+        add(partition.partitionKey(), rowHash(partition));
+    }
+
+    /**
+     * Called (in order) for every row present in the CF, like {@link #add(UnfilteredRowIterator)}, when the hash of
+     * the row is already known.
+     *
+     * @param key the key of the partition
+     * @param rowHash the hash of the partition, or null if nothing was hashed
+     */
+    public void add(DecoratedKey key, RowHash rowHash)
+    {
+        assert Range.isInRanges(key.getToken(), desc.ranges) : key.getToken() + " is not contained in " + desc.ranges;
+        assert lastKey == null || lastKey.compareTo(key) < 0
+               : "partition " + key + " received out of order wrt " + lastKey;
+        lastKey = key;
+        validated++;
 
         if (range == null)
             range = ranges.next();
@@ -179,7 +231,6 @@ public class Validator implements Runnable
 
         assert range.contains(lastKey.getToken()) : "Token not in MerkleTree: " + lastKey.getToken();
         // case 3 must be true: mix in the hashed row
-        RowHash rowHash = rowHash(partition);
         if (rowHash != null)
         {
             range.addHash(rowHash);
@@ -196,9 +247,8 @@ public class Validator implements Runnable
         return range.contains(t);
     }
 
-    private MerkleTree.RowHash rowHash(UnfilteredRowIterator partition)
+    static MerkleTree.RowHash rowHash(UnfilteredRowIterator partition)
     {
-        validated++;
         // MerkleTree uses XOR internally, so we want lots of output bits here
         Digest digest = Digest.forValidator();
         UnfilteredRowIterators.digest(partition, digest, MessagingService.current_version);
@@ -254,7 +304,14 @@ public class Validator implements Runnable
             Tracing.traceRepair("Local completed merkle tree for {} for {}.{}", initiator, desc.keyspace, desc.columnFamily);
 
         }
-        respond(new ValidationResponse(desc, trees));
+        if (responseLevels == 0)
+        {
+            respond(new ValidationResponse(desc, trees));
+            return;
+        }
+
+        RetainedTrees.instance.retain(desc, trees);
+        respond(new ValidationResponse(desc, trees.topLevels(responseLevels)));
     }
 
     private boolean initiatorIsRemote()
@@ -21,6 +21,7 @@ package org.apache.cassandra.repair.asymmetric;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
@@ -39,6 +40,14 @@ public class DifferenceHolder
     private final ImmutableMap<InetAddressAndPort, HostDifferences> differences;
 
     public DifferenceHolder(List<TreeResponse> trees)
+    {
+        this(trees, (r1, r2) -> MerkleTrees.difference(r1.trees, r2.trees));
+    }
+
+    /**
+     * @param difference the ranges two replicas differ on, from their responses
+     */
+    public DifferenceHolder(List<TreeResponse> trees, BiFunction<TreeResponse, TreeResponse, List<Range<Token>>> difference)
     {
         ImmutableMap.Builder<InetAddressAndPort, HostDifferences> diffBuilder = ImmutableMap.builder();
         for (int i = 0; i < trees.size() - 1; ++i)
@@ -49,7 +58,7 @@ public class DifferenceHolder
             for (int j = i + 1; j < trees.size(); ++j)
             {
                 TreeResponse r2 = trees.get(j);
-                hd.add(r2.endpoint, MerkleTrees.difference(r1.trees, r2.trees));
+                hd.add(r2.endpoint, difference.apply(r1, r2));
             }
             r1.trees.release();
             // and add them to the diff map
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair.messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.repair.RepairJobDesc;
+import org.apache.cassandra.utils.MerkleTree;
+
+/**
+ * Asks a replica that validated with a hierarchical validation request for the given number of levels of its merkle
+ * trees below the nodes covering each of the given ranges, see {@link MerkleTree#subtree(Range, int)}. The replica
+ * answers with a {@link HashTreeLevelsResponse}.
+ */
+public class HashTreeLevelsRequest extends RepairMessage
+{
+    public final List<Range<Token>> ranges;
+    public final int levels;
+
+    public HashTreeLevelsRequest(RepairJobDesc desc, List<Range<Token>> ranges, int levels)
+    {
+        super(desc);
+        this.ranges = ranges;
+        this.levels = levels;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof HashTreeLevelsRequest))
+            return false;
+        HashTreeLevelsRequest that = (HashTreeLevelsRequest) o;
+        return desc.equals(that.desc) && ranges.equals(that.ranges) && levels == that.levels;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(desc, ranges, levels);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "HashTreeLevelsRequest{" +
+               "ranges=" + ranges +
+               ", levels=" + levels +
+               "} " + super.toString();
+    }
+
+    public static final IVersionedSerializer<HashTreeLevelsRequest> serializer = new IVersionedSerializer<HashTreeLevelsRequest>()
+    {
+        public void serialize(HashTreeLevelsRequest message, DataOutputPlus out, int version) throws IOException
+        {
+            RepairJobDesc.serializer.serialize(message.desc, out, version);
+            out.writeInt(message.ranges.size());
+            for (Range<Token> range : message.ranges)
+                AbstractBounds.tokenSerializer.serialize(range, out, version);
+            out.writeInt(message.levels);
+        }
+
+        public HashTreeLevelsRequest deserialize(DataInputPlus in, int version) throws IOException
+        {
+            RepairJobDesc desc = RepairJobDesc.serializer.deserialize(in, version);
+            int rangesCount = in.readInt();
+            List<Range<Token>> ranges = new ArrayList<>(rangesCount);
+            for (int i = 0; i < rangesCount; ++i)
+                ranges.add((Range<Token>) AbstractBounds.tokenSerializer.deserialize(in, IPartitioner.global(), version));
+            return new HashTreeLevelsRequest(desc, ranges, in.readInt());
+        }
+
+        public long serializedSize(HashTreeLevelsRequest message, int version)
+        {
+            long size = RepairJobDesc.serializer.serializedSize(message.desc, version);
+            size += TypeSizes.sizeof(message.ranges.size());
+            for (Range<Token> range : message.ranges)
+                size += AbstractBounds.tokenSerializer.serializedSize(range, version);
+            size += TypeSizes.sizeof(message.levels);
+            return size;
+        }
+    };
+}
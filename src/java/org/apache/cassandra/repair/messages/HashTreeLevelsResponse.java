@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair.messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.utils.MerkleTree;
+
+/**
+ * The response to a {@link HashTreeLevelsRequest}: the subtrees of the requested ranges, in the order of the request,
+ * null for a range that no node of the trees of the replica covers exactly. The response holds no subtree at all if
+ * the replica does not have the trees of the request anymore.
+ */
+public class HashTreeLevelsResponse
+{
+    public final List<MerkleTree> subtrees;
+
+    public HashTreeLevelsResponse(List<MerkleTree> subtrees)
+    {
+        this.subtrees = subtrees;
+    }
+
+    public boolean success()
+    {
+        return subtrees != null;
+    }
+
+    public static final IVersionedSerializer<HashTreeLevelsResponse> serializer = new IVersionedSerializer<HashTreeLevelsResponse>()
+    {
+        public void serialize(HashTreeLevelsResponse response, DataOutputPlus out, int version) throws IOException
+        {
+            out.writeBoolean(response.success());
+            if (!response.success())
+                return;
+
+            out.writeInt(response.subtrees.size());
+            for (MerkleTree subtree : response.subtrees)
+            {
+                out.writeBoolean(subtree != null);
+                if (subtree != null)
+                    subtree.serialize(out, version);
+            }
+        }
+
+        public HashTreeLevelsResponse deserialize(DataInputPlus in, int version) throws IOException
+        {
+            if (!in.readBoolean())
+                return new HashTreeLevelsResponse(null);
+
+            int count = in.readInt();
+            List<MerkleTree> subtrees = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                subtrees.add(in.readBoolean() ? MerkleTree.deserialize(in, false, version) : null);
+            return new HashTreeLevelsResponse(subtrees);
+        }
+
+        public long serializedSize(HashTreeLevelsResponse response, int version)
+        {
+            long size = TypeSizes.sizeof(response.success());
+            if (!response.success())
+                return size;
+
+            size += TypeSizes.sizeof(response.subtrees.size());
+            for (MerkleTree subtree : response.subtrees)
+            {
+                size += TypeSizes.sizeof(subtree != null);
+                if (subtree != null)
+                    size += subtree.serializedSize(version);
+            }
+            return size;
+        }
+    };
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair.messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.repair.RepairJobDesc;
+
+/**
+ * Asks a replica for the hashes a validation at {@code nowInSec} computes for every partition of the given ranges,
+ * unless a range holds more than {@code maxPartitions} partitions. The replica answers with a
+ * {@link PartitionHashesResponse}.
+ */
+public class PartitionHashesRequest extends RepairMessage
+{
+    public final List<Range<Token>> ranges;
+    public final int nowInSec;
+    public final int maxPartitions;
+
+    public PartitionHashesRequest(RepairJobDesc desc, List<Range<Token>> ranges, int nowInSec, int maxPartitions)
+    {
+        super(desc);
+        this.ranges = ranges;
+        this.nowInSec = nowInSec;
+        this.maxPartitions = maxPartitions;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof PartitionHashesRequest))
+            return false;
+        PartitionHashesRequest that = (PartitionHashesRequest) o;
+        return desc.equals(that.desc) && ranges.equals(that.ranges) && nowInSec == that.nowInSec && maxPartitions == that.maxPartitions;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(desc, ranges, nowInSec, maxPartitions);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PartitionHashesRequest{" +
+               "ranges=" + ranges +
+               ", nowInSec=" + nowInSec +
+               ", maxPartitions=" + maxPartitions +
+               "} " + super.toString();
+    }
+
+    public static final IVersionedSerializer<PartitionHashesRequest> serializer = new IVersionedSerializer<PartitionHashesRequest>()
+    {
+        public void serialize(PartitionHashesRequest message, DataOutputPlus out, int version) throws IOException
+        {
+            RepairJobDesc.serializer.serialize(message.desc, out, version);
+            out.writeInt(message.ranges.size());
+            for (Range<Token> range : message.ranges)
+                AbstractBounds.tokenSerializer.serialize(range, out, version);
+            out.writeInt(message.nowInSec);
+            out.writeInt(message.maxPartitions);
+        }
+
+        public PartitionHashesRequest deserialize(DataInputPlus in, int version) throws IOException
+        {
+            RepairJobDesc desc = RepairJobDesc.serializer.deserialize(in, version);
+            int rangesCount = in.readInt();
+            List<Range<Token>> ranges = new ArrayList<>(rangesCount);
+            for (int i = 0; i < rangesCount; ++i)
+                ranges.add((Range<Token>) AbstractBounds.tokenSerializer.deserialize(in, IPartitioner.global(), version));
+            int nowInSec = in.readInt();
+            return new PartitionHashesRequest(desc, ranges, nowInSec, in.readInt());
+        }
+
+        public long serializedSize(PartitionHashesRequest message, int version)
+        {
+            long size = RepairJobDesc.serializer.serializedSize(message.desc, version);
+            size += TypeSizes.sizeof(message.ranges.size());
+            for (Range<Token> range : message.ranges)
+                size += AbstractBounds.tokenSerializer.serializedSize(range, version);
+            size += TypeSizes.sizeof(message.nowInSec);
+            size += TypeSizes.sizeof(message.maxPartitions);
+            return size;
+        }
+    };
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair.messages;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * The response to a {@link PartitionHashesRequest}: for every requested range, in the order of the request, the
+ * hashes of its partitions in partition order, or null if it holds too many partitions. Partitions a validation
+ * hashes nothing of are left out, as they leave the merkle trees unchanged. The response holds no range at all if
+ * the replica failed to read them.
+ */
+public class PartitionHashesResponse
+{
+    public final List<List<PartitionHash>> ranges;
+
+    public PartitionHashesResponse(List<List<PartitionHash>> ranges)
+    {
+        this.ranges = ranges;
+    }
+
+    public boolean success()
+    {
+        return ranges != null;
+    }
+
+    /**
+     * The hash of a partition, by its key.
+     */
+    public static class PartitionHash
+    {
+        public final ByteBuffer key;
+        public final byte[] hash;
+
+        public PartitionHash(ByteBuffer key, byte[] hash)
+        {
+            this.key = key;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof PartitionHash))
+                return false;
+            PartitionHash that = (PartitionHash) o;
+            return key.equals(that.key) && Arrays.equals(hash, that.hash);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * key.hashCode() + Arrays.hashCode(hash);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "PartitionHash(" + ByteBufferUtil.bytesToHex(key) + ')';
+        }
+    }
+
+    public static final IVersionedSerializer<PartitionHashesResponse> serializer = new IVersionedSerializer<PartitionHashesResponse>()
+    {
+        public void serialize(PartitionHashesResponse response, DataOutputPlus out, int version) throws IOException
+        {
+            out.writeBoolean(response.success());
+            if (!response.success())
+                return;
+
+            out.writeInt(response.ranges.size());
+            for (List<PartitionHash> hashes : response.ranges)
+            {
+                out.writeBoolean(hashes != null);
+                if (hashes == null)
+                    continue;
+
+                out.writeInt(hashes.size());
+                for (PartitionHash hash : hashes)
+                {
+                    ByteBufferUtil.writeWithShortLength(hash.key, out);
+                    ByteBufferUtil.writeWithShortLength(ByteBuffer.wrap(hash.hash), out);
+                }
+            }
+        }
+
+        public PartitionHashesResponse deserialize(DataInputPlus in, int version) throws IOException
+        {
+            if (!in.readBoolean())
+                return new PartitionHashesResponse(null);
+
+            int rangeCount = in.readInt();
+            List<List<PartitionHash>> ranges = new ArrayList<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++)
+            {
+                if (!in.readBoolean())
+                {
+                    ranges.add(null);
+                    continue;
+                }
+
+                int count = in.readInt();
+                List<PartitionHash> hashes = new ArrayList<>(count);
+                for (int j = 0; j < count; j++)
+                {
+                    ByteBuffer key = ByteBufferUtil.readWithShortLength(in);
+                    hashes.add(new PartitionHash(key, ByteBufferUtil.getArray(ByteBufferUtil.readWithShortLength(in))));
+                }
+                ranges.add(hashes);
+            }
+            return new PartitionHashesResponse(ranges);
+        }
+
+        public long serializedSize(PartitionHashesResponse response, int version)
+        {
+            long size = TypeSizes.sizeof(response.success());
+            if (!response.success())
+                return size;
+
+            size += TypeSizes.sizeof(response.ranges.size());
+            for (List<PartitionHash> hashes : response.ranges)
+            {
+                size += TypeSizes.sizeof(hashes != null);
+                if (hashes == null)
+                    continue;
+
+                size += TypeSizes.sizeof(hashes.size());
+                for (PartitionHash hash : hashes)
+                {
+                    size += ByteBufferUtil.serializedSizeWithShortLength(hash.key);
+                    size += ByteBufferUtil.serializedSizeWithShortLength(ByteBuffer.wrap(hash.hash));
+                }
+            }
+            return size;
+        }
+    };
+}
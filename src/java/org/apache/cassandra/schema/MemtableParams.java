@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.schema;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.SkipListMemtable;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static java.lang.String.format;
+
+// CQL: {'class' : 'SkipListMemtable'|'TrieMemtable'|<custom class>, <implementation options>}
+public final class MemtableParams
+{
+    public enum Option
+    {
+        CLASS;
+
+        @Override
+        public String toString()
+        {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final String DEFAULT_PACKAGE = "org.apache.cassandra.db.";
+
+    public static final MemtableParams DEFAULT = new MemtableParams(SkipListMemtable.class.getName(), ImmutableMap.of());
+
+    // The class is only resolved and initialized on first use, as memtable classes depend on the memtable pool,
+    // which is not available in client mode.
+    private final String className;
+    private final ImmutableMap<String, String> options;
+    private volatile Memtable.Factory factory;
+
+    private MemtableParams(String className, Map<String, String> options)
+    {
+        this.className = className;
+        this.options = ImmutableMap.copyOf(options);
+    }
+
+    public static MemtableParams create(Class<? extends Memtable> klass, Map<String, String> options)
+    {
+        return new MemtableParams(klass.getName(), options);
+    }
+
+    public static MemtableParams fromMap(Map<String, String> map)
+    {
+        Map<String, String> options = new HashMap<>(map);
+
+        String className = options.remove(Option.CLASS.toString());
+        if (className == null)
+        {
+            throw new ConfigurationException(format("Missing sub-option '%s' for the '%s' option",
+                                                    Option.CLASS,
+                                                    TableParams.Option.MEMTABLE));
+        }
+
+        return new MemtableParams(className.contains(".") ? className : DEFAULT_PACKAGE + className, options);
+    }
+
+    public void validate()
+    {
+        Class<?> klass = memtableClass();
+        factoryMethod(klass);
+
+        // Only construct the factory when there are options to check, as it initializes the memtable classes.
+        if (!options.isEmpty())
+            factory();
+    }
+
+    public String className()
+    {
+        return className;
+    }
+
+    /**
+     * All implementation options - excluding 'class'.
+     */
+    public Map<String, String> options()
+    {
+        return options;
+    }
+
+    public Memtable.Factory factory()
+    {
+        Memtable.Factory factory = this.factory;
+        if (factory == null)
+        {
+            factory = createFactory();
+            this.factory = factory;
+        }
+        return factory;
+    }
+
+    private Memtable.Factory createFactory()
+    {
+        Method method = factoryMethod(memtableClass());
+        try
+        {
+            return (Memtable.Factory) method.invoke(null, options);
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getTargetException() instanceof ConfigurationException)
+                throw (ConfigurationException) e.getTargetException();
+
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            throw new ConfigurationException(format("%s.factory() threw an error: %s %s",
+                                                    className,
+                                                    cause.getClass().getName(),
+                                                    cause.getMessage()),
+                                             e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new ConfigurationException("Cannot access method factory in " + className, e);
+        }
+    }
+
+    private Class<?> memtableClass()
+    {
+        Class<?> klass;
+        try
+        {
+            klass = Class.forName(className, false, MemtableParams.class.getClassLoader());
+        }
+        catch (ClassNotFoundException | NoClassDefFoundError e)
+        {
+            throw new ConfigurationException(format("Unable to find memtable class '%s'", className), e);
+        }
+
+        if (!Memtable.class.isAssignableFrom(klass))
+            throw new ConfigurationException(format("Memtable class %s is not derived from Memtable", className));
+
+        return klass;
+    }
+
+    private static Method factoryMethod(Class<?> klass)
+    {
+        try
+        {
+            Method method = klass.getMethod("factory", Map.class);
+            if (!Modifier.isStatic(method.getModifiers()) || !Memtable.Factory.class.isAssignableFrom(method.getReturnType()))
+                throw new NoSuchMethodException();
+            return method;
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ConfigurationException(format("Memtable class %s does not provide a static factory(Map<String, String>) method",
+                                                    klass.getName()));
+        }
+    }
+
+    public Map<String, String> asMap()
+    {
+        Map<String, String> map = new HashMap<>(options);
+        map.put(Option.CLASS.toString(), className);
+        return map;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                          .add("class", className)
+                          .add("options", options)
+                          .toString();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof MemtableParams))
+            return false;
+
+        MemtableParams mp = (MemtableParams) o;
+
+        return className.equals(mp.className) && options.equals(mp.options);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hashCode(className, options);
+    }
+}
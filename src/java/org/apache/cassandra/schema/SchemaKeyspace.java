@@ -133,6 +133,7 @@ public final class SchemaKeyspace
               + "gc_grace_seconds int,"
               + "id uuid,"
               + "max_index_interval int,"
+              + "memtable frozen<map<text, text>>,"
               + "memtable_flush_period_in_ms int,"
               + "min_index_interval int,"
               + "read_repair_chance double," // no longer used, left for drivers' sake
@@ -200,6 +201,7 @@ public final class SchemaKeyspace
               + "id uuid,"
               + "include_all_columns boolean,"
               + "max_index_interval int,"
+              + "memtable frozen<map<text, text>>,"
               + "memtable_flush_period_in_ms int,"
               + "min_index_interval int,"
               + "read_repair_chance double," // no longer used, left for drivers' sake
@@ -567,15 +569,31 @@ public final class SchemaKeyspace
                .add("read_repair", params.readRepair.toString())
                .add("extensions", params.extensions);
 
+        // Only add the memtable options if they are not the default, so that the schema of tables that do not use
+        // the option is the same as on nodes that do not know about it.
+        if (!params.memtable.equals(MemtableParams.DEFAULT))
+            builder.add("memtable", params.memtable.asMap());
+
         // Only add CDC-enabled flag to schema if it's enabled on the node. This is to work around RTE's post-8099 if a 3.8+
         // node sends table schema to a < 3.8 versioned node with an unknown column.
         if (DatabaseDescriptor.isCDCEnabled())
             builder.add("cdc", params.cdc);
     }
 
+    /**
+     * As the memtable options are only written when they differ from the default, switching a table back to the
+     * default memtable must explicitly delete the previously written value.
+     */
+    private static boolean isMemtableReset(TableParams before, TableParams after)
+    {
+        return !before.memtable.equals(MemtableParams.DEFAULT) && after.memtable.equals(MemtableParams.DEFAULT);
+    }
+
     private static void addAlterTableToSchemaMutation(TableMetadata oldTable, TableMetadata newTable, Mutation.SimpleBuilder builder)
     {
         addTableToSchemaMutation(newTable, false, builder);
+        if (isMemtableReset(oldTable.params, newTable.params))
+            builder.update(Tables).row(newTable.name).add("memtable", null);
 
         MapDifference<ByteBuffer, ColumnMetadata> columnDiff = Maps.difference(oldTable.columns, newTable.columns);
 
@@ -767,6 +785,8 @@ public final class SchemaKeyspace
     private static void addAlterViewToSchemaMutation(ViewMetadata before, ViewMetadata after, Mutation.SimpleBuilder builder)
     {
         addViewToSchemaMutation(after, false, builder);
+        if (isMemtableReset(before.metadata.params, after.metadata.params))
+            builder.update(Views).row(after.name()).add("memtable", null);
 
         MapDifference<ByteBuffer, ColumnMetadata> columnDiff = Maps.difference(before.metadata.columns, after.metadata.columns);
 
@@ -978,6 +998,9 @@ public final class SchemaKeyspace
                           .extensions(row.getFrozenMap("extensions", UTF8Type.instance, BytesType.instance))
                           .gcGraceSeconds(row.getInt("gc_grace_seconds"))
                           .maxIndexInterval(row.getInt("max_index_interval"))
+                          .memtable(row.has("memtable") ?
+                                    MemtableParams.fromMap(row.getFrozenTextMap("memtable")) :
+                                    MemtableParams.DEFAULT)
                           .memtableFlushPeriodInMs(row.getInt("memtable_flush_period_in_ms"))
                           .minIndexInterval(row.getInt("min_index_interval"))
                           .crcCheckChance(row.getDouble("crc_check_chance"))
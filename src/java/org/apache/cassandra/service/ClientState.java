@@ -433,6 +433,38 @@ public class ClientState
                                                       resource));
     }
 
+    /**
+     * Checks whether {@link #ensureTablePermission(TableMetadata, Permission)} would grant the permission from what the
+     * auth caches already hold, that is without looking up the roles or permissions of the user.
+     *
+     * @return true if the permission would be granted without a lookup, false if granting it could need a lookup or
+     * the permission would be denied
+     */
+    public boolean hasCachedTablePermission(TableMetadata table, Permission perm)
+    {
+        if (isInternal)
+            return true;
+
+        if (user == null || !user.hasCachedLocalAccess())
+            return false;
+
+        if (!DatabaseDescriptor.getAuthorizer().requireAuthorization())
+            return true;
+
+        if ((perm == Permission.SELECT) && READABLE_SYSTEM_RESOURCES.contains(table.resource))
+            return true;
+
+        for (IResource r : Resources.chain(table.resource))
+        {
+            Set<Permission> permissions = user.getCachedPermissions(r);
+            if (permissions == null)
+                return false;
+            if (permissions.contains(perm))
+                return true;
+        }
+        return false;
+    }
+
     private void preventSystemKSSchemaModification(String keyspace, DataResource resource, Permission perm)
     {
         // we only care about DDL statements
@@ -19,6 +19,8 @@ package org.apache.cassandra.service;
 
 import java.net.InetAddress;
 
+import org.apache.cassandra.cql3.CQLStatement;
+import org.apache.cassandra.db.ReadQuery;
 import org.apache.cassandra.transport.ClientStat;
 import org.apache.cassandra.utils.FBUtilities;
 
@@ -35,6 +37,10 @@ public class QueryState
     private long timestamp = Long.MIN_VALUE;
     private int nowInSeconds = Integer.MIN_VALUE;
 
+    // a read query already built for a statement of the request, and that statement
+    private CQLStatement readQueryStatement;
+    private ReadQuery readQuery;
+
     public QueryState(ClientState clientState)
     {
         this.clientState = clientState;
@@ -106,6 +112,24 @@ public class QueryState
         return nowInSeconds;
     }
 
+    /**
+     * Records the read query the given statement has already been built into for this request, so that executing the
+     * statement reuses it rather than building it again.
+     */
+    public void setReadQuery(CQLStatement statement, ReadQuery query)
+    {
+        this.readQueryStatement = statement;
+        this.readQuery = query;
+    }
+
+    /**
+     * @return the read query recorded for the given statement by {@link #setReadQuery}, or null if there is none
+     */
+    public ReadQuery getReadQuery(CQLStatement statement)
+    {
+        return statement == readQueryStatement ? readQuery : null;
+    }
+
     public ClientState getClientState()
     {
         return clientState;
@@ -1442,7 +1442,7 @@ public class StorageProxy implements StorageProxyMBean
         if (insertLocal)
         {
             Preconditions.checkNotNull(localReplica);
-            performLocally(stage, localReplica, mutation::apply, responseHandler);
+            performLocally(stage, mutation, localReplica, mutation::apply, responseHandler);
         }
 
         if (localDc != null)
@@ -1535,7 +1535,12 @@ public class StorageProxy implements StorageProxyMBean
 
     private static void performLocally(Stage stage, Replica localReplica, final Runnable runnable, final RequestCallback<?> handler)
     {
-        stage.maybeExecuteImmediately(new LocalMutationRunnable(localReplica)
+        performLocally(stage, null, localReplica, runnable, handler);
+    }
+
+    private static void performLocally(Stage stage, IMutation mutation, Replica localReplica, final Runnable runnable, final RequestCallback<?> handler)
+    {
+        stage.executor(mutation).maybeExecuteImmediately(new LocalMutationRunnable(localReplica)
         {
             public void runMayThrow()
             {
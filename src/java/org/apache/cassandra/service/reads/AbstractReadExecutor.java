@@ -18,6 +18,7 @@
 package org.apache.cassandra.service.reads;
 
 import com.google.common.base.Preconditions;
+import io.netty.util.concurrent.FastThreadLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +62,9 @@ public abstract class AbstractReadExecutor
 {
     private static final Logger logger = LoggerFactory.getLogger(AbstractReadExecutor.class);
 
+    // set while the reads of a request are run on its calling thread, only reading the local replica
+    private static final FastThreadLocal<Boolean> readLocallyInline = new FastThreadLocal<>();
+
     protected final ReadCommand command;
     private   final ReplicaPlan.SharedForTokenRead replicaPlan;
     protected final ReadRepair<EndpointsForToken, ReplicaPlan.ForTokenRead> readRepair;
@@ -155,10 +159,35 @@ public abstract class AbstractReadExecutor
         if (hasLocalEndpoint)
         {
             logger.trace("reading {} locally", readCommand.isDigestQuery() ? "digest" : "data");
-            Stage.READ.maybeExecuteImmediately(new LocalReadRunnable(command, handler));
+            if (isReadingLocallyInline())
+                new LocalReadRunnable(command, handler).run();
+            else
+                Stage.READ.executor(command).maybeExecuteImmediately(new LocalReadRunnable(command, handler));
+        }
+    }
+
+    /**
+     * Runs the given task with the single partition reads at ONE or LOCAL_ONE it does read from the local replica only,
+     * on the calling thread, so that they don't wait on another thread or node.
+     */
+    public static void runReadingLocallyInline(Runnable task)
+    {
+        readLocallyInline.set(Boolean.TRUE);
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            readLocallyInline.remove();
         }
     }
 
+    private static boolean isReadingLocallyInline()
+    {
+        return readLocallyInline.get() == Boolean.TRUE;
+    }
+
     /**
      * Perform additional requests if it looks like the original will time out.  May block while it waits
      * to see if the original requests are answered first.
@@ -186,6 +215,13 @@ public abstract class AbstractReadExecutor
         ColumnFamilyStore cfs = keyspace.getColumnFamilyStore(command.metadata().id);
         SpeculativeRetryPolicy retry = cfs.metadata().params.speculativeRetry;
 
+        if (isReadingLocallyInline() && (consistencyLevel == ConsistencyLevel.ONE || consistencyLevel == ConsistencyLevel.LOCAL_ONE))
+        {
+            Replica self = keyspace.getReplicationStrategy().getNaturalReplicasForToken(command.partitionKey().getToken()).selfIfPresent();
+            if (self != null && self.isFull())
+                return new NeverSpeculatingReadExecutor(cfs, command, ReplicaPlans.forSingleReplicaRead(keyspace, command.partitionKey().getToken(), self), queryStartNanoTime, false);
+        }
+
         ReplicaPlan.ForTokenRead replicaPlan = ReplicaPlans.forRead(keyspace, command.partitionKey().getToken(), consistencyLevel, retry);
 
         // Speculative retry is disabled *OR*
@@ -100,6 +100,9 @@ public class Repair extends NodeToolCmd
     @Option(title = "ignore_unreplicated_keyspaces", name = {"-iuk","--ignore-unreplicated-keyspaces"}, description = "Use --ignore-unreplicated-keyspaces to ignore keyspaces which are not replicated, otherwise the repair will fail")
     private boolean ignoreUnreplicatedKeyspaces = false;
 
+    @Option(title = "hierarchical", name = {"-hi", "--hierarchical"}, description = "Use --hierarchical to narrow down the ranges to sync from the levels of the merkle trees and the hashes of the partitions the replicas differ on, instead of shipping the whole trees")
+    private boolean hierarchical = false;
+
     private PreviewKind getPreviewKind()
     {
         if (validate)
@@ -152,6 +155,7 @@ public class Repair extends NodeToolCmd
             options.put(RepairOption.PREVIEW, getPreviewKind().toString());
             options.put(RepairOption.OPTIMISE_STREAMS_KEY, Boolean.toString(optimiseStreams));
             options.put(RepairOption.IGNORE_UNREPLICATED_KS, Boolean.toString(ignoreUnreplicatedKeyspaces));
+            options.put(RepairOption.HIERARCHICAL_KEY, Boolean.toString(hierarchical));
 
             if (!startToken.isEmpty() || !endToken.isEmpty())
             {
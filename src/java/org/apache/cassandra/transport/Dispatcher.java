@@ -26,6 +26,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.EventLoop;
 import io.netty.util.AttributeKey;
 import org.apache.cassandra.concurrent.LocalAwareExecutorService;
+import org.apache.cassandra.concurrent.VirtualThreadExecutor;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.net.FrameEncoder;
 import org.apache.cassandra.service.ClientWarn;
@@ -39,10 +40,15 @@ import static org.apache.cassandra.concurrent.SharedExecutorPool.SHARED;
 
 public class Dispatcher
 {
-    private static final LocalAwareExecutorService requestExecutor = SHARED.newExecutor(DatabaseDescriptor.getNativeTransportMaxThreads(),
-                                                                                        DatabaseDescriptor::setNativeTransportMaxThreads,
-                                                                                        "transport",
-                                                                                        "Native-Transport-Requests");
+    private static final LocalAwareExecutorService requestExecutor = DatabaseDescriptor.useVirtualThreads("Native-Transport-Requests")
+                                                                     ? new VirtualThreadExecutor(DatabaseDescriptor.getNativeTransportMaxThreads(),
+                                                                                                 DatabaseDescriptor::setNativeTransportMaxThreads,
+                                                                                                 "transport",
+                                                                                                 "Native-Transport-Requests")
+                                                                     : SHARED.newExecutor(DatabaseDescriptor.getNativeTransportMaxThreads(),
+                                                                                          DatabaseDescriptor::setNativeTransportMaxThreads,
+                                                                                          "transport",
+                                                                                          "Native-Transport-Requests");
 
     private static final ConcurrentMap<EventLoop, Flusher> flusherLookup = new ConcurrentHashMap<>();
     private final boolean useLegacyFlusher;
@@ -67,19 +73,38 @@ public class Dispatcher
 
     public void dispatch(Channel channel, Message.Request request, FlushItemConverter forFlusher)
     {
-        requestExecutor.submit(() -> processRequest(channel, request, forFlusher));
+        // local reads of data held in memory are run right away on the event loop, saving the handoffs to and from
+        // the request threads
+        InlineReads.Read inline = DatabaseDescriptor.isNativeTransportInlineReadsEnabled() ? InlineReads.read(request) : null;
+        if (inline != null)
+        {
+            inline.run(() -> processRequest(channel, request, forFlusher, inline.state));
+            return;
+        }
+
+        requestExecutor.submit(() -> processRequest(channel, request, forFlusher, null));
     }
 
     /**
      * Note: this method may be executed on the netty event loop, during initial protocol negotiation
      */
     static Message.Response processRequest(ServerConnection connection, Message.Request request)
+    {
+        return processRequest(connection, request, null);
+    }
+
+    /**
+     * @param inlineState the state an inline read has been prepared with, or null to process the request with a new one
+     */
+    private static Message.Response processRequest(ServerConnection connection, Message.Request request, QueryState inlineState)
     {
         long queryStartNanoTime = System.nanoTime();
         if (connection.getVersion().isGreaterOrEqualTo(ProtocolVersion.V4))
             ClientWarn.instance.captureWarnings();
 
         QueryState qstate = connection.validateNewMessage(request.type, connection.getVersion());
+        if (inlineState != null)
+            qstate = inlineState;
 
         Message.logger.trace("Received: {}, v={}", request, connection.getVersion());
         connection.requests.inc();
@@ -92,9 +117,10 @@ public class Dispatcher
     }
 
     /**
-     * Note: this method is not expected to execute on the netty event loop.
+     * Note: this method is not expected to execute on the netty event loop, other than for the reads picked by
+     * {@link InlineReads}.
      */
-    void processRequest(Channel channel, Message.Request request, FlushItemConverter forFlusher)
+    void processRequest(Channel channel, Message.Request request, FlushItemConverter forFlusher, QueryState inlineState)
     {
         final Message.Response response;
         final ServerConnection connection;
@@ -103,7 +129,7 @@ public class Dispatcher
         {
             assert request.connection() instanceof ServerConnection;
             connection = (ServerConnection) request.connection();
-            response = processRequest(connection, request);
+            response = processRequest(connection, request, inlineState);
             toFlush = forFlusher.toFlushItem(channel, request, response);
             Message.logger.trace("Responding: {}, v={}", response, connection.getVersion());
         }
@@ -152,7 +178,7 @@ public class Dispatcher
      * for delivering events to registered clients is dependent on protocol version and the configuration
      * of the pipeline. For v5 and newer connections, the event message is encoded into an Envelope,
      * wrapped in a FlushItem and then delivered via the pipeline's flusher, in a similar way to
-     * a Response returned from {@link #processRequest(Channel, Message.Request, FlushItemConverter)}.
+     * a Response returned from {@link #processRequest(Channel, Message.Request, FlushItemConverter, QueryState)}.
      * It's worth noting that events are not generally fired as a direct response to a client request,
      * so this flush item has a null request attribute. The dispatcher itself is created when the
      * pipeline is first configured during protocol negotiation and is attached to the channel for
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoop;
+import org.apache.cassandra.metrics.ClientMetrics;
 import org.apache.cassandra.net.FrameEncoder;
 import org.apache.cassandra.net.FrameEncoderCrc;
 import org.apache.cassandra.net.FrameEncoderLZ4;
@@ -195,6 +196,8 @@ abstract class Flusher implements Runnable
                 buf.put(body.slice(body.readerIndex(), remaining).nioBuffer());
 
             body.readerIndex(body.readerIndex() + remaining);
+            // large messages are flushed frame by frame, so that the frames of a single message are not all
+            // buffered in the channel's outbound buffer before any of them reaches the socket
             writeAndFlush(channel, payload);
         }
     }
@@ -206,6 +209,18 @@ abstract class Flusher implements Runnable
         channel.writeAndFlush(payload, channel.voidPromise());
     }
 
+    /**
+     * Writes the payload without flushing it, so that all the payloads of small messages written to a channel are
+     * flushed at once, in {@link #flushWrittenChannels()}, with a single gathering write to its socket.
+     */
+    private void write(Channel channel, FrameEncoder.Payload payload)
+    {
+        // we finish, but not "release" here since we're passing the buffer ownership to FrameEncoder#encode
+        payload.finish();
+        channel.write(payload, channel.voidPromise());
+        channels.add(channel);
+    }
+
     protected boolean processQueue()
     {
         boolean doneWork = false;
@@ -225,14 +240,20 @@ abstract class Flusher implements Runnable
 
     protected void flushWrittenChannels()
     {
-        // flush the channels pre-V5 to which messages were written in writeSingleResponse
-        for (Channel channel : channels)
-            channel.flush();
+        long start = System.nanoTime();
 
-        // Framed messages (V5) are grouped by channel, now encode them into payloads, write and flush
+        // Framed messages (V5) are grouped by channel, now encode them into payloads and write them
         for (FlushBuffer buffer : payloads.values())
             buffer.finish();
 
+        // flush the channels to which messages or payloads were written, each with one gathering write of all the
+        // buffers written to it
+        for (Channel channel : channels)
+            channel.flush();
+
+        if (!processed.isEmpty())
+            ClientMetrics.instance.recordFlush(processed.size(), System.nanoTime() - start);
+
         // Ultimately, this passes the flush item to the Consumer<FlushItem> configured in
         // whichever Dispatcher.FlushItemConverter implementation created it. Due to the quite
         // different ways in which resource allocation is handled in protocol V5 and later
@@ -303,7 +324,7 @@ abstract class Flusher implements Runnable
                 messageSize = envelopeSize(f.header);
                 if (sending.remaining() < messageSize)
                 {
-                    writeAndFlush(channel, sending);
+                    write(channel, sending);
                     sending = allocate(sizeInBytes - writtenBytes, messagesToWrite);
                 }
 
@@ -311,7 +332,7 @@ abstract class Flusher implements Runnable
                 writtenBytes += messageSize;
                 messagesToWrite--;
             }
-            writeAndFlush(channel, sending);
+            write(channel, sending);
         }
     }
 
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.transport;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Iterables;
+
+import org.apache.cassandra.auth.Permission;
+import org.apache.cassandra.cql3.QueryHandler;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.restrictions.StatementRestrictions;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.ReadQuery;
+import org.apache.cassandra.db.SinglePartitionReadCommand;
+import org.apache.cassandra.db.view.View;
+import org.apache.cassandra.exceptions.RequestValidationException;
+import org.apache.cassandra.locator.Replica;
+import org.apache.cassandra.metrics.ClientMetrics;
+import org.apache.cassandra.schema.TableId;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.schema.TableMetadataRef;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.reads.AbstractReadExecutor;
+import org.apache.cassandra.transport.messages.ExecuteMessage;
+
+/**
+ * Picks the requests that are run on the event loop that received them, rather than handed to the request threads.
+ *
+ * These are the prepared single partition reads at ONE or LOCAL_ONE that this node is a full replica for, whose data
+ * is held in memory, in the memtables or the chunk cache, and whose user the auth caches already authorize. They are
+ * run with {@link AbstractReadExecutor#runReadingLocallyInline}, so that they only read the local replica, on the event
+ * loop, and never wait on another thread or node. Should one still take longer than {@link #MAX_LATENCY_NANOS}, say
+ * because its data was evicted from the chunk cache in between, the reads of its table are handed to the request
+ * threads again for {@link #BACKOFF_NANOS}.
+ */
+final class InlineReads
+{
+    static final long MAX_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("cassandra.native_transport_inline_read_max_latency_us", 500));
+    static final long BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("cassandra.native_transport_inline_read_backoff_ms", 1000));
+
+    // the tables whose reads are not run inline, with the time until which they aren't
+    private static final ConcurrentMap<TableId, Long> backoffs = new ConcurrentHashMap<>();
+
+    /**
+     * A request picked to be run inline, with the state to process it with, which holds the query it has already
+     * been built into.
+     */
+    static final class Read
+    {
+        final TableMetadata table;
+        final QueryState state;
+
+        private Read(TableMetadata table, QueryState state)
+        {
+            this.table = table;
+            this.state = state;
+        }
+
+        /**
+         * Runs the read, only reading the local replica on the calling thread, and records the time it took.
+         */
+        void run(Runnable read)
+        {
+            long start = System.nanoTime();
+            AbstractReadExecutor.runReadingLocallyInline(read);
+            executed(table, System.nanoTime() - start);
+        }
+    }
+
+    private InlineReads()
+    {
+    }
+
+    /**
+     * @return the request as a read to run inline, or null if it should be handed to the request threads.
+     */
+    static Read read(Message.Request request)
+    {
+        if (!(request instanceof ExecuteMessage) || request.isTracingRequested() || !(request.connection() instanceof ServerConnection))
+            return null;
+
+        ExecuteMessage execute = (ExecuteMessage) request;
+        QueryHandler.Prepared prepared = ClientState.getCQLQueryHandler().getPrepared(execute.statementId);
+        if (prepared == null || !(prepared.statement instanceof SelectStatement))
+            return null;
+
+        SelectStatement select = (SelectStatement) prepared.statement;
+        TableMetadata table = select.table;
+        if (table.isVirtual() || backedOff(table.id))
+            return null;
+
+        QueryOptions options = execute.options;
+        ConsistencyLevel consistency = options.getConsistency();
+        if (consistency != ConsistencyLevel.ONE && consistency != ConsistencyLevel.LOCAL_ONE)
+            return null;
+
+        ClientState clientState = ((ServerConnection) request.connection()).getClientState();
+        if (!isAuthorizedFromCache(select, clientState))
+            return null;
+
+        StatementRestrictions restrictions = select.getRestrictions();
+        if (restrictions.isKeyRange() || restrictions.usesSecondaryIndexing())
+            return null;
+
+        List<ByteBuffer> keys;
+        ReadQuery query;
+        QueryState state = new QueryState(clientState);
+        try
+        {
+            options.prepare(prepared.statement.getBindVariables());
+            keys = restrictions.getPartitionKeys(options);
+            if (keys.size() != 1 || keys.get(0) == null)
+                return null;
+            query = select.getQuery(options, options.getNowInSeconds(state));
+        }
+        catch (RequestValidationException e)
+        {
+            // left for the request threads to report
+            return null;
+        }
+
+        Replica self = Keyspace.open(table.keyspace)
+                               .getReplicationStrategy()
+                               .getNaturalReplicasForToken(table.partitioner.getToken(keys.get(0)))
+                               .selfIfPresent();
+        if (self == null || !self.isFull())
+            return null;
+
+        if (!(query instanceof SinglePartitionReadCommand.Group))
+            return null;
+        List<SinglePartitionReadCommand> commands = ((SinglePartitionReadCommand.Group) query).queries;
+        if (commands.size() != 1 || !commands.get(0).isResidentInMemory())
+            return null;
+
+        // executing the statement reuses the query rather than building it again
+        state.setReadQuery(select, query);
+        return new Read(table, state);
+    }
+
+    /**
+     * @return whether the checks of {@link SelectStatement#authorize} would pass from what the auth caches already
+     * hold, without looking up the roles or permissions of the user
+     */
+    private static boolean isAuthorizedFromCache(SelectStatement select, ClientState state)
+    {
+        // the permissions on user functions are left for the request threads to check
+        if (Iterables.any(select.getFunctions(), function -> !function.isNative()))
+            return false;
+
+        TableMetadata table = select.table;
+        if (table.isView())
+        {
+            TableMetadataRef baseTable = View.findBaseTable(table.keyspace, table.name);
+            return baseTable == null || state.hasCachedTablePermission(baseTable.get(), Permission.SELECT);
+        }
+        return state.hasCachedTablePermission(table, Permission.SELECT);
+    }
+
+    /**
+     * Records the time an inline read of the table took, backing the table off if it was too slow.
+     */
+    static void executed(TableMetadata table, long elapsedNanos)
+    {
+        boolean slow = elapsedNanos > MAX_LATENCY_NANOS;
+        if (slow)
+            backoffs.put(table.id, System.nanoTime() + BACKOFF_NANOS);
+        ClientMetrics.instance.markInlineRequest(slow);
+    }
+
+    private static boolean backedOff(TableId table)
+    {
+        Long until = backoffs.get(table);
+        if (until == null)
+            return false;
+
+        if (System.nanoTime() - until < 0)
+            return true;
+
+        backoffs.remove(table, until);
+        return false;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import org.apache.cassandra.utils.BloomCalculations.BloomSpecification;
+
+/**
+ * The counterpart of {@link BloomCalculations} for {@link BlockedBloomFilter}s.
+ *
+ * The keys of a blocked filter are not spread evenly over its blocks, and the more loaded blocks have a higher false
+ * positive rate than a standard filter with the same number of bits per element. Following Putze, Sanders and
+ * Singler, "Cache-, Hash- and Space-Efficient Bloom Filters", the false positive rate of a blocked filter is the
+ * average of the false positive rates of a block holding i keys, weighted by the Poisson probability of a block
+ * holding i keys.
+ */
+public class BlockedBloomCalculations
+{
+    static final int MAX_BUCKETS_PER_ELEMENT = 32;
+    static final int MAX_K = BlockedBloomFilter.MAX_HASH_COUNT;
+
+    /**
+     * The false positive rate for (buckets per element, hash count), with dummy rows and columns for 0 like in
+     * {@link BloomCalculations#probs}.
+     */
+    static final double[][] probs = new double[MAX_BUCKETS_PER_ELEMENT + 1][MAX_K + 1];
+    private static final int[] optKPerBuckets = new int[MAX_BUCKETS_PER_ELEMENT + 1];
+
+    static
+    {
+        for (int buckets = 0; buckets <= MAX_BUCKETS_PER_ELEMENT; buckets++)
+        {
+            probs[buckets][0] = 1.0;
+            optKPerBuckets[buckets] = 1;
+            for (int k = 1; k <= MAX_K; k++)
+            {
+                probs[buckets][k] = buckets == 0 ? 1.0 : falsePositiveProbability(buckets, k);
+                if (probs[buckets][k] < probs[buckets][optKPerBuckets[buckets]])
+                    optKPerBuckets[buckets] = k;
+            }
+        }
+    }
+
+    static double falsePositiveProbability(int bucketsPerElement, int k)
+    {
+        double keysPerBlock = (double) BlockedBloomFilter.BLOCK_BITS / bucketsPerElement;
+        double unsetByKey = Math.pow(1 - 1.0 / BlockedBloomFilter.BLOCK_BITS, k);
+        int maxKeys = (int) (keysPerBlock + 10 * Math.sqrt(keysPerBlock) + 10);
+
+        double probability = 0;
+        double poisson = Math.exp(-keysPerBlock);
+        for (int keys = 0; keys <= maxKeys; keys++)
+        {
+            probability += poisson * Math.pow(1 - Math.pow(unsetByKey, keys), k);
+            poisson *= keysPerBlock / (keys + 1);
+        }
+        return probability;
+    }
+
+    /**
+     * @return a specification that minimizes the false positive rate for the given number of buckets per element
+     */
+    public static BloomSpecification computeBloomSpec(int bucketsPerElement)
+    {
+        assert bucketsPerElement >= 1;
+        assert bucketsPerElement <= MAX_BUCKETS_PER_ELEMENT;
+        return new BloomSpecification(optKPerBuckets[bucketsPerElement], bucketsPerElement);
+    }
+
+    /**
+     * Like {@link BloomCalculations#computeBloomSpec(int, double)}, computes the specification with the fewest
+     * buckets per element, then the fewest hashes, giving less than the specified false positive rate.
+     *
+     * @throws UnsupportedOperationException if a filter satisfying the parameters cannot be met
+     */
+    public static BloomSpecification computeBloomSpec(int maxBucketsPerElement, double maxFalsePosProb)
+    {
+        assert maxBucketsPerElement >= 1;
+        assert maxBucketsPerElement <= MAX_BUCKETS_PER_ELEMENT;
+
+        for (int buckets = 1; buckets <= maxBucketsPerElement; buckets++)
+        {
+            if (probs[buckets][optKPerBuckets[buckets]] > maxFalsePosProb)
+                continue;
+
+            int k = optKPerBuckets[buckets];
+            while (k > 1 && probs[buckets][k - 1] <= maxFalsePosProb)
+                k--;
+            return new BloomSpecification(k, buckets);
+        }
+        throw new UnsupportedOperationException(String.format("Unable to satisfy %s with %s buckets per element",
+                                                              maxFalsePosProb, maxBucketsPerElement));
+    }
+
+    /**
+     * @see BloomCalculations#maxBucketsPerElement(long)
+     */
+    public static int maxBucketsPerElement(long numElements)
+    {
+        numElements = Math.max(1, numElements);
+        double v = Long.MAX_VALUE / (double) numElements;
+        if (v < 1.0)
+        {
+            throw new UnsupportedOperationException("Cannot compute probabilities for " + numElements + " elements.");
+        }
+        return Math.min(MAX_BUCKETS_PER_ELEMENT, (int) v);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import net.nicoulaj.compilecommand.annotations.Inline;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.io.util.Memory;
+import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.concurrent.WrappedSharedCloseable;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * A Bloom filter that sets and tests all the bits of a key within a single 512-bit block, aligned to a cache line, so
+ * that a lookup costs at most one cache miss whatever the number of hashes, where {@link BloomFilter} costs one per
+ * hash.
+ *
+ * The block is chosen by the high half of the second word of the key's murmur3 hash, and each of the k bits within the
+ * block by multiplying the low half with a different odd constant and keeping the top 9 bits of the product, like the
+ * split block Bloom filters of Apache Parquet. Unlike double hashing, this does not make keys whose bits are mostly
+ * the same more likely than chance. The first word of the hash is not used, because it is the token with the murmur3
+ * partitioner and is not uniform over the keys of an sstable covering a small token range.
+ *
+ * Blocked filters need a few more bits per key than standard ones for the same false positive rate, see
+ * {@link BlockedBloomCalculations}.
+ */
+public class BlockedBloomFilter extends WrappedSharedCloseable implements IFilter
+{
+    static final int BLOCK_BITS = 512;
+    static final int BLOCK_BYTES = BLOCK_BITS / 8;
+
+    // the first eight are the salts of Parquet's split block Bloom filters
+    private static final int[] SALTS = { 0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+                                         0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31,
+                                         0xe220a839, 0x6e789e6b, 0x06c45d19, 0xf88bb8a9,
+                                         0x1b39896b, 0x53cb9f0d, 0x2c829abf, 0xc584133b };
+    static final int MAX_HASH_COUNT = SALTS.length;
+
+    private final static FastThreadLocal<long[]> reusableHash = new FastThreadLocal<long[]>()
+    {
+        protected long[] initialValue()
+        {
+            return new long[2];
+        }
+    };
+
+    public final int hashCount;
+    public final int blockCount;
+    private final Memory bytes;
+    // the offset of the first block, aligned to a cache line, in bytes
+    private final long offset;
+
+    BlockedBloomFilter(int hashCount, long blockCount)
+    {
+        this(hashCount, checkBlockCount(blockCount), allocate(blockCount));
+    }
+
+    private BlockedBloomFilter(int hashCount, int blockCount, Memory bytes)
+    {
+        super(bytes);
+        this.hashCount = hashCount;
+        this.blockCount = blockCount;
+        this.bytes = bytes;
+        // native allocations are only guaranteed to be 16-byte aligned, hence the extra block
+        this.offset = -MemoryUtil.getAddress(bytes.asByteBuffer(0, 1)) & (BLOCK_BYTES - 1);
+        clear();
+    }
+
+    private BlockedBloomFilter(BlockedBloomFilter copy)
+    {
+        super(copy);
+        this.hashCount = copy.hashCount;
+        this.blockCount = copy.blockCount;
+        this.bytes = copy.bytes;
+        this.offset = copy.offset;
+    }
+
+    private static int checkBlockCount(long blockCount)
+    {
+        // the same 16GB limit as OffHeapBitSet
+        if (blockCount > Integer.MAX_VALUE / (BLOCK_BYTES / 8))
+            throw new UnsupportedOperationException("Bloom filter size is > 16GB, reduce the bloom_filter_fp_chance");
+        return (int) blockCount;
+    }
+
+    private static Memory allocate(long blockCount)
+    {
+        try
+        {
+            return Memory.allocate((blockCount + 1) * BLOCK_BYTES);
+        }
+        catch (OutOfMemoryError e)
+        {
+            throw new RuntimeException("Out of native memory occured, You can avoid it by increasing the system ram space or by increasing bloom_filter_fp_chance.");
+        }
+    }
+
+    public long serializedSize()
+    {
+        return BloomFilterSerializer.serializedSize(this);
+    }
+
+    void serializeBlocks(DataOutputPlus out) throws IOException
+    {
+        out.write(bytes, offset, (long) blockCount * BLOCK_BYTES);
+    }
+
+    static BlockedBloomFilter deserialize(DataInput in, int hashCount, int blockCount) throws IOException
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(hashCount, blockCount);
+        try
+        {
+            byte[] buffer = new byte[BLOCK_BYTES * 1024];
+            long length = (long) blockCount * BLOCK_BYTES;
+            for (long position = 0; position < length; )
+            {
+                int count = (int) Math.min(buffer.length, length - position);
+                in.readFully(buffer, 0, count);
+                filter.bytes.setBytes(filter.offset + position, buffer, 0, count);
+                position += count;
+            }
+            return filter;
+        }
+        catch (Throwable t)
+        {
+            filter.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return the offset of the block of the given hash, mapping its high 32 bits onto the blocks without a division
+     */
+    @Inline
+    private long blockOffset(long hash)
+    {
+        return offset + ((hash >>> 32) * blockCount >>> 32) * BLOCK_BYTES;
+    }
+
+    /**
+     * @return the position in its block of the i-th bit of the key with the given hash
+     */
+    @Inline
+    private static int bit(long hash, int i)
+    {
+        return ((int) hash * SALTS[i]) >>> 23;
+    }
+
+    /**
+     * @return the offset within its block of the 64-bit word holding the given bit
+     */
+    @Inline
+    private static long wordOffset(int bit)
+    {
+        return (bit >>> 6) << 3;
+    }
+
+    public void add(FilterKey key)
+    {
+        long[] hash = reusableHash.get();
+        key.filterHash(hash);
+
+        long block = blockOffset(hash[1]);
+        for (int i = 0; i < hashCount; i++)
+        {
+            int bit = bit(hash[1], i);
+            long word = block + wordOffset(bit);
+            bytes.setLong(word, bytes.getLong(word) | (1L << bit));
+        }
+    }
+
+    public final boolean isPresent(FilterKey key)
+    {
+        long[] hash = reusableHash.get();
+        key.filterHash(hash);
+
+        long block = blockOffset(hash[1]);
+        for (int i = 0; i < hashCount; i++)
+        {
+            int bit = bit(hash[1], i);
+            if ((bytes.getLong(block + wordOffset(bit)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public void clear()
+    {
+        bytes.setMemory(0, bytes.size(), (byte) 0);
+    }
+
+    public IFilter sharedCopy()
+    {
+        return new BlockedBloomFilter(this);
+    }
+
+    @Override
+    public long offHeapSize()
+    {
+        return bytes.size();
+    }
+
+    public String toString()
+    {
+        return "BlockedBloomFilter[hashCount=" + hashCount + ";blockCount=" + blockCount + ']';
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        super.addTo(identities);
+        identities.add(bytes);
+    }
+}
@@ -27,20 +27,59 @@ import org.apache.cassandra.utils.obs.OffHeapBitSet;
 
 public final class BloomFilterSerializer
 {
+    /**
+     * {@link BloomFilter}s are serialized starting with their hash count, which is positive, so the serialized forms
+     * of other filters start with a negative format version.
+     */
+    private static final int BLOCKED_FORMAT = -1;
+
     private BloomFilterSerializer()
     {
     }
 
+    /**
+     * Serializes a {@link BloomFilter} or a {@link BlockedBloomFilter}. Other filters, such as the
+     * {@link AlwaysPresentFilter} of tables without Bloom filters, have no serialized form.
+     *
+     * @throws IllegalArgumentException if the filter is of any other type
+     */
+    public static void serialize(IFilter filter, DataOutputPlus out) throws IOException
+    {
+        if (filter instanceof BlockedBloomFilter)
+            serialize((BlockedBloomFilter) filter, out);
+        else if (filter instanceof BloomFilter)
+            serialize((BloomFilter) filter, out);
+        else
+            throw new IllegalArgumentException("Cannot serialize a filter of type " + filter.getClass().getName());
+    }
+
     public static void serialize(BloomFilter bf, DataOutputPlus out) throws IOException
     {
         out.writeInt(bf.hashCount);
         bf.bitset.serialize(out);
     }
 
+    public static void serialize(BlockedBloomFilter bf, DataOutputPlus out) throws IOException
+    {
+        out.writeInt(BLOCKED_FORMAT);
+        out.writeInt(bf.hashCount);
+        out.writeInt(bf.blockCount);
+        bf.serializeBlocks(out);
+    }
+
     @SuppressWarnings("resource")
-    public static BloomFilter deserialize(DataInputStream in, boolean oldBfFormat) throws IOException
+    public static IFilter deserialize(DataInputStream in, boolean oldBfFormat) throws IOException
     {
         int hashes = in.readInt();
+        if (hashes == BLOCKED_FORMAT)
+        {
+            int hashCount = in.readInt();
+            int blockCount = in.readInt();
+            return BlockedBloomFilter.deserialize(in, hashCount, blockCount);
+        }
+        if (hashes < 0)
+            throw new IOException("Unknown bloom filter format " + hashes);
+
         IBitSet bs = OffHeapBitSet.deserialize(in, oldBfFormat);
 
         return new BloomFilter(hashes, bs);
@@ -59,4 +98,15 @@ public final class BloomFilterSerializer
         size += bf.bitset.serializedSize();
         return size;
     }
+
+    /**
+     * Calculates the serialized size of the given blocked Bloom filter.
+     */
+    public static long serializedSize(BlockedBloomFilter bf)
+    {
+        return TypeSizes.sizeof(BLOCKED_FORMAT)
+               + TypeSizes.sizeof(bf.hashCount)
+               + TypeSizes.sizeof(bf.blockCount)
+               + (long) bf.blockCount * BlockedBloomFilter.BLOCK_BYTES;
+    }
 }
@@ -63,6 +63,26 @@ public class FilterFactory
         return createFilter(spec.K, numElements, spec.bucketsPerElement);
     }
 
+    /**
+     * @param blocked whether to return a {@link BlockedBloomFilter}, which needs more space than a {@link BloomFilter}
+     *                but tests keys with a single cache miss
+     * @return The smallest filter of the given kind that can provide the given false positive probability rate for
+     *         the given number of elements.
+     */
+    public static IFilter getFilter(long numElements, double maxFalsePosProbability, boolean blocked)
+    {
+        if (!blocked)
+            return getFilter(numElements, maxFalsePosProbability);
+
+        assert maxFalsePosProbability <= 1.0 : "Invalid probability";
+        if (maxFalsePosProbability == 1.0)
+            return new AlwaysPresentFilter();
+        int bucketsPerElement = BlockedBloomCalculations.maxBucketsPerElement(numElements);
+        BloomCalculations.BloomSpecification spec = BlockedBloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability);
+        long numBlocks = Math.max(1, (numElements * spec.bucketsPerElement + BlockedBloomFilter.BLOCK_BITS - 1) / BlockedBloomFilter.BLOCK_BITS);
+        return new BlockedBloomFilter(spec.K, numBlocks);
+    }
+
     @SuppressWarnings("resource")
     private static IFilter createFilter(int hash, long numElements, int bucketsPer)
     {
@@ -491,6 +491,46 @@ public class MerkleTree
         return count;
     }
 
+    /**
+     * Copies the part of this tree below the node covering exactly the given range, down to {@code levels} levels
+     * below that node: the nodes at that depth are copied as leaves holding the hash of their whole subtree, so that
+     * comparing the copies of two trees tells which of these nodes differ without shipping the nodes below them.
+     *
+     * @param range the range of a node of this tree, such as the ranges {@link #difference} returns
+     * @param levels the depth of the copy, 0 copying the node alone as a leaf
+     * @return an on-heap tree covering the given range, or null if no node of this tree covers exactly that range
+     */
+    public MerkleTree subtree(Range<Token> range, int levels)
+    {
+        Preconditions.checkArgument(levels >= 0, "Invalid number of levels: %s", levels);
+        if (!fullRange.contains(range))
+            return null;
+
+        Node node = find(range);
+        if (node == null)
+            return null;
+
+        long[] leaves = new long[1];
+        OnHeapNode copy = copy(node, levels, leaves);
+        return new MerkleTree(copy, partitioner, range, hashdepth, maxsize, leaves[0]);
+    }
+
+    private static OnHeapNode copy(Node node, int levels, long[] leaves)
+    {
+        if (node instanceof Inner && levels > 0)
+        {
+            Inner inner = (Inner) node;
+            return new OnHeapInner(inner.token(), copy(inner.left(), levels - 1, leaves), copy(inner.right(), levels - 1, leaves));
+        }
+
+        leaves[0]++;
+        // on-heap nodes tell an empty hash by reference
+        OnHeapLeaf leaf = node.hasEmptyHash() ? new OnHeapLeaf() : new OnHeapLeaf(node.hash().clone());
+        leaf.sizeOfRange = node.sizeOfRange();
+        leaf.partitionsInRange = node.partitionsInRange();
+        return leaf;
+    }
+
     @Override
     public String toString()
     {
@@ -265,6 +265,46 @@ public class MerkleTrees implements Iterable<Map.Entry<Range<Token>, MerkleTree>
         return new TreeRangeIterator();
     }
 
+    /**
+     * Splits the ranges of the trees into about the given number of contiguous ranges of whole leaves, each tree
+     * being split in proportion to its number of leaves. As a leaf is entirely within one of the returned ranges,
+     * the leaves of distinct ranges can be hashed concurrently.
+     * Wrapping trees are not split, as their leaves are not iterated in token order.
+     *
+     * @param count the number of ranges wanted
+     * @return the ranges, in the order of the trees
+     */
+    public List<Range<Token>> subRanges(int count)
+    {
+        long leaves = size();
+        List<Range<Token>> subRanges = new ArrayList<>();
+        for (Map.Entry<Range<Token>, MerkleTree> entry : merkleTrees.entrySet())
+        {
+            Range<Token> range = entry.getKey();
+            MerkleTree tree = entry.getValue();
+            long parts = Math.max(1, Math.round((double) tree.size() * count / leaves));
+            if (parts == 1 || range.isWrapAround())
+            {
+                subRanges.add(range);
+                continue;
+            }
+
+            long leavesPerPart = (tree.size() + parts - 1) / parts;
+            Token left = range.left;
+            long inPart = 0;
+            for (MerkleTree.TreeRange leaf : tree.rangeIterator())
+            {
+                if (++inPart < leavesPerPart || leaf.right.equals(range.right))
+                    continue;
+                subRanges.add(new Range<>(left, leaf.right));
+                left = leaf.right;
+                inPart = 0;
+            }
+            subRanges.add(new Range<>(left, range.right));
+        }
+        return subRanges;
+    }
+
     /**
      * Log the row count per leaf for all MerkleTrees.
      *
@@ -378,6 +418,31 @@ public class MerkleTrees implements Iterable<Map.Entry<Range<Token>, MerkleTree>
         return new MerkleTrees(partitioner, movedTrees.values());
     }
 
+    /**
+     * @return on-heap copies of the top {@code levels} levels of all the trees, see {@link MerkleTree#subtree(Range, int)}
+     */
+    public MerkleTrees topLevels(int levels)
+    {
+        List<MerkleTree> trees = new ArrayList<>(merkleTrees.size());
+        for (MerkleTree tree : merkleTrees.values())
+            trees.add(tree.subtree(tree.fullRange, levels));
+        return new MerkleTrees(partitioner, trees);
+    }
+
+    /**
+     * @return a copy of the part of the tree holding the given range that is below the node covering exactly that
+     * range, see {@link MerkleTree#subtree(Range, int)}, or null if no node of the trees covers exactly that range
+     */
+    public MerkleTree subtree(Range<Token> range, int levels)
+    {
+        for (MerkleTree tree : merkleTrees.values())
+        {
+            if (tree.fullRange.contains(range))
+                return tree.subtree(range, levels);
+        }
+        return null;
+    }
+
     /**
      * Get the differences between the two sets of MerkleTrees.
      *
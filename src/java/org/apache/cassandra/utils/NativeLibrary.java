@@ -22,6 +22,7 @@ import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.TimeUnit;
 
@@ -29,8 +30,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sun.jna.LastErrorException;
+import com.sun.jna.Pointer;
 
 import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.utils.memory.MemoryUtil;
 
 import static org.apache.cassandra.config.CassandraRelevantProperties.OS_ARCH;
 import static org.apache.cassandra.config.CassandraRelevantProperties.OS_NAME;
@@ -62,8 +65,9 @@ public final class NativeLibrary
     private static final int F_GETFL   = 3;  /* get file status flags */
     private static final int F_SETFL   = 4;  /* set file status flags */
     private static final int F_NOCACHE = 48; /* Mac OS X specific flag, turns cache on/off */
-    private static final int O_DIRECT  = 040000; /* fcntl.h */
+    private static final int O_DIRECT; /* fcntl.h, architecture specific */
     private static final int O_RDONLY  = 00000000; /* fcntl.h */
+    private static final int O_WRONLY  = 00000001; /* fcntl.h */
 
     private static final int POSIX_FADV_NORMAL     = 0; /* fadvise.h */
     private static final int POSIX_FADV_RANDOM     = 1; /* fadvise.h */
@@ -126,6 +130,14 @@ public final class NativeLibrary
             MCL_CURRENT = 1;
             MCL_FUTURE = 2;
         }
+
+        String arch = OS_ARCH.getString().toLowerCase();
+        if (arch.contains("ppc"))
+            O_DIRECT = 0400000;
+        else if (arch.contains("aarch64") || arch.contains("arm"))
+            O_DIRECT = 0200000;
+        else
+            O_DIRECT = 040000;
     }
 
     private NativeLibrary() {}
@@ -321,6 +333,113 @@ public final class NativeLibrary
         return fd;
     }
 
+    /**
+     * Opens the given file for reading with O_DIRECT, so that reads bypass the page cache. This is only supported
+     * on Linux, and requires reads to be aligned to the logical block size of the device in position, length and
+     * memory address.
+     *
+     * @return the file descriptor, or -1 if the file could not be opened for direct reads
+     */
+    public static int tryOpenDirect(String path)
+    {
+        return tryOpenDirect(path, O_RDONLY);
+    }
+
+    /**
+     * Opens the given existing file for writing with O_DIRECT, so that writes bypass the page cache. The same
+     * restrictions as for {@link #tryOpenDirect(String)} apply to the writes.
+     *
+     * @return the file descriptor, or -1 if the file could not be opened for direct writes
+     */
+    public static int tryOpenDirectForWriting(String path)
+    {
+        return tryOpenDirect(path, O_WRONLY);
+    }
+
+    private static int tryOpenDirect(String path, int mode)
+    {
+        if (osType != LINUX)
+            return -1;
+
+        try
+        {
+            return wrappedLibrary.callOpen(path, mode | O_DIRECT);
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            // JNA is unavailable just skipping Direct I/O
+        }
+        catch (RuntimeException e)
+        {
+            if (!(e instanceof LastErrorException))
+                throw e;
+
+            logger.debug("open({}, {} | O_DIRECT) failed, errno ({}).", path, mode == O_RDONLY ? "O_RDONLY" : "O_WRONLY", errno(e));
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads from the given file descriptor into the remaining space of the given direct buffer, starting at the given
+     * file position, and advances the position of the buffer by the number of bytes read.
+     *
+     * @return the number of bytes read, which is less than requested at the end of the file
+     * @throws IOException if the read fails
+     */
+    public static int pread(int fd, ByteBuffer buffer, long position) throws IOException
+    {
+        assert buffer.isDirect();
+        try
+        {
+            Pointer address = new Pointer(MemoryUtil.getAddress(buffer) + buffer.position());
+            int read = (int) wrappedLibrary.callPread(fd, address, buffer.remaining(), position);
+            buffer.position(buffer.position() + read);
+            return read;
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            throw new IOException("pread is not available", e);
+        }
+        catch (RuntimeException e)
+        {
+            if (!(e instanceof LastErrorException))
+                throw e;
+
+            throw new IOException(String.format("pread(%d, %d, %d) failed, errno (%d).", fd, buffer.remaining(), position, errno(e)), e);
+        }
+    }
+
+    /**
+     * Writes the remaining content of the given direct buffer to the given file descriptor, starting at the given
+     * file position, and advances the position of the buffer by the number of bytes written.
+     *
+     * @return the number of bytes written, which may be less than requested
+     * @throws IOException if the write fails
+     */
+    public static int pwrite(int fd, ByteBuffer buffer, long position) throws IOException
+    {
+        assert buffer.isDirect();
+        try
+        {
+            Pointer address = new Pointer(MemoryUtil.getAddress(buffer) + buffer.position());
+            int written = (int) wrappedLibrary.callPwrite(fd, address, buffer.remaining(), position);
+            buffer.position(buffer.position() + written);
+            return written;
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            throw new IOException("pwrite is not available", e);
+        }
+        catch (RuntimeException e)
+        {
+            if (!(e instanceof LastErrorException))
+                throw e;
+
+            throw new IOException(String.format("pwrite(%d, %d, %d) failed, errno (%d).", fd, buffer.remaining(), position, errno(e)), e);
+        }
+    }
+
     public static void trySync(int fd)
     {
         if (fd == -1)
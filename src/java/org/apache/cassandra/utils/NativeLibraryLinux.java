@@ -74,6 +74,8 @@ public class NativeLibraryLinux implements NativeLibraryWrapper
     private static native int fcntl(int fd, int command, long flags) throws LastErrorException;
     private static native int posix_fadvise(int fd, long offset, int len, int flag) throws LastErrorException;
     private static native int open(String path, int flags) throws LastErrorException;
+    private static native long pread(int fd, Pointer buffer, long count, long offset) throws LastErrorException;
+    private static native long pwrite(int fd, Pointer buffer, long count, long offset) throws LastErrorException;
     private static native int fsync(int fd) throws LastErrorException;
     private static native int close(int fd) throws LastErrorException;
     private static native Pointer strerror(int errnum) throws LastErrorException;
@@ -104,6 +106,16 @@ public class NativeLibraryLinux implements NativeLibraryWrapper
         return open(path, flags);
     }
 
+    public long callPread(int fd, Pointer buffer, long count, long offset) throws UnsatisfiedLinkError, RuntimeException
+    {
+        return pread(fd, buffer, count, offset);
+    }
+
+    public long callPwrite(int fd, Pointer buffer, long count, long offset) throws UnsatisfiedLinkError, RuntimeException
+    {
+        return pwrite(fd, buffer, count, offset);
+    }
+
     public int callFsync(int fd) throws UnsatisfiedLinkError, RuntimeException
     {
         return fsync(fd);
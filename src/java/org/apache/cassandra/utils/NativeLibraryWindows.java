@@ -94,6 +94,16 @@ public class NativeLibraryWindows implements NativeLibraryWrapper
         throw new UnsatisfiedLinkError();
     }
 
+    public long callPread(int fd, Pointer buffer, long count, long offset) throws UnsatisfiedLinkError, RuntimeException
+    {
+        throw new UnsatisfiedLinkError();
+    }
+
+    public long callPwrite(int fd, Pointer buffer, long count, long offset) throws UnsatisfiedLinkError, RuntimeException
+    {
+        throw new UnsatisfiedLinkError();
+    }
+
     public int callFsync(int fd) throws UnsatisfiedLinkError, RuntimeException
     {
         throw new UnsatisfiedLinkError();
@@ -37,6 +37,8 @@ interface NativeLibraryWrapper
     int callFcntl(int fd, int command, long flags) throws UnsatisfiedLinkError, RuntimeException;
     int callPosixFadvise(int fd, long offset, int len, int flag) throws UnsatisfiedLinkError, RuntimeException;
     int callOpen(String path, int flags) throws UnsatisfiedLinkError, RuntimeException;
+    long callPread(int fd, Pointer buffer, long count, long offset) throws UnsatisfiedLinkError, RuntimeException;
+    long callPwrite(int fd, Pointer buffer, long count, long offset) throws UnsatisfiedLinkError, RuntimeException;
     int callFsync(int fd) throws UnsatisfiedLinkError, RuntimeException;
     int callClose(int fd) throws UnsatisfiedLinkError, RuntimeException;
     Pointer callStrerror(int errnum) throws UnsatisfiedLinkError, RuntimeException;
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Interface indicating a value can be represented as a sequence of bytes whose unsigned lexicographic order
+ * is the same as the order of the values. This permits keys to be compared, stored and navigated (e.g. in
+ * tries) without knowledge of their type.
+ *
+ * See {@link ByteSource} for the encodings used.
+ */
+public interface ByteComparable
+{
+    /**
+     * @return a fresh source of the byte-comparable representation of this value.
+     */
+    ByteSource asComparableBytes();
+
+    static ByteComparable of(long value)
+    {
+        return () -> ByteSource.of(value);
+    }
+
+    static ByteComparable fixedLength(ByteBuffer buf)
+    {
+        return () -> ByteSource.fixedLength(buf);
+    }
+
+    static ByteComparable fixedLength(byte[] bytes)
+    {
+        return () -> ByteSource.fixedLength(bytes);
+    }
+
+    /**
+     * Compares the byte-comparable representations of two values.
+     */
+    static int compare(ByteComparable left, ByteComparable right)
+    {
+        return compare(left.asComparableBytes(), right.asComparableBytes());
+    }
+
+    static int compare(ByteSource left, ByteSource right)
+    {
+        while (true)
+        {
+            int l = left.next();
+            int r = right.next();
+            if (l != r)
+                return Integer.compare(l, r);
+            if (l == ByteSource.END_OF_STREAM)
+                return 0;
+        }
+    }
+
+    /**
+     * Materializes the byte-comparable representation of the value. Mostly useful for testing and for values
+     * that need to be traversed many times.
+     */
+    static byte[] toArray(ByteSource source)
+    {
+        byte[] bytes = new byte[16];
+        int length = 0;
+        int b;
+        while ((b = source.next()) != ByteSource.END_OF_STREAM)
+        {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = (byte) b;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    static byte[] toArray(ByteComparable value)
+    {
+        return toArray(value.asComparableBytes());
+    }
+
+    static String toString(ByteComparable value)
+    {
+        StringBuilder builder = new StringBuilder();
+        ByteSource source = value.asComparableBytes();
+        int b;
+        while ((b = source.next()) != ByteSource.END_OF_STREAM)
+            builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+}
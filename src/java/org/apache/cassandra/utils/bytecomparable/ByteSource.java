@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * A stream of bytes, used to consume a {@link ByteComparable} value one byte at a time. Sources are
+ * single-use; obtain a fresh one from the comparable for every traversal.
+ *
+ * The encodings produced by the factory methods below are order-preserving (comparing the produced byte
+ * sequences as unsigned bytes gives the same result as comparing the original values) and, except for
+ * {@link #fixedLength}, prefix-free (no encoded value is a prefix of another one), which permits them to be
+ * concatenated into multi-component keys with {@link #withTerminator}.
+ */
+public interface ByteSource
+{
+    /** Returned by {@link #next()} after the last byte of the stream. Sorts before any byte value. */
+    int END_OF_STREAM = -1;
+
+    /** Escape byte used by variable-length encodings; a 0x00 value byte is written as ESCAPE ESCAPED_0. */
+    int ESCAPE = 0x00;
+    int ESCAPED_0 = 0xFF;
+
+    /** Separators written between components of a multi-component key. */
+    int NEXT_COMPONENT = 0x40;
+    int NEXT_COMPONENT_NULL = 0x3E;
+    /** Separators of empty components, which sort before (resp. after, in reversed types) all other values. */
+    int NEXT_COMPONENT_EMPTY = 0x3F;
+    int NEXT_COMPONENT_EMPTY_REVERSED = 0x41;
+
+    /** Terminators of multi-component keys; all of them must sort between LT_NEXT_COMPONENT and NEXT_COMPONENT. */
+    int TERMINATOR = 0x38;
+    int STATIC_TERMINATOR = 0x30;
+
+    /** Used for bounds that must sort before (resp. after) every key that shares their prefix. */
+    int LT_NEXT_COMPONENT = 0x20;
+    int GT_NEXT_COMPONENT = 0x60;
+
+    ByteSource EMPTY = () -> END_OF_STREAM;
+
+    /**
+     * Encodings of empty values. They produce no bytes, but when used as components of a multi-component key they
+     * change the separator that precedes them to {@link #NEXT_COMPONENT_EMPTY} (resp.
+     * {@link #NEXT_COMPONENT_EMPTY_REVERSED}), which is how empty values of any type are ordered before (resp.
+     * after) all non-empty ones. On their own, both sort before any other value.
+     */
+    ByteSource EMPTY_VALUE = new EmptyValue(NEXT_COMPONENT_EMPTY);
+    ByteSource EMPTY_VALUE_REVERSED = new EmptyValue(NEXT_COMPONENT_EMPTY_REVERSED);
+
+    /**
+     * @return the next byte of the stream as an unsigned value in [0, 255], or {@link #END_OF_STREAM}.
+     */
+    int next();
+
+    /**
+     * Variable-length encoding of the remaining bytes of the given buffer, which must not be modified while the
+     * source is in use. The encoding escapes zero bytes and is terminated by an ESCAPE byte, so that it is
+     * prefix-free and may be followed by further components.
+     */
+    static ByteSource of(ByteBuffer buf)
+    {
+        return new VariableLengthSource(buf, buf.position(), buf.limit());
+    }
+
+    static ByteSource of(byte[] bytes)
+    {
+        return of(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Encoding of the remaining bytes of the buffer as-is. This is only prefix-free if all values that can be
+     * compared against each other have the same length.
+     */
+    static ByteSource fixedLength(ByteBuffer buf)
+    {
+        return new FixedLengthSource(buf, buf.position(), buf.limit());
+    }
+
+    static ByteSource fixedLength(byte[] bytes)
+    {
+        return fixedLength(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Fixed-length encoding of a signed long, big-endian with the sign bit flipped.
+     */
+    static ByteSource of(long value)
+    {
+        return new SignedLongSource(value);
+    }
+
+    /**
+     * Fixed-length encoding of a big-endian two's complement value held in the remaining bytes of the buffer,
+     * which is the value with its sign bit flipped. All values compared against each other must have the same
+     * length.
+     */
+    static ByteSource signedFixedLength(ByteBuffer buf)
+    {
+        return new SignedFixedLengthSource(buf, buf.position(), buf.limit());
+    }
+
+    /**
+     * Variable-length encoding of an arbitrary-precision integer. The first byte encodes the sign and the length
+     * of the magnitude (0x80 + length for positive values, 0x80 - length for negative ones), followed by the
+     * big-endian magnitude, inverted for negative values so that larger magnitudes sort first.
+     *
+     * Magnitudes of 0x7F bytes or more use the header byte 0xFF (resp. 0x01), followed by the length as a
+     * 4-byte big-endian integer (inverted for negative values) and the magnitude.
+     */
+    static ByteSource of(BigInteger value)
+    {
+        int signum = value.signum();
+        byte[] magnitude = value.abs().toByteArray();
+        int start = magnitude[0] == 0 ? 1 : 0; // toByteArray adds a sign byte when the top bit is set
+        int length = magnitude.length - start;
+        int headerLength = length < 0x7F ? 1 : 5;
+        byte[] bytes = new byte[headerLength + length];
+        if (headerLength == 1)
+        {
+            bytes[0] = (byte) (0x80 + signum * length);
+        }
+        else
+        {
+            bytes[0] = (byte) (signum < 0 ? 0x01 : 0xFF);
+            int encodedLength = signum < 0 ? ~length : length;
+            for (int i = 0; i < 4; ++i)
+                bytes[i + 1] = (byte) (encodedLength >>> (24 - i * Byte.SIZE));
+        }
+        for (int i = 0; i < length; ++i)
+            bytes[headerLength + i] = (byte) (signum < 0 ? ~magnitude[start + i] : magnitude[start + i]);
+        return fixedLength(bytes);
+    }
+
+    /**
+     * Returns a source producing the inverted bytes of the given one, which reverses the order of prefix-free
+     * encodings. Used for {@link org.apache.cassandra.db.marshal.ReversedType}.
+     */
+    static ByteSource invert(ByteSource source)
+    {
+        return () ->
+        {
+            int b = source.next();
+            return b == END_OF_STREAM ? END_OF_STREAM : b ^ 0xFF;
+        };
+    }
+
+    static ByteSource oneByte(int value)
+    {
+        assert value >= 0 && value <= 0xFF : "Invalid byte " + value;
+        return new ByteSource()
+        {
+            boolean consumed = false;
+
+            public int next()
+            {
+                if (consumed)
+                    return END_OF_STREAM;
+                consumed = true;
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Combines a number of prefix-free sources into a multi-component one. Every component is preceded by
+     * {@link #NEXT_COMPONENT} (or {@link #NEXT_COMPONENT_NULL} if the component is null, and the separator of the
+     * empty value if it is one of {@link #EMPTY_VALUE} or {@link #EMPTY_VALUE_REVERSED}) and the whole sequence
+     * is followed by the given terminator, which must sort between {@link #LT_NEXT_COMPONENT} and
+     * {@link #GT_NEXT_COMPONENT}.
+     */
+    static ByteSource withTerminator(int terminator, ByteSource... components)
+    {
+        return new Multi(components, terminator);
+    }
+
+    /**
+     * Like {@link #withTerminator} but without a terminator, used to build prefixes and bounds.
+     */
+    static ByteSource withoutTerminator(ByteSource... components)
+    {
+        return new Multi(components, END_OF_STREAM);
+    }
+
+    /**
+     * Returns the first source followed by the given byte.
+     */
+    static ByteSource append(ByteSource source, int lastByte)
+    {
+        return new ByteSource()
+        {
+            boolean done = false;
+
+            public int next()
+            {
+                if (done)
+                    return END_OF_STREAM;
+                int b = source.next();
+                if (b != END_OF_STREAM)
+                    return b;
+                done = true;
+                return lastByte;
+            }
+        };
+    }
+
+    class VariableLengthSource implements ByteSource
+    {
+        private final ByteBuffer buf;
+        private final int limit;
+        private int position;
+        private boolean escaped;
+
+        VariableLengthSource(ByteBuffer buf, int position, int limit)
+        {
+            this.buf = buf;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        public int next()
+        {
+            if (escaped)
+            {
+                escaped = false;
+                return ESCAPED_0;
+            }
+
+            if (position > limit)
+                return END_OF_STREAM;
+
+            if (position == limit)
+            {
+                ++position;
+                return ESCAPE;
+            }
+
+            int b = buf.get(position++) & 0xFF;
+            if (b == ESCAPE)
+                escaped = true;
+            return b;
+        }
+    }
+
+    class FixedLengthSource implements ByteSource
+    {
+        private final ByteBuffer buf;
+        private final int limit;
+        private int position;
+
+        FixedLengthSource(ByteBuffer buf, int position, int limit)
+        {
+            this.buf = buf;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        public int next()
+        {
+            return position < limit ? buf.get(position++) & 0xFF : END_OF_STREAM;
+        }
+    }
+
+    class SignedFixedLengthSource implements ByteSource
+    {
+        private final ByteBuffer buf;
+        private final int start;
+        private final int limit;
+        private int position;
+
+        SignedFixedLengthSource(ByteBuffer buf, int position, int limit)
+        {
+            this.buf = buf;
+            this.start = position;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        public int next()
+        {
+            if (position >= limit)
+                return END_OF_STREAM;
+            int b = buf.get(position) & 0xFF;
+            return position++ == start ? b ^ 0x80 : b;
+        }
+    }
+
+    class SignedLongSource implements ByteSource
+    {
+        private final long value;
+        private int bitsLeft = Long.SIZE;
+
+        SignedLongSource(long value)
+        {
+            this.value = value ^ Long.MIN_VALUE;
+        }
+
+        public int next()
+        {
+            if (bitsLeft == 0)
+                return END_OF_STREAM;
+            bitsLeft -= Byte.SIZE;
+            return (int) (value >>> bitsLeft) & 0xFF;
+        }
+    }
+
+    class Multi implements ByteSource
+    {
+        private final ByteSource[] components;
+        private final int terminator;
+        private int index = -1;
+        private ByteSource current = EMPTY;
+
+        Multi(ByteSource[] components, int terminator)
+        {
+            this.components = components;
+            this.terminator = terminator;
+        }
+
+        public int next()
+        {
+            int b = current.next();
+            if (b != END_OF_STREAM)
+                return b;
+
+            if (++index >= components.length)
+            {
+                if (index > components.length)
+                    return END_OF_STREAM;
+                return terminator;
+            }
+
+            current = components[index];
+            if (current == null)
+            {
+                current = EMPTY;
+                return NEXT_COMPONENT_NULL;
+            }
+            if (current instanceof EmptyValue)
+                return ((EmptyValue) current).separator;
+            return NEXT_COMPONENT;
+        }
+    }
+
+    final class EmptyValue implements ByteSource
+    {
+        private final int separator;
+
+        private EmptyValue(int separator)
+        {
+            this.separator = separator;
+        }
+
+        public int next()
+        {
+            return END_OF_STREAM;
+        }
+    }
+}
@@ -149,6 +149,23 @@ public abstract class MemoryUtil
         return Architecture.IS_UNALIGNED ? unsafe.getLong(address) : getLongByByte(address);
     }
 
+    /**
+     * Reads an int with volatile semantics. The address must be aligned to 4 bytes.
+     */
+    public static int getIntVolatile(long address)
+    {
+        return unsafe.getIntVolatile(null, address);
+    }
+
+    /**
+     * Writes an int with release semantics, i.e. all preceding writes are visible to any thread that reads the
+     * written value with {@link #getIntVolatile}. The address must be aligned to 4 bytes.
+     */
+    public static void setIntOrdered(long address, int value)
+    {
+        unsafe.putOrderedInt(null, address, value);
+    }
+
     public static ByteBuffer getByteBuffer(long address, int length)
     {
         return getByteBuffer(address, length, ByteOrder.nativeOrder());
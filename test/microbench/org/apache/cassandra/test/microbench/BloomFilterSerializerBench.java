@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.db.CachedHashDecoratedKey;
 import org.apache.cassandra.dht.Murmur3Partitioner;
 import org.apache.cassandra.io.util.BufferedDataOutputStreamPlus;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
@@ -39,12 +40,16 @@ import org.apache.cassandra.utils.SerializationsTest;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 
 @BenchmarkMode(Mode.AverageTime)
@@ -55,12 +60,16 @@ import org.openjdk.jmh.annotations.Warmup;
 @State(Scope.Benchmark)
 public class BloomFilterSerializerBench
 {
+    private static final int PROBES = 1024;
 
     @Param({"1", "10", "100", "1024"})
     private long numElemsInK;
 
-    @Param({"true", "false"})
-    public boolean oldBfFormat;
+    /**
+     * old: the pre-4.0 serialization of a standard filter, standard: a standard filter, blocked: a blocked filter
+     */
+    @Param({"old", "standard", "blocked"})
+    public String format;
 
     static final IFilter.FilterKey wrap(ByteBuffer buf)
     {
@@ -69,24 +78,60 @@ public class BloomFilterSerializerBench
 
     private ByteBuffer testVal = ByteBuffer.wrap(new byte[] { 0, 1});
 
+    private IFilter probedFilter;
+    private IFilter.FilterKey[] presentKeys;
+    private IFilter.FilterKey[] absentKeys;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        long numElems = numElemsInK * 1024;
+        probedFilter = FilterFactory.getFilter(numElems, 0.01d, format.equals("blocked"));
+        presentKeys = new IFilter.FilterKey[PROBES];
+        absentKeys = new IFilter.FilterKey[PROBES];
+        for (long i = 0; i < numElems; i++)
+        {
+            IFilter.FilterKey key = key(i);
+            probedFilter.add(key);
+            // spread the probed keys over the whole filter
+            if (i % (numElems / PROBES) == 0 && i / (numElems / PROBES) < PROBES)
+                presentKeys[(int) (i / (numElems / PROBES))] = key;
+        }
+        for (int i = 0; i < PROBES; i++)
+            absentKeys[i] = key(numElems + i);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        probedFilter.close();
+    }
+
+    private static IFilter.FilterKey key(long i)
+    {
+        // keys cache their hash like the keys of reads do, so that the probes rather than the hashing are measured
+        ByteBuffer key = ByteBuffer.allocate(8).putLong(0, i);
+        return new CachedHashDecoratedKey(new Murmur3Partitioner.LongToken(0L), key);
+    }
+
     @Benchmark
     public void serializationTest() throws IOException
     {
         File file = FileUtils.createTempFile("bloomFilterTest-", ".dat");
         try
         {
-            BloomFilter filter = (BloomFilter) FilterFactory.getFilter(numElemsInK * 1024, 0.01d);
+            IFilter filter = FilterFactory.getFilter(numElemsInK * 1024, 0.01d, format.equals("blocked"));
             filter.add(wrap(testVal));
             DataOutputStreamPlus out = new BufferedDataOutputStreamPlus(new FileOutputStream(file));
-            if (oldBfFormat)
-                SerializationsTest.serializeOldBfFormat(filter, out);
+            if (format.equals("old"))
+                SerializationsTest.serializeOldBfFormat((BloomFilter) filter, out);
             else
                 BloomFilterSerializer.serialize(filter, out);
             out.close();
             filter.close();
 
             DataInputStream in = new DataInputStream(new FileInputStream(file));
-            BloomFilter filter2 = BloomFilterSerializer.deserialize(in, oldBfFormat);
+            IFilter filter2 = BloomFilterSerializer.deserialize(in, format.equals("old"));
             FileUtils.closeQuietly(in);
             filter2.close();
         }
@@ -96,4 +141,30 @@ public class BloomFilterSerializerBench
         }
     }
 
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int probePresent()
+    {
+        return probe(presentKeys);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int probeAbsent()
+    {
+        return probe(absentKeys);
+    }
+
+    private int probe(IFilter.FilterKey[] keys)
+    {
+        int present = 0;
+        for (IFilter.FilterKey key : keys)
+        {
+            if (probedFilter.isPresent(key))
+                present++;
+        }
+        return present;
+    }
 }
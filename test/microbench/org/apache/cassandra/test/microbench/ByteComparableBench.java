@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.test.microbench;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.db.Clustering;
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.DecimalType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.ReversedType;
+import org.apache.cassandra.db.marshal.TimeUUIDType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.utils.FastByteOperations;
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the cost of ordering clusterings with {@link ClusteringComparator} to comparing their byte-comparable
+ * representations, either pre-encoded (a single memcmp) or encoded on the fly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512M")
+@Threads(1)
+@State(Scope.Benchmark)
+public class ByteComparableBench
+{
+    private static final int COUNT = 1024;
+
+    @Param({ "int", "bigint,text", "timeuuid,int", "text,reversed_int,decimal" })
+    private String clusteringTypes;
+
+    private ClusteringComparator comparator;
+    private Clustering<?>[] clusterings;
+    private byte[][] encoded;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(1);
+        List<AbstractType<?>> types = new ArrayList<>();
+        for (String type : clusteringTypes.split(","))
+            types.add(parseType(type));
+        comparator = new ClusteringComparator(types);
+
+        clusterings = new Clustering<?>[COUNT];
+        encoded = new byte[COUNT][];
+        for (int i = 0; i < COUNT; i++)
+        {
+            ByteBuffer[] values = new ByteBuffer[types.size()];
+            for (int j = 0; j < values.length; j++)
+                values[j] = randomValue(types.get(j), random);
+            clusterings[i] = Clustering.make(values);
+            encoded[i] = ByteComparable.toArray(comparator.asByteComparable(clusterings[i]));
+        }
+    }
+
+    private static AbstractType<?> parseType(String type)
+    {
+        switch (type)
+        {
+            case "int": return Int32Type.instance;
+            case "reversed_int": return ReversedType.getInstance(Int32Type.instance);
+            case "bigint": return LongType.instance;
+            case "text": return UTF8Type.instance;
+            case "timeuuid": return TimeUUIDType.instance;
+            case "decimal": return DecimalType.instance;
+            default: throw new IllegalArgumentException(type);
+        }
+    }
+
+    private static ByteBuffer randomValue(AbstractType<?> type, Random random)
+    {
+        AbstractType<?> baseType = type.isReversed() ? ((ReversedType<?>) type).baseType : type;
+        // small value ranges, so that comparisons often have to look past the first component
+        if (baseType == Int32Type.instance)
+            return Int32Type.instance.decompose(random.nextInt(16));
+        if (baseType == LongType.instance)
+            return LongType.instance.decompose((long) random.nextInt(16));
+        if (baseType == UTF8Type.instance)
+            return UTF8Type.instance.decompose("value-" + random.nextInt(16));
+        if (baseType == TimeUUIDType.instance)
+            return UUIDGen.toByteBuffer(UUIDGen.getTimeUUID(random.nextInt(16), 0, random.nextLong()));
+        return DecimalType.instance.decompose(BigDecimal.valueOf(random.nextInt(1600), 2));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void clusteringComparator(Blackhole bh)
+    {
+        for (int i = 1; i < COUNT; i++)
+            bh.consume(comparator.compare(clusterings[i - 1], clusterings[i]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void byteComparableMemcmp(Blackhole bh)
+    {
+        for (int i = 1; i < COUNT; i++)
+        {
+            byte[] left = encoded[i - 1];
+            byte[] right = encoded[i];
+            bh.consume(FastByteOperations.compareUnsigned(left, 0, left.length, right, 0, right.length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void byteComparableStreaming(Blackhole bh)
+    {
+        for (int i = 1; i < COUNT; i++)
+            bh.consume(ByteComparable.compare(comparator.asByteComparable(clusterings[i - 1]),
+                                              comparator.asByteComparable(clusterings[i])));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void byteComparableEncode(Blackhole bh)
+    {
+        for (int i = 0; i < COUNT; i++)
+            bh.consume(ByteComparable.toArray(comparator.asByteComparable(clusterings[i])));
+    }
+}
@@ -75,6 +75,31 @@ public class AuthCacheTest
         assertEquals(2, loadCounter);
     }
 
+    @Test
+    public void testGetIfPresentDoesNotLoad()
+    {
+        TestCache<String, Integer> authCache = new TestCache<>(this::countingLoader, this::setValidity, () -> validity, () -> isCacheEnabled);
+
+        assertNull(authCache.getIfPresent("10"));
+        assertEquals(0, loadCounter);
+
+        authCache.get("10");
+        assertEquals(10, (int) authCache.getIfPresent("10"));
+        assertEquals(1, loadCounter);
+    }
+
+    @Test
+    public void testGetIfPresentWhenDisabled()
+    {
+        isCacheEnabled = false;
+        TestCache<String, Integer> authCache = new TestCache<>(this::countingLoader, this::setValidity, () -> validity, () -> isCacheEnabled);
+
+        authCache.get("10");
+
+        assertNull(authCache.getIfPresent("10"));
+        assertEquals(1, loadCounter);
+    }
+
     @Test
     public void testCacheLoaderIsAlwaysCalledWhenValidityIsZero()
     {
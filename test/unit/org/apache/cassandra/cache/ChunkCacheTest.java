@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cassandra.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.metrics.ChunkCacheMetrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkCacheTest extends CQLTester
+{
+    @Before
+    public void setUp() throws Throwable
+    {
+        assertNotNull(ChunkCache.instance);
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck))");
+        for (int pk = 0; pk < 10; ++pk)
+            for (int ck = 0; ck < 100; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "value" + ck);
+        flush();
+        ChunkCache.instance.enable(true);
+    }
+
+    @Test
+    public void testScansDoNotPopulateCache() throws Throwable
+    {
+        ChunkCacheMetrics.TableMetrics metrics = ChunkCache.instance.metrics.forTable(KEYSPACE, currentTable());
+        long requests = metrics.requests.getCount();
+
+        assertRowCount(execute("SELECT * FROM %s"), 1000);
+        assertTrue(metrics.requests.getCount() > requests);
+        assertEquals(0, ChunkCache.instance.size());
+        assertEquals(0L, (long) metrics.size.getValue());
+    }
+
+    @Test
+    public void testPointReadsPopulateCache() throws Throwable
+    {
+        ChunkCacheMetrics.TableMetrics metrics = ChunkCache.instance.metrics.forTable(KEYSPACE, currentTable());
+
+        long misses = metrics.misses.getCount();
+        assertRowCount(execute("SELECT * FROM %s WHERE pk = 1"), 100);
+        assertTrue(ChunkCache.instance.size() > 0);
+        assertTrue(metrics.size.getValue() > 0);
+        assertTrue(metrics.misses.getCount() > misses);
+
+        // the chunks cached by the point read are used by the next reads, including scans
+        long requests = metrics.requests.getCount();
+        misses = metrics.misses.getCount();
+        assertRowCount(execute("SELECT * FROM %s WHERE pk = 1"), 100);
+        assertRowCount(execute("SELECT * FROM %s WHERE token(pk) = token(1)"), 100);
+        assertTrue(metrics.requests.getCount() > requests);
+        assertEquals(misses, metrics.misses.getCount());
+    }
+
+    @Test
+    public void testFileInvalidation() throws Throwable
+    {
+        ChunkCacheMetrics.TableMetrics metrics = ChunkCache.instance.metrics.forTable(KEYSPACE, currentTable());
+        assertRowCount(execute("SELECT * FROM %s WHERE pk = 1"), 100);
+        assertTrue(metrics.size.getValue() > 0);
+
+        getCurrentColumnFamilyStore().getLiveSSTables().forEach(sstable -> ChunkCache.instance.invalidateFile(sstable.getFilename()));
+        assertEquals(0L, (long) metrics.size.getValue());
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.concurrent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.ReadCommand;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.SinglePartitionReadCommand;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.utils.ExecutorUtils;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.MBeanWrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TokenAffinityExecutorTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        requireNetwork();
+    }
+
+    @After
+    public void resetScheduling()
+    {
+        DatabaseDescriptor.setLocalRequestScheduling(Config.LocalRequestScheduling.shared);
+    }
+
+    private ReadCommand read(int key)
+    {
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        return SinglePartitionReadCommand.fullPartitionRead(cfs.metadata(), FBUtilities.nowInSeconds(), Int32Type.instance.decompose(key));
+    }
+
+    @Test
+    public void testWorkers()
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+
+        // the stage's executor is used unless scheduled by token
+        assertSame(Stage.READ.executor(), Stage.READ.executor(read(0)));
+
+        DatabaseDescriptor.setLocalRequestScheduling(Config.LocalRequestScheduling.token_affinity);
+        assertSame(Stage.READ.executor(), Stage.READ.executor(null));
+        assertSame(Stage.GOSSIP.executor(), Stage.GOSSIP.executor(read(0)));
+
+        // the requests for a partition are always run by the same worker
+        LocalAwareExecutorService worker = Stage.READ.executor(read(0));
+        assertNotSame(Stage.READ.executor(), worker);
+        assertSame(worker, Stage.READ.executor(read(0)));
+        assertNotSame(worker, Stage.MUTATION.executor(read(0)));
+    }
+
+    @Test
+    public void testShardedMemtable()
+    {
+        int workers = DatabaseDescriptor.getConcurrentReaders();
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': '" + workers + "'}");
+        Memtable memtable = getCurrentColumnFamilyStore().getTracker().getView().getCurrentMemtable();
+        assertEquals(workers, memtable.shardCount());
+        DatabaseDescriptor.setLocalRequestScheduling(Config.LocalRequestScheduling.token_affinity);
+
+        // with as many shards as workers, each shard is read by a single worker, and each worker reads a single shard
+        Map<Integer, LocalAwareExecutorService> workerByShard = new HashMap<>();
+        Map<LocalAwareExecutorService, Integer> shardByWorker = new HashMap<>();
+        for (int key = 0; key < 1000; key++)
+        {
+            ReadCommand command = read(key);
+            int shard = memtable.shardIndex(((SinglePartitionReadCommand) command).partitionKey());
+            LocalAwareExecutorService worker = Stage.READ.executor(command);
+            assertSame(worker, workerByShard.computeIfAbsent(shard, s -> worker));
+            assertEquals(shard, (int) shardByWorker.computeIfAbsent(worker, w -> shard));
+        }
+    }
+
+    @Test
+    public void testRequests() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        DatabaseDescriptor.setLocalRequestScheduling(Config.LocalRequestScheduling.token_affinity);
+
+        Session session = sessionNet();
+        PreparedStatement insert = session.prepare(formatQuery("INSERT INTO %s (k, v) VALUES (?, ?)"));
+        PreparedStatement select = session.prepare(formatQuery("SELECT v FROM %s WHERE k = ?"));
+        LocalAwareExecutorService writer = Stage.MUTATION.executor(new RowUpdateBuilder(currentTableMetadata(), 0, 1).add("v", 1).build());
+        LocalAwareExecutorService reader = Stage.READ.executor(read(1));
+        long writes = writer.getCompletedTaskCount();
+        long reads = reader.getCompletedTaskCount();
+
+        session.execute(insert.bind(1, 1).setConsistencyLevel(ConsistencyLevel.ONE));
+        assertEquals(1, session.execute(select.bind(1).setConsistencyLevel(ConsistencyLevel.ONE)).one().getInt("v"));
+
+        // the worker may still be finishing the task when the response is received
+        Util.spinAssertEquals(true, () -> writer.getCompletedTaskCount() > writes, 10);
+        Util.spinAssertEquals(true, () -> reader.getCompletedTaskCount() > reads, 10);
+    }
+
+    @Test
+    public void testResize() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        DatabaseDescriptor.setLocalRequestScheduling(Config.LocalRequestScheduling.token_affinity);
+
+        int readers = DatabaseDescriptor.getConcurrentReaders();
+        Stage.READ.executor(read(0));
+        try
+        {
+            // resizing the stage resizes its workers, which are exposed as pools of the stage
+            Stage.READ.setMaximumPoolSize(2);
+            assertEquals(2, DatabaseDescriptor.getConcurrentReaders());
+            Set<LocalAwareExecutorService> workers = new HashSet<>();
+            for (int key = 0; key < 100; key++)
+                workers.add(Stage.READ.executor(read(key)));
+            assertEquals(2, workers.size());
+            for (LocalAwareExecutorService worker : workers)
+                assertTrue(worker instanceof JMXEnabledThreadPoolExecutor);
+            assertTrue(MBeanWrapper.instance.isRegistered(new ObjectName("org.apache.cassandra.request:type=ReadStageWorker_1")));
+            assertFalse(MBeanWrapper.instance.isRegistered(new ObjectName("org.apache.cassandra.request:type=ReadStageWorker_2")));
+        }
+        finally
+        {
+            Stage.READ.setMaximumPoolSize(readers);
+        }
+    }
+
+    @Test
+    public void testFullWorkerOverflows()
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        TokenAffinityExecutor executor = new TokenAffinityExecutor("TokenAffinityExecutorTest", "internal", 1, () -> ImmediateExecutor.INSTANCE);
+        try
+        {
+            JMXEnabledThreadPoolExecutor worker = (JMXEnabledThreadPoolExecutor) executor.worker(read(0));
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch blocked = new CountDownLatch(1);
+            worker.execute(() -> {
+                started.countDown();
+                Uninterruptibles.awaitUninterruptibly(blocked);
+            });
+            Uninterruptibles.awaitUninterruptibly(started);
+            for (int i = 0; i < TokenAffinityExecutor.MAX_QUEUED_TASKS; i++)
+                worker.execute(() -> {});
+
+            // the requests of a full worker are run by the overflow executor, here the submitting thread
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            worker.execute(() -> thread.set(Thread.currentThread()));
+            assertSame(Thread.currentThread(), thread.get());
+            assertEquals(1, worker.getTotalBlockedTasks());
+            blocked.countDown();
+        }
+        finally
+        {
+            ExecutorUtils.shutdownNow(executor.workers());
+        }
+    }
+}
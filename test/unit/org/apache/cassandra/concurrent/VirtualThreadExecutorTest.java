@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.cassandra.Util;
+import org.apache.cassandra.service.ClientWarn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadExecutorTest
+{
+    @Test
+    public void testMaximumPoolSize() throws Throwable
+    {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(2, null, "test", "testMaximumPoolSize");
+        try
+        {
+            CountDownLatch release = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+                futures.add(executor.submit(() -> release.await(1, TimeUnit.MINUTES)));
+
+            // the tasks beyond the maximum are queued until it is raised, or running tasks complete
+            Util.spinAssertEquals(2, () -> executor.metrics.activeTasks.getValue(), 10);
+            assertEquals(3, (int) executor.metrics.pendingTasks.getValue());
+
+            executor.setMaximumPoolSize(4);
+            assertEquals(4, executor.getActiveTaskCount());
+            assertEquals(1, executor.getPendingTaskCount());
+
+            release.countDown();
+            for (Future<?> future : futures)
+                future.get(10, TimeUnit.SECONDS);
+            Util.spinAssertEquals(5L, () -> executor.metrics.completedTasks.getValue(), 10);
+            assertEquals(0, executor.getActiveTaskCount());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testShutdownRunsQueuedTasks() throws Throwable
+    {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(2, null, "test", "testShutdownRunsQueuedTasks");
+        try
+        {
+            CountDownLatch release = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+                futures.add(executor.submit(() -> release.await(1, TimeUnit.MINUTES)));
+            Util.spinAssertEquals(2, () -> executor.metrics.activeTasks.getValue(), 10);
+
+            // once shut down, new tasks are rejected but these queued still run before the executor terminates
+            executor.shutdown();
+            try
+            {
+                executor.submit(() -> {});
+                fail("Expected the task to be rejected");
+            }
+            catch (RejectedExecutionException e)
+            {
+                // expected
+            }
+            assertFalse(executor.awaitTermination(100, TimeUnit.MILLISECONDS));
+            assertFalse(executor.isTerminated());
+
+            release.countDown();
+            for (Future<?> future : futures)
+                future.get(10, TimeUnit.SECONDS);
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(executor.isTerminated());
+            assertEquals(0, executor.getPendingTaskCount());
+            assertEquals(0, executor.getActiveTaskCount());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPlatformThreadsBounded() throws Throwable
+    {
+        Assume.assumeFalse(hasVirtualThreads());
+
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(2, null, "test", "testPlatformThreadsBounded");
+        try
+        {
+            // without virtual threads, the tasks share as many platform threads as may run at once
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+                futures.add(executor.submit(() -> threads.add(Thread.currentThread())));
+            for (Future<?> future : futures)
+                future.get(10, TimeUnit.SECONDS);
+            assertTrue(threads.toString(), threads.size() <= 2);
+
+            executor.setMaximumPoolSize(4);
+            CountDownLatch started = new CountDownLatch(4);
+            CountDownLatch release = new CountDownLatch(1);
+            futures.clear();
+            for (int i = 0; i < 4; i++)
+            {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    release.await(1, TimeUnit.MINUTES);
+                    return null;
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+            for (Future<?> future : futures)
+                future.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static boolean hasVirtualThreads()
+    {
+        try
+        {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+
+    @Test
+    public void testExecutorLocals() throws Throwable
+    {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(1, null, "test", "testExecutorLocals");
+        try
+        {
+            // the warnings raised by the tasks are those of the submitter's request
+            ClientWarn.instance.captureWarnings();
+            executor.submit(() -> ClientWarn.instance.warn("submitted")).get(10, TimeUnit.SECONDS);
+            CountDownLatch executed = new CountDownLatch(1);
+            executor.execute(() -> {
+                ClientWarn.instance.warn("executed");
+                executed.countDown();
+            });
+            assertTrue(executed.await(10, TimeUnit.SECONDS));
+            assertEquals(2, ClientWarn.instance.numWarnings());
+        }
+        finally
+        {
+            ClientWarn.instance.resetWarnings();
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -71,6 +71,8 @@ public class DatabaseDescriptorRefTest
     "org.apache.cassandra.config.Config$CommitLogSync",
     "org.apache.cassandra.config.Config$CommitFailurePolicy",
     "org.apache.cassandra.config.Config$DiskAccessMode",
+    "org.apache.cassandra.config.Config$LocalRequestScheduling",
+    "org.apache.cassandra.config.Config$CommitLogDiskAccessMode",
     "org.apache.cassandra.config.Config$DiskFailurePolicy",
     "org.apache.cassandra.config.Config$DiskOptimizationStrategy",
     "org.apache.cassandra.config.Config$FlushCompression",
@@ -96,8 +98,10 @@ public class DatabaseDescriptorRefTest
     "org.apache.cassandra.db.commitlog.CommitLogSegmentManagerFactory",
     "org.apache.cassandra.db.commitlog.DefaultCommitLogSegmentMgrFactory",
     "org.apache.cassandra.db.commitlog.AbstractCommitLogSegmentManager",
+    "org.apache.cassandra.db.commitlog.AbstractDirectoryCommitLogSegmentManager",
     "org.apache.cassandra.db.commitlog.CommitLogSegmentManagerCDC",
     "org.apache.cassandra.db.commitlog.CommitLogSegmentManagerStandard",
+    "org.apache.cassandra.db.commitlog.CommitLogSegmentManagerStriped",
     "org.apache.cassandra.db.commitlog.CommitLog",
     "org.apache.cassandra.db.commitlog.CommitLogMBean",
     "org.apache.cassandra.dht.IPartitioner",
@@ -131,6 +135,7 @@ public class DatabaseDescriptorRefTest
     "org.apache.cassandra.io.compress.ICompressor$Uses",
     "org.apache.cassandra.io.compress.LZ4Compressor",
     "org.apache.cassandra.io.sstable.metadata.MetadataType",
+    "org.apache.cassandra.io.sstable.format.SSTableFormat$Type",
     "org.apache.cassandra.io.util.BufferedDataOutputStreamPlus",
     "org.apache.cassandra.io.util.DataOutputBuffer",
     "org.apache.cassandra.io.util.DataOutputBufferFixed",
@@ -38,6 +38,7 @@ import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.exceptions.ConfigurationException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -503,6 +504,60 @@ public class DatabaseDescriptorTest
         assertThat(conf.repair_command_pool_size).isEqualTo(conf.concurrent_validations + 1);
     }
 
+    @Test
+    public void testFileCacheQuotas()
+    {
+        Config conf = new Config();
+        conf.file_cache_size_in_mb = 512;
+        DatabaseDescriptor.applyFileCacheQuotas(conf);
+
+        conf.file_cache_quotas_in_mb.put("ks1", 100);
+        conf.file_cache_quotas_in_mb.put("ks2.tbl", 200);
+        DatabaseDescriptor.applyFileCacheQuotas(conf);
+
+        conf.file_cache_quotas_in_mb.put("ks3", 180);
+        assertThatThrownBy(() -> DatabaseDescriptor.applyFileCacheQuotas(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                .hasMessageContaining("must be less than file_cache_size_in_mb");
+
+        conf.file_cache_quotas_in_mb.put("ks3", 0);
+        assertThatThrownBy(() -> DatabaseDescriptor.applyFileCacheQuotas(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                .hasMessageContaining("must be positive");
+
+        conf.file_cache_quotas_in_mb.remove("ks3");
+        conf.file_cache_quotas_in_mb.put("ks3.tbl.idx", 10);
+        assertThatThrownBy(() -> DatabaseDescriptor.applyFileCacheQuotas(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                .hasMessageContaining("keys must be");
+    }
+
+    @Test
+    public void testCommitLogStripeDirectories()
+    {
+        Config conf = new Config();
+        conf.commitlog_directory = "/cl";
+        conf.data_file_directories = new String[]{ "/data" };
+        conf.hints_directory = "/hints";
+        conf.saved_caches_directory = "/caches";
+        conf.commitlog_stripe_directories = new String[]{ "/cl2", "/cl3" };
+        DatabaseDescriptor.applyCommitLogStripeDirectories(conf);
+
+        conf.commitlog_stripe_directories = new String[]{ "/cl2", "/cl2" };
+        assertThatThrownBy(() -> DatabaseDescriptor.applyCommitLogStripeDirectories(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                          .hasMessageContaining("the same directory twice");
+
+        conf.commitlog_stripe_directories = new String[]{ "/cl2", "/cl" };
+        assertThatThrownBy(() -> DatabaseDescriptor.applyCommitLogStripeDirectories(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                          .hasMessageContaining("commitlog_directory must not be");
+
+        conf.commitlog_stripe_directories = new String[]{ "/data" };
+        assertThatThrownBy(() -> DatabaseDescriptor.applyCommitLogStripeDirectories(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                          .hasMessageContaining("data_file_directories must not be");
+
+        conf.commitlog_stripe_directories = new String[]{ "/cl2" };
+        conf.cdc_enabled = true;
+        assertThatThrownBy(() -> DatabaseDescriptor.applyCommitLogStripeDirectories(conf)).isInstanceOf(ConfigurationException.class)
+                                                                                          .hasMessageContaining("cdc_enabled");
+    }
+
     @Test
     public void testApplyTokensConfigInitialTokensSetNumTokensSetAndDoesMatch()
     {
@@ -38,6 +38,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import org.apache.commons.lang3.RandomStringUtils;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -225,6 +227,44 @@ public class RecoveryManagerTest
         Assert.assertTrue(Util.sameContent(upd2, Util.getOnlyPartitionUnfiltered(Util.cmd(keyspace2.getColumnFamilyStore(CF_STANDARD3), dk).build()).unfilteredIterator()));
     }
 
+    @Test
+    public void testRecoverSegmentsInParallel() throws Exception
+    {
+        CommitLog.instance.resetUnsafe(true);
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_STANDARD1);
+
+        // two versions of each partition, spread over several segments read in parallel
+        int partitions = 20;
+        String value = RandomStringUtils.randomAlphanumeric(DatabaseDescriptor.getCommitLogSegmentSize() / 10);
+        for (int version = 1; version <= 2; version++)
+        {
+            for (int i = 0; i < partitions; i++)
+            {
+                new RowUpdateBuilder(cfs.metadata(), version, "key" + i)
+                    .clustering("cc").add("val", value)
+                    .build()
+                    .apply();
+                new RowUpdateBuilder(cfs.metadata(), version, "key" + i)
+                    .clustering("version").add("val", String.valueOf(version))
+                    .build()
+                    .apply();
+            }
+        }
+
+        cfs.clearUnsafe();
+        long replayedBefore = CommitLog.instance.metrics.replayedMutations.getCount();
+        int replayed = CommitLog.instance.resetUnsafe(false);
+        Assert.assertTrue("Replayed " + replayed, replayed >= partitions * 4);
+        assertEquals(replayed, CommitLog.instance.metrics.replayedMutations.getCount() - replayedBefore);
+
+        ColumnMetadata column = cfs.metadata().getColumn(ByteBufferUtil.bytes("val"));
+        for (int i = 0; i < partitions; i++)
+        {
+            Row row = Util.getOnlyRow(Util.cmd(cfs, "key" + i).includeRow("version").build());
+            assertEquals("2", ByteBufferUtil.string(row.getCell(column).buffer()));
+        }
+    }
+
     @Test
     public void testRecoverCounter() throws IOException
     {
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedSkipListMemtableTest extends CQLTester
+{
+    @Test
+    public void testReadWrite() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck)) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': '4'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        ShardedSkipListMemtable memtable = (ShardedSkipListMemtable) cfs.getTracker().getView().getCurrentMemtable();
+        assertEquals(4, memtable.shardCount());
+
+        for (int pk = 0; pk < 500; ++pk)
+            for (int ck = 0; ck < 2; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, pk + ck);
+        assertEquals(500, memtable.partitionCount());
+
+        checkContent();
+
+        cfs.forceBlockingFlush();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable().isClean());
+        // the flush is split in as many parts as there are flush writers
+        assertEquals(Math.min(4, DatabaseDescriptor.getFlushWriters()), cfs.getLiveSSTables().size());
+        checkContent();
+    }
+
+    private void checkContent() throws Throwable
+    {
+        assertRows(execute("SELECT v FROM %s WHERE pk = ? AND ck = ?", 42, 1), row(43));
+        assertEmpty(execute("SELECT v FROM %s WHERE pk = ?", 500));
+        assertRowCount(execute("SELECT * FROM %s"), 1000);
+
+        // Range reads crossing shard boundaries must return the partitions in token order.
+        Object[][] rows = getRows(execute("SELECT token(pk) FROM %s"));
+        for (int i = 1; i < rows.length; ++i)
+            assertTrue((Long) rows[i - 1][0] <= (Long) rows[i][0]);
+
+        Object[][] subRange = getRows(execute("SELECT DISTINCT token(pk) FROM %s WHERE token(pk) > ? AND token(pk) <= ?",
+                                              Long.MIN_VALUE / 2, Long.MAX_VALUE / 2));
+        int expected = 0;
+        for (Object[] row : rows)
+            if ((Long) row[0] > Long.MIN_VALUE / 2 && (Long) row[0] <= Long.MAX_VALUE / 2)
+                ++expected;
+        assertEquals(expected / 2, subRange.length);
+    }
+
+    @Test
+    public void testInvalidOptions() throws Throwable
+    {
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': '0'}");
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': 'x'}");
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ShardedSkipListMemtable', 'foo': 'bar'}");
+    }
+}
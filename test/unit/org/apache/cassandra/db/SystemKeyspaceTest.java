@@ -19,6 +19,7 @@ package org.apache.cassandra.db;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import org.junit.BeforeClass;
@@ -26,6 +27,8 @@ import org.junit.Test;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.locator.InetAddressAndPort;
 import org.apache.cassandra.schema.SchemaConstants;
 import org.apache.cassandra.cql3.QueryProcessor;
@@ -36,8 +39,11 @@ import org.apache.cassandra.schema.SchemaKeyspace;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.CassandraVersion;
+import org.apache.cassandra.utils.Pair;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class SystemKeyspaceTest
@@ -92,6 +98,37 @@ public class SystemKeyspaceTest
         assert firstId.equals(secondId) : String.format("%s != %s%n", firstId.toString(), secondId.toString());
     }
 
+    @Test
+    public void testTruncationRecordFormats() throws IOException
+    {
+        CommitLogPosition position = new CommitLogPosition(5, 100);
+
+        // a record written before the commit log could be striped
+        ByteBuffer legacy;
+        try (DataOutputBuffer out = new DataOutputBuffer())
+        {
+            CommitLogPosition.serializer.serialize(position, out);
+            out.writeLong(42L);
+            legacy = out.asNewBuffer();
+        }
+        Pair<CommitLogPosition, Long> record = SystemKeyspace.truncationRecordFromBlob(legacy);
+        assertEquals(position, record.left);
+        assertEquals(42L, (long) record.right);
+        assertNull(Memtable.stripePositionsOf(record.left));
+
+        record = SystemKeyspace.truncationRecordFromBlob(SystemKeyspace.truncationRecordToBlob(42L, position));
+        assertEquals(position, record.left);
+        assertNull(Memtable.stripePositionsOf(record.left));
+
+        // a record of a striped commit log keeps the position of each stripe
+        CommitLogPosition[] stripes = { new CommitLogPosition(6, 10), new CommitLogPosition(5, 200) };
+        record = SystemKeyspace.truncationRecordFromBlob(SystemKeyspace.truncationRecordToBlob(42L, new Memtable.LastCommitLogPosition(stripes)));
+        assertEquals(42L, (long) record.right);
+        assertEquals(0, record.left.compareTo(new CommitLogPosition(6, 10)));
+        assertEquals(0, Memtable.floorOf(record.left).compareTo(new CommitLogPosition(5, 200)));
+        assertArrayEquals(stripes, Memtable.stripePositionsOf(record.left));
+    }
+
     private void assertDeletedOrDeferred(int expectedCount)
     {
         if (FBUtilities.isWindows)
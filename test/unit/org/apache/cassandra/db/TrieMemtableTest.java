@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.schema.MemtableParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrieMemtableTest extends CQLTester
+{
+    @Test
+    public void testReadWrite() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck)) WITH memtable = {'class': 'TrieMemtable'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof TrieMemtable);
+
+        for (int pk = 0; pk < 100; ++pk)
+            for (int ck = 0; ck < 10; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, pk + ":" + ck);
+        execute("DELETE FROM %s WHERE pk = ? AND ck = ?", 5, 5);
+
+        Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+        assertEquals(100, memtable.partitionCount());
+        assertEquals(1001, memtable.getOperations());
+
+        checkContent();
+
+        cfs.forceBlockingFlush();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable().isClean());
+        assertEquals(1, cfs.getLiveSSTables().size());
+        checkContent();
+    }
+
+    private void checkContent() throws Throwable
+    {
+        assertRows(execute("SELECT v FROM %s WHERE pk = ? AND ck = ?", 42, 3), row("42:3"));
+        assertEmpty(execute("SELECT v FROM %s WHERE pk = ? AND ck = ?", 5, 5));
+        assertEmpty(execute("SELECT v FROM %s WHERE pk = ?", 100));
+        assertRowCount(execute("SELECT * FROM %s"), 999);
+        assertRowCount(execute("SELECT * FROM %s WHERE token(pk) > token(?) AND token(pk) <= token(?)", 7, 7), 0);
+
+        // Range reads must return the partitions in token order.
+        Object[][] rows = getRows(execute("SELECT token(pk), pk FROM %s WHERE token(pk) >= token(?) LIMIT 50", 13));
+        assertEquals(13, rows[0][1]);
+        for (int i = 1; i < rows.length; ++i)
+            assertTrue((Long) rows[i - 1][0] <= (Long) rows[i][0]);
+    }
+
+    @Test
+    public void testSecondaryIndex() throws Throwable
+    {
+        // index tables use the local partitioner, whose tokens are encoded with the indexed column's type
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck)) WITH memtable = {'class': 'TrieMemtable'}");
+        String index = createIndex("CREATE INDEX ON %s (v)");
+        ColumnFamilyStore indexCfs = getCurrentColumnFamilyStore().indexManager.getIndexByName(index).getBackingTable().get();
+        assertTrue(indexCfs.getTracker().getView().getCurrentMemtable() instanceof TrieMemtable);
+
+        for (int pk = 0; pk < 10; ++pk)
+            for (int ck = 0; ck < 10; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "v" + (pk + ck) % 3);
+        execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", 10, 0, "");
+
+        assertRowCount(execute("SELECT * FROM %s WHERE v = ?", "v1"), 33);
+        assertRows(execute("SELECT pk, ck FROM %s WHERE v = ?", ""), row(10, 0));
+        assertEmpty(execute("SELECT * FROM %s WHERE v = ?", "v3"));
+    }
+
+    @Test
+    public void testAlterMemtable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertEquals(MemtableParams.DEFAULT, cfs.metadata().params.memtable);
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+
+        execute("INSERT INTO %s (pk, v) VALUES (1, 1)");
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'org.apache.cassandra.db.TrieMemtable'}");
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof TrieMemtable);
+
+        execute("INSERT INTO %s (pk, v) VALUES (2, 2)");
+        assertRows(execute("SELECT * FROM %s"), row(1, 1), row(2, 2));
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'SkipListMemtable'}");
+        assertEquals(MemtableParams.DEFAULT, cfs.metadata().params.memtable);
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+        assertRows(execute("SELECT * FROM %s"), row(1, 1), row(2, 2));
+    }
+
+    @Test
+    public void testInvalidOptions() throws Throwable
+    {
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'NoSuchMemtable'}");
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ColumnFamilyStore'}");
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'TrieMemtable', 'foo': 'bar'}");
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'foo': 'bar'}");
+    }
+}
@@ -164,6 +164,33 @@ public class AbstractCommitLogServiceTest
         }
     }
 
+    @Test
+    public void testAdaptiveWindow()
+    {
+        long targetNanos = toNanos(10);
+
+        // writes too few to share a sync request one each
+        Assert.assertEquals(0, AdaptiveCommitLogService.window(targetNanos, toNanos(1), Double.NaN));
+        Assert.assertEquals(0, AdaptiveCommitLogService.window(targetNanos, toNanos(1), 0.5 / targetNanos));
+
+        // otherwise the window leaves room for the sync within the target latency
+        Assert.assertEquals(toNanos(9), AdaptiveCommitLogService.window(targetNanos, toNanos(1), 1d / toNanos(1)));
+        Assert.assertEquals(toNanos(2), AdaptiveCommitLogService.window(targetNanos, toNanos(8), 1d / toNanos(1)));
+        Assert.assertEquals(0, AdaptiveCommitLogService.window(targetNanos, toNanos(12), 1d / toNanos(1)));
+    }
+
+    @Test
+    public void testAdaptiveSyncWithoutWrites()
+    {
+        AdaptiveCommitLogService commitLogService = new AdaptiveCommitLogService(new FakeCommitLog(), 10);
+        Assert.assertEquals(toNanos(10), commitLogService.getSyncWindowNanos());
+
+        // without writes the log is flushed every target latency
+        commitLogService.syncCompleted(0, toNanos(1));
+        commitLogService.syncCompleted(toNanos(10), toNanos(11));
+        Assert.assertEquals(toNanos(10), commitLogService.getSyncWindowNanos());
+    }
+
     @Test
     public void maybeLogFlushLag_MustLog()
     {
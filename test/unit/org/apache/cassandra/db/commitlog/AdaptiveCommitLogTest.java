@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.db.commitlog;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.config.ParameterizedClass;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.security.EncryptionContext;
+
+public class AdaptiveCommitLogTest extends CommitLogTest
+{
+    public AdaptiveCommitLogTest(ParameterizedClass commitLogCompression, EncryptionContext encryptionContext)
+    {
+        super(commitLogCompression, encryptionContext);
+    }
+
+    @BeforeClass
+    public static void setCommitLogModeDetails()
+    {
+        DatabaseDescriptor.daemonInitialization();
+        DatabaseDescriptor.setCommitLogSync(Config.CommitLogSync.adaptive);
+        DatabaseDescriptor.setCommitLogSyncTargetLatency(1);
+        beforeClass();
+    }
+
+    @Test
+    public void testWriteSyncedWhenAcknowledged() throws Exception
+    {
+        CommitLog.instance.resetUnsafe(true);
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(STANDARD1);
+
+        // no explicit sync: a write is only acknowledged once the segment holding it is synced
+        for (int i = 0; i < 10; i++)
+        {
+            Mutation m = new RowUpdateBuilder(cfs.metadata(), 0, "k" + i)
+                         .clustering("bytes")
+                         .add("val", ByteBuffer.allocate(4))
+                         .build();
+            CommitLogPosition position = CommitLog.instance.add(m);
+
+            CommitLogSegment segment = null;
+            for (CommitLogSegment active : CommitLog.instance.segmentManager.getActiveSegments())
+            {
+                if (active.id == position.segmentId)
+                    segment = active;
+            }
+            Assert.assertNotNull(segment);
+            Assert.assertTrue(segment.lastSyncedOffset >= position.position);
+        }
+    }
+}
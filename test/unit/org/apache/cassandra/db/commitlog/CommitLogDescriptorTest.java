@@ -112,6 +112,7 @@ public class CommitLogDescriptorTest
         testDescriptorPersistence(new CommitLogDescriptor(CommitLogDescriptor.current_version, 19,
                                                           new ParameterizedClass("StubbyCompressor", ImmutableMap.of("parameter1", "value1", "flag2", "55", "argument3", "null")
                                                           ), neverEnabledEncryption));
+        testDescriptorPersistence(new CommitLogDescriptor(CommitLogDescriptor.current_version, 21, null, neverEnabledEncryption, true));
     }
 
     // migrated from CommitLogTest
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.schema.KeyspaceParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommitLogSegmentManagerStripedTest
+{
+    private static final String KEYSPACE = "CommitLogStripedTest";
+    private static final String TABLE = "Standard1";
+    private static String stripeDirectory;
+
+    @BeforeClass
+    public static void beforeClass()
+    {
+        DatabaseDescriptor.daemonInitialization();
+        stripeDirectory = DatabaseDescriptor.getCommitLogLocation() + "_stripe";
+        FileUtils.createDirectory(stripeDirectory);
+        DatabaseDescriptor.setCommitLogStripeLocations(stripeDirectory);
+
+        // keep system mutations out of the commit log
+        KeyspaceParams.DEFAULT_LOCAL_DURABLE_WRITES = false;
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE,
+                                    KeyspaceParams.simple(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE, TABLE, 0, AsciiType.instance, BytesType.instance));
+        CompactionManager.instance.disableAutoCompaction();
+    }
+
+    @Before
+    public void beforeTest() throws IOException
+    {
+        cfs().truncateBlocking();
+        CommitLog.instance.resetUnsafe(true);
+        System.setProperty("cassandra.replayList", KEYSPACE + '.' + TABLE);
+    }
+
+    @After
+    public void afterTest()
+    {
+        System.clearProperty("cassandra.replayList");
+    }
+
+    private static ColumnFamilyStore cfs()
+    {
+        return Keyspace.open(KEYSPACE).getColumnFamilyStore(TABLE);
+    }
+
+    /**
+     * Writes the given number of rows from each of two threads, which allocate from different stripes.
+     */
+    private static void writeFromBothStripes(int rowsPerThread, String prefix) throws InterruptedException
+    {
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; )
+        {
+            int stripe = i;
+            Thread thread = new Thread(() -> {
+                for (int row = 0; row < rowsPerThread; row++)
+                {
+                    new RowUpdateBuilder(cfs().metadata(), 0, prefix + stripe + '-' + row)
+                        .clustering("c")
+                        .add("val", ByteBuffer.allocate(100))
+                        .build()
+                        .apply();
+                }
+            });
+            // threads allocate from the stripe of their id
+            if (thread.getId() % 2 == i)
+                threads[i++] = thread;
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+    }
+
+    private static Set<String> directoriesDirtyWith(ColumnFamilyStore cfs)
+    {
+        Set<String> directories = new HashSet<>();
+        for (CommitLogSegment segment : CommitLog.instance.segmentManager.getActiveSegments())
+        {
+            if (segment.getDirtyTableIds().contains(cfs.metadata.id))
+                directories.add(segment.logFile.getParentFile().getAbsolutePath());
+        }
+        return directories;
+    }
+
+    @Test
+    public void testWritesSpreadAcrossStripes() throws Exception
+    {
+        assertTrue(CommitLog.instance.segmentManager instanceof CommitLogSegmentManagerStriped);
+        assertEquals(Arrays.asList(DatabaseDescriptor.getCommitLogLocation(), stripeDirectory),
+                     CommitLog.instance.segmentManager.getStorageDirectories());
+
+        writeFromBothStripes(100, "k");
+        assertEquals(2, directoriesDirtyWith(cfs()).size());
+
+        CommitLogPosition[] positions = CommitLog.instance.getStripePositions();
+        assertEquals(2, positions.length);
+        assertEquals(Collections.min(Arrays.asList(positions)), CommitLog.instance.getCurrentPosition());
+
+        CommitLog.instance.sync(true);
+        assertEquals(200, CommitLog.instance.resetUnsafe(false));
+    }
+
+    @Test
+    public void testForceRecycleAllStripes() throws Exception
+    {
+        writeFromBothStripes(10, "k");
+        List<CommitLogSegment> previous = new ArrayList<>(CommitLog.instance.segmentManager.getActiveSegments());
+
+        CommitLog.instance.forceRecycleAllSegments();
+
+        Collection<CommitLogSegment> segments = CommitLog.instance.segmentManager.getActiveSegments();
+        assertEquals(2, segments.size());
+        for (CommitLogSegment segment : segments)
+        {
+            assertFalse(previous.contains(segment));
+            assertTrue(segment.getDirtyTableIds().isEmpty());
+        }
+    }
+
+    @Test
+    public void testFlushDiscardsSegmentsOfAllStripes() throws Exception
+    {
+        ColumnFamilyStore cfs = cfs();
+        writeFromBothStripes(100, "k");
+        cfs.forceBlockingFlush();
+        CommitLog.instance.forceRecycleAllSegments();
+        assertTrue(directoriesDirtyWith(cfs).isEmpty());
+
+        CommitLog.instance.sync(true);
+        assertEquals(0, CommitLog.instance.resetUnsafe(false));
+    }
+
+    @Test
+    public void testReplayAfterFlush() throws Exception
+    {
+        ColumnFamilyStore cfs = cfs();
+        writeFromBothStripes(100, "before");
+        cfs.forceBlockingFlush();
+        writeFromBothStripes(50, "after");
+
+        // records of either stripe after the flush must be replayed, some before it may be
+        CommitLog.instance.sync(true);
+        int replayed = CommitLog.instance.resetUnsafe(false);
+        assertTrue("Replayed " + replayed, replayed >= 100 && replayed <= 300);
+        assertEquals(300, Util.getAll(Util.cmd(cfs).build()).size());
+    }
+
+    @Test
+    public void testReplayAfterTruncate() throws Exception
+    {
+        ColumnFamilyStore cfs = cfs();
+        writeFromBothStripes(100, "before");
+        cfs.truncateBlocking();
+        writeFromBothStripes(50, "after");
+
+        // the truncation position of each stripe skips exactly the records written to it before the truncation
+        CommitLog.instance.sync(true);
+        assertEquals(100, CommitLog.instance.resetUnsafe(false));
+        assertEquals(100, Util.getAll(Util.cmd(cfs).build()).size());
+    }
+}
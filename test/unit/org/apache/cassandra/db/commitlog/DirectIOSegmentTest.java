@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.schema.KeyspaceParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectIOSegmentTest
+{
+    private static final String KEYSPACE = "DirectIOSegmentTest";
+    private static final String TABLE = "Standard1";
+
+    @BeforeClass
+    public static void beforeClass()
+    {
+        DatabaseDescriptor.daemonInitialization();
+        DatabaseDescriptor.setCommitLogDiskAccessMode(Config.CommitLogDiskAccessMode.direct);
+
+        // keep system mutations out of the commit log
+        KeyspaceParams.DEFAULT_LOCAL_DURABLE_WRITES = false;
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE,
+                                    KeyspaceParams.simple(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE, TABLE, 0, AsciiType.instance, BytesType.instance));
+        CompactionManager.instance.disableAutoCompaction();
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException
+    {
+        DatabaseDescriptor.setCommitLogDiskAccessMode(Config.CommitLogDiskAccessMode.mmap);
+        CommitLog.instance.resetUnsafe(true);
+    }
+
+    @Before
+    public void beforeTest() throws IOException
+    {
+        cfs().truncateBlocking();
+        CommitLog.instance.resetUnsafe(true);
+        System.setProperty("cassandra.replayList", KEYSPACE + '.' + TABLE);
+    }
+
+    @After
+    public void afterTest()
+    {
+        System.clearProperty("cassandra.replayList");
+    }
+
+    private static ColumnFamilyStore cfs()
+    {
+        return Keyspace.open(KEYSPACE).getColumnFamilyStore(TABLE);
+    }
+
+    private static void write(int rows, int size, String prefix)
+    {
+        for (int row = 0; row < rows; row++)
+        {
+            new RowUpdateBuilder(cfs().metadata(), 0, prefix + row)
+                .clustering("c")
+                .add("val", ByteBuffer.allocate(size))
+                .build()
+                .apply();
+        }
+    }
+
+    private static File[] recycledFiles()
+    {
+        return new File(DatabaseDescriptor.getCommitLogLocation()).listFiles((dir, name) -> name.endsWith(CommitLogSegmentManagerStandard.RECYCLED_FILE_SUFFIX));
+    }
+
+    @Test
+    public void testReplay() throws Exception
+    {
+        assertTrue(CommitLog.instance.segmentManager.allocatingFrom() instanceof DirectIOSegment);
+
+        // a few rows per sync, and rows spanning several segments
+        write(100, 100, "small");
+        write(30, DatabaseDescriptor.getCommitLogSegmentSize() / 10, "large");
+
+        CommitLog.instance.sync(true);
+        assertEquals(130, CommitLog.instance.resetUnsafe(false));
+    }
+
+    @Test
+    public void testRecycledFiles() throws Exception
+    {
+        write(30, DatabaseDescriptor.getCommitLogSegmentSize() / 10, "before");
+        cfs().forceBlockingFlush();
+        CommitLog.instance.forceRecycleAllSegments();
+        assertTrue(recycledFiles().length > 0);
+
+        // the segments written to the recycled files end before the content of the earlier segments
+        write(30, DatabaseDescriptor.getCommitLogSegmentSize() / 10, "after");
+        write(10, 100, "last");
+        boolean recycled = false;
+        for (CommitLogSegment segment : CommitLog.instance.segmentManager.getActiveSegments())
+            recycled |= segment.descriptor.recycled;
+        assertTrue(recycled);
+
+        CommitLog.instance.sync(true);
+        assertEquals(40, CommitLog.instance.resetUnsafe(false));
+        assertEquals(70, Util.getAll(Util.cmd(cfs()).build()).size());
+    }
+
+    @Test
+    public void testRecycledFilesBounded() throws Exception
+    {
+        int maxRecycledSegments = DatabaseDescriptor.getCommitLogMaxRecycledSegments();
+        DatabaseDescriptor.setCommitLogMaxRecycledSegments(1);
+        try
+        {
+            write(30, DatabaseDescriptor.getCommitLogSegmentSize() / 10, "before");
+            cfs().forceBlockingFlush();
+            CommitLog.instance.forceRecycleAllSegments();
+            assertEquals(1, recycledFiles().length);
+        }
+        finally
+        {
+            DatabaseDescriptor.setCommitLogMaxRecycledSegments(maxRecycledSegments);
+        }
+    }
+
+    @Test
+    public void testRecycledFilesSurviveRestart() throws Exception
+    {
+        write(30, DatabaseDescriptor.getCommitLogSegmentSize() / 10, "before");
+        cfs().forceBlockingFlush();
+        CommitLog.instance.forceRecycleAllSegments();
+        File[] recycledFiles = recycledFiles();
+        assertTrue(recycledFiles.length > 0);
+
+        // the recycled files are left alone by replay and picked up on start
+        CommitLog.instance.sync(true);
+        assertEquals(0, CommitLog.instance.resetUnsafe(false));
+        write(30, DatabaseDescriptor.getCommitLogSegmentSize() / 10, "after");
+        for (File file : recycledFiles)
+            assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.concurrent.Transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelRangeCompactionTest extends CQLTester
+{
+    private static final int PARTITIONS = 4000;
+
+    private long minRangeSize;
+
+    @Before
+    public void setUp()
+    {
+        minRangeSize = DatabaseDescriptor.getParallelCompactionMinRangeSize();
+        DatabaseDescriptor.setParallelCompactionMinRangeSizeInMB(1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setParallelCompactionMinRangeSizeInMB((int) (minRangeSize >> 20));
+    }
+
+    @Test
+    public void testUnifiedCompactionIsSplit() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v blob) WITH compaction = {'class': 'UnifiedCompactionStrategy', 'base_shard_count': '1'} " +
+                    "AND compression = {'enabled': 'false'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        writeSSTables(cfs);
+
+        cfs.forceMajorCompaction();
+
+        // about 4MB of input split into one range per compactor
+        List<SSTableReader> sstables = new ArrayList<>(cfs.getLiveSSTables());
+        assertEquals(DatabaseDescriptor.getConcurrentCompactors(), sstables.size());
+        sstables.sort(SSTableReader.sstableComparator);
+        for (int i = 1; i < sstables.size(); ++i)
+            assertTrue(sstables.get(i - 1).last.compareTo(sstables.get(i).first) < 0);
+        assertEquals(0, cfs.getTracker().getCompacting().size());
+        checkContent();
+    }
+
+    @Test
+    public void testSizeTieredCompactionIsNotSplit() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v blob) WITH compression = {'enabled': 'false'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        writeSSTables(cfs);
+
+        cfs.forceMajorCompaction();
+
+        assertEquals(1, cfs.getLiveSSTables().size());
+        checkContent();
+    }
+
+    @Test
+    public void testInterruptedSplitCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v blob) WITH compaction = {'class': 'UnifiedCompactionStrategy', 'base_shard_count': '1'} " +
+                    "AND compression = {'enabled': 'false'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        writeSSTables(cfs);
+        Set<SSTableReader> originals = cfs.getLiveSSTables();
+
+        Collection<AbstractCompactionTask> tasks = cfs.getCompactionStrategyManager().getMaximalTasks(0, false);
+        assertEquals(1, tasks.size());
+        AbstractCompactionTask task = tasks.iterator().next();
+        LifecycleTransaction txn = task.transaction;
+        cfs.getCompactionStrategyManager().pause();
+        try
+        {
+            task.execute(CompactionManager.instance.active);
+            fail("Expected CompactionInterruptedException");
+        }
+        catch (CompactionInterruptedException e)
+        {
+            // expected
+        }
+        finally
+        {
+            cfs.getCompactionStrategyManager().resume();
+        }
+
+        assertEquals(Transactional.AbstractTransactional.State.ABORTED, txn.state());
+        assertEquals(originals, cfs.getLiveSSTables());
+        checkContent();
+    }
+
+    private void writeSSTables(ColumnFamilyStore cfs) throws Throwable
+    {
+        cfs.disableAutoCompaction();
+        Random random = new Random(1);
+        byte[] value = new byte[1024];
+        for (int flush = 0; flush < 2; ++flush)
+        {
+            for (int pk = flush; pk < PARTITIONS; pk += 2)
+            {
+                random.nextBytes(value);
+                execute("INSERT INTO %s (pk, v) VALUES (?, ?)", pk, ByteBuffer.wrap(value));
+            }
+            flush();
+        }
+        assertEquals(2, cfs.getLiveSSTables().size());
+    }
+
+    private void checkContent() throws Throwable
+    {
+        assertRowCount(execute("SELECT pk FROM %s"), PARTITIONS);
+        for (int pk = 0; pk < PARTITIONS; pk += 97)
+            assertRowCount(execute("SELECT pk FROM %s WHERE pk = ?", pk), 1);
+    }
+}
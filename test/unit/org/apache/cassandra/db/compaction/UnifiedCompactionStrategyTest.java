@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+import static org.apache.cassandra.db.compaction.UnifiedCompactionStrategy.validateOptions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnifiedCompactionStrategyTest extends CQLTester
+{
+    @Test
+    public void testOptionsValidation() throws ConfigurationException
+    {
+        Map<String, String> options = new HashMap<>();
+        options.put(UnifiedCompactionStrategyOptions.SCALING_PARAMETERS_KEY, "T4, L10, N, -3, 2");
+        options.put(UnifiedCompactionStrategyOptions.MIN_SSTABLE_SIZE_KEY, "10");
+        options.put(UnifiedCompactionStrategyOptions.TARGET_SSTABLE_SIZE_KEY, "100");
+        options.put(UnifiedCompactionStrategyOptions.BASE_SHARD_COUNT_KEY, "8");
+        options.put(UnifiedCompactionStrategyOptions.MAX_SSTABLES_TO_COMPACT_KEY, "0");
+        assertTrue(validateOptions(options).isEmpty());
+
+        assertInvalid(options, UnifiedCompactionStrategyOptions.SCALING_PARAMETERS_KEY, "T1");
+        assertInvalid(options, UnifiedCompactionStrategyOptions.SCALING_PARAMETERS_KEY, "X4");
+        assertInvalid(options, UnifiedCompactionStrategyOptions.SCALING_PARAMETERS_KEY, "T4,");
+        assertInvalid(options, UnifiedCompactionStrategyOptions.TARGET_SSTABLE_SIZE_KEY, "0");
+        assertInvalid(options, UnifiedCompactionStrategyOptions.BASE_SHARD_COUNT_KEY, "0");
+        assertInvalid(options, UnifiedCompactionStrategyOptions.BASE_SHARD_COUNT_KEY, "1000000");
+        assertInvalid(options, UnifiedCompactionStrategyOptions.MAX_SSTABLES_TO_COMPACT_KEY, "1");
+    }
+
+    private static void assertInvalid(Map<String, String> validOptions, String key, String value)
+    {
+        Map<String, String> options = new HashMap<>(validOptions);
+        options.put(key, value);
+        try
+        {
+            validateOptions(options);
+            fail(String.format("%s = %s should be rejected", key, value));
+        }
+        catch (ConfigurationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testScalingParameters()
+    {
+        Map<String, String> options = new HashMap<>();
+        options.put(UnifiedCompactionStrategyOptions.SCALING_PARAMETERS_KEY, "T4, L10, N, -3, 2");
+        UnifiedCompactionStrategyOptions parsed = new UnifiedCompactionStrategyOptions(options);
+
+        assertEquals(2, parsed.scalingParameter(0));
+        assertEquals(4, parsed.fanout(0));
+        assertEquals(4, parsed.threshold(0));
+        assertEquals(-8, parsed.scalingParameter(1));
+        assertEquals(10, parsed.fanout(1));
+        assertEquals(2, parsed.threshold(1));
+        assertEquals(0, parsed.scalingParameter(2));
+        assertEquals(2, parsed.fanout(2));
+        assertEquals(2, parsed.threshold(2));
+        assertEquals(5, parsed.fanout(3));
+        assertEquals(2, parsed.threshold(3));
+        // the last value applies to all further levels
+        assertEquals(4, parsed.fanout(4));
+        assertEquals(4, parsed.threshold(4));
+        assertEquals(4, parsed.threshold(20));
+    }
+
+    @Test
+    public void testLevels()
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int) WITH compaction = " +
+                    "{'class': 'UnifiedCompactionStrategy', 'scaling_parameters': 'T4, L10', 'min_sstable_size_in_mb': '1'}");
+        UnifiedCompactionStrategy strategy = new UnifiedCompactionStrategy(getCurrentColumnFamilyStore(), getCurrentColumnFamilyStore().metadata().params.compaction.options());
+
+        long mb = 1024 * 1024;
+        assertEquals(0, strategy.level(0));
+        assertEquals(0, strategy.level(4 * mb - 1));
+        assertEquals(1, strategy.level(4 * mb));
+        assertEquals(1, strategy.level(40 * mb - 1));
+        assertEquals(2, strategy.level(40 * mb));
+        assertEquals(3, strategy.level(400 * mb));
+    }
+
+    @Test
+    public void testTieredCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int) WITH compaction = " +
+                    "{'class': 'UnifiedCompactionStrategy', 'scaling_parameters': 'T4'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+
+        for (int i = 0; i < 3; ++i)
+            writeAndFlush(i * 100, 100);
+        cfs.enableAutoCompaction(true);
+        assertEquals(3, cfs.getLiveSSTables().size());
+
+        cfs.disableAutoCompaction();
+        writeAndFlush(300, 100);
+        cfs.enableAutoCompaction(true);
+        assertEquals(1, cfs.getLiveSSTables().size());
+        assertRowCount(execute("SELECT * FROM %s"), 400);
+    }
+
+    @Test
+    public void testLeveledCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int) WITH compaction = " +
+                    "{'class': 'UnifiedCompactionStrategy', 'scaling_parameters': 'L10'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+
+        writeAndFlush(0, 100);
+        cfs.enableAutoCompaction(true);
+        assertEquals(1, cfs.getLiveSSTables().size());
+
+        cfs.disableAutoCompaction();
+        writeAndFlush(100, 100);
+        cfs.enableAutoCompaction(true);
+        assertEquals(1, cfs.getLiveSSTables().size());
+        assertRowCount(execute("SELECT * FROM %s"), 200);
+    }
+
+    @Test
+    public void testShardedOutput() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v blob) WITH compaction = " +
+                    "{'class': 'UnifiedCompactionStrategy', 'target_sstable_size_in_mb': '1', 'base_shard_count': '2'} " +
+                    "AND compression = {'enabled': 'false'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+
+        // about 5MB of data, which is split into 4 shards of about 1.25MB
+        Random random = new Random(1);
+        byte[] value = new byte[1024];
+        for (int flush = 0; flush < 2; ++flush)
+        {
+            for (int pk = flush; pk < 5000; pk += 2)
+            {
+                random.nextBytes(value);
+                execute("INSERT INTO %s (pk, v) VALUES (?, ?)", pk, ByteBuffer.wrap(value));
+            }
+            flush();
+        }
+
+        cfs.forceMajorCompaction();
+        List<SSTableReader> sstables = new ArrayList<>(cfs.getLiveSSTables());
+        assertEquals(4, sstables.size());
+        sstables.sort(SSTableReader.sstableComparator);
+        for (int i = 1; i < sstables.size(); ++i)
+            assertTrue(sstables.get(i - 1).last.compareTo(sstables.get(i).first) < 0);
+        assertRowCount(execute("SELECT pk FROM %s"), 5000);
+    }
+
+    private void writeAndFlush(int start, int count) throws Throwable
+    {
+        for (int pk = start; pk < start + count; ++pk)
+            execute("INSERT INTO %s (pk, v) VALUES (?, ?)", pk, pk);
+        flush();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.db.repair;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLStatement;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Digest;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterators;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.PartitionHashes;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.service.ActiveRepairService;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.streaming.PreviewKind;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Hex;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionHashValidationTest extends CQLTester
+{
+    private String hashed;
+    private String plain;
+    private int fromHashes;
+    private int fromData;
+
+    @After
+    public void disablePartitionHashes()
+    {
+        DatabaseDescriptor.getRawConfig().partition_hashes_tables.clear();
+    }
+
+    /**
+     * Creates two tables of the given schema, only the first of which records partition hashes.
+     */
+    private void createTables(String schema)
+    {
+        hashed = createTable(schema);
+        plain = createTable(schema);
+        DatabaseDescriptor.getRawConfig().partition_hashes_tables.add(KEYSPACE + '.' + hashed);
+    }
+
+    /**
+     * Executes the given query on both tables at the same time, so that they hold the same deletion times.
+     */
+    private void executeOnBoth(String query, Object... values) throws Throwable
+    {
+        QueryState state = new QueryState(ClientState.forInternalCalls(), FBUtilities.timestampMicros(), FBUtilities.nowInSeconds());
+        for (String table : new String[]{ hashed, plain })
+        {
+            CQLStatement statement = QueryProcessor.parseStatement(query.replace("%s", KEYSPACE + '.' + table), state.getClientState());
+            statement.validate(state.getClientState());
+            statement.executeLocally(state, QueryProcessor.makeInternalOptions(statement, values));
+        }
+    }
+
+    private void flushBoth()
+    {
+        Keyspace.open(KEYSPACE).getColumnFamilyStore(hashed).forceBlockingFlush();
+        Keyspace.open(KEYSPACE).getColumnFamilyStore(plain).forceBlockingFlush();
+    }
+
+    /**
+     * @return the hashes a validation of the whole table at the given time computes, by partition key
+     */
+    private Map<ByteBuffer, String> validate(String table, int nowInSec) throws Throwable
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(table);
+        Token min = cfs.getPartitioner().getMinimumToken();
+        Collection<Range<Token>> ranges = Collections.singletonList(new Range<>(min, min));
+        UUID parentId = UUIDGen.getTimeUUID();
+        ActiveRepairService.instance.registerParentRepairSession(parentId, FBUtilities.getBroadcastAddressAndPort(), Collections.singletonList(cfs),
+                                                                 ranges, false, ActiveRepairService.UNREPAIRED_SSTABLE, false, PreviewKind.NONE);
+        fromHashes = 0;
+        fromData = 0;
+        Map<ByteBuffer, String> hashes = new HashMap<>();
+        try (CassandraValidationIterator iterator = new CassandraValidationIterator(cfs, ranges, parentId, UUIDGen.getTimeUUID(), false, nowInSec))
+        {
+            while (iterator.hasNext())
+            {
+                if (iterator.hasNextHash())
+                {
+                    PartitionHashes.Entry entry = iterator.nextHash();
+                    hashes.put(entry.key.getKey(), Hex.bytesToHex(entry.rowHash().hash));
+                    fromHashes++;
+                    continue;
+                }
+
+                try (UnfilteredRowIterator partition = iterator.next())
+                {
+                    Digest digest = Digest.forValidator();
+                    UnfilteredRowIterators.digest(partition, digest, MessagingService.current_version);
+                    hashes.put(partition.partitionKey().getKey(), Hex.bytesToHex(digest.digest()));
+                    fromData++;
+                }
+            }
+        }
+        finally
+        {
+            ActiveRepairService.instance.removeParentRepairSession(parentId);
+        }
+        return hashes;
+    }
+
+    private void assertSameValidation(int nowInSec) throws Throwable
+    {
+        Map<ByteBuffer, String> expected = validate(plain, nowInSec);
+        assertEquals(expected.size(), fromData);
+        assertEquals(expected, validate(hashed, nowInSec));
+    }
+
+    @Test
+    public void testHashesMatchData() throws Throwable
+    {
+        createTables("CREATE TABLE %s (k int, c int, s int static, v int, m map<int, int>, PRIMARY KEY (k, c))");
+        for (int k = 0; k < 20; k++)
+        {
+            executeOnBoth("INSERT INTO %s (k, s) VALUES (?, ?) USING TIMESTAMP 1", k, k);
+            for (int c = 0; c < 3; c++)
+                executeOnBoth("INSERT INTO %s (k, c, v, m) VALUES (?, ?, ?, {1: 1, 2: 2}) USING TIMESTAMP 1 AND TTL 100000", k, c, c);
+        }
+        flushBoth();
+
+        // partitions 0 to 4 are in both sstables, the others in one
+        for (int k = 0; k < 5; k++)
+            executeOnBoth("UPDATE %s USING TIMESTAMP 2 SET v = ? WHERE k = ? AND c = 0", k, k);
+        executeOnBoth("DELETE FROM %s USING TIMESTAMP 2 WHERE k = 20");
+        executeOnBoth("DELETE FROM %s USING TIMESTAMP 2 WHERE k = 21 AND c > 0");
+        executeOnBoth("DELETE v FROM %s USING TIMESTAMP 2 WHERE k = 22 AND c = 0");
+        executeOnBoth("DELETE m[1] FROM %s USING TIMESTAMP 2 WHERE k = 23 AND c = 0");
+        executeOnBoth("INSERT INTO %s (k, c, v) VALUES (24, 0, 0) USING TIMESTAMP 2");
+        flushBoth();
+
+        assertSameValidation(FBUtilities.nowInSeconds());
+        assertEquals(20, fromHashes);
+        assertEquals(5, fromData);
+    }
+
+    @Test
+    public void testPurgeableAndExpiredData() throws Throwable
+    {
+        createTables("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c)) WITH gc_grace_seconds = 0");
+        for (int k = 0; k < 10; k++)
+            executeOnBoth("INSERT INTO %s (k, c, v) VALUES (?, 0, 0) USING TIMESTAMP 1", k);
+        executeOnBoth("INSERT INTO %s (k, c, v) VALUES (10, 0, 0) USING TIMESTAMP 1 AND TTL 100");
+        executeOnBoth("DELETE FROM %s USING TIMESTAMP 1 WHERE k = 11 AND c = 0");
+        executeOnBoth("INSERT INTO %s (k, c, v) VALUES (12, 0, 0) USING TIMESTAMP 1");
+        executeOnBoth("DELETE v FROM %s USING TIMESTAMP 2 WHERE k = 12 AND c = 0");
+        flushBoth();
+
+        // the partitions whose tombstones are purged, or whose data expired, are read
+        assertSameValidation(FBUtilities.nowInSeconds() + 1000);
+        assertEquals(10, fromHashes);
+        assertEquals(1, fromData);
+    }
+
+    @Test
+    public void testValidationFromData() throws Throwable
+    {
+        createTables("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        executeOnBoth("INSERT INTO %s (k, v) VALUES (0, 0) USING TIMESTAMP 1");
+        flushBoth();
+        assertSameValidation(FBUtilities.nowInSeconds());
+        assertEquals(1, fromHashes);
+
+        // the hashes depend on the columns of the table
+        executeOnBoth("ALTER TABLE %s ADD w int");
+        assertSameValidation(FBUtilities.nowInSeconds());
+        assertEquals(0, fromHashes);
+
+        // and all the partitions are read unless all the sstables have hashes
+        executeOnBoth("INSERT INTO %s (k, v) VALUES (1, 1) USING TIMESTAMP 1");
+        flushBoth();
+        DatabaseDescriptor.getRawConfig().partition_hashes_tables.clear();
+        executeOnBoth("INSERT INTO %s (k, v) VALUES (2, 2) USING TIMESTAMP 1");
+        flushBoth();
+        assertSameValidation(FBUtilities.nowInSeconds());
+        assertEquals(0, fromHashes);
+        assertTrue(fromData > 0);
+    }
+}
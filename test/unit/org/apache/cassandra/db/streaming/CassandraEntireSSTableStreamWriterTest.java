@@ -20,8 +20,10 @@ package org.apache.cassandra.db.streaming;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 
@@ -38,9 +40,15 @@ import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.apache.cassandra.SchemaLoader;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.RowUpdateBuilder;
 import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.KeyIterator;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataInputBuffer;
@@ -169,6 +177,85 @@ public class CassandraEntireSSTableStreamWriterTest
         }
     }
 
+    @Test
+    public void testSlicedBlockReadingAndWritingOverWire() throws Exception
+    {
+        StreamSession session = setupStreamingSessionForTest();
+        InetAddressAndPort peer = FBUtilities.getBroadcastAddressAndPort();
+
+        // stream the first four partitions of the sstable only
+        List<DecoratedKey> keys = new ArrayList<>();
+        try (KeyIterator iter = new KeyIterator(descriptor, sstable.metadata()))
+        {
+            while (iter.hasNext())
+                keys.add(iter.next());
+        }
+        List<Range<Token>> ranges = Collections.singletonList(new Range<>(store.getPartitioner().getMinimumToken(), keys.get(3).getToken()));
+
+        ByteBuf serializedFile = Unpooled.buffer(8192);
+        EmbeddedChannel channel = createMockNettyChannel(serializedFile);
+        try (AsyncStreamingOutputPlus out = new AsyncStreamingOutputPlus(channel);
+             ComponentContext context = ComponentContext.createSliced(sstable, sstable.getPositionsForRanges(ranges)))
+        {
+            assertEquals(4, context.slice().keys);
+            assertEquals(keys.get(0), context.slice().first);
+            assertEquals(keys.get(3), context.slice().last);
+
+            CassandraEntireSSTableStreamWriter writer = new CassandraEntireSSTableStreamWriter(sstable, session, context);
+            writer.write(out);
+
+            session.prepareReceiving(new StreamSummary(sstable.metadata().id, 1, 5104));
+
+            CassandraStreamHeader header =
+            CassandraStreamHeader.builder()
+                                 .withSSTableFormat(sstable.descriptor.formatType)
+                                 .withSSTableVersion(sstable.descriptor.version)
+                                 .withSSTableLevel(0)
+                                 .withEstimatedKeys(context.slice().keys)
+                                 .withSections(Collections.emptyList())
+                                 .withSerializationHeader(sstable.header.toComponent())
+                                 .withComponentManifest(context.manifest())
+                                 .isEntireSSTable(true)
+                                 .withFirstKey(context.slice().first)
+                                 .withTableId(sstable.metadata().id)
+                                 .build();
+
+            CassandraEntireSSTableStreamReader reader = new CassandraEntireSSTableStreamReader(new StreamMessageHeader(sstable.metadata().id, peer, session.planId(), false, 0, 0, 0, null), header, session);
+
+            SSTableMultiWriter sstableWriter = reader.read(new DataInputBuffer(serializedFile.nioBuffer(), false));
+            Collection<SSTableReader> newSstables = sstableWriter.finished();
+
+            assertEquals(1, newSstables.size());
+            SSTableReader slice = newSstables.iterator().next();
+            assertEquals(keys.get(0), slice.first);
+            assertEquals(keys.get(3), slice.last);
+
+            // the statistics of the sstable still bound these of the slice, but for its partition sizes
+            assertEquals(sstable.getMinTimestamp(), slice.getMinTimestamp());
+            assertEquals(sstable.getMaxTimestamp(), slice.getMaxTimestamp());
+            assertEquals(4, slice.getSSTableMetadata().estimatedPartitionSize.count());
+
+            // the partitions of the slice are found through its index at their new positions
+            List<DecoratedKey> sliceKeys = new ArrayList<>();
+            try (ISSTableScanner scanner = slice.getScanner())
+            {
+                while (scanner.hasNext())
+                {
+                    try (UnfilteredRowIterator partition = scanner.next())
+                    {
+                        sliceKeys.add(partition.partitionKey());
+                        assertTrue(partition.hasNext());
+                        while (partition.hasNext())
+                            partition.next();
+                    }
+                }
+            }
+            assertEquals(keys.subList(0, 4), sliceKeys);
+            for (DecoratedKey key : keys.subList(0, 4))
+                assertTrue(slice.getPosition(key, SSTableReader.Operator.EQ) != null);
+        }
+    }
+
     private EmbeddedChannel createMockNettyChannel(ByteBuf serializedFile) throws Exception
     {
         WritableByteChannel wbc = new WritableByteChannel()
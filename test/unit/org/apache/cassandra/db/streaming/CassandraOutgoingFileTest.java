@@ -25,6 +25,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Keyspace;
@@ -126,6 +127,32 @@ public class CassandraOutgoingFileTest
         assertTrue(cof.contained(sections, sstable));
     }
 
+    @Test
+    public void validateSliced_PartialOverlap_Succeeds()
+    {
+        List<Range<Token>> requestedRanges = Arrays.asList(new Range<>(store.getPartitioner().getMinimumToken(), getTokenAtIndex(2)));
+
+        List<SSTableReader.PartitionPositionBounds> sections = sstable.getPositionsForRanges(requestedRanges);
+        CassandraOutgoingFile cof = new CassandraOutgoingFile(StreamOperation.BOOTSTRAP, sstable.ref(),
+                                                              sections,
+                                                              requestedRanges, sstable.estimatedKeys());
+        assertFalse(cof.computeShouldStreamSlicedSSTables());
+
+        DatabaseDescriptor.getRawConfig().stream_range_sliced_sstables = true;
+        try
+        {
+            cof = new CassandraOutgoingFile(StreamOperation.BOOTSTRAP, sstable.ref(),
+                                            sections,
+                                            requestedRanges, sstable.estimatedKeys());
+            assertTrue(cof.computeShouldStreamSlicedSSTables());
+            assertTrue(cof.getNumFiles() > 1);
+        }
+        finally
+        {
+            DatabaseDescriptor.getRawConfig().stream_range_sliced_sstables = false;
+        }
+    }
+
     private DecoratedKey getKeyAtIndex(int i)
     {
         int count = 0;
@@ -41,6 +41,7 @@ import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.format.SSTableFormat;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.big.BigFormat;
+import org.apache.cassandra.io.sstable.format.trie.TrieIndexFormat;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.schema.CompressionParams;
 import org.apache.cassandra.schema.KeyspaceParams;
@@ -177,6 +178,26 @@ public class CassandraStreamHeaderTest
         SerializationUtils.assertSerializationCycle(header, CassandraStreamHeader.serializer);
     }
 
+    @Test
+    public void serializerTest_TrieIndexFormat()
+    {
+        String ddl = "CREATE TABLE tbl (k INT PRIMARY KEY, v INT)";
+        TableMetadata metadata = CreateTableStatement.parse(ddl, "ks").build();
+        CassandraStreamHeader header =
+            CassandraStreamHeader.builder()
+                                 .withSSTableFormat(SSTableFormat.Type.BTI)
+                                 .withSSTableVersion(TrieIndexFormat.latestVersion)
+                                 .withSSTableLevel(0)
+                                 .withEstimatedKeys(0)
+                                 .withSections(Collections.emptyList())
+                                 .withSerializationHeader(SerializationHeader.makeWithoutStats(metadata).toComponent())
+                                 .withTableId(metadata.id)
+                                 .build();
+
+        // the version must be parsed by the format of the sstable, not the one new sstables are written in
+        SerializationUtils.assertSerializationCycle(header, CassandraStreamHeader.serializer);
+    }
+
     @Test
     public void serializerTest_EntireSSTableTransfer()
     {
@@ -19,19 +19,26 @@
 package org.apache.cassandra.db.streaming;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.LinkedHashMap;
 
 import org.junit.Test;
 
 import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.io.util.DataOutputBufferFixed;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.serializers.SerializationUtils;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ComponentManifestTest
 {
@@ -58,4 +65,26 @@ public class ComponentManifestTest
         ComponentManifest actual = ComponentManifest.serializer.deserialize(in, MessagingService.VERSION_40);
         assertNotEquals(expected, actual);
     }
+
+    @Test
+    public void testComponentsUnknownToPeerAreNotStreamed() throws IOException
+    {
+        File directory = Files.createTempDirectory(null).toFile();
+        Descriptor big = new Descriptor(directory, "ks", "tbl", 1, SSTableFormat.Type.BIG);
+        Descriptor bti = new Descriptor(directory, "ks", "tbl", 2, SSTableFormat.Type.BTI);
+        for (Component component : new Component[]{ Component.DATA, Component.PARTITION_HASHES })
+            assertTrue(new File(big.filenameFor(component)).createNewFile());
+        for (Component component : new Component[]{ Component.DATA, Component.PARTITION_INDEX })
+            assertTrue(new File(bti.filenameFor(component)).createNewFile());
+
+        // the partition hashes are left out for peers that don't know them, as sstables are read without them
+        assertEquals(1, ComponentManifest.create(big, MessagingService.VERSION_40).components().size());
+        assertEquals(2, ComponentManifest.create(big, MessagingService.VERSION_41).components().size());
+        assertTrue(ComponentManifest.canStreamEntirely(big, MessagingService.VERSION_40));
+
+        // but the partition index can't be
+        assertFalse(ComponentManifest.canStreamEntirely(bti, MessagingService.VERSION_40));
+        assertTrue(ComponentManifest.canStreamEntirely(bti, MessagingService.VERSION_41));
+        assertEquals(2, ComponentManifest.create(bti, MessagingService.VERSION_41).components().size());
+    }
 }
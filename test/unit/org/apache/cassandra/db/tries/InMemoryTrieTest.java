@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.tries;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.Iterables;
+import org.junit.Test;
+
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryTrieTest
+{
+    private static final Random random = new Random(1);
+
+    @Test
+    public void testEmpty()
+    {
+        InMemoryTrie<String> trie = new InMemoryTrie<>();
+        try
+        {
+            assertTrue(trie.isEmpty());
+            assertNull(trie.get(key(new byte[]{ 1 })));
+            assertNull(trie.get(key(new byte[0])));
+            assertTrue(Iterables.isEmpty(trie.values()));
+        }
+        finally
+        {
+            trie.discardBuffers();
+        }
+    }
+
+    @Test
+    public void testPrefixes()
+    {
+        InMemoryTrie<String> trie = new InMemoryTrie<>();
+        try
+        {
+            trie.put(key(new byte[]{ 1, 2, 3 }), "123");
+            trie.put(key(new byte[]{ 1 }), "1");
+            trie.put(key(new byte[0]), "");
+            trie.put(key(new byte[]{ 1, 2 }), "12");
+            trie.put(key(new byte[]{ 1, 2, 3, 4 }), "1234");
+
+            assertEquals("", trie.get(key(new byte[0])));
+            assertEquals("12", trie.get(key(new byte[]{ 1, 2 })));
+            assertNull(trie.get(key(new byte[]{ 1, 2, 4 })));
+            assertEquals(5, trie.valuesCount());
+            assertEquals(list("", "1", "12", "123", "1234"), list(trie.values()));
+
+            trie.put(key(new byte[]{ 1, 2 }), "12'");
+            assertEquals(5, trie.valuesCount());
+            assertEquals(list("", "1", "12'", "123", "1234"), list(trie.values()));
+        }
+        finally
+        {
+            trie.discardBuffers();
+        }
+    }
+
+    @Test
+    public void testRandomContent()
+    {
+        // Exercise every node type: long chains, sparse nodes that need to grow, and split nodes.
+        for (int alphabet : new int[]{ 2, 7, 30, 256 })
+        {
+            InMemoryTrie<ByteBuffer> trie = new InMemoryTrie<>();
+            NavigableMap<ByteBuffer, ByteBuffer> expected = new TreeMap<>(ByteBufferUtil::compareUnsigned);
+            try
+            {
+                for (int i = 0; i < 20000; ++i)
+                {
+                    ByteBuffer k = randomKey(alphabet);
+                    trie.put(key(k), k);
+                    expected.put(k, k);
+                }
+
+                assertEquals(expected.size(), trie.valuesCount());
+                for (ByteBuffer k : expected.keySet())
+                    assertEquals(k, trie.get(key(k)));
+                for (int i = 0; i < 1000; ++i)
+                {
+                    ByteBuffer k = randomKey(alphabet);
+                    assertEquals(expected.get(k), trie.get(key(k)));
+                }
+
+                assertEquals(new ArrayList<>(expected.values()), list(trie.values()));
+
+                for (int i = 0; i < 200; ++i)
+                {
+                    ByteBuffer left = random.nextInt(10) == 0 ? null : randomKey(alphabet);
+                    ByteBuffer right = random.nextInt(10) == 0 ? null : randomKey(alphabet);
+                    if (left != null && right != null && ByteBufferUtil.compareUnsigned(left, right) > 0)
+                    {
+                        ByteBuffer t = left;
+                        left = right;
+                        right = t;
+                    }
+                    boolean includeLeft = random.nextBoolean();
+                    boolean includeRight = random.nextBoolean();
+
+                    List<ByteBuffer> sub = new ArrayList<>();
+                    for (ByteBuffer k : expected.keySet())
+                    {
+                        int cmpLeft = left == null ? 1 : ByteBufferUtil.compareUnsigned(k, left);
+                        int cmpRight = right == null ? -1 : ByteBufferUtil.compareUnsigned(k, right);
+                        if ((cmpLeft > 0 || cmpLeft == 0 && includeLeft) && (cmpRight < 0 || cmpRight == 0 && includeRight))
+                            sub.add(k);
+                    }
+
+                    assertEquals(sub,
+                                 list(trie.subtrieValues(left == null ? null : key(left), includeLeft,
+                                                         right == null ? null : key(right), includeRight)));
+                }
+            }
+            finally
+            {
+                trie.discardBuffers();
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Throwable
+    {
+        InMemoryTrie<ByteBuffer> trie = new InMemoryTrie<>();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < 2; ++i)
+            {
+                Thread reader = new Thread(() -> {
+                    try
+                    {
+                        while (!done.get())
+                        {
+                            ByteBuffer previous = null;
+                            for (ByteBuffer value : trie.values())
+                            {
+                                // Every value must be the key it was stored with, in order.
+                                assertTrue(previous == null || ByteBufferUtil.compareUnsigned(previous, value) < 0);
+                                assertEquals(value, trie.get(key(value)));
+                                previous = value;
+                            }
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        error.set(t);
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+
+            for (int i = 0; i < 50000 && error.get() == null; ++i)
+            {
+                ByteBuffer k = randomKey(20);
+                trie.put(key(k), k);
+            }
+            done.set(true);
+            for (Thread reader : readers)
+                reader.join();
+            if (error.get() != null)
+                throw error.get();
+        }
+        finally
+        {
+            done.set(true);
+            for (Thread reader : readers)
+                reader.join();
+            trie.discardBuffers();
+        }
+    }
+
+    private static ByteBuffer randomKey(int alphabet)
+    {
+        byte[] bytes = new byte[random.nextInt(random.nextInt(10) == 0 ? 40 : 8)];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte) random.nextInt(alphabet);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static ByteComparable key(byte[] bytes)
+    {
+        return ByteComparable.fixedLength(bytes);
+    }
+
+    private static ByteComparable key(ByteBuffer bytes)
+    {
+        return ByteComparable.fixedLength(bytes);
+    }
+
+    @SafeVarargs
+    private static <T> List<T> list(T... values)
+    {
+        List<T> list = new ArrayList<>();
+        for (T value : values)
+            list.add(value);
+        return list;
+    }
+
+    private static <T> List<T> list(Iterable<T> values)
+    {
+        List<T> list = new ArrayList<>();
+        Iterables.addAll(list, values);
+        return list;
+    }
+}
@@ -157,6 +157,40 @@ public class HintsBufferTest
         buffer.free();
     }
 
+    @Test
+    public void testConsumeWhileWriting() throws IOException
+    {
+        UUID hostId = UUID.randomUUID();
+        long baseTimestamp = System.currentTimeMillis();
+        int hintSize = (int) Hint.serializer.serializedSize(createHint(0, baseTimestamp), MessagingService.current_version);
+        UUID[] load = new UUID[3000];
+        Arrays.fill(load, hostId);
+        HintsBuffer buffer = HintsBuffer.create((hintSize + HintsBuffer.ENTRY_OVERHEAD_SIZE) * load.length);
+
+        // consume the hints written so far each time, as a partial flush of the current buffer would
+        int written = 0;
+        for (int batch : new int[]{ 1, 1500, 0, 1499 })
+        {
+            for (int i = written; i < written + batch; i++)
+            {
+                try (HintsBuffer.Allocation allocation = buffer.allocate(hintSize))
+                {
+                    allocation.write(Collections.singleton(hostId), createHint(i, baseTimestamp));
+                }
+            }
+            buffer.waitForModifications();
+
+            Iterator<ByteBuffer> iter = buffer.consumingHintsIterator(hostId);
+            for (int i = written; i < written + batch; i++)
+                assertEquals(i, validateEntry(hostId, iter.next(), baseTimestamp, load));
+            assertFalse(iter.hasNext());
+            written += batch;
+        }
+        assertEquals(0, buffer.remaining());
+
+        buffer.free();
+    }
+
     private static int validateEntry(UUID hostId, ByteBuffer buffer, long baseTimestamp, UUID[] load) throws IOException
     {
         CRC32 crc = new CRC32();
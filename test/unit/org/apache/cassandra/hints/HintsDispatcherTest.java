@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.hints;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.TableMetadata;
+
+import static org.junit.Assert.assertEquals;
+
+public class HintsDispatcherTest
+{
+    private static final String KEYSPACE = "hints_dispatcher_test";
+    private static final String TABLE = "table";
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), SchemaLoader.standardCFMD(KEYSPACE, TABLE));
+    }
+
+    @Test
+    public void testPagesInFlight()
+    {
+        // grow by one page while the pages are acknowledged as fast as the fastest one, up to the maximum
+        assertEquals(2, HintsDispatcher.pagesInFlight(1, 4, 100, 100));
+        assertEquals(4, HintsDispatcher.pagesInFlight(3, 4, 150, 100));
+        assertEquals(4, HintsDispatcher.pagesInFlight(4, 4, 100, 100));
+
+        // halve when they slow down
+        assertEquals(2, HintsDispatcher.pagesInFlight(4, 4, 201, 100));
+        assertEquals(1, HintsDispatcher.pagesInFlight(1, 4, 1000, 100));
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        long now = System.currentTimeMillis();
+        List<Hint> hints = Arrays.asList(hint("key1", "c1", 1, now - 2000),
+                                         hint("key2", "c1", 1, now - 1000),
+                                         hint("key1", "c2", 2, now - 1000),
+                                         hint("key1", "c1", 3, now));
+
+        List<Hint> coalesced = Lists.newArrayList(HintsDispatcher.coalesce(hints.iterator()));
+        assertEquals(2, coalesced.size());
+
+        // the hints for key1 are merged into one created at the time of the earliest, and key2 is left alone
+        Hint merged = coalesced.get(0);
+        assertEquals(now - 2000, merged.creationTime);
+        PartitionUpdate update = merged.mutation.getPartitionUpdates().iterator().next();
+        assertEquals(2, update.rowCount());
+        assertEquals(3, update.getRow(update.metadata().comparator.make("c1")).primaryKeyLivenessInfo().timestamp());
+        assertEquals(hints.get(1), coalesced.get(1));
+    }
+
+    private static Hint hint(String key, String clustering, long timestamp, long creationTime)
+    {
+        TableMetadata table = Schema.instance.getTableMetadata(KEYSPACE, TABLE);
+        Mutation mutation = new RowUpdateBuilder(table, timestamp, key).clustering(clustering).add("val", "v").build();
+        return Hint.create(mutation, creationTime);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.metrics.ClearableHistogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClusteringRangeFilterTest extends CQLTester
+{
+    @BeforeClass
+    public static void enableClusteringFilters()
+    {
+        DatabaseDescriptor.getRawConfig().clustering_filter_tables.add(KEYSPACE);
+    }
+
+    private void executeAndCheck(String query, int numSSTables, Object[]... rows) throws Throwable
+    {
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        ((ClearableHistogram) cfs.metric.sstablesPerReadHistogram.cf).clear();
+
+        assertRows(execute(query), rows);
+
+        long numSSTablesIterated = cfs.metric.sstablesPerReadHistogram.cf.getSnapshot().getMax();
+        assertEquals(String.format("Expected %d sstables iterated but got %d instead", numSSTables, numSSTablesIterated),
+                     numSSTables,
+                     numSSTablesIterated);
+    }
+
+    /**
+     * Writes partition 1 in clustering order over 4 sstables, each also holding all the clusterings of partition 2 so
+     * that the min/max clustering values of the sstables do not help.
+     */
+    private void writeTimeSeries() throws Throwable
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            for (int c = i * 10; c < i * 10 + 10; c++)
+                execute("INSERT INTO %s (pk, c, v) VALUES (1, ?, ?)", c, c);
+            execute("INSERT INTO %s (pk, c, v) VALUES (2, 0, 0)");
+            execute("INSERT INTO %s (pk, c, v) VALUES (2, 100, 100)");
+            flush();
+        }
+    }
+
+    @Test
+    public void testSkipNonIntersectingSSTables() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, c int, v int, PRIMARY KEY (pk, c))");
+        disableCompaction();
+        writeTimeSeries();
+
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+            assertTrue(sstable.components.contains(Component.CLUSTERING_FILTER));
+        assertTrue(cfs.metric.clusteringFilterOffHeapMemoryUsed.getValue() > 0);
+
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c >= 38", 1,
+                        row(38, 38), row(39, 39));
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c > 15 AND c <= 21", 2,
+                        row(16, 16), row(17, 17), row(18, 18), row(19, 19), row(20, 20), row(21, 21));
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c IN (5, 35)", 2,
+                        row(5, 5), row(35, 35));
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c > 50", 0);
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 2 AND c >= 38", 4,
+                        row(100, 100));
+    }
+
+    @Test
+    public void testReversedClustering() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, c int, v int, PRIMARY KEY (pk, c)) WITH CLUSTERING ORDER BY (c DESC)");
+        disableCompaction();
+        writeTimeSeries();
+
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c >= 38", 1,
+                        row(39, 39), row(38, 38));
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c < 2 ORDER BY c ASC", 1,
+                        row(0, 0), row(1, 1));
+    }
+
+    @Test
+    public void testTruncatedClusterings() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, c text, v int, PRIMARY KEY (pk, c))");
+        disableCompaction();
+
+        // the clusterings only differ after their first 8 bytes
+        String prefix = "timestamp-";
+        for (int i = 0; i < 3; i++)
+        {
+            execute("INSERT INTO %s (pk, c, v) VALUES (1, ?, ?)", prefix + i, i);
+            flush();
+        }
+        execute("INSERT INTO %s (pk, c, v) VALUES (1, 'a', 10)");
+        flush();
+
+        // the first sstable is skipped by its max clustering, the filter cannot tell the next two apart
+        executeAndCheck("SELECT v FROM %s WHERE pk = 1 AND c >= '" + prefix + "1'", 2,
+                        row(1), row(2));
+        executeAndCheck("SELECT v FROM %s WHERE pk = 1 AND c < 'b'", 1,
+                        row(10));
+    }
+
+    @Test
+    public void testPartitionDeletion() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, c int, v int, PRIMARY KEY (pk, c))");
+        disableCompaction();
+
+        execute("INSERT INTO %s (pk, c, v) VALUES (1, 100, 100) USING TIMESTAMP 1");
+        flush();
+        execute("DELETE FROM %s USING TIMESTAMP 2 WHERE pk = 1");
+        flush();
+        execute("INSERT INTO %s (pk, c, v) VALUES (1, 1, 1) USING TIMESTAMP 3");
+        flush();
+
+        assertEmpty(execute("SELECT c, v FROM %s WHERE pk = 1 AND c >= 50"));
+        assertRows(execute("SELECT c, v FROM %s WHERE pk = 1"), row(1, 1));
+        assertRows(execute("SELECT c, v FROM %s WHERE pk = 1 AND c IN (1, 100)"), row(1, 1));
+    }
+
+    @Test
+    public void testStaticRows() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, c int, s int static, v int, PRIMARY KEY (pk, c))");
+        disableCompaction();
+
+        execute("UPDATE %s SET s = 1 WHERE pk = 1");
+        flush();
+        execute("INSERT INTO %s (pk, c, v) VALUES (1, 5, 5)");
+        flush();
+
+        assertRows(execute("SELECT s, c, v FROM %s WHERE pk = 1 AND c >= 0"), row(1, 5, 5));
+        assertRows(execute("SELECT s, v FROM %s WHERE pk = 1 AND c = 5"), row(1, 5));
+        executeAndCheck("SELECT c, v FROM %s WHERE pk = 1 AND c >= 0", 1,
+                        row(5, 5));
+    }
+
+    @Test
+    public void testDisabled() throws Throwable
+    {
+        DatabaseDescriptor.getRawConfig().clustering_filter_tables.remove(KEYSPACE);
+        try
+        {
+            createTable("CREATE TABLE %s (pk int, c int, v int, PRIMARY KEY (pk, c))");
+            execute("INSERT INTO %s (pk, c, v) VALUES (1, 1, 1)");
+            flush();
+            for (SSTableReader sstable : getCurrentColumnFamilyStore().getLiveSSTables())
+                assertFalse(sstable.components.contains(Component.CLUSTERING_FILTER));
+        }
+        finally
+        {
+            DatabaseDescriptor.getRawConfig().clustering_filter_tables.add(KEYSPACE);
+        }
+    }
+}
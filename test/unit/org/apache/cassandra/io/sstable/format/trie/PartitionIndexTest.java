@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FastByteOperations;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionIndexTest
+{
+    private static final Random random = new Random(1);
+
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        try (PartitionIndex index = build(new ArrayList<>(), new long[0]))
+        {
+            assertEquals(-1, index.floor(ByteComparable.fixedLength(new byte[]{ 1, 0 })));
+            assertEquals(-1, index.floor(ByteComparable.fixedLength(new byte[0])));
+        }
+    }
+
+    @Test
+    public void testSingleKey() throws IOException
+    {
+        List<byte[]> keys = new ArrayList<>();
+        keys.add(new byte[]{ 5, 6, 0 });
+        try (PartitionIndex index = build(keys, new long[]{ 42 }))
+        {
+            assertEquals(42, index.floor(ByteComparable.fixedLength(keys.get(0))));
+            // keys sharing the stored prefix may map to the entry even if they are smaller
+            assertEquals(42, index.floor(ByteComparable.fixedLength(new byte[]{ 5, 1, 0 })));
+            assertEquals(-1, index.floor(ByteComparable.fixedLength(new byte[]{ 4, 0 })));
+            assertEquals(42, index.floor(ByteComparable.fixedLength(new byte[]{ 6, 0 })));
+        }
+    }
+
+    @Test
+    public void testRandomKeys() throws IOException
+    {
+        for (int alphabet : new int[]{ 2, 10, 255 })
+        {
+            TreeSet<byte[]> sorted = new TreeSet<>(PartitionIndexTest::compare);
+            for (int i = 0; i < 5000; ++i)
+                sorted.add(randomKey(alphabet, true));
+            List<byte[]> keys = new ArrayList<>(sorted);
+
+            // positions of increasing width, to exercise all the number sizes
+            long[] payloads = new long[keys.size()];
+            long position = 0;
+            for (int i = 0; i < payloads.length; ++i)
+            {
+                payloads[i] = position;
+                position += 1 + (random.nextLong() >>> (8 + random.nextInt(56)));
+            }
+
+            try (PartitionIndex index = build(keys, payloads))
+            {
+                for (int i = 0; i < keys.size(); ++i)
+                    assertEquals(payloads[i], index.floor(ByteComparable.fixedLength(keys.get(i))));
+
+                for (int i = 0; i < 5000; ++i)
+                {
+                    byte[] query = randomKey(alphabet, random.nextBoolean());
+                    int ceiling = 0;
+                    while (ceiling < keys.size() && compare(keys.get(ceiling), query) < 0)
+                        ++ceiling;
+
+                    // Scanning from the returned entry must reach the first key greater than or equal to the query
+                    // without skipping it, and an exact match must be found directly.
+                    long floor = index.floor(ByteComparable.fixedLength(query));
+                    if (ceiling < keys.size() && compare(keys.get(ceiling), query) == 0)
+                        assertEquals(payloads[ceiling], floor);
+                    else if (floor != payloads[Math.min(ceiling, keys.size() - 1)])
+                        assertEquals(ceiling == 0 ? -1 : payloads[ceiling - 1], floor);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception
+    {
+        TreeSet<byte[]> sorted = new TreeSet<>(PartitionIndexTest::compare);
+        for (int i = 0; i < 5000; ++i)
+            sorted.add(randomKey(10, true));
+        List<byte[]> keys = new ArrayList<>(sorted);
+        long[] payloads = new long[keys.size()];
+        for (int i = 0; i < payloads.length; ++i)
+            payloads[i] = i * 100L;
+
+        // the lookups of different threads share the cursors of the index, but never at the same time
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (PartitionIndex index = build(keys, payloads))
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; ++t)
+            {
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < 10; ++round)
+                        for (int i = 0; i < keys.size(); ++i)
+                            assertEquals(payloads[i], index.floor(ByteComparable.fixedLength(keys.get(i))));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDecoratedKeys() throws IOException
+    {
+        TreeSet<DecoratedKey> sorted = new TreeSet<>();
+        for (int i = 0; i < 10000; ++i)
+            sorted.add(Murmur3Partitioner.instance.decorateKey(ByteBufferUtil.bytes(i)));
+        List<byte[]> keys = new ArrayList<>();
+        for (DecoratedKey key : sorted)
+            keys.add(ByteComparable.toArray(key));
+        long[] payloads = new long[keys.size()];
+        for (int i = 0; i < payloads.length; ++i)
+            payloads[i] = i * 10L;
+
+        try (PartitionIndex index = build(keys, payloads))
+        {
+            int i = 0;
+            for (DecoratedKey key : sorted)
+            {
+                assertEquals(payloads[i], index.floor(key));
+                // token bounds sort before, resp. after, all keys with the token
+                long beforeToken = index.floor(key.getToken().minKeyBound());
+                assertTrue(beforeToken == payloads[i] || i > 0 && beforeToken == payloads[i - 1]);
+                assertEquals(payloads[i], index.floor(key.getToken().maxKeyBound()));
+                ++i;
+            }
+        }
+    }
+
+    private static byte[] randomKey(int alphabet, boolean terminated)
+    {
+        // non-zero bytes followed by a zero terminator, so that no key is a prefix of another
+        byte[] bytes = new byte[random.nextInt(8) + (terminated ? 1 : 0)];
+        for (int i = 0; i < bytes.length - (terminated ? 1 : 0); ++i)
+            bytes[i] = (byte) (1 + random.nextInt(alphabet));
+        return bytes;
+    }
+
+    private static int compare(byte[] left, byte[] right)
+    {
+        return FastByteOperations.compareUnsigned(left, 0, left.length, right, 0, right.length);
+    }
+
+    private static PartitionIndex build(List<byte[]> keys, long[] payloads) throws IOException
+    {
+        File file = FileUtils.createTempFile("partitionindex", "db");
+        file.deleteOnExit();
+        try (SequentialWriter writer = new SequentialWriter(file))
+        {
+            PartitionIndexBuilder builder = new PartitionIndexBuilder(writer);
+            for (int i = 0; i < keys.size(); ++i)
+                builder.addEntry(ByteComparable.fixedLength(keys.get(i)), payloads[i]);
+            builder.complete();
+            writer.finish();
+        }
+
+        try (FileHandle.Builder builder = new FileHandle.Builder(file.getPath()).mmapped(true))
+        {
+            return new PartitionIndex(builder.complete());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrieIndexSSTableReaderTest extends CQLTester
+{
+    @After
+    public void resetFormat()
+    {
+        DatabaseDescriptor.setSSTableFormat(SSTableFormat.Type.BIG);
+    }
+
+    @Test
+    public void testReadWrite() throws Throwable
+    {
+        DatabaseDescriptor.setSSTableFormat(SSTableFormat.Type.BTI);
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck)) WITH caching = {'keys': 'NONE'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+
+        for (int pk = 0; pk < 1000; pk += 2)
+            for (int ck = 0; ck < 3; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "v" + pk);
+        flush();
+        for (int pk = 1; pk < 1000; pk += 2)
+            for (int ck = 0; ck < 3; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "v" + pk);
+        flush();
+
+        assertEquals(2, cfs.getLiveSSTables().size());
+        checkTrieIndexed(cfs);
+        checkContent();
+
+        cfs.forceMajorCompaction();
+        assertEquals(1, cfs.getLiveSSTables().size());
+        checkTrieIndexed(cfs);
+        checkContent();
+    }
+
+    @Test
+    public void testWidePartitions() throws Throwable
+    {
+        DatabaseDescriptor.setSSTableFormat(SSTableFormat.Type.BTI);
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck))");
+        String value = new String(new char[1000]).replace('\0', 'x');
+        for (int pk = 0; pk < 10; ++pk)
+            for (int ck = 0; ck < 500; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, value);
+        flush();
+        checkTrieIndexed(getCurrentColumnFamilyStore());
+
+        for (int pk = 0; pk < 10; ++pk)
+        {
+            assertRows(execute("SELECT ck FROM %s WHERE pk = ? AND ck >= 250 AND ck < 253", pk), row(250), row(251), row(252));
+            assertRows(execute("SELECT ck FROM %s WHERE pk = ? AND ck > 496 ORDER BY ck DESC", pk), row(499), row(498), row(497));
+        }
+        assertEmpty(execute("SELECT ck FROM %s WHERE pk = ?", 10));
+    }
+
+    @Test
+    public void testCompactBigToTrieIndexed() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        for (int pk = 0; pk < 100; ++pk)
+            execute("INSERT INTO %s (pk, v) VALUES (?, ?)", pk, pk);
+        flush();
+        assertEquals(SSTableFormat.Type.BIG, cfs.getLiveSSTables().iterator().next().descriptor.formatType);
+
+        DatabaseDescriptor.setSSTableFormat(SSTableFormat.Type.BTI);
+        for (int pk = 100; pk < 200; ++pk)
+            execute("INSERT INTO %s (pk, v) VALUES (?, ?)", pk, pk);
+        flush();
+        assertRows(execute("SELECT v FROM %s WHERE pk = ?", 42), row(42));
+        assertRows(execute("SELECT v FROM %s WHERE pk = ?", 142), row(142));
+
+        cfs.forceMajorCompaction();
+        checkTrieIndexed(cfs);
+        assertRowCount(execute("SELECT * FROM %s"), 200);
+        for (int pk = 0; pk < 200; ++pk)
+            assertRows(execute("SELECT v FROM %s WHERE pk = ?", pk), row(pk));
+    }
+
+    private static void checkTrieIndexed(ColumnFamilyStore cfs)
+    {
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            assertEquals(SSTableFormat.Type.BTI, sstable.descriptor.formatType);
+            assertTrue(sstable instanceof TrieIndexSSTableReader);
+            assertTrue(new File(sstable.descriptor.filenameFor(Component.PARTITION_INDEX)).exists());
+        }
+    }
+
+    private void checkContent() throws Throwable
+    {
+        for (int pk = 0; pk < 1000; pk += 37)
+            assertRows(execute("SELECT ck, v FROM %s WHERE pk = ?", pk), row(0, "v" + pk), row(1, "v" + pk), row(2, "v" + pk));
+        assertEmpty(execute("SELECT * FROM %s WHERE pk = ?", 1000));
+        assertEmpty(execute("SELECT * FROM %s WHERE pk = ?", -1));
+        assertRowCount(execute("SELECT * FROM %s"), 3000);
+        assertRowCount(execute("SELECT DISTINCT pk FROM %s WHERE token(pk) > ? AND token(pk) <= ?", 0L, Long.MAX_VALUE / 2), countTokensIn(0L, Long.MAX_VALUE / 2));
+    }
+
+    private int countTokensIn(long left, long right) throws Throwable
+    {
+        int count = 0;
+        for (Object[] row : getRows(execute("SELECT DISTINCT token(pk) FROM %s")))
+            if ((Long) row[0] > left && (Long) row[0] <= right)
+                ++count;
+        return count;
+    }
+}
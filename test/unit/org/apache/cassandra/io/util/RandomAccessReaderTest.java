@@ -30,6 +30,7 @@ import java.nio.channels.FileLock;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
@@ -37,6 +38,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -48,6 +50,7 @@ import static org.junit.Assert.*;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.compress.BufferType;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.memory.BufferPools;
 
 public class RandomAccessReaderTest
 {
@@ -67,6 +70,7 @@ public class RandomAccessReaderTest
         BufferType bufferType;
         int maxSegmentSize;
         boolean mmappedRegions;
+        boolean directIO;
         public byte[] expected;
 
         Parameters(long fileLength, int bufferSize)
@@ -76,6 +80,7 @@ public class RandomAccessReaderTest
             this.bufferType = BufferType.OFF_HEAP;
             this.maxSegmentSize = MmappedRegions.MAX_SEGMENT_SIZE;
             this.mmappedRegions = false;
+            this.directIO = false;
             this.expected = "The quick brown fox jumps over the lazy dog".getBytes(FileUtils.CHARSET);
         }
 
@@ -85,6 +90,12 @@ public class RandomAccessReaderTest
             return this;
         }
 
+        Parameters directIO(boolean directIO)
+        {
+            this.directIO = directIO;
+            return this;
+        }
+
         Parameters bufferType(BufferType bufferType)
         {
             this.bufferType = bufferType;
@@ -122,6 +133,65 @@ public class RandomAccessReaderTest
         testReadFully(new Parameters(8192, 16).bufferType(BufferType.ON_HEAP));
     }
 
+    @Test
+    public void testDirectIOOffHeap() throws IOException
+    {
+        testReadFully(new Parameters(8192, 4096).bufferType(BufferType.OFF_HEAP).directIO(true));
+    }
+
+    @Test
+    public void testDirectIOOnHeap() throws IOException
+    {
+        testReadFully(new Parameters(8192, 4096).bufferType(BufferType.ON_HEAP).directIO(true));
+    }
+
+    @Test
+    public void testDirectIOTinyBufferSize() throws IOException
+    {
+        testReadFully(new Parameters(8192, 16).bufferType(BufferType.ON_HEAP).directIO(true));
+    }
+
+    @Test
+    public void testDirectIOUnalignedReads() throws IOException
+    {
+        Parameters params = new Parameters(10000, 4096);
+        File f = writeFile(params);
+        byte[] content = Files.readAllBytes(f.toPath());
+        try (ChannelProxy channel = new ChannelProxy(f, true))
+        {
+            Assume.assumeTrue("direct I/O is not supported here", channel.isDirect());
+
+            Random random = new Random(0);
+            for (int i = 0; i < 100; ++i)
+            {
+                int position = random.nextInt(content.length);
+                int length = random.nextInt(3 * ChannelProxy.DIRECT_IO_ALIGNMENT);
+                ByteBuffer buffer = random.nextBoolean() ? ByteBuffer.allocate(length) : ByteBuffer.allocateDirect(length);
+                int read = channel.read(buffer, position);
+                int expectedLength = Math.min(length, content.length - position);
+                assertEquals(expectedLength, read);
+                buffer.flip();
+                for (int j = 0; j < read; ++j)
+                    assertEquals(content[position + j], buffer.get(j));
+            }
+
+            // aligned read of a whole block into an aligned buffer, which is read directly
+            ByteBuffer aligned = BufferPools.forChunkCache().get(ChannelProxy.DIRECT_IO_ALIGNMENT, BufferType.OFF_HEAP);
+            try
+            {
+                assertEquals(ChannelProxy.DIRECT_IO_ALIGNMENT, channel.read(aligned, ChannelProxy.DIRECT_IO_ALIGNMENT));
+                for (int j = 0; j < ChannelProxy.DIRECT_IO_ALIGNMENT; ++j)
+                    assertEquals(content[ChannelProxy.DIRECT_IO_ALIGNMENT + j], aligned.get(j));
+            }
+            finally
+            {
+                BufferPools.forChunkCache().put(aligned);
+            }
+
+            assertEquals(-1, channel.read(ByteBuffer.allocate(16), content.length));
+        }
+    }
+
     @Test
     public void testOneSegment() throws IOException
     {
@@ -294,6 +364,7 @@ public class RandomAccessReaderTest
                                                      .bufferType(params.bufferType).bufferSize(params.bufferSize))
         {
             builder.mmapped(params.mmappedRegions);
+            builder.directIO(params.directIO);
             try (FileHandle fh = builder.complete();
                  RandomAccessReader reader = fh.createReader())
             {
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Digest;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.locator.InetAddressAndPort;
+import org.apache.cassandra.repair.messages.HashTreeLevelsRequest;
+import org.apache.cassandra.repair.messages.HashTreeLevelsResponse;
+import org.apache.cassandra.repair.messages.PartitionHashesRequest;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse.PartitionHash;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.MerkleTree;
+import org.apache.cassandra.utils.MerkleTrees;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashTreeRefinementTest
+{
+    private static final IPartitioner partitioner = Murmur3Partitioner.instance;
+    private static final Range<Token> FULL_RANGE = new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken());
+    private static final RepairJobDesc DESC = new RepairJobDesc(UUIDGen.getTimeUUID(), UUIDGen.getTimeUUID(), "ks", "tbl", Collections.singleton(FULL_RANGE));
+    private static final int PARTITIONS = 1000;
+
+    private static InetAddressAndPort a;
+    private static InetAddressAndPort b;
+    private static InetAddressAndPort c;
+
+    @BeforeClass
+    public static void setUp() throws UnknownHostException
+    {
+        DatabaseDescriptor.clientInitialization();
+        DatabaseDescriptor.useOffheapMerkleTrees(false);
+        a = InetAddressAndPort.getByName("127.0.0.1");
+        b = InetAddressAndPort.getByName("127.0.0.2");
+        c = InetAddressAndPort.getByName("127.0.0.3");
+    }
+
+    /**
+     * A replica holding the given partition hashes, answering the requests of a refinement from its trees.
+     */
+    private static class Replica
+    {
+        private final TreeMap<DecoratedKey, byte[]> hashes;
+        private final MerkleTrees trees = new MerkleTrees(partitioner);
+
+        private Replica(TreeMap<DecoratedKey, byte[]> hashes)
+        {
+            this.hashes = hashes;
+            trees.addMerkleTree(1 << 10, FULL_RANGE);
+            trees.init();
+            // the leaves hash their first partition in place
+            for (Map.Entry<DecoratedKey, byte[]> entry : hashes.entrySet())
+                trees.get(entry.getKey().getToken()).addHash(new MerkleTree.RowHash(entry.getKey().getToken(), entry.getValue().clone(), 1));
+        }
+
+        private HashTreeLevelsResponse levels(HashTreeLevelsRequest request)
+        {
+            List<MerkleTree> subtrees = new ArrayList<>();
+            for (Range<Token> range : request.ranges)
+                subtrees.add(trees.subtree(range, request.levels));
+            return new HashTreeLevelsResponse(subtrees);
+        }
+
+        private PartitionHashesResponse partitionHashes(PartitionHashesRequest request)
+        {
+            List<List<PartitionHash>> ranges = new ArrayList<>();
+            for (Range<Token> range : request.ranges)
+            {
+                List<PartitionHash> rangeHashes = new ArrayList<>();
+                for (Map.Entry<DecoratedKey, byte[]> entry : hashes.entrySet())
+                {
+                    if (range.contains(entry.getKey().getToken()))
+                        rangeHashes.add(new PartitionHash(entry.getKey().getKey(), entry.getValue()));
+                }
+                ranges.add(rangeHashes.size() > request.maxPartitions ? null : rangeHashes);
+            }
+            return new PartitionHashesResponse(ranges);
+        }
+    }
+
+    private static class Replicas implements HashTreeRefinement.Replicas
+    {
+        private final Map<InetAddressAndPort, Replica> replicas = new HashMap<>();
+        private final Set<InetAddressAndPort> failing = new HashSet<>();
+
+        public ListenableFuture<HashTreeLevelsResponse> levels(InetAddressAndPort endpoint, HashTreeLevelsRequest request)
+        {
+            return Futures.immediateFuture(failing.contains(endpoint) ? new HashTreeLevelsResponse(null) : replicas.get(endpoint).levels(request));
+        }
+
+        public ListenableFuture<PartitionHashesResponse> partitionHashes(InetAddressAndPort endpoint, PartitionHashesRequest request)
+        {
+            return Futures.immediateFuture(failing.contains(endpoint) ? new PartitionHashesResponse(null) : replicas.get(endpoint).partitionHashes(request));
+        }
+    }
+
+    private static DecoratedKey key(int i)
+    {
+        return partitioner.decorateKey(ByteBufferUtil.bytes("key" + i));
+    }
+
+    private static byte[] digest(String value)
+    {
+        return Digest.forValidator().update(ByteBufferUtil.bytes(value)).digest();
+    }
+
+    private static TreeMap<DecoratedKey, byte[]> hashes()
+    {
+        TreeMap<DecoratedKey, byte[]> hashes = new TreeMap<>();
+        for (int i = 0; i < PARTITIONS; i++)
+            hashes.put(key(i), digest("value" + i));
+        return hashes;
+    }
+
+    private static Replicas replicas()
+    {
+        TreeMap<DecoratedKey, byte[]> bHashes = hashes();
+        bHashes.put(key(17), digest("changed"));
+        TreeMap<DecoratedKey, byte[]> cHashes = hashes();
+        cHashes.remove(key(500));
+
+        Replicas replicas = new Replicas();
+        replicas.replicas.put(a, new Replica(hashes()));
+        replicas.replicas.put(b, new Replica(bHashes));
+        replicas.replicas.put(c, new Replica(cHashes));
+        return replicas;
+    }
+
+    private static List<TreeResponse> topLevels(Replicas replicas)
+    {
+        List<TreeResponse> trees = new ArrayList<>();
+        for (InetAddressAndPort endpoint : Arrays.asList(a, b, c))
+            trees.add(new TreeResponse(endpoint, replicas.replicas.get(endpoint).trees.topLevels(HashTreeRefinement.LEVELS_PER_ROUND)));
+        return trees;
+    }
+
+    /**
+     * Asserts that the differences hold exactly the tokens of the given keys, and no other partition.
+     */
+    private static void assertDifferences(List<Range<Token>> differences, DecoratedKey... keys)
+    {
+        assertEquals(differences.toString(), keys.length, differences.size());
+        for (DecoratedKey key : keys)
+            assertTrue(differences.toString(), differences.stream().anyMatch(r -> r.right.equals(key.getToken())));
+        for (int i = 0; i < PARTITIONS; i++)
+        {
+            DecoratedKey key = key(i);
+            if (!Arrays.asList(keys).contains(key))
+                assertFalse(differences.toString(), differences.stream().anyMatch(r -> r.contains(key.getToken())));
+        }
+    }
+
+    @Test
+    public void testRefine() throws Exception
+    {
+        Replicas replicas = replicas();
+        HashTreeRefinement refinement = new HashTreeRefinement(DESC, topLevels(replicas), 0, replicas);
+        refinement.refine(MoreExecutors.directExecutor()).get();
+
+        assertDifferences(refinement.differences(a, b), key(17));
+        assertDifferences(refinement.differences(c, a), key(500));
+        assertDifferences(refinement.differences(b, c), key(17), key(500));
+    }
+
+    @Test
+    public void testFailingReplica() throws Exception
+    {
+        Replicas replicas = replicas();
+        replicas.failing.add(c);
+        List<TreeResponse> trees = topLevels(replicas);
+        HashTreeRefinement refinement = new HashTreeRefinement(DESC, trees, 0, replicas);
+        refinement.refine(MoreExecutors.directExecutor()).get();
+
+        // the ranges the top levels differ on are synced whole
+        assertDifferences(refinement.differences(a, b), key(17));
+        assertEquals(MerkleTrees.difference(trees.get(0).trees, trees.get(2).trees), refinement.differences(a, c));
+        assertEquals(MerkleTrees.difference(trees.get(1).trees, trees.get(2).trees), refinement.differences(b, c));
+    }
+
+    @Test
+    public void testPartitionDifferences()
+    {
+        List<DecoratedKey> keys = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            keys.add(key(i));
+        keys.sort(DecoratedKey::compareTo);
+        Range<Token> range = new Range<>(keys.get(0).getToken(), partitioner.getMinimumToken());
+
+        List<PartitionHash> left = new ArrayList<>();
+        List<PartitionHash> right = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            ByteBuffer key = keys.get(i).getKey();
+            left.add(new PartitionHash(key, digest("value" + i)));
+            // the right replica misses the fourth partition, and differs on the two last ones
+            if (i != 3)
+                right.add(new PartitionHash(key, digest(i >= 3 ? "changed" : "value" + i)));
+        }
+
+        // the first partition is out of the range
+        assertEquals(Collections.emptyList(), HashTreeRefinement.partitionDifferences(range, left.subList(0, 3), right.subList(0, 3), partitioner));
+        assertEquals(Collections.singletonList(new Range<>(keys.get(2).getToken(), keys.get(4).getToken())),
+                     HashTreeRefinement.partitionDifferences(range, left, right, partitioner));
+    }
+}
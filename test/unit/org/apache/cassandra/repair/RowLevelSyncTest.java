@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.PartitionRangeReadCommand;
+import org.apache.cassandra.db.ReadResponse;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.filter.DataLimits;
+import org.apache.cassandra.db.filter.RowFilter;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.db.partitions.SingletonUnfilteredPartitionIterator;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterators;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.streaming.PreviewKind;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.apache.cassandra.repair.RowLevelSync.LOCAL;
+import static org.apache.cassandra.repair.RowLevelSync.REMOTE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RowLevelSyncTest
+{
+    private static final String KEYSPACE = "RowLevelSyncTest";
+    private static final String TABLE = "Standard1";
+
+    private static TableMetadata metadata;
+    private static RepairJobDesc desc;
+    private static List<Range<Token>> fullRange;
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), SchemaLoader.standardCFMD(KEYSPACE, TABLE));
+        metadata = Schema.instance.getTableMetadata(KEYSPACE, TABLE);
+        Token min = metadata.partitioner.getMinimumToken();
+        fullRange = Collections.singletonList(new Range<>(min, min));
+        desc = new RepairJobDesc(UUIDGen.getTimeUUID(), UUIDGen.getTimeUUID(), KEYSPACE, TABLE, fullRange);
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseDescriptor.setRepairRowLevelSyncThresholdInKb(0);
+    }
+
+    private static PartitionUpdate.SimpleBuilder partition(String key, long timestamp)
+    {
+        return PartitionUpdate.simpleBuilder(metadata, key).timestamp(timestamp);
+    }
+
+    private static PartitionUpdate row(String key, long timestamp, String name, String value)
+    {
+        PartitionUpdate.SimpleBuilder partition = partition(key, timestamp);
+        partition.row(name).add("val", value);
+        return partition.build();
+    }
+
+    private static UnfilteredPartitionIterator iterator(PartitionUpdate... partitions)
+    {
+        List<PartitionUpdate> sorted = new ArrayList<>(Arrays.asList(partitions));
+        sorted.sort((p1, p2) -> p1.partitionKey().compareTo(p2.partitionKey()));
+        List<UnfilteredPartitionIterator> iterators = new ArrayList<>();
+        for (PartitionUpdate partition : sorted)
+            iterators.add(new SingletonUnfilteredPartitionIterator(partition.unfilteredIterator()));
+        return UnfilteredPartitionIterators.concat(iterators);
+    }
+
+    /**
+     * @return the updates bringing each of the given reads up to their merge, per differing partition
+     */
+    private static List<PartitionUpdate[]> diff(UnfilteredPartitionIterator local, UnfilteredPartitionIterator remote)
+    {
+        List<PartitionUpdate[]> repairs = new ArrayList<>();
+        try (UnfilteredPartitionIterator merged = RowLevelSync.merge(local, remote, repairs::add))
+        {
+            while (merged.hasNext())
+            {
+                try (UnfilteredRowIterator partition = merged.next())
+                {
+                    while (partition.hasNext())
+                        partition.next();
+                }
+            }
+        }
+        return repairs;
+    }
+
+    @Test
+    public void testShouldSync()
+    {
+        assertFalse(RowLevelSync.shouldSync(desc, fullRange, null, PreviewKind.NONE));
+
+        DatabaseDescriptor.setRepairRowLevelSyncThresholdInKb(1);
+        assertTrue(RowLevelSync.shouldSync(desc, fullRange, null, PreviewKind.NONE));
+        // incremental repairs and previews always stream
+        assertFalse(RowLevelSync.shouldSync(desc, fullRange, UUIDGen.getTimeUUID(), PreviewKind.NONE));
+        assertFalse(RowLevelSync.shouldSync(desc, fullRange, null, PreviewKind.ALL));
+
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(TABLE);
+        for (int i = 0; i < 100; i++)
+            new Mutation(row("key" + i, FBUtilities.timestampMicros(), "name", "value" + i)).applyUnsafe();
+        // memtables are not accounted for
+        assertTrue(RowLevelSync.shouldSync(desc, fullRange, null, PreviewKind.NONE));
+        cfs.forceBlockingFlush();
+        assertFalse(RowLevelSync.shouldSync(desc, fullRange, null, PreviewKind.NONE));
+
+        DatabaseDescriptor.setRepairRowLevelSyncThresholdInKb(1024);
+        assertTrue(RowLevelSync.shouldSync(desc, fullRange, null, PreviewKind.NONE));
+        cfs.truncateBlocking();
+    }
+
+    @Test
+    public void testPageEnd()
+    {
+        PartitionRangeReadCommand command = PartitionRangeReadCommand.create(metadata,
+                                                                             FBUtilities.nowInSeconds(),
+                                                                             ColumnFilter.all(metadata),
+                                                                             RowFilter.NONE,
+                                                                             DataLimits.cqlLimits(2),
+                                                                             DataRange.forTokenRange(fullRange.get(0)));
+        PartitionUpdate[] partitions = { row("a", 1, "name", "a"), row("b", 1, "name", "b"), row("c", 1, "name", "c") };
+        Arrays.sort(partitions, (p1, p2) -> p1.partitionKey().compareTo(p2.partitionKey()));
+
+        // a page short of the limit ends the range
+        assertNull(RowLevelSync.pageEnd(command, ReadResponse.createDataResponse(iterator(partitions[0]), command)));
+
+        // a full page ends at its last partition, which may be cut short
+        ReadResponse full = ReadResponse.createDataResponse(iterator(partitions), command);
+        assertEquals(partitions[1].partitionKey(), RowLevelSync.pageEnd(command, full));
+
+        // a partition filling a page on its own can't be synced row by row
+        PartitionUpdate.SimpleBuilder large = partition("a", 1);
+        large.row("name1").add("val", "1");
+        large.row("name2").add("val", "2");
+        try
+        {
+            RowLevelSync.pageEnd(command, ReadResponse.createDataResponse(iterator(large.build(), partitions[2]), command));
+            fail("Expected the partition to be rejected");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMergeRows()
+    {
+        PartitionUpdate.SimpleBuilder local = partition("key1", 1);
+        local.row("a").add("val", "a");
+        local.row("b").add("val", "b");
+        PartitionUpdate.SimpleBuilder remote = partition("key1", 1);
+        remote.row("a").add("val", "a");
+        remote.row("c").add("val", "c");
+        PartitionUpdate.SimpleBuilder newer = partition("key1", 2);
+        newer.row("b").add("val", "newer");
+        PartitionUpdate key2 = row("key2", 1, "a", "a");
+        PartitionUpdate key3 = row("key3", 1, "a", "a");
+
+        List<PartitionUpdate[]> repairs = diff(iterator(local.build(), key2, key3),
+                                               iterator(PartitionUpdate.merge(Arrays.asList(remote.build(), newer.build())), key3));
+        assertEquals(2, repairs.size());
+        for (PartitionUpdate[] repair : repairs)
+        {
+            if (repair[LOCAL] != null)
+            {
+                // the local replica gets the row it misses and the newer version of the other
+                assertEquals("key1", metadata.partitionKeyType.getString(repair[LOCAL].partitionKey().getKey()));
+                assertEquals(2, repair[LOCAL].rowCount());
+                // while the remote replica already has all of them
+                assertNull(repair[REMOTE]);
+            }
+            else
+            {
+                // the remote replica gets the partition it misses
+                assertEquals(key2.partitionKey(), repair[REMOTE].partitionKey());
+                assertEquals(1, repair[REMOTE].rowCount());
+            }
+        }
+    }
+
+    @Test
+    public void testMergeDeletions()
+    {
+        PartitionUpdate live = row("key1", 1, "a", "a");
+        PartitionUpdate deleted = partition("key1", 2).delete().build();
+        List<PartitionUpdate[]> repairs = diff(iterator(live), iterator(deleted));
+        assertEquals(1, repairs.size());
+        assertEquals(deleted.partitionLevelDeletion(), repairs.get(0)[LOCAL].partitionLevelDeletion());
+        assertEquals(0, repairs.get(0)[LOCAL].rowCount());
+        assertNull(repairs.get(0)[REMOTE]);
+
+        // a replica differing on range tombstones gets the whole merged partition
+        PartitionUpdate.SimpleBuilder rangeDeleted = partition("key1", 2);
+        rangeDeleted.addRangeTombstone().start("a").end("b");
+        rangeDeleted.row("c").add("val", "c");
+        repairs = diff(iterator(live), iterator(rangeDeleted.build()));
+        assertEquals(1, repairs.size());
+        assertEquals(1, repairs.get(0)[LOCAL].deletionInfo().rangeCount());
+        assertEquals(1, repairs.get(0)[LOCAL].rowCount());
+        assertNull(repairs.get(0)[REMOTE]);
+    }
+}
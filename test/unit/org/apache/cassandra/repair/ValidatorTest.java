@@ -47,7 +47,9 @@ import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.net.Message;
+import org.apache.cassandra.metrics.RepairMetrics;
 import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.repair.messages.PartitionHashesResponse;
 import org.apache.cassandra.repair.messages.ValidationResponse;
 import org.apache.cassandra.schema.KeyspaceParams;
 import org.apache.cassandra.service.ActiveRepairService;
@@ -90,6 +92,7 @@ public class ValidatorTest
     {
         MessagingService.instance().outboundSink.clear();
         DatabaseDescriptor.setRepairSessionSpaceInMegabytes(testSizeMegabytes);
+        DatabaseDescriptor.getRawConfig().concurrent_validation_subranges = 0;
     }
 
     @Before
@@ -354,6 +357,112 @@ public class ValidatorTest
         assertTrue(totalResolution > (1 << 11) && totalResolution < (1 << 13));
     }
 
+    /*
+     * Validations split into token ranges hashed concurrently build the same trees as validations on a single thread.
+     */
+    @Test
+    public void testSubRangeValidation() throws Exception
+    {
+        Keyspace ks = Keyspace.open(keyspace);
+        ColumnFamilyStore cfs = ks.getColumnFamilyStore(columnFamily);
+        cfs.clearUnsafe();
+
+        // disable compaction while flushing
+        cfs.disableAutoCompaction();
+
+        CompactionsTest.populate(keyspace, columnFamily, 0, 1 << 12, 0);
+        cfs.forceBlockingFlush();
+        CompactionsTest.populate(keyspace, columnFamily, 1 << 11, 1 << 13, 0);
+        cfs.forceBlockingFlush();
+        assertEquals(2, cfs.getLiveSSTables().size());
+
+        Token min = Collections.min(cfs.getLiveSSTables(), (s1, s2) -> s1.first.compareTo(s2.first)).first.getToken();
+        Token max = Collections.max(cfs.getLiveSSTables(), (s1, s2) -> s1.last.compareTo(s2.last)).last.getToken();
+        List<Range<Token>> ranges = splitHelper(new Range<>(min, max), 1);
+
+        MerkleTrees serial = validate(cfs, ranges);
+        DatabaseDescriptor.getRawConfig().concurrent_validation_subranges = 4;
+        long subRanges = RepairMetrics.validationSubRanges.getCount();
+        MerkleTrees parallel = validate(cfs, ranges);
+
+        // every tree is split in proportion to its leaves, to 4 ranges per thread overall
+        assertTrue(serial.subRanges(16).size() >= 16);
+        assertEquals(serial.subRanges(16).size(), RepairMetrics.validationSubRanges.getCount() - subRanges);
+        assertEquals(1 << 13, parallel.rowCount());
+        assertEquals(serial.rowCount(), parallel.rowCount());
+        assertTrue(MerkleTrees.difference(serial, parallel).isEmpty());
+        for (Range<Token> range : ranges)
+            assertArrayEquals(serial.hash(range), parallel.hash(range));
+    }
+
+    /**
+     * The partition hashes of hierarchical repairs are those the validations hash into the trees.
+     */
+    @Test
+    public void testPartitionHashes() throws Exception
+    {
+        Keyspace ks = Keyspace.open(keyspace);
+        ColumnFamilyStore cfs = ks.getColumnFamilyStore(columnFamily);
+        cfs.clearUnsafe();
+        cfs.disableAutoCompaction();
+
+        CompactionsTest.populate(keyspace, columnFamily, 0, 1 << 10, 0);
+        cfs.forceBlockingFlush();
+
+        Token min = cfs.getLiveSSTables().iterator().next().first.getToken();
+        Token max = cfs.getLiveSSTables().iterator().next().last.getToken();
+        List<Range<Token>> ranges = splitHelper(new Range<>(min, max), 1);
+        MerkleTrees trees = validate(cfs, ranges);
+
+        RepairJobDesc desc = new RepairJobDesc(UUIDGen.getTimeUUID(), UUIDGen.getTimeUUID(), keyspace, columnFamily, ranges);
+        ActiveRepairService.instance.registerParentRepairSession(desc.parentSessionId, FBUtilities.getBroadcastAddressAndPort(),
+                                                                 Collections.singletonList(cfs), desc.ranges, false, ActiveRepairService.UNREPAIRED_SSTABLE,
+                                                                 false, PreviewKind.NONE);
+        List<List<PartitionHashesResponse.PartitionHash>> hashes = ValidationManager.partitionHashes(cfs, desc, ranges, false, 0, 1 << 10);
+        assertEquals(ranges.size(), hashes.size());
+        long partitions = 0;
+        for (int i = 0; i < ranges.size(); i++)
+        {
+            byte[] xor = new byte[trees.hash(ranges.get(i)).length];
+            for (PartitionHashesResponse.PartitionHash hash : hashes.get(i))
+            {
+                assertTrue(ranges.get(i).contains(partitioner.getToken(hash.key)));
+                for (int j = 0; j < xor.length; j++)
+                    xor[j] ^= hash.hash[j];
+            }
+            assertArrayEquals(trees.hash(ranges.get(i)), xor);
+            partitions += hashes.get(i).size();
+        }
+        assertEquals(trees.rowCount(), partitions);
+
+        // the ranges holding too many partitions have no hashes
+        hashes = ValidationManager.partitionHashes(cfs, desc, ranges, false, 0, 10);
+        assertEquals(Arrays.asList(null, null), hashes);
+    }
+
+    private MerkleTrees validate(ColumnFamilyStore cfs, List<Range<Token>> ranges) throws Exception
+    {
+        UUID repairSessionId = UUIDGen.getTimeUUID();
+        final RepairJobDesc desc = new RepairJobDesc(repairSessionId, UUIDGen.getTimeUUID(), cfs.keyspace.getName(),
+                                                     cfs.getTableName(), ranges);
+
+        InetAddressAndPort host = InetAddressAndPort.getByName("127.0.0.2");
+
+        ActiveRepairService.instance.registerParentRepairSession(repairSessionId, host,
+                                                                 Collections.singletonList(cfs), desc.ranges, false, ActiveRepairService.UNREPAIRED_SSTABLE,
+                                                                 false, PreviewKind.NONE);
+
+        final CompletableFuture<Message> outgoingMessageSink = registerOutgoingMessageSink();
+        Validator validator = new Validator(desc, host, 0, true, false, PreviewKind.NONE);
+        ValidationManager.instance.submitValidation(cfs, validator);
+
+        Message message = outgoingMessageSink.get(TEST_TIMEOUT, TimeUnit.SECONDS);
+        MessagingService.instance().outboundSink.clear();
+        ValidationResponse response = (ValidationResponse) message.payload;
+        assertTrue(response.success());
+        return response.trees;
+    }
+
     private List<Range<Token>> splitHelper(Range<Token> range, int depth)
     {
         if (depth <= 0)
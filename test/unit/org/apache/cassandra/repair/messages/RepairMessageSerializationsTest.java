@@ -184,6 +184,20 @@ public class RepairMessageSerializationsTest
         serializeRoundTrip(msg, SnapshotMessage.serializer);
     }
 
+    @Test
+    public void hashTreeLevelsRequestMessage() throws IOException
+    {
+        HashTreeLevelsRequest msg = new HashTreeLevelsRequest(buildRepairJobDesc(), buildTokenRanges(), 8);
+        serializeRoundTrip(msg, HashTreeLevelsRequest.serializer);
+    }
+
+    @Test
+    public void partitionHashesRequestMessage() throws IOException
+    {
+        PartitionHashesRequest msg = new PartitionHashesRequest(buildRepairJobDesc(), buildTokenRanges(), GC_BEFORE, 1024);
+        serializeRoundTrip(msg, PartitionHashesRequest.serializer);
+    }
+
     @Test
     public void cleanupMessage() throws IOException
     {
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.transport;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.codahale.metrics.Meter;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.metrics.DefaultNameFactory;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.TableMetadata;
+
+import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
+import static org.junit.Assert.assertEquals;
+
+public class InlineReadsTest extends CQLTester
+{
+    private static final Meter inlineRequests = Metrics.meter(new DefaultNameFactory("Client").createMetricName("InlineRequests"));
+
+    @BeforeClass
+    public static void setUp()
+    {
+        // keep the first, cold, reads from backing the tables off
+        System.setProperty("cassandra.native_transport_inline_read_max_latency_us", "10000000");
+        requireNetwork();
+    }
+
+    @After
+    public void disableInlineReads()
+    {
+        DatabaseDescriptor.setNativeTransportInlineReadsEnabled(false);
+    }
+
+    @Test
+    public void testSinglePartitionReads() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        for (int i = 0; i < 10; i++)
+            execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i % 2, i, i);
+
+        Session session = sessionNet();
+        PreparedStatement partition = session.prepare(formatQuery("SELECT * FROM %s WHERE k = ?"));
+        PreparedStatement partitions = session.prepare(formatQuery("SELECT * FROM %s WHERE k IN (0, 1)"));
+        PreparedStatement range = session.prepare(formatQuery("SELECT * FROM %s"));
+
+        // run by the request threads unless enabled
+        long before = inlineRequests.getCount();
+        assertEquals(5, session.execute(partition.bind(0).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(before, inlineRequests.getCount());
+
+        // reads of data only in the memtables are run inline, at ONE or LOCAL_ONE
+        DatabaseDescriptor.setNativeTransportInlineReadsEnabled(true);
+        assertEquals(5, session.execute(partition.bind(0).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(before + 1, inlineRequests.getCount());
+        assertEquals(5, session.execute(partition.bind(0).setConsistencyLevel(ConsistencyLevel.LOCAL_ONE)).all().size());
+        assertEquals(before + 2, inlineRequests.getCount());
+
+        // partitions of sstables that aren't in the key and chunk caches yet are read by the request threads, which
+        // cache them
+        flush();
+        assertEquals(5, session.execute(partition.bind(1).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(before + 2, inlineRequests.getCount());
+        assertEquals(5, session.execute(partition.bind(1).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(before + 3, inlineRequests.getCount());
+
+        // reads of several partitions, or at another consistency level, are not run inline
+        assertEquals(10, session.execute(partitions.bind().setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(10, session.execute(range.bind().setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(5, session.execute(partition.bind(1).setConsistencyLevel(ConsistencyLevel.QUORUM)).all().size());
+        assertEquals(before + 3, inlineRequests.getCount());
+
+        // nor are reads of sstables whose partition positions are not cached
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int) WITH caching = {'keys': 'NONE'}");
+        execute("INSERT INTO %s (k, v) VALUES (0, 0)");
+        flush();
+        PreparedStatement uncached = session.prepare(formatQuery("SELECT * FROM %s WHERE k = ?"));
+        for (int i = 0; i < 2; i++)
+            assertEquals(1, session.execute(uncached.bind(0).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(before + 3, inlineRequests.getCount());
+    }
+
+    @Test
+    public void testSlowReadsBackOff() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        TableMetadata table = Schema.instance.getTableMetadata(KEYSPACE, currentTable());
+        execute("INSERT INTO %s (k, v) VALUES (0, 0)");
+
+        Session session = sessionNet();
+        PreparedStatement partition = session.prepare(formatQuery("SELECT * FROM %s WHERE k = ?"));
+        DatabaseDescriptor.setNativeTransportInlineReadsEnabled(true);
+
+        // the reads of the table are handed to the request threads after a slow one
+        assertEquals(1, session.execute(partition.bind(0).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        InlineReads.executed(table, InlineReads.MAX_LATENCY_NANOS + 1);
+        long before = inlineRequests.getCount();
+        assertEquals(1, session.execute(partition.bind(0).setConsistencyLevel(ConsistencyLevel.ONE)).all().size());
+        assertEquals(before, inlineRequests.getCount());
+    }
+}
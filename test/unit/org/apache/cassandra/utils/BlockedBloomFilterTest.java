@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.utils.BloomCalculations.BloomSpecification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockedBloomFilterTest
+{
+    @Test
+    public void testOne()
+    {
+        try (IFilter filter = FilterFactory.getFilter(10000L, FilterTestHelper.MAX_FAILURE_RATE, true))
+        {
+            assertTrue(filter instanceof BlockedBloomFilter);
+            filter.add(FilterTestHelper.bytes("a"));
+            assertTrue(filter.isPresent(FilterTestHelper.bytes("a")));
+            assertFalse(filter.isPresent(FilterTestHelper.bytes("b")));
+        }
+    }
+
+    @Test
+    public void testFalsePositives()
+    {
+        for (double fpChance : new double[]{ 0.1, 0.01, 0.001 })
+        {
+            try (IFilter filter = FilterFactory.getFilter(FilterTestHelper.ELEMENTS, fpChance, true))
+            {
+                ResetableIterator<ByteBuffer> keys = FilterTestHelper.randomKeys();
+                while (keys.hasNext())
+                    filter.add(FilterTestHelper.wrap(keys.next()));
+
+                // every added key is present
+                keys.reset();
+                while (keys.hasNext())
+                    assertTrue(filter.isPresent(FilterTestHelper.wrap(keys.next())));
+
+                ResetableIterator<ByteBuffer> otherKeys = FilterTestHelper.randomKeys2();
+                int falsePositives = 0;
+                while (otherKeys.hasNext())
+                {
+                    if (filter.isPresent(FilterTestHelper.wrap(otherKeys.next())))
+                        falsePositives++;
+                }
+                // allow for the variance of the small sample
+                double expected = fpChance * FilterTestHelper.ELEMENTS;
+                assertTrue(falsePositives + " false positives for " + fpChance, falsePositives <= expected + 3 * Math.sqrt(expected) + 1);
+            }
+        }
+    }
+
+    @Test
+    public void testSerialize() throws IOException
+    {
+        try (IFilter filter = FilterFactory.getFilter(10000L, 0.01, true))
+        {
+            filter.add(FilterTestHelper.bytes("a"));
+            DataOutputBuffer out = new DataOutputBuffer();
+            BloomFilterSerializer.serialize(filter, out);
+            assertEquals(filter.serializedSize(), out.getLength());
+
+            ByteArrayInputStream in = new ByteArrayInputStream(out.getData(), 0, out.getLength());
+            try (IFilter deserialized = BloomFilterSerializer.deserialize(new DataInputStream(in), false))
+            {
+                assertTrue(deserialized instanceof BlockedBloomFilter);
+                assertEquals(filter.toString(), deserialized.toString());
+                assertTrue(deserialized.isPresent(FilterTestHelper.bytes("a")));
+                assertFalse(deserialized.isPresent(FilterTestHelper.bytes("b")));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSerializeAlwaysPresentFilter() throws IOException
+    {
+        // tables with a false positive chance of 1 have no Bloom filter to serialize
+        try (IFilter filter = FilterFactory.getFilter(10000L, 1.0, true);
+             DataOutputBuffer out = new DataOutputBuffer())
+        {
+            assertTrue(filter instanceof AlwaysPresentFilter);
+            BloomFilterSerializer.serialize(filter, out);
+        }
+    }
+
+    @Test
+    public void testComputeBloomSpec()
+    {
+        // blocked filters need more buckets per element than standard ones, but not many more
+        for (double fpChance : new double[]{ 0.1, 0.01, 0.001, BloomCalculations.minSupportedBloomFilterFpChance() })
+        {
+            BloomSpecification standard = BloomCalculations.computeBloomSpec(BloomCalculations.probs.length - 1, fpChance);
+            BloomSpecification blocked = BlockedBloomCalculations.computeBloomSpec(BlockedBloomCalculations.MAX_BUCKETS_PER_ELEMENT, fpChance);
+            assertTrue(BlockedBloomCalculations.probs[blocked.bucketsPerElement][blocked.K] <= fpChance);
+            assertTrue(blocked.toString(), blocked.bucketsPerElement >= standard.bucketsPerElement);
+            assertTrue(blocked.toString(), blocked.bucketsPerElement <= standard.bucketsPerElement + 5);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOffHeapException()
+    {
+        long numKeys = ((long) Integer.MAX_VALUE) * 64L + 1L;
+        FilterFactory.getFilter(numKeys, 0.01d, true).close();
+    }
+}
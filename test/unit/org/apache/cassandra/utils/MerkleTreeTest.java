@@ -469,6 +469,39 @@ public class MerkleTreeTest
         assertTrue(diffs.contains(new Range<>(leftmost.left, middle.right)));
     }
 
+    @Test
+    public void testSubtree()
+    {
+        Range<Token> full = new Range<>(tok(-1), tok(-1));
+        int maxsize = 16;
+        mt.maxsize(maxsize);
+        MerkleTree mt2 = new MerkleTree(partitioner, fullRange(), RECOMMENDED_DEPTH, maxsize);
+        mt.init();
+        mt2.init();
+        for (TreeRange range : mt.rangeIterator())
+            range.addAll(new HIterator(range.right));
+        for (TreeRange range : mt2.rangeIterator())
+            range.addAll(new HIterator(range.right));
+        mt2.get(tok(1)).hash(digest("changed"));
+
+        // the top levels tell the node holding the changed leaf apart, with the hashes of the whole trees
+        MerkleTree top = mt.subtree(fullRange(), 2);
+        MerkleTree top2 = mt2.subtree(fullRange(), 2);
+        assertHashEquals(mt.hash(full), top.hash(full));
+        assertHashEquals(mt2.hash(full), top2.hash(full));
+        assertEquals(4, top.size());
+        List<TreeRange> topDiffs = MerkleTree.difference(top, top2);
+        assertEquals(newArrayList(new Range<>(tok(-1), tok(2))), topDiffs);
+
+        // and the levels below that node tell the changed leaf apart
+        MerkleTree below = mt.subtree(topDiffs.get(0), 8);
+        MerkleTree below2 = mt2.subtree(topDiffs.get(0), 8);
+        assertEquals(MerkleTree.difference(mt, mt2), MerkleTree.difference(below, below2));
+
+        // no node covers this
+        assertNull(mt.subtree(new Range<>(tok(1), tok(3)), 2));
+    }
+
     /**
      * difference should behave as expected, even with extremely small ranges
      */
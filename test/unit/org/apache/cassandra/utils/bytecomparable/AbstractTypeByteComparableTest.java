@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.apache.cassandra.db.BufferClusteringBound;
+import org.apache.cassandra.db.BufferClusteringBoundary;
+import org.apache.cassandra.db.Clustering;
+import org.apache.cassandra.db.ClusteringBound;
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.ClusteringPrefix;
+import org.apache.cassandra.db.marshal.*;
+import org.apache.cassandra.serializers.CollectionSerializer;
+import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+
+public class AbstractTypeByteComparableTest
+{
+    private static final Random random = new Random(7);
+
+    @Test
+    public void testBoolean()
+    {
+        testType(BooleanType.instance, Arrays.asList(ByteBuffer.wrap(new byte[]{ 0 }),
+                                                     ByteBuffer.wrap(new byte[]{ 1 }),
+                                                     ByteBuffer.wrap(new byte[]{ 5 })));
+    }
+
+    @Test
+    public void testFixedLengthIntegers()
+    {
+        testType(ByteType.instance, () -> ByteType.instance.decompose((byte) random.nextInt()),
+                 ByteType.instance.decompose(Byte.MIN_VALUE), ByteType.instance.decompose(Byte.MAX_VALUE));
+        testType(ShortType.instance, () -> ShortType.instance.decompose((short) random.nextInt()),
+                 ShortType.instance.decompose(Short.MIN_VALUE), ShortType.instance.decompose((short) 0));
+        testType(Int32Type.instance, () -> Int32Type.instance.decompose(random.nextInt(1000) - 500),
+                 Int32Type.instance.decompose(Integer.MIN_VALUE), Int32Type.instance.decompose(Integer.MAX_VALUE));
+        testType(LongType.instance, () -> LongType.instance.decompose(random.nextLong()),
+                 LongType.instance.decompose(Long.MIN_VALUE), LongType.instance.decompose(-1L));
+        testType(TimestampType.instance, () -> ByteBufferUtil.bytes(random.nextLong()));
+    }
+
+    @Test
+    public void testFloatingPoint()
+    {
+        testType(FloatType.instance, () -> FloatType.instance.decompose(randomDouble().floatValue()),
+                 FloatType.instance.decompose(Float.NaN), FloatType.instance.decompose(Float.intBitsToFloat(0x7fc00001)),
+                 FloatType.instance.decompose(Float.NEGATIVE_INFINITY), FloatType.instance.decompose(Float.POSITIVE_INFINITY),
+                 FloatType.instance.decompose(0.0f), FloatType.instance.decompose(-0.0f));
+        testType(DoubleType.instance, this::randomDoubleBytes,
+                 DoubleType.instance.decompose(Double.NaN), DoubleType.instance.decompose(Double.longBitsToDouble(0x7ff8000000000001L)),
+                 DoubleType.instance.decompose(Double.NEGATIVE_INFINITY), DoubleType.instance.decompose(Double.POSITIVE_INFINITY),
+                 DoubleType.instance.decompose(0.0), DoubleType.instance.decompose(-0.0));
+    }
+
+    @Test
+    public void testVarints()
+    {
+        testType(IntegerType.instance, () -> IntegerType.instance.decompose(randomBigInteger()),
+                 // non-canonical encodings, with redundant sign bytes
+                 ByteBuffer.wrap(new byte[]{ 0, 0, 1 }), ByteBuffer.wrap(new byte[]{ -1, -1 }),
+                 IntegerType.instance.decompose(BigInteger.ONE.shiftLeft(2000)),
+                 IntegerType.instance.decompose(BigInteger.ONE.shiftLeft(2000).negate()),
+                 IntegerType.instance.decompose(BigInteger.ONE.shiftLeft(1100).negate()));
+    }
+
+    @Test
+    public void testDecimals()
+    {
+        testType(DecimalType.instance, () -> {
+                     BigDecimal value = new BigDecimal(randomBigInteger(), random.nextInt(40) - 20);
+                     // also produce equal values with different scales
+                     return DecimalType.instance.decompose(random.nextBoolean() ? value : value.setScale(value.scale() + 3));
+                 },
+                 DecimalType.instance.decompose(BigDecimal.ZERO),
+                 DecimalType.instance.decompose(new BigDecimal("0.000")),
+                 DecimalType.instance.decompose(new BigDecimal("1e-1000")),
+                 DecimalType.instance.decompose(new BigDecimal("-1e1000")),
+                 DecimalType.instance.decompose(new BigDecimal("123.45")),
+                 DecimalType.instance.decompose(new BigDecimal("12.345")));
+    }
+
+    @Test
+    public void testUUIDs()
+    {
+        Supplier<UUID> timeUUID = () -> UUIDGen.getTimeUUID(random.nextInt(100), random.nextInt(10), random.nextLong());
+        testType(TimeUUIDType.instance, () -> UUIDGen.toByteBuffer(timeUUID.get()));
+        testType(LexicalUUIDType.instance, () -> UUIDGen.toByteBuffer(new UUID(random.nextInt(5) - 2, random.nextLong())));
+        testType(UUIDType.instance, () -> UUIDGen.toByteBuffer(random.nextBoolean() ? timeUUID.get() : UUID.randomUUID()),
+                 UUIDGen.toByteBuffer(new UUID(0x0000000000002000L, 0)),
+                 UUIDGen.toByteBuffer(new UUID(0xF000000000004000L, 0x8000000000000000L)));
+    }
+
+    @Test
+    public void testByteOrderedTypes()
+    {
+        testType(BytesType.instance, this::randomBytes);
+        testType(UTF8Type.instance, () -> UTF8Type.instance.decompose(randomString()));
+        testType(AsciiType.instance, () -> AsciiType.instance.decompose(randomString()));
+        testType(EmptyType.instance, Collections.singletonList(ByteBufferUtil.EMPTY_BYTE_BUFFER));
+    }
+
+    @Test
+    public void testReversedTypes()
+    {
+        testType(ReversedType.getInstance(Int32Type.instance), () -> Int32Type.instance.decompose(random.nextInt()));
+        testType(ReversedType.getInstance(UTF8Type.instance), () -> UTF8Type.instance.decompose(randomString()));
+        testType(ReversedType.getInstance(DecimalType.instance),
+                 () -> DecimalType.instance.decompose(new BigDecimal(randomBigInteger(), random.nextInt(10))));
+    }
+
+    @Test
+    public void testCollections()
+    {
+        ListType<Integer> listType = ListType.getInstance(Int32Type.instance, false);
+        testType(listType, () -> listType.decompose(randomList(() -> random.nextInt(5))),
+                 // lists with empty elements
+                 CollectionSerializer.pack(Arrays.asList(ByteBufferUtil.EMPTY_BYTE_BUFFER, Int32Type.instance.decompose(1)), 2, ProtocolVersion.V3),
+                 CollectionSerializer.pack(Collections.singletonList(ByteBufferUtil.EMPTY_BYTE_BUFFER), 1, ProtocolVersion.V3));
+
+        SetType<String> setType = SetType.getInstance(UTF8Type.instance, false);
+        testType(setType, () -> setType.decompose(new java.util.TreeSet<>(randomList(this::randomString))));
+
+        MapType<Integer, String> mapType = MapType.getInstance(Int32Type.instance, UTF8Type.instance, false);
+        testType(mapType, () -> {
+            Map<Integer, String> map = new java.util.TreeMap<>();
+            for (int i = random.nextInt(4); i > 0; --i)
+                map.put(random.nextInt(5), randomString());
+            return mapType.decompose(map);
+        });
+
+        ListType<List<Integer>> nested = ListType.getInstance(ListType.getInstance(ReversedType.getInstance(Int32Type.instance), false), false);
+        testType(nested, () -> nested.decompose(randomList(() -> randomList(() -> random.nextInt(3)))));
+    }
+
+    @Test
+    public void testTuples()
+    {
+        TupleType tupleType = new TupleType(Arrays.asList(Int32Type.instance, UTF8Type.instance, ReversedType.getInstance(LongType.instance)));
+        testType(tupleType, () -> {
+            // random number of components, some of them null or empty
+            ByteBuffer[] components = new ByteBuffer[random.nextInt(4)];
+            for (int i = 0; i < components.length; ++i)
+            {
+                switch (random.nextInt(4))
+                {
+                    case 0:
+                        components[i] = null;
+                        break;
+                    case 1:
+                        components[i] = ByteBufferUtil.EMPTY_BYTE_BUFFER;
+                        break;
+                    default:
+                        components[i] = tupleType.type(i) == UTF8Type.instance
+                                        ? UTF8Type.instance.decompose(randomString())
+                                        : i == 0 ? Int32Type.instance.decompose(random.nextInt(3)) : LongType.instance.decompose((long) random.nextInt(3));
+                }
+            }
+            return TupleType.buildValue(components);
+        });
+    }
+
+    @Test
+    public void testComposites()
+    {
+        CompositeType compositeType = CompositeType.getInstance(Int32Type.instance, ReversedType.getInstance(UTF8Type.instance));
+        testType(compositeType, () -> {
+            int size = random.nextInt(3);
+            List<ByteBuffer> components = new ArrayList<>();
+            components.add(Int32Type.instance.decompose(random.nextInt(3)));
+            if (size > 1)
+                components.add(UTF8Type.instance.decompose(randomString()));
+            return composite(random.nextInt(5) == 0, components, size > 0 ? random.nextInt(3) - 1 : 0, component -> new byte[0]);
+        });
+
+        Map<Byte, AbstractType<?>> aliases = new HashMap<>();
+        aliases.put((byte) 'i', Int32Type.instance);
+        aliases.put((byte) 's', UTF8Type.instance);
+        aliases.put((byte) 'r', ReversedType.getInstance(LongType.instance));
+        DynamicCompositeType dynamicType = DynamicCompositeType.getInstance(aliases);
+        byte[] aliasBytes = new byte[]{ 'i', 's', 'r' };
+        testType(dynamicType, () -> {
+            List<ByteBuffer> components = new ArrayList<>();
+            List<Byte> componentAliases = new ArrayList<>();
+            for (int i = random.nextInt(3) + 1; i > 0; --i)
+            {
+                byte alias = aliasBytes[random.nextInt(aliasBytes.length)];
+                componentAliases.add(alias);
+                switch (alias)
+                {
+                    case 'i':
+                        components.add(Int32Type.instance.decompose(random.nextInt(3)));
+                        break;
+                    case 's':
+                        components.add(UTF8Type.instance.decompose(randomString()));
+                        break;
+                    default:
+                        components.add(LongType.instance.decompose((long) random.nextInt(3)));
+                }
+            }
+            return composite(false, components, random.nextInt(3) - 1,
+                             i -> new byte[]{ (byte) 0x80, componentAliases.get(i) });
+        });
+    }
+
+    @Test
+    public void testClusteringPrefixes()
+    {
+        ClusteringComparator comparator = new ClusteringComparator(Int32Type.instance, ReversedType.getInstance(UTF8Type.instance), LongType.instance);
+        List<ClusteringPrefix<?>> prefixes = new ArrayList<>();
+        prefixes.add(Clustering.STATIC_CLUSTERING);
+        prefixes.add(ClusteringBound.BOTTOM);
+        prefixes.add(ClusteringBound.TOP);
+        for (int i = 0; i < 300; ++i)
+        {
+            ByteBuffer[] values = new ByteBuffer[]{ Int32Type.instance.decompose(random.nextInt(3)),
+                                                    random.nextInt(5) == 0 ? ByteBufferUtil.EMPTY_BYTE_BUFFER : UTF8Type.instance.decompose(randomString()),
+                                                    random.nextInt(5) == 0 ? null : LongType.instance.decompose((long) random.nextInt(3)) };
+            if (random.nextInt(3) == 0)
+            {
+                prefixes.add(Clustering.make(values));
+                continue;
+            }
+
+            values = Arrays.copyOf(values, random.nextInt(4));
+            ClusteringPrefix.Kind kind = ClusteringPrefix.Kind.values()[random.nextInt(ClusteringPrefix.Kind.values().length)];
+            switch (kind)
+            {
+                case STATIC_CLUSTERING:
+                case CLUSTERING:
+                    break;
+                case EXCL_END_INCL_START_BOUNDARY:
+                case INCL_END_EXCL_START_BOUNDARY:
+                    if (values.length > 0)
+                        prefixes.add(BufferClusteringBoundary.create(kind, values));
+                    break;
+                default:
+                    prefixes.add(BufferClusteringBound.create(kind, values));
+            }
+        }
+
+        for (ClusteringPrefix<?> left : prefixes)
+            for (ClusteringPrefix<?> right : prefixes)
+                assertComparesSame(comparator.compare(left, right),
+                                   comparator.asComparableBytes(left),
+                                   comparator.asComparableBytes(right));
+    }
+
+    private interface ComponentHeader
+    {
+        byte[] header(int component);
+    }
+
+    /**
+     * Builds a composite value, with the given end-of-component byte after the last component.
+     */
+    private static ByteBuffer composite(boolean isStatic, List<ByteBuffer> components, int lastEoc, ComponentHeader headers)
+    {
+        ByteBuffer out = ByteBuffer.allocate(1000);
+        if (isStatic)
+            out.putShort((short) 0xFFFF); // static marker
+        for (int i = 0; i < components.size(); ++i)
+        {
+            out.put(headers.header(i));
+            ByteBufferUtil.writeShortLength(out, components.get(i).remaining());
+            out.put(components.get(i).duplicate());
+            out.put((byte) (i == components.size() - 1 ? lastEoc : 0));
+        }
+        out.flip();
+        return out;
+    }
+
+    private void testType(AbstractType<?> type, Supplier<ByteBuffer> generator, ByteBuffer... specialValues)
+    {
+        List<ByteBuffer> values = new ArrayList<>(Arrays.asList(specialValues));
+        for (int i = 0; i < 300; ++i)
+            values.add(generator.get());
+        testType(type, values);
+    }
+
+    private static void testType(AbstractType<?> type, List<ByteBuffer> testValues)
+    {
+        List<ByteBuffer> values = new ArrayList<>(testValues);
+        // tinyint and smallint cannot compare empty values
+        if (!(type instanceof ByteType || type instanceof ShortType))
+            values.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+
+        for (ByteBuffer left : values)
+        {
+            for (ByteBuffer right : values)
+            {
+                int expected = type.compare(left, right);
+                // on their own, empty values always sort first
+                if (!type.isReversed())
+                    assertComparesSame(expected, type.asComparableBytes(left), type.asComparableBytes(right));
+                // as components of a multi-component key, using the byte array accessor
+                byte[] leftArray = ByteBufferUtil.getArray(left);
+                byte[] rightArray = ByteBufferUtil.getArray(right);
+                assertComparesSame(expected,
+                                   ByteSource.withTerminator(ByteSource.TERMINATOR, type.asComparableBytes(ByteArrayAccessor.instance, leftArray)),
+                                   ByteSource.withTerminator(ByteSource.TERMINATOR, type.asComparableBytes(ByteArrayAccessor.instance, rightArray)));
+            }
+        }
+    }
+
+    private static void assertComparesSame(int expected, ByteSource left, ByteSource right)
+    {
+        assertEquals(Integer.signum(expected), Integer.signum(ByteComparable.compare(left, right)));
+    }
+
+    private <T> List<T> randomList(Supplier<T> generator)
+    {
+        List<T> list = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; --i)
+            list.add(generator.get());
+        return list;
+    }
+
+    private BigInteger randomBigInteger()
+    {
+        BigInteger value = new BigInteger(random.nextInt(200), random);
+        return random.nextBoolean() ? value : value.negate();
+    }
+
+    private Double randomDouble()
+    {
+        switch (random.nextInt(3))
+        {
+            case 0:
+                return (double) (random.nextInt(5) - 2);
+            case 1:
+                return random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+            default:
+                return Double.longBitsToDouble(random.nextLong());
+        }
+    }
+
+    private ByteBuffer randomDoubleBytes()
+    {
+        return DoubleType.instance.decompose(randomDouble());
+    }
+
+    private ByteBuffer randomBytes()
+    {
+        byte[] bytes = new byte[random.nextInt(5)];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte) (random.nextInt(3) - 1);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private String randomString()
+    {
+        char[] chars = new char[random.nextInt(4)];
+        for (int i = 0; i < chars.length; ++i)
+            chars[i] = (char) ('a' + random.nextInt(3));
+        return new String(chars);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.OrderPreservingPartitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ByteSourceTest
+{
+    private static final Random random = new Random(42);
+
+    @Test
+    public void testEscapedBytes()
+    {
+        assertArrayEquals(new byte[]{ 1, 0, (byte) 0xFF, 2, 0 }, ByteComparable.toArray(ByteSource.of(new byte[]{ 1, 0, 2 })));
+        assertArrayEquals(new byte[]{ 0 }, ByteComparable.toArray(ByteSource.of(ByteBufferUtil.EMPTY_BYTE_BUFFER)));
+
+        List<byte[]> values = new ArrayList<>();
+        values.add(new byte[0]);
+        values.add(new byte[]{ 0 });
+        values.add(new byte[]{ 0, 0 });
+        values.add(new byte[]{ 0, 1 });
+        values.add(new byte[]{ 1 });
+        values.add(new byte[]{ (byte) 0xFF });
+        values.add(new byte[]{ (byte) 0xFF, 0 });
+        for (int i = 0; i < 1000; ++i)
+        {
+            byte[] value = new byte[random.nextInt(5)];
+            for (int j = 0; j < value.length; ++j)
+                value[j] = (byte) (random.nextInt(3) - 1);
+            values.add(value);
+        }
+
+        for (byte[] left : values)
+            for (byte[] right : values)
+                assertComparesSame(ByteBufferUtil.compareUnsigned(ByteBuffer.wrap(left), ByteBuffer.wrap(right)),
+                                   ByteSource.of(left),
+                                   ByteSource.of(right));
+    }
+
+    @Test
+    public void testLongs()
+    {
+        List<Long> values = new ArrayList<>();
+        values.add(Long.MIN_VALUE);
+        values.add(Long.MAX_VALUE);
+        values.add(0L);
+        values.add(-1L);
+        values.add(1L);
+        for (int i = 0; i < 1000; ++i)
+            values.add(random.nextLong());
+
+        for (long left : values)
+            for (long right : values)
+                assertComparesSame(Long.compare(left, right), ByteSource.of(left), ByteSource.of(right));
+    }
+
+    @Test
+    public void testBigIntegers()
+    {
+        List<BigInteger> values = new ArrayList<>();
+        values.add(BigInteger.ZERO);
+        values.add(BigInteger.ONE);
+        values.add(BigInteger.ONE.negate());
+        values.add(BigInteger.valueOf(255));
+        values.add(BigInteger.valueOf(256));
+        values.add(BigInteger.valueOf(-256));
+        values.add(BigInteger.valueOf(-257));
+        for (int i = 0; i < 500; ++i)
+        {
+            BigInteger value = new BigInteger(random.nextInt(160), random);
+            values.add(random.nextBoolean() ? value : value.negate());
+        }
+
+        for (BigInteger left : values)
+            for (BigInteger right : values)
+                assertComparesSame(left.compareTo(right), ByteSource.of(left), ByteSource.of(right));
+    }
+
+    @Test
+    public void testMurmur3Positions()
+    {
+        testPartitionPositions(Murmur3Partitioner.instance);
+    }
+
+    @Test
+    public void testRandomPositions()
+    {
+        testPartitionPositions(RandomPartitioner.instance);
+    }
+
+    @Test
+    public void testByteOrderedPositions()
+    {
+        testPartitionPositions(ByteOrderedPartitioner.instance);
+    }
+
+    @Test
+    public void testOrderPreservingPositions()
+    {
+        testPartitionPositions(OrderPreservingPartitioner.instance);
+    }
+
+    private void testPartitionPositions(IPartitioner partitioner)
+    {
+        List<PartitionPosition> positions = new ArrayList<>();
+        for (int i = 0; i < 100; ++i)
+        {
+            // Short keys over a small alphabet, so that we get prefixes, equal tokens and zero bytes.
+            char[] chars = new char[random.nextInt(4)];
+            for (int j = 0; j < chars.length; ++j)
+                chars[j] = (char) random.nextInt(3);
+            ByteBuffer key = ByteBufferUtil.bytes(new String(chars));
+
+            PartitionPosition position = partitioner.decorateKey(key);
+            positions.add(position);
+            positions.add(position.getToken().minKeyBound());
+            positions.add(position.getToken().maxKeyBound());
+        }
+        positions.add(partitioner.getMinimumToken().minKeyBound());
+
+        for (PartitionPosition left : positions)
+            for (PartitionPosition right : positions)
+                assertComparesSame(left.compareTo(right), left.asComparableBytes(), right.asComparableBytes());
+    }
+
+    @Test
+    public void testTokens()
+    {
+        for (IPartitioner partitioner : new IPartitioner[]{ Murmur3Partitioner.instance,
+                                                            RandomPartitioner.instance,
+                                                            ByteOrderedPartitioner.instance })
+        {
+            List<Token> tokens = new ArrayList<>();
+            tokens.add(partitioner.getMinimumToken());
+            for (int i = 0; i < 200; ++i)
+                tokens.add(partitioner.getRandomToken(random));
+
+            for (Token left : tokens)
+                for (Token right : tokens)
+                    assertComparesSame(left.compareTo(right), left.asComparableBytes(), right.asComparableBytes());
+        }
+    }
+
+    private static void assertComparesSame(int expected, ByteSource left, ByteSource right)
+    {
+        assertEquals(Integer.signum(expected), Integer.signum(ByteComparable.compare(left, right)));
+    }
+}